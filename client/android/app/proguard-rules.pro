@@ -1,21 +1,27 @@
-# Add project specific ProGuard rules here.
-# You can control the set of applied configuration files using the
-# proguardFiles setting in build.gradle.
-#
-# For more details, see
-#   http://developer.android.com/guide/developing/tools/proguard.html
+# Release is minified with R8 (proguard-android-optimize.txt + this file).
+# Capacitor, AndroidX and Media3 ship their own consumer rules; these cover
+# what this app reaches by reflection or by name.
 
-# If your project uses WebView with JS, uncomment the following
-# and specify the fully qualified class name to the JavaScript interface
-# class:
-#-keepclassmembers class fqcn.of.javascript.interface.for.webview {
-#   public *;
-#}
+# Capacitor plugins: instantiated reflectively, @PluginMethod dispatched by
+# name from JS, @ActivityCallback/@PermissionCallback looked up by the name
+# passed to startActivityForResult (e.g. TVPlayer "playerResult")
+-keep @com.getcapacitor.annotation.CapacitorPlugin public class * {
+    public <init>();
+    @com.getcapacitor.PluginMethod public <methods>;
+    @com.getcapacitor.annotation.ActivityCallback <methods>;
+    @com.getcapacitor.annotation.PermissionCallback <methods>;
+}
+-keepattributes *Annotation*,Signature,InnerClasses,EnclosingMethod
 
-# Uncomment this to preserve the line number information for
-# debugging stack traces.
-#-keepattributes SourceFile,LineNumberTable
+# window.TorServeHomeSnapshot (HomeSnapshotPlugin) and any other bridge object
+-keepclassmembers class * {
+    @android.webkit.JavascriptInterface <methods>;
+}
 
-# If you keep the line number information, uncomment this to
-# hide the original source file name.
-#-renamesourcefileattribute SourceFile
+# Cordova plugins are created from config.xml class names
+-keep class org.apache.cordova.** { *; }
+-keep public class * extends org.apache.cordova.CordovaPlugin
+
+# Readable crash stack traces from the field (mapping.txt is kept per build)
+-keepattributes SourceFile,LineNumberTable
+-renamesourcefileattribute SourceFile
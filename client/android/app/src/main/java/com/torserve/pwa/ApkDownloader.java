@@ -0,0 +1,328 @@
+package com.torserve.pwa;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams an update APK to disk with HTTP Range resume.
+ *
+ * Bytes go from the socket to the file through one fixed 64 KB buffer and
+ * are hashed (SHA-256) on the way, so nothing is held in memory and nothing
+ * crosses the JS bridge. An interrupted download stays in "<file>.part";
+ * the next attempt re-hashes that prefix from disk and continues with a
+ * Range request. If-Range (ETag/Last-Modified saved next to the part file)
+ * makes the server send the whole file again if it changed in between.
+ *
+ * A finished file gets a "<file>.sha256" sidecar so a repeated download of
+ * the same release returns immediately.
+ */
+class ApkDownloader {
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 30000;
+    private static final int READ_TIMEOUT_MS = 60000;
+    private static final int MAX_ATTEMPTS_PER_URL = 4;
+    private static final long RETRY_BASE_MS = 1000;
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    interface Listener {
+        void onProgress(long downloaded, long total, long bytesPerSec);
+    }
+
+    static class Result {
+        File file;
+        String sha256;
+        long bytes;
+        long resumedFrom;
+        boolean cached;
+        boolean verified;
+        String url;
+    }
+
+    private volatile boolean cancelled;
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @param urls           candidates tried in order (LAN proxy first, then GitHub)
+     * @param target         final APK path
+     * @param expectedSha256 hex digest from version.json, or null to only compute it
+     */
+    Result download(List<String> urls, File target, String expectedSha256, Listener listener) throws IOException {
+        String expected = expectedSha256 != null && !expectedSha256.isEmpty()
+                ? expectedSha256.trim().toLowerCase(Locale.ROOT) : null;
+
+        Result cached = cachedResult(target, expected);
+        if (cached != null) {
+            return cached;
+        }
+
+        File part = new File(target.getPath() + ".part");
+        File validator = new File(target.getPath() + ".part.validator");
+        IOException lastError = null;
+        for (String url : urls) {
+            for (int attempt = 0; attempt < MAX_ATTEMPTS_PER_URL; attempt++) {
+                if (cancelled) {
+                    throw new IOException("Download cancelled");
+                }
+                try {
+                    Result result = fetch(url, part, validator, listener);
+                    return finish(result, part, validator, target, expected);
+                } catch (BadSourceException e) {
+                    lastError = e;
+                    break; // HTTP error or wrong bytes won't heal on retry: next candidate
+                } catch (IOException e) {
+                    lastError = e;
+                    if (!sleepBackoff(attempt)) {
+                        throw new IOException("Download cancelled");
+                    }
+                }
+            }
+        }
+        throw lastError != null ? lastError : new IOException("No download URL");
+    }
+
+    private Result fetch(String url, File part, File validator, Listener listener) throws IOException {
+        long offset = part.isFile() ? part.length() : 0;
+        String ifRange = offset > 0 ? readText(validator) : null;
+        if (offset > 0 && ifRange == null) {
+            offset = 0; // can't prove the partial bytes belong to the same file
+        }
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setInstanceFollowRedirects(true);
+            conn.setRequestProperty("Accept-Encoding", "identity");
+            if (offset > 0) {
+                conn.setRequestProperty("Range", "bytes=" + offset + "-");
+                conn.setRequestProperty("If-Range", ifRange);
+            }
+
+            int status = conn.getResponseCode();
+            if (status == 416 && offset > 0) {
+                // Part file is longer than the resource: start over.
+                part.delete();
+                validator.delete();
+                throw new IOException("Range not satisfiable, restarting");
+            }
+            if (status != HttpURLConnection.HTTP_OK && status != HttpURLConnection.HTTP_PARTIAL) {
+                throw new BadSourceException("HTTP " + status + " from " + url);
+            }
+            if (status == HttpURLConnection.HTTP_OK) {
+                offset = 0; // server ignored or rejected the range
+            }
+
+            long contentLength = conn.getContentLengthLong();
+            long total = contentLength >= 0 ? offset + contentLength : -1;
+            String etag = conn.getHeaderField("ETag");
+            String lastModified = conn.getHeaderField("Last-Modified");
+            String newValidator = etag != null && !etag.startsWith("W/") ? etag : lastModified;
+            writeText(validator, newValidator);
+
+            MessageDigest digest = sha256();
+            if (offset > 0) {
+                hashPrefix(part, offset, digest);
+            }
+
+            Result result = new Result();
+            result.url = url;
+            result.resumedFrom = offset;
+            try (RandomAccessFile raf = new RandomAccessFile(part, "rw");
+                 FileChannel out = raf.getChannel();
+                 InputStream in = conn.getInputStream();
+                 ReadableByteChannel source = Channels.newChannel(in)) {
+                out.truncate(offset);
+                out.position(offset);
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+                long written = offset;
+                long lastReportAt = 0;
+                long lastReportBytes = offset;
+                while (source.read(buffer) != -1) {
+                    if (cancelled) {
+                        throw new IOException("Download cancelled");
+                    }
+                    buffer.flip();
+                    digest.update(buffer.array(), 0, buffer.limit());
+                    while (buffer.hasRemaining()) {
+                        written += out.write(buffer);
+                    }
+                    buffer.clear();
+
+                    long now = System.currentTimeMillis();
+                    if (listener != null && now - lastReportAt >= PROGRESS_INTERVAL_MS) {
+                        long speed = lastReportAt == 0 ? 0
+                                : (written - lastReportBytes) * 1000 / (now - lastReportAt);
+                        listener.onProgress(written, total, speed);
+                        lastReportAt = now;
+                        lastReportBytes = written;
+                    }
+                }
+                out.force(false);
+                if (total >= 0 && written != total) {
+                    throw new IOException("Connection closed at " + written + " of " + total + " bytes");
+                }
+                result.bytes = written;
+                if (listener != null) {
+                    listener.onProgress(written, written, 0);
+                }
+            }
+            result.sha256 = toHex(digest.digest());
+            return result;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private Result finish(Result result, File part, File validator, File target, String expected) throws IOException {
+        if (expected != null && !expected.equals(result.sha256)) {
+            // Corrupt or tampered: don't let the next attempt resume from it.
+            part.delete();
+            validator.delete();
+            throw new BadSourceException("SHA-256 mismatch: expected " + expected + ", got " + result.sha256);
+        }
+        if (target.exists() && !target.delete()) {
+            throw new IOException("Cannot replace " + target);
+        }
+        if (!part.renameTo(target)) {
+            throw new IOException("Cannot move download to " + target);
+        }
+        validator.delete();
+        writeText(sidecar(target), result.sha256 + " " + target.length());
+        result.file = target;
+        result.verified = expected != null;
+        return result;
+    }
+
+    /**
+     * The finished file from an earlier run, if its sidecar still matches.
+     */
+    private static Result cachedResult(File target, String expected) {
+        if (!target.isFile()) {
+            return null;
+        }
+        String line = readText(sidecar(target));
+        if (line == null) {
+            return null;
+        }
+        String[] fields = line.split(" ");
+        if (fields.length != 2 || !fields[1].equals(Long.toString(target.length()))) {
+            return null;
+        }
+        if (expected != null && !expected.equals(fields[0])) {
+            return null;
+        }
+        Result result = new Result();
+        result.file = target;
+        result.sha256 = fields[0];
+        result.bytes = target.length();
+        result.cached = true;
+        result.verified = expected != null;
+        return result;
+    }
+
+    /**
+     * Digest of a file already on disk, for callers that didn't download it here.
+     */
+    static String sha256Of(File file) throws IOException {
+        MessageDigest digest = sha256();
+        hashPrefix(file, file.length(), digest);
+        return toHex(digest.digest());
+    }
+
+    private static void hashPrefix(File file, long length, MessageDigest digest) throws IOException {
+        byte[] buffer = new byte[BUFFER_BYTES];
+        long remaining = length;
+        try (InputStream in = new FileInputStream(file)) {
+            while (remaining > 0) {
+                int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("Partial file shorter than expected");
+                }
+                digest.update(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    private static File sidecar(File target) {
+        return new File(target.getPath() + ".sha256");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static String readText(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) Math.min(file.length(), 4096)];
+            int read = in.read(bytes);
+            String text = read > 0 ? new String(bytes, 0, read, StandardCharsets.UTF_8).trim() : "";
+            return text.isEmpty() ? null : text;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeText(File file, String text) {
+        if (text == null) {
+            file.delete();
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException ignored) {
+            // Only costs a full download next time.
+        }
+    }
+
+    private boolean sleepBackoff(int attempt) {
+        try {
+            Thread.sleep(RETRY_BASE_MS << Math.min(attempt, 4));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !cancelled;
+    }
+
+    private static class BadSourceException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BadSourceException(String message) {
+            super(message);
+        }
+    }
+}
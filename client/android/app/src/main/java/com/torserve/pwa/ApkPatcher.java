@@ -0,0 +1,157 @@
+package com.torserve.pwa;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Rebuilds a release APK from the installed base.apk and a TSDELTA1 patch
+ * (see server/utils/apkDelta.js for the format and the generator).
+ *
+ * Streams op by op: COPY reads the base through a positional FileChannel,
+ * INSERT copies literal bytes out of the gunzipped patch. Memory use is one
+ * 64 KB buffer regardless of APK size. The output is hashed while it is
+ * written and must match the target SHA-256 in the patch header, so a
+ * patch built against another base can never produce an installable file.
+ */
+class ApkPatcher {
+    private static final byte[] MAGIC = "TSDELTA1".getBytes(StandardCharsets.US_ASCII);
+    private static final int OP_END = 0;
+    private static final int OP_COPY = 1;
+    private static final int OP_INSERT = 2;
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    static class Result {
+        File file;
+        String sha256;
+        long bytes;
+        long copiedBytes;
+        long insertedBytes;
+    }
+
+    /**
+     * @param expectedSha256 target hash from version.json, or null to trust
+     *                       the patch header alone
+     */
+    static Result apply(File base, File patch, File target, String expectedSha256) throws IOException {
+        File part = new File(target.getPath() + ".part");
+        Result result = new Result();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(patch), BUFFER_BYTES), BUFFER_BYTES));
+             RandomAccessFile baseFile = new RandomAccessFile(base, "r");
+             FileChannel baseChannel = baseFile.getChannel();
+             FileOutputStream out = new FileOutputStream(part)) {
+
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a TSDELTA1 patch");
+            }
+            long baseSize = in.readLong();
+            long targetSize = in.readLong();
+            byte[] targetSha256 = new byte[32];
+            in.readFully(targetSha256);
+            if (baseSize != baseChannel.size()) {
+                throw new IOException("Patch is for a different base APK");
+            }
+            String headerSha256 = toHex(targetSha256);
+            if (expectedSha256 != null && !expectedSha256.isEmpty()
+                    && !headerSha256.equals(expectedSha256.trim().toLowerCase(Locale.ROOT))) {
+                throw new IOException("Patch target does not match the published release");
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            byte[] array = buffer.array();
+            while (true) {
+                int op = in.read();
+                if (op == OP_END) {
+                    break;
+                } else if (op == OP_COPY) {
+                    long offset = in.readLong();
+                    long length = in.readInt() & 0xffffffffL;
+                    if (offset < 0 || offset + length > baseSize) {
+                        throw new IOException("COPY outside base APK");
+                    }
+                    long position = offset;
+                    long end = offset + length;
+                    while (position < end) {
+                        buffer.clear();
+                        buffer.limit((int) Math.min(BUFFER_BYTES, end - position));
+                        int read = baseChannel.read(buffer, position);
+                        if (read <= 0) {
+                            throw new EOFException("Base APK truncated");
+                        }
+                        out.write(array, 0, read);
+                        digest.update(array, 0, read);
+                        position += read;
+                    }
+                    result.copiedBytes += length;
+                } else if (op == OP_INSERT) {
+                    long remaining = in.readInt() & 0xffffffffL;
+                    result.insertedBytes += remaining;
+                    while (remaining > 0) {
+                        int count = (int) Math.min(BUFFER_BYTES, remaining);
+                        in.readFully(array, 0, count);
+                        out.write(array, 0, count);
+                        digest.update(array, 0, count);
+                        remaining -= count;
+                    }
+                } else {
+                    throw new IOException(op < 0 ? "Patch truncated" : "Unknown patch op " + op);
+                }
+                if (result.copiedBytes + result.insertedBytes > targetSize) {
+                    throw new IOException("Patch output exceeds target size");
+                }
+            }
+
+            out.getFD().sync();
+            result.bytes = result.copiedBytes + result.insertedBytes;
+            result.sha256 = toHex(digest.digest());
+            if (result.bytes != targetSize || !result.sha256.equals(headerSha256)) {
+                throw new IOException("Patched APK does not match the target hash");
+            }
+        } catch (IOException e) {
+            part.delete();
+            throw e;
+        }
+
+        if (target.exists() && !target.delete()) {
+            part.delete();
+            throw new IOException("Cannot replace " + target);
+        }
+        if (!part.renameTo(target)) {
+            part.delete();
+            throw new IOException("Cannot move patched APK to " + target);
+        }
+        result.file = target;
+        return result;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.torserve.pwa;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+import com.getcapacitor.JSObject;
+
+/**
+ * Latency of every TVPlayer bridge method, invocation to resolve/reject,
+ * plus per external player:
+ *  - handoff: play()/playList() until our activity pauses (the player is
+ *    in front), i.e. bridge + intent + the player's own startup
+ *  - session: play()/playList() until playerResult resolves
+ * One LatencyHistogram each, allocated up front; begin()/end() only read
+ * the clock and increment counters. Each call is also an async Trace
+ * section ("bridge:play" ...) in systrace/Perfetto on Android 10+.
+ */
+final class BridgeMetrics {
+    static final int IS_PACKAGE_INSTALLED = 0;
+    static final int GET_INSTALLED_PLAYERS = 1;
+    static final int PLAY = 2;
+    static final int PLAY_LIST = 3;
+    static final int PLAYER_RESULT = 4;
+    static final int TAKE_PENDING_PLAYBACK = 5;
+    static final int GET_APP_VERSION = 6;
+    static final int DOWNLOAD_APK = 7;
+    static final int CANCEL_APK_DOWNLOAD = 8;
+    static final int APPLY_APK_PATCH = 9;
+    static final int INSTALL_APK = 10;
+    static final int APK_INSTALL_RESULT = 11;
+    static final int GET_METRICS = 12;
+    private static final String[] METHODS = {
+            "isPackageInstalled", "getInstalledPlayers", "play", "playList", "playerResult",
+            "takePendingPlayback", "getAppVersion", "downloadApk", "cancelApkDownload",
+            "applyApkPatch", "installApk", "apkInstallResult", "getMetrics"
+    };
+
+    static final int PLAYER_VIMU = 0;
+    static final int PLAYER_MX = 1;
+    static final int PLAYER_VLC = 2;
+    static final int PLAYER_NATIVE = 3;
+    static final int PLAYER_OTHER = 4;
+    private static final String[] PLAYERS = {"vimu", "mx", "vlc", "native", "other"};
+
+    private static final String[] TRACE_SECTIONS = new String[METHODS.length];
+    private static final LatencyHistogram[] methods = new LatencyHistogram[METHODS.length];
+    private static final LatencyHistogram[] handoff = new LatencyHistogram[PLAYERS.length];
+    private static final LatencyHistogram[] session = new LatencyHistogram[PLAYERS.length];
+
+    static {
+        for (int i = 0; i < METHODS.length; i++) {
+            TRACE_SECTIONS[i] = "bridge:" + METHODS[i];
+            methods[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < PLAYERS.length; i++) {
+            handoff[i] = new LatencyHistogram();
+            session[i] = new LatencyHistogram();
+        }
+    }
+
+    private BridgeMetrics() {
+    }
+
+    /** Start of a call; pass the returned value to end(). */
+    static long begin(int method) {
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(TRACE_SECTIONS[method], (int) now);
+        }
+        return now;
+    }
+
+    /** Once the call is resolved or rejected; from a finally block, so every path counts. */
+    static void end(int method, long startedAt) {
+        methods[method].record(micros(startedAt));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(TRACE_SECTIONS[method], (int) startedAt);
+        }
+    }
+
+    static void handoff(int player, long startedAt) {
+        handoff[player].record(micros(startedAt));
+    }
+
+    static void session(int player, long startedAt) {
+        session[player].record(micros(startedAt));
+    }
+
+    static int player(String packageName, boolean nativeEngine) {
+        if (nativeEngine) {
+            return PLAYER_NATIVE;
+        }
+        if (packageName == null) {
+            return PLAYER_OTHER;
+        }
+        if (packageName.contains(PlayerLaunch.VIMU)) {
+            return PLAYER_VIMU;
+        }
+        if (packageName.contains(PlayerLaunch.MX)) {
+            return PLAYER_MX;
+        }
+        if (packageName.contains(PlayerLaunch.VLC)) {
+            return PLAYER_VLC;
+        }
+        return PLAYER_OTHER;
+    }
+
+    private static long micros(long startedAt) {
+        return (SystemClock.elapsedRealtimeNanos() - startedAt) / 1000;
+    }
+
+    /**
+     * {methods: {play: {count, meanMs, p50Ms, p90Ms, p99Ms, maxMs}, ...},
+     * handoff: {vimu: {...}, ...}, session: {...}}; empty histograms are left
+     * out.
+     */
+    static JSObject toJson() {
+        JSObject ret = new JSObject();
+        ret.put("methods", toJson(METHODS, methods));
+        ret.put("handoff", toJson(PLAYERS, handoff));
+        ret.put("session", toJson(PLAYERS, session));
+        return ret;
+    }
+
+    static void reset() {
+        for (LatencyHistogram histogram : methods) {
+            histogram.reset();
+        }
+        for (int i = 0; i < PLAYERS.length; i++) {
+            handoff[i].reset();
+            session[i].reset();
+        }
+    }
+
+    private static JSObject toJson(String[] names, LatencyHistogram[] histograms) {
+        JSObject ret = new JSObject();
+        for (int i = 0; i < names.length; i++) {
+            LatencyHistogram.Snapshot snapshot = histograms[i].snapshot();
+            if (snapshot.count == 0) {
+                continue;
+            }
+            JSObject stats = new JSObject();
+            stats.put("count", snapshot.count);
+            stats.put("meanMs", snapshot.meanMicros() / 1000d);
+            stats.put("p50Ms", snapshot.percentileMicros(0.5) / 1000d);
+            stats.put("p90Ms", snapshot.percentileMicros(0.9) / 1000d);
+            stats.put("p99Ms", snapshot.percentileMicros(0.99) / 1000d);
+            stats.put("maxMs", snapshot.maxMicros / 1000d);
+            ret.put(names[i], stats);
+        }
+        return ret;
+    }
+}
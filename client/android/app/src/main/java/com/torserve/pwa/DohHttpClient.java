@@ -0,0 +1,492 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Minimal HTTP/1.1 GET client that connects to addresses from DohResolver.
+ *
+ * HttpURLConnection always resolves through the system resolver, which is
+ * exactly what is poisoned on the networks this exists for. Here we open the
+ * socket to a DoH-resolved IP ourselves and layer TLS on top with the real
+ * hostname, so SNI and certificate/hostname verification are unchanged.
+ *
+ * Connections are kept alive and reused per host once a body has been read
+ * to its end. Responses may come gzip-compressed and are decoded here. The
+ * WebView's HTTP cache never sees intercepted requests, so repeat GETs are
+ * answered or revalidated from DohResponseCache. Bodies are streamed, never
+ * buffered; a cacheable one is copied into the cache as it is read.
+ */
+public class DohHttpClient {
+    private static final int CONNECT_TIMEOUT_MS = 4000;
+    private static final int READ_TIMEOUT_MS = 10000;
+    private static final int MAX_HEADER_LINE = 16 * 1024;
+    // Shorter than the usual server keep-alive (nginx: 75s, CDNs: 60s+).
+    private static final long KEEP_ALIVE_MS = 30_000L;
+    private static final int MAX_IDLE_PER_HOST = 4;
+
+    private static DohHttpClient instance;
+
+    private final DohResolver resolver;
+    private final DohResponseCache cache = new DohResponseCache();
+    private final Map<String, ArrayDeque<Connection>> idle = new HashMap<>();
+
+    /**
+     * Process-wide client, so the pool and the cache outlive a WebView that
+     * MainActivity rebuilds.
+     */
+    public static synchronized DohHttpClient get(Context context) {
+        if (instance == null) {
+            instance = new DohHttpClient(DohResolver.get(context));
+        }
+        return instance;
+    }
+
+    public DohHttpClient(DohResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * @return response with an open body stream, or null when DoH has no
+     *         answer for the host (caller should use the default network path)
+     */
+    public Response get(String url, Map<String, String> headers) throws IOException {
+        URI uri = URI.create(url);
+        String host = uri.getHost();
+        boolean https = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : (https ? 443 : 80);
+
+        DohResponseCache.Entry cached = DohResponseCache.usable(headers) ? cache.get(url) : null;
+        if (cached != null && cached.isFresh()) {
+            return cached.toResponse();
+        }
+
+        List<InetAddress> addresses = resolver.lookup(host);
+        if (addresses.isEmpty()) {
+            return null;
+        }
+
+        String route = (https ? "https://" : "http://") + host + ":" + port;
+        String request = request(uri, host, port, https, headers, cached);
+        Response response = null;
+        Connection pooled;
+        while (response == null && (pooled = takeIdle(route)) != null) {
+            try {
+                response = exchange(pooled, route, request);
+            } catch (IOException e) {
+                // The server dropped it while idle; try the next one.
+                pooled.close();
+            }
+        }
+        IOException lastError = null;
+        for (int i = 0; response == null && i < addresses.size(); i++) {
+            Connection connection = null;
+            try {
+                connection = connect(addresses.get(i), host, port, https);
+                response = exchange(connection, route, request);
+            } catch (IOException e) {
+                if (connection != null) {
+                    connection.close();
+                }
+                lastError = e;
+            }
+        }
+        if (response == null) {
+            throw lastError;
+        }
+
+        if (cached != null && response.status == 304) {
+            closeQuietly(response.body);
+            return cache.revalidated(url, cached, response.headers).toResponse();
+        }
+        if (DohResponseCache.usable(headers)) {
+            response.body = cache.record(url, response);
+        }
+        return response;
+    }
+
+    /**
+     * Memory pressure (MemoryPressure.onTrimMemory): idle connections are
+     * closed; the response cache drops what it can't serve without the
+     * network, or everything when the system is short of memory.
+     */
+    public void trimMemory(boolean severe) {
+        synchronized (idle) {
+            for (ArrayDeque<Connection> connections : idle.values()) {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+            idle.clear();
+        }
+        cache.trimMemory(severe);
+    }
+
+    private static String request(URI uri, String host, int port, boolean https,
+                                  Map<String, String> headers, DohResponseCache.Entry cached) {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+
+        StringBuilder request = new StringBuilder();
+        request.append("GET ").append(path).append(" HTTP/1.1\r\n");
+        request.append("Host: ").append(port == (https ? 443 : 80) ? host : host + ":" + port).append("\r\n");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                String name = header.getKey().toLowerCase(Locale.ROOT);
+                if (name.equals("host") || name.equals("connection") || name.equals("accept-encoding")) {
+                    continue;
+                }
+                request.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+            }
+        }
+        if (cached != null) {
+            String etag = cached.header("ETag");
+            String lastModified = cached.header("Last-Modified");
+            if (etag != null) {
+                request.append("If-None-Match: ").append(etag).append("\r\n");
+            }
+            if (lastModified != null) {
+                request.append("If-Modified-Since: ").append(lastModified).append("\r\n");
+            }
+        }
+        // Only what GZIPInputStream can undo; WebView would also offer br.
+        request.append("Accept-Encoding: gzip\r\n\r\n");
+        return request.toString();
+    }
+
+    private static Connection connect(InetAddress address, String host, int port, boolean https)
+            throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(address, port), CONNECT_TIMEOUT_MS);
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            if (https) {
+                socket = wrapTls(socket, host, port);
+            }
+            return new Connection(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private Response exchange(Connection connection, String route, String request) throws IOException {
+        connection.out.write(request.getBytes(StandardCharsets.ISO_8859_1));
+        connection.out.flush();
+        return readResponse(connection, route);
+    }
+
+    private static Socket wrapTls(Socket plain, String host, int port) throws IOException {
+        SSLSocketFactory factory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        SSLSocket tls = (SSLSocket) factory.createSocket(plain, host, port, true);
+        tls.startHandshake();
+        HostnameVerifier verifier = HttpsURLConnection.getDefaultHostnameVerifier();
+        if (!verifier.verify(host, tls.getSession())) {
+            tls.close();
+            throw new IOException("Hostname " + host + " not verified");
+        }
+        return tls;
+    }
+
+    private Response readResponse(Connection connection, String route) throws IOException {
+        InputStream in = connection.in;
+        String statusLine = readLine(in);
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/1.")) {
+            throw new IOException("Malformed status line: " + statusLine);
+        }
+
+        Response response = new Response();
+        response.status = Integer.parseInt(parts[1]);
+        response.reason = parts.length > 2 && !parts[2].isEmpty() ? parts[2] : "OK";
+
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            String previous = response.headers.get(name);
+            response.headers.put(name, previous == null ? value : previous + ", " + value);
+        }
+
+        String connectionHeader = response.header("Connection");
+        boolean keepAlive = parts[0].equals("HTTP/1.1")
+                && (connectionHeader == null || !connectionHeader.toLowerCase(Locale.ROOT).contains("close"));
+
+        Framed framed;
+        String transferEncoding = response.header("Transfer-Encoding");
+        String contentLength = response.header("Content-Length");
+        if (response.status == 204 || response.status == 304 || response.status < 200) {
+            framed = new BoundedInputStream(in, 0);
+        } else if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+            framed = new ChunkedInputStream(in);
+        } else if (contentLength != null) {
+            framed = new BoundedInputStream(in, Long.parseLong(contentLength.trim()));
+        } else {
+            // Delimited by the server closing the connection.
+            framed = new BoundedInputStream(in, Long.MAX_VALUE);
+            keepAlive = false;
+        }
+
+        InputStream body = (InputStream) framed;
+        String contentEncoding = response.header("Content-Encoding");
+        if (contentEncoding != null && contentEncoding.trim().equalsIgnoreCase("gzip") && !framed.exhausted()) {
+            body = new GZIPInputStream(body);
+            // What the caller reads is the decoded body.
+            DohResponseCache.removeHeader(response.headers, "Content-Encoding");
+            DohResponseCache.removeHeader(response.headers, "Content-Length");
+        }
+        response.body = new ReleasingInputStream(body, framed, keepAlive ? route : null, connection);
+        return response;
+    }
+
+    private Connection takeIdle(String route) {
+        synchronized (idle) {
+            ArrayDeque<Connection> connections = idle.get(route);
+            while (connections != null && !connections.isEmpty()) {
+                Connection connection = connections.pollLast();
+                if (System.currentTimeMillis() - connection.idleSince < KEEP_ALIVE_MS) {
+                    return connection;
+                }
+                connection.close();
+            }
+            return null;
+        }
+    }
+
+    private void release(String route, Connection connection) {
+        connection.idleSince = System.currentTimeMillis();
+        synchronized (idle) {
+            ArrayDeque<Connection> connections = idle.get(route);
+            if (connections == null) {
+                connections = new ArrayDeque<>();
+                idle.put(route, connections);
+            }
+            connections.addLast(connection);
+            while (connections.size() > MAX_IDLE_PER_HOST) {
+                connections.pollFirst().close();
+            }
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // Socket already gone
+        }
+    }
+
+    static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                break;
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+            if (line.length() > MAX_HEADER_LINE) {
+                throw new IOException("Header line too long");
+            }
+        }
+        if (c == -1 && line.length() == 0) {
+            throw new IOException("Unexpected end of stream");
+        }
+        return line.toString();
+    }
+
+    public static class Response {
+        public int status;
+        public String reason;
+        public final Map<String, String> headers = new LinkedHashMap<>();
+        public InputStream body;
+
+        public String header(String name) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if (header.getKey().equalsIgnoreCase(name)) {
+                    return header.getValue();
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Body framing over the connection's stream; close() leaves it open. */
+    interface Framed {
+        /** True once the whole body has been read, so the connection can take the next request. */
+        boolean exhausted();
+    }
+
+    static class ChunkedInputStream extends InputStream implements Framed {
+        private final InputStream in;
+        private long remaining;
+        private boolean eof;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean exhausted() {
+            return eof;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (eof) {
+                return -1;
+            }
+            if (remaining == 0) {
+                String size = readLine(in);
+                int semicolon = size.indexOf(';');
+                remaining = Long.parseLong((semicolon >= 0 ? size.substring(0, semicolon) : size).trim(), 16);
+                if (remaining == 0) {
+                    // Skip trailers up to the terminating empty line.
+                    while (!readLine(in).isEmpty()) {
+                        // ignore
+                    }
+                    eof = true;
+                    return -1;
+                }
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read == -1) {
+                throw new IOException("Truncated chunk");
+            }
+            remaining -= read;
+            if (remaining == 0) {
+                readLine(in);
+            }
+            return read;
+        }
+    }
+
+    static class BoundedInputStream extends FilterInputStream implements Framed {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public boolean exhausted() {
+            return remaining <= 0;
+        }
+
+        @Override
+        public void close() {
+            // The connection owns the stream.
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read != -1) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+
+    /** Hands the connection back to the pool if the body was read to its end, else closes it. */
+    private class ReleasingInputStream extends FilterInputStream {
+        private final Framed framed;
+        private final String route;
+        private final Connection connection;
+        private boolean closed;
+
+        ReleasingInputStream(InputStream in, Framed framed, String route, Connection connection) {
+            super(in);
+            this.framed = framed;
+            this.route = route;
+            this.connection = connection;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                if (route != null && framed.exhausted()) {
+                    release(route, connection);
+                } else {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    private static final class Connection {
+        final Socket socket;
+        final InputStream in;
+        final OutputStream out;
+        long idleSince;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+}
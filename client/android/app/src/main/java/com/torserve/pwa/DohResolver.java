@@ -0,0 +1,483 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * App-wide DNS-over-HTTPS resolver (replaces the dohCache Map in tmdbClient.js).
+ *
+ * - Every lookup races all DOH_ENDPOINTS; first usable answer wins.
+ * - Answers are cached by their TTL (clamped), empty answers are cached
+ *   negatively, transport failures are not cached.
+ * - A hit close to expiry is served immediately and refreshed in the
+ *   background, so hot hosts never block on DNS again.
+ * - The cache is persisted, and expired entries are served stale while a
+ *   refresh runs: after a cold start the first TMDB request does not wait
+ *   for DNS at all.
+ *
+ * Endpoints are IP literals so DoH itself needs no bootstrap resolution on
+ * networks whose resolver is poisoned.
+ */
+public class DohResolver {
+    private static final String PREFS_NAME = "doh_cache";
+    private static final String PREFS_ENTRIES = "entries";
+
+    static final String[] DOH_ENDPOINTS = {
+            "https://1.1.1.1/dns-query",
+            "https://8.8.8.8/resolve",
+            "https://1.0.0.1/dns-query",
+            "https://9.9.9.9:5053/dns-query"
+    };
+
+    /**
+     * Hosts whose WebView traffic is routed through this resolver, and
+     * which are pre-resolved on every cold start.
+     */
+    static final String[] ROUTED_HOSTS = {
+            "api.themoviedb.org",
+            "image.tmdb.org",
+            "nl.imagetmdb.com",
+            "imagetmdb.com",
+            "de.imagetmdb.com",
+            "pl.imagetmdb.com",
+            "lampa.byskaz.ru",
+            "apn-latest.onrender.com",
+            "wsrv.nl",
+            "corsproxy.io"
+    };
+
+    private static final int DNS_TYPE_A = 1;
+    private static final int DNS_STATUS_NXDOMAIN = 3;
+    private static final long MIN_TTL_MS = 60_000L;
+    private static final long MAX_TTL_MS = 6 * 60 * 60 * 1000L;
+    private static final long NEGATIVE_TTL_MS = 60_000L;
+    private static final long MAX_STALE_MS = 24 * 60 * 60 * 1000L;
+    private static final long PREFETCH_WINDOW_MS = 30_000L;
+    private static final long RACE_TIMEOUT_MS = 5000L;
+    private static final int CONNECT_TIMEOUT_MS = 3000;
+    private static final int READ_TIMEOUT_MS = 3000;
+
+    private static DohResolver instance;
+
+    private final SharedPreferences prefs;
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<String, FutureTask<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService raceExecutor = Executors.newCachedThreadPool(daemon("doh-race"));
+    private final ExecutorService refreshExecutor = Executors.newFixedThreadPool(2, daemon("doh-refresh"));
+    private volatile boolean loaded;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong prefetches = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public static synchronized DohResolver get(Context context) {
+        if (instance == null) {
+            instance = new DohResolver(context.getApplicationContext()
+                    .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+        }
+        return instance;
+    }
+
+    DohResolver(SharedPreferences prefs) {
+        this.prefs = prefs;
+    }
+
+    /**
+     * Load the persisted cache and refresh ROUTED_HOSTS off the main thread.
+     * Called from MainActivity.onCreate.
+     */
+    public void warmUp() {
+        refreshExecutor.execute(() -> {
+            ensureLoaded();
+            for (String host : ROUTED_HOSTS) {
+                Entry entry = cache.get(host);
+                if (entry == null || entry.remainingMs() < PREFETCH_WINDOW_MS) {
+                    refreshAsync(host);
+                }
+            }
+        });
+    }
+
+    /**
+     * Blocking lookup. Never returns poisoned (loopback/any-local) addresses.
+     *
+     * @return resolved addresses, or an empty list if DoH has no usable answer
+     *         (callers fall back to the system resolver)
+     */
+    public List<InetAddress> lookup(String host) {
+        Result result = resolve(host);
+        return result.addresses;
+    }
+
+    public Result resolve(String host) {
+        ensureLoaded();
+        host = host.toLowerCase(Locale.ROOT);
+
+        Entry entry = cache.get(host);
+        if (entry != null) {
+            long remaining = entry.remainingMs();
+            if (remaining > 0) {
+                if (entry.isNegative()) {
+                    negativeHits.incrementAndGet();
+                } else {
+                    hits.incrementAndGet();
+                }
+                if (remaining < Math.max(PREFETCH_WINDOW_MS, entry.ttlMs / 10)) {
+                    refreshAsync(host);
+                }
+                return new Result(entry, "cache");
+            }
+            if (!entry.isNegative() && -remaining < MAX_STALE_MS) {
+                staleHits.incrementAndGet();
+                refreshAsync(host);
+                return new Result(entry, "stale");
+            }
+        }
+
+        misses.incrementAndGet();
+        Entry fresh = await(host);
+        return fresh == null ? Result.EMPTY : new Result(fresh, "doh");
+    }
+
+    private void refreshAsync(String host) {
+        if (inFlight.containsKey(host)) {
+            return;
+        }
+        prefetches.incrementAndGet();
+        refreshExecutor.execute(() -> await(host));
+    }
+
+    /**
+     * Single-flight: concurrent lookups for one host share one race.
+     */
+    private Entry await(String host) {
+        FutureTask<Entry> task = new FutureTask<>(() -> race(host));
+        FutureTask<Entry> existing = inFlight.putIfAbsent(host, task);
+        if (existing == null) {
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(host, task);
+            }
+        } else {
+            task = existing;
+        }
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    private Entry race(String host) {
+        ExecutorCompletionService<Entry> race = new ExecutorCompletionService<>(raceExecutor);
+        List<Future<Entry>> pending = new ArrayList<>(DOH_ENDPOINTS.length);
+        for (String endpoint : DOH_ENDPOINTS) {
+            pending.add(race.submit(query(endpoint, host)));
+        }
+
+        Entry negative = null;
+        long deadline = System.currentTimeMillis() + RACE_TIMEOUT_MS;
+        try {
+            for (int i = 0; i < pending.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                Future<Entry> done = remaining > 0 ? race.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                if (done == null) {
+                    break;
+                }
+                Entry entry;
+                try {
+                    entry = done.get();
+                } catch (ExecutionException e) {
+                    continue;
+                }
+                if (entry == null) {
+                    continue;
+                }
+                if (!entry.isNegative()) {
+                    store(host, entry);
+                    return entry;
+                }
+                // An empty answer may be a blocked endpoint; keep waiting for
+                // a positive one before trusting it.
+                negative = entry;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<Entry> future : pending) {
+                future.cancel(true);
+            }
+        }
+
+        if (negative != null) {
+            store(host, negative);
+            return negative;
+        }
+        failures.incrementAndGet();
+        return null;
+    }
+
+    private Callable<Entry> query(String endpoint, String host) {
+        return () -> {
+            String url = endpoint + "?name=" + URLEncoder.encode(host, "UTF-8") + "&type=A";
+            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+            try {
+                conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                conn.setReadTimeout(READ_TIMEOUT_MS);
+                conn.setRequestProperty("Accept", "application/dns-json");
+                if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    return null;
+                }
+                return parse(readBody(conn.getInputStream()));
+            } finally {
+                conn.disconnect();
+            }
+        };
+    }
+
+    /**
+     * Parse a Google/Cloudflare-style application/dns-json answer.
+     */
+    static Entry parse(String body) throws JSONException {
+        JSONObject json = new JSONObject(body);
+        int status = json.optInt("Status", -1);
+        if (status != 0 && status != DNS_STATUS_NXDOMAIN) {
+            return null;
+        }
+
+        List<String> addresses = new ArrayList<>();
+        long ttlSeconds = Long.MAX_VALUE;
+        JSONArray answers = json.optJSONArray("Answer");
+        if (answers != null) {
+            for (int i = 0; i < answers.length(); i++) {
+                JSONObject answer = answers.optJSONObject(i);
+                if (answer == null || answer.optInt("type") != DNS_TYPE_A) {
+                    continue;
+                }
+                String ip = answer.optString("data");
+                if (isPoisoned(ip)) {
+                    continue;
+                }
+                addresses.add(ip);
+                ttlSeconds = Math.min(ttlSeconds, answer.optLong("TTL", 300));
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (addresses.isEmpty()) {
+            return new Entry(Collections.emptyList(), now, NEGATIVE_TTL_MS);
+        }
+        long ttlMs = Math.max(MIN_TTL_MS, Math.min(MAX_TTL_MS, ttlSeconds * 1000L));
+        return new Entry(addresses, now, ttlMs);
+    }
+
+    static boolean isPoisoned(String ip) {
+        return ip == null
+                || ip.isEmpty()
+                || ip.startsWith("127.")
+                || ip.equals("0.0.0.0");
+    }
+
+    private void store(String host, Entry entry) {
+        cache.put(host, entry);
+        persist();
+    }
+
+    private synchronized void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        String raw = prefs.getString(PREFS_ENTRIES, null);
+        if (raw == null) {
+            return;
+        }
+        try {
+            JSONObject json = new JSONObject(raw);
+            Iterator<String> hosts = json.keys();
+            while (hosts.hasNext()) {
+                String host = hosts.next();
+                JSONObject item = json.optJSONObject(host);
+                JSONArray ips = item != null ? item.optJSONArray("ips") : null;
+                if (ips == null || ips.length() == 0) {
+                    continue;
+                }
+                List<String> addresses = new ArrayList<>();
+                for (int i = 0; i < ips.length(); i++) {
+                    addresses.add(ips.optString(i));
+                }
+                cache.putIfAbsent(host, new Entry(addresses,
+                        item.optLong("at"), item.optLong("ttl", MIN_TTL_MS)));
+            }
+        } catch (JSONException ignored) {
+            // Corrupt snapshot: start cold.
+        }
+    }
+
+    private void persist() {
+        JSONObject json = new JSONObject();
+        try {
+            for (Map.Entry<String, Entry> item : cache.entrySet()) {
+                Entry entry = item.getValue();
+                if (entry.isNegative()) {
+                    continue;
+                }
+                JSONObject value = new JSONObject();
+                value.put("ips", new JSONArray(entry.addresses));
+                value.put("at", entry.resolvedAt);
+                value.put("ttl", entry.ttlMs);
+                json.put(item.getKey(), value);
+            }
+        } catch (JSONException e) {
+            return;
+        }
+        prefs.edit().putString(PREFS_ENTRIES, json.toString()).apply();
+    }
+
+    /**
+     * Memory pressure (MemoryPressure.onTrimMemory): drop the entries that
+     * can't be served any more (negative, or expired beyond MAX_STALE_MS);
+     * when the system is short of memory, also every host outside
+     * ROUTED_HOSTS. The persisted snapshot is left as it is.
+     */
+    public void trimMemory(boolean severe) {
+        List<String> routed = Arrays.asList(ROUTED_HOSTS);
+        Iterator<Map.Entry<String, Entry>> items = cache.entrySet().iterator();
+        while (items.hasNext()) {
+            Map.Entry<String, Entry> item = items.next();
+            Entry entry = item.getValue();
+            long remaining = entry.remainingMs();
+            boolean dead = remaining <= 0 && (entry.isNegative() || -remaining >= MAX_STALE_MS);
+            if (dead || (severe && !routed.contains(item.getKey()))) {
+                items.remove();
+            }
+        }
+    }
+
+    public Stats stats() {
+        Stats stats = new Stats();
+        stats.hits = hits.get();
+        stats.staleHits = staleHits.get();
+        stats.negativeHits = negativeHits.get();
+        stats.misses = misses.get();
+        stats.prefetches = prefetches.get();
+        stats.failures = failures.get();
+        stats.entries = cache.size();
+        return stats;
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        try (InputStream body = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toString("UTF-8");
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    static class Entry {
+        final List<String> addresses;
+        final long resolvedAt;
+        final long ttlMs;
+
+        Entry(List<String> addresses, long resolvedAt, long ttlMs) {
+            this.addresses = addresses;
+            this.resolvedAt = resolvedAt;
+            this.ttlMs = ttlMs;
+        }
+
+        boolean isNegative() {
+            return addresses.isEmpty();
+        }
+
+        long remainingMs() {
+            return resolvedAt + ttlMs - System.currentTimeMillis();
+        }
+    }
+
+    public static class Result {
+        static final Result EMPTY = new Result();
+
+        public final List<InetAddress> addresses;
+        public final String source;
+        public final long ttlRemainingMs;
+
+        private Result() {
+            this.addresses = Collections.emptyList();
+            this.source = "none";
+            this.ttlRemainingMs = 0;
+        }
+
+        Result(Entry entry, String source) {
+            List<InetAddress> resolved = new ArrayList<>(entry.addresses.size());
+            for (String ip : entry.addresses) {
+                try {
+                    // IP literals: no lookup happens here.
+                    resolved.add(InetAddress.getByName(ip));
+                } catch (UnknownHostException ignored) {
+                    // Skip malformed persisted entries.
+                }
+            }
+            this.addresses = resolved;
+            this.source = source;
+            this.ttlRemainingMs = Math.max(0, entry.remainingMs());
+        }
+    }
+
+    public static class Stats {
+        public long hits;
+        public long staleHits;
+        public long negativeHits;
+        public long misses;
+        public long prefetches;
+        public long failures;
+        public int entries;
+    }
+}
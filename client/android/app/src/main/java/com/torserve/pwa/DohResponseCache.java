@@ -0,0 +1,287 @@
+package com.torserve.pwa;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * In-memory HTTP cache for DohHttpClient (TMDB API answers and the like).
+ *
+ * A private cache in the RFC 9111 sense, kept small: 200 responses with a
+ * Cache-Control max-age are served until it runs out, and ones with an
+ * ETag or Last-Modified are revalidated with a conditional GET. Images are
+ * left to PosterCache. Least recently used entries go first.
+ */
+final class DohResponseCache {
+    static final int MAX_BYTES = 2 * 1024 * 1024;
+    static final int MAX_ENTRY_BYTES = 256 * 1024;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size;
+
+    /** False for requests the cache must not answer: conditional, ranged or authorized. */
+    static boolean usable(Map<String, String> requestHeaders) {
+        if (requestHeaders == null) {
+            return true;
+        }
+        for (String name : requestHeaders.keySet()) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("if-") || lower.equals("range") || lower.equals("authorization")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Freshness lifetime of a response in ms: 0 when it has to be
+     * revalidated before every use, -1 when it may not be stored.
+     */
+    static long freshnessMs(int status, Map<String, String> headers) {
+        if (status != 200) {
+            return -1;
+        }
+        String type = header(headers, "Content-Type");
+        if (type != null && type.trim().toLowerCase(Locale.ROOT).startsWith("image/")) {
+            return -1;
+        }
+        String vary = header(headers, "Vary");
+        if (vary != null) {
+            for (String field : vary.split(",")) {
+                String name = field.trim().toLowerCase(Locale.ROOT);
+                // One origin and one Accept-Encoding for every request we send.
+                if (!name.isEmpty() && !name.equals("origin") && !name.equals("accept-encoding")) {
+                    return -1;
+                }
+            }
+        }
+
+        long maxAge = -1;
+        boolean noCache = false;
+        String cacheControl = header(headers, "Cache-Control");
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                String d = directive.trim().toLowerCase(Locale.ROOT);
+                if (d.equals("no-store")) {
+                    return -1;
+                } else if (d.equals("no-cache")) {
+                    noCache = true;
+                } else if (d.startsWith("max-age=")) {
+                    try {
+                        maxAge = Long.parseLong(d.substring("max-age=".length()).replace("\"", "")) * 1000L;
+                    } catch (NumberFormatException ignored) {
+                        // Malformed: treat as absent.
+                    }
+                }
+            }
+        }
+        boolean validators = header(headers, "ETag") != null || header(headers, "Last-Modified") != null;
+        if (noCache || maxAge <= 0) {
+            return validators ? 0 : -1;
+        }
+        String age = header(headers, "Age");
+        if (age != null) {
+            try {
+                maxAge -= Long.parseLong(age.trim()) * 1000L;
+            } catch (NumberFormatException ignored) {
+                // Malformed: treat as absent.
+            }
+        }
+        return Math.max(0, maxAge);
+    }
+
+    synchronized Entry get(String url) {
+        return entries.get(url);
+    }
+
+    /**
+     * The response body, copied into the cache as the caller reads it when
+     * the response may be stored and fits MAX_ENTRY_BYTES.
+     */
+    InputStream record(String url, DohHttpClient.Response response) {
+        long freshness = freshnessMs(response.status, response.headers);
+        if (freshness < 0) {
+            return response.body;
+        }
+        String length = header(response.headers, "Content-Length");
+        if (length != null) {
+            try {
+                if (Long.parseLong(length.trim()) > MAX_ENTRY_BYTES) {
+                    return response.body;
+                }
+            } catch (NumberFormatException ignored) {
+                // Recorded up to the limit instead.
+            }
+        }
+        Entry entry = new Entry(response.reason, response.headers, freshness);
+        return new RecordingInputStream(response.body, url, entry);
+    }
+
+    /** The cached entry, fresh again after a 304 with these headers. */
+    synchronized Entry revalidated(String url, Entry cached, Map<String, String> notModified) {
+        Map<String, String> headers = new LinkedHashMap<>(cached.headers);
+        for (Map.Entry<String, String> header : notModified.entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+            if (name.equals("content-length") || name.equals("transfer-encoding")
+                    || name.equals("content-encoding") || name.equals("connection")) {
+                continue;
+            }
+            removeHeader(headers, header.getKey());
+            headers.put(header.getKey(), header.getValue());
+        }
+        long freshness = freshnessMs(200, headers);
+        Entry refreshed = new Entry(cached.reason, headers, Math.max(0, freshness));
+        refreshed.body = cached.body;
+        if (freshness >= 0) {
+            put(url, refreshed);
+        } else if (entries.remove(url) != null) {
+            size -= cached.body.length;
+        }
+        return refreshed;
+    }
+
+    /** See DohHttpClient.trimMemory. */
+    synchronized void trimMemory(boolean severe) {
+        Iterator<Entry> items = entries.values().iterator();
+        while (items.hasNext()) {
+            Entry entry = items.next();
+            if (severe || !entry.isFresh()) {
+                size -= entry.body.length;
+                items.remove();
+            }
+        }
+    }
+
+    synchronized int size() {
+        return (int) size;
+    }
+
+    private synchronized void put(String url, Entry entry) {
+        Entry previous = entries.put(url, entry);
+        if (previous != null) {
+            size -= previous.body.length;
+        }
+        size += entry.body.length;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (size > MAX_BYTES && eldest.hasNext()) {
+            size -= eldest.next().body.length;
+            eldest.remove();
+        }
+    }
+
+    private static String header(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            if (header.getKey().equalsIgnoreCase(name)) {
+                return header.getValue();
+            }
+        }
+        return null;
+    }
+
+    static void removeHeader(Map<String, String> headers, String name) {
+        Iterator<String> names = headers.keySet().iterator();
+        while (names.hasNext()) {
+            if (names.next().equalsIgnoreCase(name)) {
+                names.remove();
+            }
+        }
+    }
+
+    static final class Entry {
+        final String reason;
+        final Map<String, String> headers;
+        final long storedAt = System.currentTimeMillis();
+        final long freshnessMs;
+        byte[] body;
+
+        Entry(String reason, Map<String, String> headers, long freshnessMs) {
+            this.reason = reason;
+            this.headers = new LinkedHashMap<>(headers);
+            // The stored body is plain bytes, whatever framing it came in.
+            removeHeader(this.headers, "Transfer-Encoding");
+            removeHeader(this.headers, "Connection");
+            removeHeader(this.headers, "Keep-Alive");
+            this.freshnessMs = freshnessMs;
+        }
+
+        boolean isFresh() {
+            return System.currentTimeMillis() - storedAt < freshnessMs;
+        }
+
+        String header(String name) {
+            return DohResponseCache.header(headers, name);
+        }
+
+        DohHttpClient.Response toResponse() {
+            DohHttpClient.Response response = new DohHttpClient.Response();
+            response.status = 200;
+            response.reason = reason;
+            response.headers.putAll(headers);
+            response.body = new ByteArrayInputStream(body);
+            return response;
+        }
+    }
+
+    /** Stores the body once the caller has read all of it. */
+    private final class RecordingInputStream extends FilterInputStream {
+        private final String url;
+        private final Entry entry;
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        RecordingInputStream(InputStream in, String url, Entry entry) {
+            super(in);
+            this.url = url;
+            this.entry = entry;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete();
+            } else if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read == -1) {
+                complete();
+            } else if (copy != null) {
+                copy.write(buffer, offset, read);
+                checkSize();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            copy = null; // the copy would have a hole
+            return super.skip(n);
+        }
+
+        private void checkSize() {
+            if (copy.size() > MAX_ENTRY_BYTES) {
+                copy = null;
+            }
+        }
+
+        private void complete() {
+            if (copy != null) {
+                entry.body = copy.toByteArray();
+                copy = null;
+                put(url, entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.torserve.pwa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Warms the next episodes of a playlist on the NAS while the current one
+ * plays, so an episode boundary doesn't start from a cold swarm.
+ *
+ * Reads the head of each upcoming entry (and the tail of MKVs, where the
+ * seek index lives) with ?prewarm=1 Range requests and discards the bytes:
+ * the point is that the server fetches those pieces now, at normal rather
+ * than streaming priority. A 503 means the pieces aren't there yet and is
+ * retried after Retry-After. Every STALL_POLL_MS the current torrent's
+ * stallCount in /api/status is checked; a new stall means the episode on
+ * screen is short of bandwidth and warming pauses for BACKOFF_MS.
+ */
+class EpisodePrewarmer {
+    static final long HEAD_BYTES = 16L * 1024 * 1024;
+    static final long MKV_TAIL_BYTES = 4L * 1024 * 1024;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final long MAX_BYTES_PER_SEC = 3L * 1024 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 20000;
+    private static final long STALL_POLL_MS = 10000;
+    private static final long BACKOFF_MS = 30000;
+    private static final int MAX_NOT_READY_RETRIES = 40;
+    private static final int MAX_ERRORS_PER_RANGE = 3;
+    private static final Pattern STREAM_PATH = Pattern.compile("/stream/([0-9a-fA-F]{40})/(\\d+)");
+
+    static class Stats {
+        int entries;
+        int ranges;
+        int rangesWarmed;
+        long warmedBytes;
+        int backoffs;
+        int notReadyRetries;
+        int errors;
+        long durationMs;
+        boolean finished;
+    }
+
+    /** One byte range to warm; start < 0 means "last length bytes". */
+    private static class Target {
+        final String url;
+        final long start;
+        final long length;
+        long done;
+        int errors;
+        int notReady;
+
+        Target(String url, long start, long length) {
+            this.url = url;
+            this.start = start;
+            this.length = length;
+        }
+    }
+
+    private final List<Target> targets = new ArrayList<>();
+    private final String statusUrl;
+    private final String playingInfoHash;
+    private final Stats stats = new Stats();
+    private volatile boolean cancelled;
+    private boolean backOffPending;
+    private long lastStallCount = -1;
+    private long lastStallPollAt;
+
+    /**
+     * @param playingUrl /stream URL on screen now (stall source), may be null
+     * @param urls       upcoming entries, nearest first
+     * @param names      file names (for the MKV check), may be shorter than urls
+     */
+    EpisodePrewarmer(String playingUrl, List<String> urls, List<String> names) {
+        for (int i = 0; i < urls.size(); i++) {
+            String url = urls.get(i);
+            String name = names != null && i < names.size() ? names.get(i) : url;
+            targets.add(new Target(url, 0, HEAD_BYTES));
+            if (name != null && name.toLowerCase(Locale.ROOT).endsWith(".mkv")) {
+                targets.add(new Target(url, -1, MKV_TAIL_BYTES));
+            }
+        }
+        stats.entries = urls.size();
+        stats.ranges = targets.size();
+
+        Matcher matcher = playingUrl != null ? STREAM_PATH.matcher(playingUrl) : null;
+        if (matcher != null && matcher.find()) {
+            playingInfoHash = matcher.group(1).toLowerCase(Locale.ROOT);
+            statusUrl = playingUrl.substring(0, matcher.start()) + "/api/status";
+        } else {
+            playingInfoHash = null;
+            statusUrl = null;
+        }
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    synchronized Stats stats() {
+        Stats copy = new Stats();
+        copy.entries = stats.entries;
+        copy.ranges = stats.ranges;
+        copy.rangesWarmed = stats.rangesWarmed;
+        copy.warmedBytes = stats.warmedBytes;
+        copy.backoffs = stats.backoffs;
+        copy.notReadyRetries = stats.notReadyRetries;
+        copy.errors = stats.errors;
+        copy.durationMs = stats.durationMs;
+        copy.finished = stats.finished;
+        return copy;
+    }
+
+    void run() {
+        long startedAt = System.currentTimeMillis();
+        try {
+            for (Target target : targets) {
+                while (!cancelled && target.done < target.length) {
+                    if (backOffPending || shouldBackOff()) {
+                        backOffPending = false;
+                        synchronized (this) {
+                            stats.backoffs++;
+                        }
+                        sleep(BACKOFF_MS);
+                        continue;
+                    }
+                    long doneBefore = target.done;
+                    long retryAfterMs;
+                    try {
+                        retryAfterMs = fetch(target);
+                    } catch (IOException e) {
+                        synchronized (this) {
+                            stats.errors++;
+                        }
+                        // The server's stall watchdog cuts slow ranges; only
+                        // attempts that made no progress count as failures.
+                        if (target.done == doneBefore && ++target.errors >= MAX_ERRORS_PER_RANGE) {
+                            break;
+                        }
+                        retryAfterMs = 2000;
+                    }
+                    if (retryAfterMs > 0) {
+                        if (++target.notReady > MAX_NOT_READY_RETRIES) {
+                            break;
+                        }
+                        sleep(retryAfterMs);
+                    }
+                }
+                if (target.done >= target.length) {
+                    synchronized (this) {
+                        stats.rangesWarmed++;
+                    }
+                }
+                if (cancelled) {
+                    break;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                stats.durationMs = System.currentTimeMillis() - startedAt;
+                stats.finished = !cancelled;
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of target; returns the retry delay if the server isn't
+     * ready, 0 otherwise.
+     */
+    private long fetch(Target target) throws IOException {
+        String range = target.start < 0
+                ? "bytes=-" + (target.length - target.done)
+                : "bytes=" + (target.start + target.done) + "-" + (target.start + target.length - 1);
+        String url = target.url + (target.url.contains("?") ? "&" : "?") + "prewarm=1";
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setRequestProperty("Range", range);
+            conn.setRequestProperty("Accept-Encoding", "identity");
+            int status = conn.getResponseCode();
+            if (status == 503) {
+                synchronized (this) {
+                    stats.notReadyRetries++;
+                }
+                return retryAfterMs(conn.getHeaderField("Retry-After"));
+            }
+            if (status == 416) {
+                target.done = target.length; // shorter than the range: nothing more to warm
+                return 0;
+            }
+            if (status != HttpURLConnection.HTTP_PARTIAL && status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status);
+            }
+            long remaining = target.length - target.done;
+            byte[] buffer = new byte[BUFFER_BYTES];
+            long windowStart = System.currentTimeMillis();
+            long windowBytes = 0;
+            try (InputStream in = conn.getInputStream()) {
+                int read;
+                while (remaining > 0 && !cancelled
+                        && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    remaining -= read;
+                    target.done += read;
+                    windowBytes += read;
+                    synchronized (this) {
+                        stats.warmedBytes += read;
+                    }
+                    // Stay well below what the LAN and the swarm can give the player
+                    long minElapsed = windowBytes * 1000 / MAX_BYTES_PER_SEC;
+                    long elapsed = System.currentTimeMillis() - windowStart;
+                    if (minElapsed > elapsed) {
+                        sleep(minElapsed - elapsed);
+                    }
+                    if (shouldBackOff()) {
+                        backOffPending = true;
+                        return 0; // reconnect after the backoff, from target.done
+                    }
+                }
+            }
+            if (remaining > 0 && !cancelled) {
+                // Server closed early (e.g. stall watchdog): continue later
+                throw new IOException("Closed with " + remaining + " bytes left");
+            }
+            return 0;
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /** True once per new stall of the stream on screen. */
+    private boolean shouldBackOff() {
+        if (statusUrl == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastStallPollAt < STALL_POLL_MS) {
+            return false;
+        }
+        lastStallPollAt = now;
+        long stallCount = readStallCount();
+        if (stallCount < 0) {
+            return false;
+        }
+        boolean stalled = lastStallCount >= 0 && stallCount > lastStallCount;
+        lastStallCount = stallCount;
+        return stalled;
+    }
+
+    private long readStallCount() {
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(statusUrl).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return -1;
+            }
+            StringBuilder body = new StringBuilder();
+            byte[] buffer = new byte[8192];
+            try (InputStream in = conn.getInputStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    body.append(new String(buffer, 0, read, "UTF-8"));
+                }
+            }
+            JSONArray streams = new JSONObject(body.toString()).optJSONArray("streams");
+            for (int i = 0; streams != null && i < streams.length(); i++) {
+                JSONObject stream = streams.optJSONObject(i);
+                if (stream != null && playingInfoHash.equalsIgnoreCase(stream.optString("infoHash"))) {
+                    return stream.optLong("stallCount", 0);
+                }
+            }
+            return 0;
+        } catch (IOException | JSONException e) {
+            return -1;
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    private static long retryAfterMs(String header) {
+        try {
+            return Math.max(1, Long.parseLong(header.trim())) * 1000;
+        } catch (RuntimeException e) {
+            return 3000;
+        }
+    }
+
+    private void sleep(long ms) {
+        long until = System.currentTimeMillis() + ms;
+        while (!cancelled) {
+            long left = until - System.currentTimeMillis();
+            if (left <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(Math.min(left, 250));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.webkit.JavascriptInterface;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+/**
+ * Exposes HomeSnapshotStore to the page as window.TorServeHomeSnapshot.
+ *
+ * A Capacitor plugin call is asynchronous and only works once the bridge
+ * JS is up; a JavascriptInterface is injected before the page loads
+ * (load() runs before the Bridge loads the WebView), and its calls are
+ * synchronous on the JavaBridge thread, so HomePanel can read the
+ * snapshot in its first render.
+ */
+@CapacitorPlugin(name = "HomeSnapshot")
+public class HomeSnapshotPlugin extends Plugin {
+    static final String JS_INTERFACE = "TorServeHomeSnapshot";
+
+    @Override
+    public void load() {
+        getBridge().getWebView().addJavascriptInterface(new JsInterface(getContext()), JS_INTERFACE);
+    }
+
+    static class JsInterface {
+        private final Context context;
+
+        JsInterface(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        /** Snapshot JSON ({rows, savedAt}) or null */
+        @JavascriptInterface
+        public String read() {
+            return HomeSnapshotStore.read();
+        }
+
+        @JavascriptInterface
+        public void write(String json) {
+            HomeSnapshotStore.write(context, json);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Home rows snapshot as an app file (replaces the home:snapshot:v2
+ * localStorage entry of homeSnapshot.js on native).
+ *
+ * localStorage is only readable once the WebView, the bundle and React are
+ * up, so a cold start first painted an empty shell. preload() runs first
+ * thing in MainActivity.onCreate and reads the file on its own thread
+ * (memory-mapped: one copy, straight into the decoder) while the WebView
+ * initialises; HomeSnapshotPlugin exposes it to the page before any script
+ * runs, and HomePanel renders it on its first frame.
+ */
+final class HomeSnapshotStore {
+    private static final String FILE_NAME = "home_snapshot.json";
+    private static final long READ_WAIT_MS = 300;
+    // Mapping pays off only above a few pages
+    private static final long MAP_THRESHOLD_BYTES = 64 * 1024;
+
+    private static final Object lock = new Object();
+    private static CountDownLatch loaded;
+    private static volatile String snapshot;
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "home-snapshot-write");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private HomeSnapshotStore() {
+    }
+
+    /** Starts reading the file in the background; once per process. */
+    static void preload(Context context) {
+        File file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        CountDownLatch latch;
+        synchronized (lock) {
+            if (loaded != null) {
+                return;
+            }
+            latch = new CountDownLatch(1);
+            loaded = latch;
+        }
+        Thread reader = new Thread(() -> {
+            try {
+                String json = readFile(file);
+                synchronized (lock) {
+                    if (snapshot == null) {
+                        snapshot = json; // a write() meanwhile is newer
+                    }
+                }
+            } catch (IOException e) {
+                // No snapshot yet
+            } finally {
+                StartupTrace.mark(StartupTrace.HOME_SNAPSHOT_READ);
+                latch.countDown();
+            }
+        }, "home-snapshot-read");
+        reader.start();
+    }
+
+    /**
+     * The snapshot JSON, or null. Waits up to READ_WAIT_MS for preload();
+     * called on the WebView's JavaBridge thread, never the UI thread.
+     */
+    static String read() {
+        CountDownLatch latch;
+        synchronized (lock) {
+            latch = loaded;
+        }
+        if (latch != null) {
+            try {
+                latch.await(READ_WAIT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return snapshot;
+    }
+
+    /** Keeps json for this process and persists it (tmp + rename) off-thread. */
+    static void write(Context context, String json) {
+        if (json == null) {
+            return;
+        }
+        synchronized (lock) {
+            snapshot = json;
+        }
+        File file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+        writer.execute(() -> {
+            if (snapshot != json) {
+                return; // superseded before we got to it
+            }
+            File tmp = new File(file.getPath() + ".tmp");
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        });
+    }
+
+    private static String readFile(File file) throws IOException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel channel = in.getChannel()) {
+            long size = channel.size();
+            if (size == 0 || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            if (size < MAP_THRESHOLD_BYTES) {
+                byte[] bytes = new byte[(int) size];
+                int offset = 0;
+                int read;
+                while (offset < bytes.length && (read = in.read(bytes, offset, bytes.length - offset)) != -1) {
+                    offset += read;
+                }
+                return new String(bytes, 0, offset, StandardCharsets.UTF_8);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return StandardCharsets.UTF_8.decode(mapped).toString();
+        }
+    }
+}
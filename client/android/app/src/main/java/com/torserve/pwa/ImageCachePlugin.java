@@ -0,0 +1,47 @@
+package com.torserve.pwa;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+/**
+ * Exposes the native poster cache (PosterCache) to JS for diagnostics.
+ */
+@CapacitorPlugin(name = "ImageCache")
+public class ImageCachePlugin extends Plugin {
+
+    /**
+     * Hit/miss/eviction counters plus current memory and disk usage
+     */
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        PosterCache.Stats stats = PosterCache.get(getContext()).stats();
+        JSObject result = new JSObject();
+        result.put("memoryHits", stats.memoryHits);
+        result.put("diskHits", stats.diskHits);
+        result.put("misses", stats.misses);
+        result.put("hitRate", stats.hitRate());
+        result.put("memoryEvictions", stats.memoryEvictions);
+        result.put("diskEvictions", stats.diskEvictions);
+        result.put("networkFetches", stats.networkFetches);
+        result.put("networkFailures", stats.networkFailures);
+        result.put("memoryEntries", stats.memoryEntries);
+        result.put("memoryBytes", stats.memoryBytes);
+        result.put("memoryLimit", stats.memoryLimit);
+        result.put("diskEntries", stats.diskEntries);
+        result.put("diskBytes", stats.diskBytes);
+        result.put("diskLimit", stats.diskLimit);
+        call.resolve(result);
+    }
+
+    /**
+     * Drop every cached image (both levels). Counters are kept.
+     */
+    @PluginMethod
+    public void clear(PluginCall call) {
+        PosterCache.get(getContext()).clear();
+        call.resolve();
+    }
+}
@@ -0,0 +1,201 @@
+package com.torserve.pwa;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Install state of every external player TVPlayer knows how to drive (the
+ * packages in the manifest <queries>), kept in memory.
+ *
+ * The first query fills the snapshot with one PackageManager lookup per
+ * player; later queries are answered from memory until a package
+ * add/remove/replace broadcast for one of those packages drops it.
+ *
+ * Feature flags describe what TVPlayer.play()/playList()/playerResult
+ * actually do for that package, not what the player could do.
+ */
+public class InstalledPlayers {
+    /** A known external player and the TVPlayer features wired up for it. */
+    public static class Player {
+        public final String packageName;
+        public final String name;
+        public final boolean resume;
+        public final boolean playlist;
+        public final boolean result;
+
+        Player(String packageName, String name, boolean resume, boolean playlist, boolean result) {
+            this.packageName = packageName;
+            this.name = name;
+            this.resume = resume;
+            this.playlist = playlist;
+            this.result = result;
+        }
+    }
+
+    public static class Entry {
+        public final Player player;
+        public final boolean installed;
+        public final long versionCode;
+        public final String versionName;
+
+        Entry(Player player, boolean installed, long versionCode, String versionName) {
+            this.player = player;
+            this.installed = installed;
+            this.versionCode = versionCode;
+            this.versionName = versionName;
+        }
+    }
+
+    static final List<Player> KNOWN = Collections.unmodifiableList(Arrays.asList(
+            // startfrom, asusfilelist, position/end_by result
+            new Player("net.gtvbox.videoplayer", "Vimu", true, true, true),
+            // position, video_list, return_result
+            new Player("com.mxtech.videoplayer.ad", "MX Player", true, true, true),
+            new Player("com.mxtech.videoplayer.pro", "MX Player Pro", true, true, true),
+            // Gets a plain VIEW intent; its extra_position result isn't parsed
+            new Player("org.videolan.vlc", "VLC", false, false, false),
+            // Answers return_result with MX-style position/end_by
+            new Player("com.brouken.player", "Just Player", false, false, true)
+    ));
+
+    private static InstalledPlayers instance;
+
+    private final Context context;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile List<Entry> snapshot;
+    private volatile long snapshotAt;
+    private long generation;
+    private long lookups;
+    private long cacheHits;
+
+    public static synchronized InstalledPlayers get(Context context) {
+        if (instance == null) {
+            instance = new InstalledPlayers(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private InstalledPlayers(Context context) {
+        this.context = context;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        // Protected system broadcasts: delivered to a non-exported receiver,
+        // and on 11+ only for packages visible through <queries>.
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context c, Intent intent) {
+                Uri data = intent.getData();
+                String packageName = data != null ? data.getSchemeSpecificPart() : null;
+                if (isKnown(packageName)) {
+                    invalidate();
+                }
+            }
+        };
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            context.registerReceiver(receiver, filter, Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            context.registerReceiver(receiver, filter);
+        }
+    }
+
+    /**
+     * @param refresh bypass the cache (e.g. after returning from Play Store)
+     */
+    public List<Entry> query(boolean refresh) {
+        List<Entry> current = snapshot;
+        if (current != null && !refresh) {
+            synchronized (this) {
+                cacheHits++;
+            }
+            return current;
+        }
+        long queryGeneration;
+        synchronized (this) {
+            queryGeneration = generation;
+        }
+        PackageManager packageManager = context.getPackageManager();
+        List<Entry> entries = new ArrayList<>(KNOWN.size());
+        for (Player player : KNOWN) {
+            entries.add(lookup(packageManager, player));
+        }
+        current = Collections.unmodifiableList(entries);
+        synchronized (this) {
+            lookups += KNOWN.size();
+            // A broadcast that arrived mid-query may have made this stale.
+            if (queryGeneration == generation) {
+                snapshot = current;
+                snapshotAt = System.currentTimeMillis();
+            }
+        }
+        return current;
+    }
+
+    /** Millis timestamp of the snapshot query() answers from, 0 if none. */
+    public long snapshotAt() {
+        return snapshot != null ? snapshotAt : 0;
+    }
+
+    public synchronized long lookups() {
+        return lookups;
+    }
+
+    public synchronized long cacheHits() {
+        return cacheHits;
+    }
+
+    public void invalidate() {
+        synchronized (this) {
+            generation++;
+            snapshot = null;
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+    }
+
+    /** Called after every invalidation, on the broadcast thread. */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
+    static boolean isKnown(String packageName) {
+        for (Player player : KNOWN) {
+            if (player.packageName.equals(packageName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Entry lookup(PackageManager packageManager, Player player) {
+        try {
+            PackageInfo info = packageManager.getPackageInfo(player.packageName, 0);
+            long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                    ? info.getLongVersionCode()
+                    : info.versionCode;
+            boolean enabled = info.applicationInfo == null || info.applicationInfo.enabled;
+            return new Entry(player, enabled, versionCode, info.versionName);
+        } catch (PackageManager.NameNotFoundException e) {
+            return new Entry(player, false, 0, null);
+        }
+    }
+}
@@ -5,21 +5,138 @@ import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
 import android.os.Build;
+import android.webkit.RenderProcessGoneDetail;
 import android.webkit.WebView;
 import com.getcapacitor.BridgeActivity;
+import com.getcapacitor.CapConfig;
+import com.getcapacitor.WebViewListener;
 
 public class MainActivity extends BridgeActivity {
     private static final String PREFS_NAME = "startup_cache";
     private static final String LAST_CACHE_CLEAR_VERSION_CODE = "last_cache_clear_version_code";
 
+    private boolean resumed;
+    private boolean recreatePending;
+    /** Set while WebCacheInvalidator runs; load() waits for it. */
+    private boolean cacheInvalidationPending;
+    private boolean fullCacheClearNeeded;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        StartupTrace.begin(getCurrentVersionCode());
+        // Scans the WebView cache while the plugins register; the bridge
+        // is only created once it is done (see load()).
+        startCacheInvalidation();
+        // Cached home rows: read while the WebView starts up.
+        HomeSnapshotStore.preload(this);
+
+        StartupTrace.beginSection("registerPlugins");
         registerPlugin(TVPlayer.class);
+        registerPlugin(ImageCachePlugin.class);
+        registerPlugin(NativeDnsPlugin.class);
+        registerPlugin(StartupMetricsPlugin.class);
+        registerPlugin(StatusStreamPlugin.class);
+        registerPlugin(WatchHistoryPlugin.class);
+        registerPlugin(HomeSnapshotPlugin.class);
+        registerPlugin(MemoryPressurePlugin.class);
+        registerPlugin(TorrentIntakePlugin.class);
+        registerPlugin(NasDiscoveryPlugin.class);
+        registerPlugin(OfflineDownloadsPlugin.class);
+        // Start resolving TMDB/mirror hosts before the WebView asks for them.
+        DohResolver.get(this).warmUp();
+        StartupTrace.endSection();
+
         super.onCreate(savedInstanceState);
-        clearWebViewCacheAfterUpdate();
     }
 
-    private void clearWebViewCacheAfterUpdate() {
+    /**
+     * Called by BridgeActivity.onCreate to create the bridge, whose WebView
+     * opens Chromium's disk cache and loads the start URL right away.
+     * Deleting cache entries after that races the cache backend and lets the
+     * first load read stale assets, so on the first start after an update
+     * the bridge is created only once the invalidation has finished. The UI
+     * thread stays free meanwhile; BridgeActivity's lifecycle callbacks
+     * skip a bridge that doesn't exist yet.
+     */
+    @Override
+    protected void load() {
+        if (cacheInvalidationPending) {
+            return; // the worker calls loadBridge() when it is done
+        }
+        loadBridge();
+    }
+
+    private void loadBridge() {
+        StartupTrace.beginSection("bridge");
+        super.load();
+        MemoryPressure.onWebViewCreated();
+        if (fullCacheClearNeeded) {
+            // Cache format we can't read entry by entry: old behaviour,
+            // then reload so the first page doesn't come from what was cleared.
+            fullCacheClearNeeded = false;
+            WebView webView = getBridge().getWebView();
+            if (webView != null) {
+                webView.clearCache(true);
+                webView.reload();
+            }
+        }
+        // Posters from the native cache, TMDB traffic over DoH.
+        getBridge().setWebViewClient(new NativeWebViewClient(getBridge()));
+        getBridge().addWebViewListener(new WebViewListener() {
+            @Override
+            public void onPageLoaded(WebView webView) {
+                StartupTrace.mark(StartupTrace.WEBVIEW_FIRST_LOAD);
+            }
+
+            @Override
+            public boolean onRenderProcessGone(WebView webView, RenderProcessGoneDetail detail) {
+                // Renderer reclaimed (MemoryPressure waives its priority while
+                // a player is in front): a dead WebView can't be reused, start
+                // over with a fresh one instead of letting the app crash. Not
+                // while the player is in front: it may still be reading
+                // through the read-ahead proxy, so wait until we're back.
+                MemoryPressure.onRendererGone();
+                if (resumed) {
+                    recreate();
+                } else {
+                    recreatePending = true;
+                }
+                return true;
+            }
+        });
+        StartupTrace.endSection();
+        StartupTrace.mark(StartupTrace.BRIDGE_READY);
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        resumed = true;
+        if (recreatePending) {
+            recreatePending = false;
+            recreate();
+        }
+    }
+
+    @Override
+    public void onPause() {
+        resumed = false;
+        super.onPause();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        MemoryPressure.onTrimMemory(this, level);
+    }
+
+    /**
+     * After an APK update, evict only the cached bundled assets that changed
+     * (WebCacheInvalidator). Needs no bridge: the origin comes from the
+     * Capacitor config, so it starts before super.onCreate(). The version is
+     * only marked done once it finished; the bridge is loaded either way.
+     */
+    private void startCacheInvalidation() {
         SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
         long currentVersionCode = getCurrentVersionCode();
         long lastClearedVersionCode = prefs.getLong(LAST_CACHE_CLEAR_VERSION_CODE, -1L);
@@ -28,12 +145,32 @@ public class MainActivity extends BridgeActivity {
             return;
         }
 
-        WebView webView = getBridge().getWebView();
-        if (webView != null) {
-            webView.clearCache(true);
-        }
+        CapConfig config = CapConfig.loadDefault(this);
+        WebCacheInvalidator invalidator = new WebCacheInvalidator(this,
+                config.getAndroidScheme() + "://" + config.getHostname());
+        cacheInvalidationPending = true;
+        new Thread(() -> {
+            boolean fullClear = false;
+            try {
+                WebCacheInvalidator.Report report = invalidator.run();
+                fullClear = report.fullClearNeeded;
+                WebCacheInvalidator.saveReport(this, report);
+                prefs.edit().putLong(LAST_CACHE_CLEAR_VERSION_CODE, currentVersionCode).apply();
+            } finally {
+                boolean clear = fullClear;
+                runOnUiThread(() -> onCacheInvalidated(clear));
+            }
+        }, "web-cache-invalidate").start();
+    }
 
-        prefs.edit().putLong(LAST_CACHE_CLEAR_VERSION_CODE, currentVersionCode).apply();
+    private void onCacheInvalidated(boolean fullClear) {
+        boolean deferred = cacheInvalidationPending && getBridge() == null;
+        cacheInvalidationPending = false;
+        if (!deferred || isDestroyed()) {
+            return;
+        }
+        fullCacheClearNeeded = fullClear;
+        loadBridge();
     }
 
     private long getCurrentVersionCode() {
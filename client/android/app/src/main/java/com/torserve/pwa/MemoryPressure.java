@@ -0,0 +1,184 @@
+package com.torserve.pwa;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.os.Build;
+import android.webkit.WebView;
+import com.getcapacitor.JSObject;
+
+/**
+ * What the app gives back under memory pressure (MainActivity.onTrimMemory).
+ *
+ * On 1 GB TV boxes the low-memory killer takes the largest background
+ * process while Vimu/MX is in front, and coming back is then a cold start.
+ * Per trim level: the in-memory poster cache shrinks (disk copies stay),
+ * so do the read-ahead ring of a running playback, the DoH cache and
+ * DohHttpClient's idle connections and response cache, and
+ * JS gets a "memoryPressure" event (MemoryPressurePlugin) so HomePanel
+ * swaps offscreen rows and their images for placeholders.
+ *
+ * While an external player is in front the WebView renderer gives up its
+ * importance, so the system reclaims the renderer before this process;
+ * MainActivity recreates a WebView lost that way when the user returns.
+ */
+final class MemoryPressure {
+    interface Listener {
+        void onPressure(JSObject event);
+    }
+
+    static final String MODERATE = "moderate";
+    static final String LOW = "low";
+    static final String CRITICAL = "critical";
+    static final String HIDDEN = "hidden";
+    static final String BACKGROUND = "background";
+
+    private static volatile Listener listener;
+    private static volatile int lastLevel;
+    private static volatile long lastTrimAt;
+    private static volatile int trims;
+    private static volatile boolean rendererWaived;
+    private static volatile boolean rendererGone;
+
+    private MemoryPressure() {
+    }
+
+    static void setListener(Listener l) {
+        listener = l;
+    }
+
+    static void clearListener(Listener l) {
+        if (listener == l) {
+            listener = null;
+        }
+    }
+
+    /** Severity name of an onTrimMemory level, null for unknown levels. */
+    static String severity(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return BACKGROUND;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return HIDDEN;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return CRITICAL;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return LOW;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            return MODERATE;
+        }
+        return null;
+    }
+
+    /** Share of PosterCache's memory budget kept at this level. */
+    static float posterCacheFraction(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return 0f; // next in line to be killed
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 0.25f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 0.5f; // the rows on screen when the user comes back
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.25f;
+        }
+        return 0.5f;
+    }
+
+    /**
+     * Share of the read-ahead ring kept at this level. UI_HIDDEN comes with
+     * every handoff to the player, which is when the ring is needed most:
+     * it only shrinks once the system is actually short of memory.
+     */
+    static float readAheadFraction(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            return 0.25f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            return 0.5f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return 1f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25f;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        }
+        return 1f;
+    }
+
+    static void onTrimMemory(Context context, int level) {
+        String severity = severity(level);
+        if (severity == null) {
+            return;
+        }
+        PosterCache posters = PosterCache.get(context);
+        posters.trimMemoryTo(posterCacheFraction(level));
+        ReadAhead.trimMemory(readAheadFraction(level));
+        DohResolver.get(context).trimMemory(readAheadFraction(level) < 1f);
+        DohHttpClient.get(context).trimMemory(readAheadFraction(level) < 1f);
+        lastLevel = level;
+        lastTrimAt = System.currentTimeMillis();
+        trims++;
+
+        Listener l = listener;
+        if (l != null) {
+            JSObject event = new JSObject();
+            event.put("level", level);
+            event.put("severity", severity);
+            event.put("posterCacheBytes", posters.stats().memoryBytes);
+            l.onPressure(event);
+        }
+    }
+
+    /**
+     * An external player took the foreground (true) or the app is back
+     * (false). Waived priority lets the renderer be reclaimed first.
+     */
+    static void setPlayerInFront(WebView webView, boolean inFront) {
+        if (webView == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.O
+                || rendererGone || rendererWaived == inFront) {
+            return;
+        }
+        rendererWaived = inFront;
+        if (inFront) {
+            webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_WAIVED, true);
+        } else {
+            webView.setRendererPriorityPolicy(WebView.RENDERER_PRIORITY_IMPORTANT, false);
+        }
+    }
+
+    /** The renderer was reclaimed: this WebView must not be used any more. */
+    static void onRendererGone() {
+        rendererGone = true;
+    }
+
+    static boolean isRendererGone() {
+        return rendererGone;
+    }
+
+    /** MainActivity built a new WebView, with the default priority. */
+    static void onWebViewCreated() {
+        rendererGone = false;
+        rendererWaived = false;
+    }
+
+    static JSObject state() {
+        JSObject ret = new JSObject();
+        ret.put("lastLevel", lastLevel);
+        ret.put("lastSeverity", severity(lastLevel));
+        ret.put("lastTrimAt", lastTrimAt);
+        ret.put("trims", trims);
+        ret.put("rendererWaived", rendererWaived);
+        return ret;
+    }
+}
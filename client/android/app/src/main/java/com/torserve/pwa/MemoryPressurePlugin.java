@@ -0,0 +1,34 @@
+package com.torserve.pwa;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+/**
+ * JS side of MemoryPressure: "memoryPressure" events {level, severity,
+ * posterCacheBytes} and the current state.
+ */
+@CapacitorPlugin(name = "MemoryPressure")
+public class MemoryPressurePlugin extends Plugin {
+    private final MemoryPressure.Listener forward = event -> notifyListeners("memoryPressure", event);
+
+    @Override
+    public void load() {
+        MemoryPressure.setListener(forward);
+    }
+
+    /**
+     * {lastLevel, lastSeverity, lastTrimAt, trims, rendererWaived}
+     */
+    @PluginMethod
+    public void getState(PluginCall call) {
+        call.resolve(MemoryPressure.state());
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        MemoryPressure.clearListener(forward);
+    }
+}
@@ -0,0 +1,293 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.nsd.NsdManager;
+import android.net.nsd.NsdServiceInfo;
+import android.os.SystemClock;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Finds the NAS on the LAN, cheapest source first:
+ * the servers found last time (kept in prefs), then mDNS through NsdManager
+ * (the server advertises _torserve._tcp, see server/utils/mdns.js), then a
+ * LanProbe sweep of every local /24 on the server port. Every candidate is
+ * confirmed with GET /api/status, and the hits, ranked by round-trip time,
+ * become the new cache.
+ */
+final class NasDiscovery {
+    static final int DEFAULT_PORT = 3000;
+    private static final String SERVICE_TYPE = "_torserve._tcp";
+    private static final String PREFS_NAME = "nas_discovery";
+    private static final String SERVERS = "servers";
+    private static final int MAX_CACHED = 4;
+    private static final long CACHE_TIMEOUT_MS = 700;
+    private static final long NSD_WINDOW_MS = 1500;
+    private static final long RESOLVE_TIMEOUT_MS = 1000;
+    private static final long VERIFY_TIMEOUT_MS = 1500;
+    // 253 hosts in three waves; absent hosts cost the whole host timeout
+    private static final int SWEEP_IN_FLIGHT = 96;
+    private static final long SWEEP_HOST_TIMEOUT_MS = 800;
+
+    static final class Result {
+        final List<LanProbe.Hit> servers;
+        /** "cache", "nsd", "probe" or "none" */
+        final String source;
+        final long durationMs;
+
+        Result(List<LanProbe.Hit> servers, String source, long durationMs) {
+            this.servers = servers;
+            this.source = source;
+            this.durationMs = durationMs;
+        }
+
+        JSObject toJson() {
+            JSArray list = new JSArray();
+            for (LanProbe.Hit hit : servers) {
+                list.put(hitJson(hit, source));
+            }
+            JSObject ret = new JSObject();
+            ret.put("servers", list);
+            ret.put("source", source);
+            ret.put("durationMs", durationMs);
+            return ret;
+        }
+    }
+
+    private NasDiscovery() {
+    }
+
+    /** Only the cached servers, re-checked (startup). */
+    static Result revalidate(Context context) {
+        long startedAt = SystemClock.elapsedRealtime();
+        List<LanProbe.Hit> hits = probe(cached(context), MAX_CACHED, CACHE_TIMEOUT_MS);
+        if (!hits.isEmpty()) {
+            save(context, hits);
+        }
+        return new Result(hits, hits.isEmpty() ? "none" : "cache", SystemClock.elapsedRealtime() - startedAt);
+    }
+
+    /**
+     * @param useCache false skips the cached servers (user asked to search again)
+     */
+    static Result discover(Context context, int port, boolean useCache) {
+        long startedAt = SystemClock.elapsedRealtime();
+        List<LanProbe.Hit> hits = Collections.emptyList();
+        String source = "none";
+        if (useCache) {
+            hits = probe(cached(context), MAX_CACHED, CACHE_TIMEOUT_MS);
+            source = "cache";
+        }
+        if (hits.isEmpty()) {
+            hits = probe(nsd(context), MAX_CACHED, VERIFY_TIMEOUT_MS);
+            source = "nsd";
+        }
+        if (hits.isEmpty()) {
+            Set<InetSocketAddress> targets = new LinkedHashSet<>();
+            for (Inet4Address self : LanProbe.localAddresses()) {
+                targets.addAll(LanProbe.subnet24(self, port));
+            }
+            hits = probe(new ArrayList<>(targets), SWEEP_IN_FLIGHT, SWEEP_HOST_TIMEOUT_MS);
+            source = "probe";
+        }
+        if (hits.isEmpty()) {
+            source = "none";
+        } else {
+            save(context, hits);
+        }
+        return new Result(hits, source, SystemClock.elapsedRealtime() - startedAt);
+    }
+
+    /** GET /api/status on a saved server URL; null when it isn't (or no longer) TorServe. */
+    static LanProbe.Hit check(String url) {
+        InetSocketAddress target = address(url);
+        if (target == null) {
+            return null;
+        }
+        List<InetSocketAddress> targets = new ArrayList<>(1);
+        targets.add(target);
+        List<LanProbe.Hit> hits = probe(targets, 1, VERIFY_TIMEOUT_MS);
+        return hits.isEmpty() ? null : hits.get(0);
+    }
+
+    static JSObject hitJson(LanProbe.Hit hit, String source) {
+        JSObject json = new JSObject();
+        json.put("url", hit.url());
+        json.put("host", hit.host);
+        json.put("port", hit.port);
+        json.put("rttMs", hit.rttMillis);
+        json.put("source", source);
+        return json;
+    }
+
+    /** Resolves the host of a plain http URL (the probe doesn't speak TLS). */
+    private static InetSocketAddress address(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getHost() == null || !"http".equals(uri.getScheme())) {
+                return null;
+            }
+            int port = uri.getPort() > 0 ? uri.getPort() : 80;
+            InetSocketAddress address = new InetSocketAddress(uri.getHost(), port);
+            return address.isUnresolved() ? null : address;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static List<LanProbe.Hit> probe(List<InetSocketAddress> targets, int maxInFlight, long timeoutMs) {
+        if (targets.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return LanProbe.probe(targets, maxInFlight, timeoutMs);
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<InetSocketAddress> nsd(Context context) {
+        NsdManager nsd = (NsdManager) context.getApplicationContext().getSystemService(Context.NSD_SERVICE);
+        if (nsd == null) {
+            return Collections.emptyList();
+        }
+        List<NsdServiceInfo> found = new CopyOnWriteArrayList<>();
+        CountDownLatch settled = new CountDownLatch(1);
+        AtomicBoolean started = new AtomicBoolean(true);
+        NsdManager.DiscoveryListener listener = new NsdManager.DiscoveryListener() {
+            @Override
+            public void onStartDiscoveryFailed(String serviceType, int errorCode) {
+                started.set(false);
+                settled.countDown();
+            }
+
+            @Override
+            public void onStopDiscoveryFailed(String serviceType, int errorCode) {
+            }
+
+            @Override
+            public void onDiscoveryStarted(String serviceType) {
+            }
+
+            @Override
+            public void onDiscoveryStopped(String serviceType) {
+            }
+
+            @Override
+            public void onServiceFound(NsdServiceInfo info) {
+                found.add(info);
+                settled.countDown(); // one NAS is the normal case
+            }
+
+            @Override
+            public void onServiceLost(NsdServiceInfo info) {
+            }
+        };
+        try {
+            nsd.discoverServices(SERVICE_TYPE, NsdManager.PROTOCOL_DNS_SD, listener);
+        } catch (RuntimeException e) {
+            return Collections.emptyList();
+        }
+        try {
+            settled.await(NSD_WINDOW_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (started.get()) {
+            try {
+                nsd.stopServiceDiscovery(listener);
+            } catch (RuntimeException e) {
+                // Already stopped
+            }
+        }
+        List<InetSocketAddress> targets = new ArrayList<>();
+        for (NsdServiceInfo info : found) {
+            InetSocketAddress address = resolve(nsd, info);
+            if (address != null && !targets.contains(address)) {
+                targets.add(address);
+            }
+        }
+        return targets;
+    }
+
+    /** One resolve at a time: NsdManager fails concurrent ones before API 34. */
+    @SuppressWarnings("deprecation")
+    private static InetSocketAddress resolve(NsdManager nsd, NsdServiceInfo info) {
+        AtomicReference<InetSocketAddress> resolved = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        try {
+            nsd.resolveService(info, new NsdManager.ResolveListener() {
+                @Override
+                public void onResolveFailed(NsdServiceInfo serviceInfo, int errorCode) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onServiceResolved(NsdServiceInfo serviceInfo) {
+                    InetAddress host = serviceInfo.getHost();
+                    if (host instanceof Inet4Address && serviceInfo.getPort() > 0) {
+                        resolved.set(new InetSocketAddress(host, serviceInfo.getPort()));
+                    }
+                    done.countDown();
+                }
+            });
+            done.await(RESOLVE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return resolved.get();
+    }
+
+    private static List<InetSocketAddress> cached(Context context) {
+        List<InetSocketAddress> targets = new ArrayList<>();
+        String json = prefs(context).getString(SERVERS, null);
+        if (json == null) {
+            return targets;
+        }
+        try {
+            JSONArray servers = new JSONArray(json);
+            for (int i = 0; i < servers.length(); i++) {
+                JSONObject server = servers.getJSONObject(i);
+                // IP literals: no DNS lookup here
+                targets.add(new InetSocketAddress(server.getString("host"), server.getInt("port")));
+            }
+        } catch (JSONException | IllegalArgumentException e) {
+            prefs(context).edit().remove(SERVERS).apply();
+        }
+        return targets;
+    }
+
+    private static void save(Context context, List<LanProbe.Hit> hits) {
+        JSONArray servers = new JSONArray();
+        for (int i = 0; i < hits.size() && i < MAX_CACHED; i++) {
+            servers.put(hitJson(hits.get(i), "cache"));
+        }
+        prefs(context).edit().putString(SERVERS, servers.toString()).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,99 @@
+package com.torserve.pwa;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * JS side of NasDiscovery (nasDiscovery.js). The cached servers are
+ * re-checked as soon as the plugin loads, so the first discover() after
+ * startup usually answers without touching the network again.
+ */
+@CapacitorPlugin(name = "NasDiscovery")
+public class NasDiscoveryPlugin extends Plugin {
+    private static final long STARTUP_WAIT_MS = 2000;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "nas-discovery");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<NasDiscovery.Result> startup;
+
+    @Override
+    public void load() {
+        startup = worker.submit(() -> NasDiscovery.revalidate(getContext()));
+    }
+
+    /**
+     * {port = 3000, force = false} -> {servers: [{url, host, port, rttMs,
+     * source}], source, durationMs}, fastest first. force skips the cache
+     */
+    @PluginMethod
+    public void discover(PluginCall call) {
+        int port = call.getInt("port", NasDiscovery.DEFAULT_PORT);
+        boolean force = call.getBoolean("force", false);
+        Future<NasDiscovery.Result> revalidated = takeStartup();
+        worker.execute(() -> {
+            if (!force && revalidated != null) {
+                NasDiscovery.Result cached = await(revalidated);
+                if (cached != null && !cached.servers.isEmpty()) {
+                    call.resolve(cached.toJson());
+                    return;
+                }
+            }
+            // The startup pass already found the cache stale: skip it
+            call.resolve(NasDiscovery.discover(getContext(), port, !force && revalidated == null).toJson());
+        });
+    }
+
+    /**
+     * {url} -> {ok, rttMs}: whether a saved server URL still answers as
+     * TorServe (plain http only)
+     */
+    @PluginMethod
+    public void check(PluginCall call) {
+        String url = call.getString("url");
+        if (url == null) {
+            call.reject("url is required");
+            return;
+        }
+        worker.execute(() -> {
+            LanProbe.Hit hit = NasDiscovery.check(url);
+            JSObject ret = new JSObject();
+            ret.put("ok", hit != null);
+            ret.put("rttMs", hit != null ? hit.rttMillis : -1);
+            call.resolve(ret);
+        });
+    }
+
+    private synchronized Future<NasDiscovery.Result> takeStartup() {
+        Future<NasDiscovery.Result> pending = startup;
+        startup = null;
+        return pending;
+    }
+
+    private static NasDiscovery.Result await(Future<NasDiscovery.Result> future) {
+        try {
+            return future.get(STARTUP_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        worker.shutdown();
+    }
+}
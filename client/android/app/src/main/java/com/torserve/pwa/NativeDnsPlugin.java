@@ -0,0 +1,72 @@
+package com.torserve.pwa;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.net.InetAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JS access to the app-wide DohResolver (used by tmdbClient.js strategy 3).
+ */
+@CapacitorPlugin(name = "NativeDns")
+public class NativeDnsPlugin extends Plugin {
+    // A miss can wait up to the 5 s DoH race: never on the plugin thread.
+    // Cached pool, so one slow host doesn't queue the others behind it.
+    private final ExecutorService lookups = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "native-dns");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Resolve a hostname over DoH, served from the TTL cache when possible
+     */
+    @PluginMethod
+    public void resolve(PluginCall call) {
+        String host = call.getString("host");
+        if (host == null || host.isEmpty()) {
+            call.reject("Host is required");
+            return;
+        }
+
+        lookups.execute(() -> {
+            DohResolver.Result result = DohResolver.get(getContext()).resolve(host);
+            JSArray addresses = new JSArray();
+            for (InetAddress address : result.addresses) {
+                addresses.put(address.getHostAddress());
+            }
+
+            JSObject ret = new JSObject();
+            ret.put("host", host);
+            ret.put("addresses", addresses);
+            ret.put("ip", result.addresses.isEmpty() ? null : result.addresses.get(0).getHostAddress());
+            ret.put("source", result.source);
+            ret.put("ttlMs", result.ttlRemainingMs);
+            call.resolve(ret);
+        });
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        lookups.shutdown();
+    }
+
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        DohResolver.Stats stats = DohResolver.get(getContext()).stats();
+        JSObject ret = new JSObject();
+        ret.put("hits", stats.hits);
+        ret.put("staleHits", stats.staleHits);
+        ret.put("negativeHits", stats.negativeHits);
+        ret.put("misses", stats.misses);
+        ret.put("prefetches", stats.prefetches);
+        ret.put("failures", stats.failures);
+        ret.put("entries", stats.entries);
+        call.resolve(ret);
+    }
+}
@@ -0,0 +1,349 @@
+package com.torserve.pwa;
+
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.KeyEvent;
+import android.view.WindowManager;
+import androidx.activity.OnBackPressedCallback;
+import androidx.annotation.OptIn;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.media3.common.C;
+import androidx.media3.common.Format;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.MediaMetadata;
+import androidx.media3.common.PlaybackException;
+import androidx.media3.common.Player;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.datasource.DefaultDataSource;
+import androidx.media3.datasource.DefaultHttpDataSource;
+import androidx.media3.exoplayer.DefaultLoadControl;
+import androidx.media3.exoplayer.DefaultRenderersFactory;
+import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.SeekParameters;
+import androidx.media3.exoplayer.analytics.AnalyticsListener;
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory;
+import androidx.media3.ui.PlayerView;
+import com.getcapacitor.JSObject;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-app Media3 player for TVPlayer's engine: "native" mode.
+ *
+ * Compared to an external player there is no app switch or cold player
+ * start, and the LoadControl is sized for torrent streams: a short
+ * bufferForPlayback gets the first frame up quickly, a long max buffer rides
+ * out swarm stalls. Decoding stays on MediaCodec (hardware) with fallback to
+ * the next decoder; seeks snap to the closest sync frame so a D-pad jump only
+ * needs the data of one GOP.
+ *
+ * Returns the same extras Vimu/MX do (position, duration, end_by), so
+ * TVPlayer.playerResult resolves JS with an unchanged contract. Progress is
+ * checkpointed through NativePlayerSession so a killed process still leaves
+ * an accurate resume point; recreated after process death without its
+ * playlist, the activity returns the position it saved and closes.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public class NativePlayerActivity extends AppCompatActivity {
+    static final String EXTRA_PLAYLIST_ID = "playlist_id";
+    static final String EXTRA_POSITION = "position";
+    static final String EXTRA_SESSION_ID = "session_id";
+    static final String EXTRA_META = "meta";
+    static final String EXTRA_BUFFER_MIN_MS = "buffer_min_ms";
+    static final String EXTRA_BUFFER_MAX_MS = "buffer_max_ms";
+    static final String EXTRA_BUFFER_FOR_PLAYBACK_MS = "buffer_for_playback_ms";
+    static final String EXTRA_BUFFER_AFTER_REBUFFER_MS = "buffer_after_rebuffer_ms";
+    static final String EXTRA_BACK_BUFFER_MS = "back_buffer_ms";
+
+    // Torrent streams: bursty throughput, expensive upstream seeks.
+    static final int DEFAULT_BUFFER_MIN_MS = 15000;
+    static final int DEFAULT_BUFFER_MAX_MS = 60000;
+    static final int DEFAULT_BUFFER_FOR_PLAYBACK_MS = 1500;
+    static final int DEFAULT_BUFFER_AFTER_REBUFFER_MS = 3000;
+    static final int DEFAULT_BACK_BUFFER_MS = 15000;
+
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final long SEEK_BACK_MS = 10000;
+    private static final long SEEK_FORWARD_MS = 30000;
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+    private static final long CHECKPOINT_INTERVAL_MS = 5000;
+    private static final String STATE_INDEX = "index";
+    private static final String STATE_POSITION = "position";
+    private static final String STATE_DURATION = "duration";
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private ExoPlayer player;
+    private PlayerView playerView;
+    private String sessionId;
+    private String meta;
+    private String endBy = "user";
+    private long bitrateEstimate;
+    private int droppedFrames;
+    private long lastCheckpointAt;
+
+    private final Runnable progressTick = new Runnable() {
+        @Override
+        public void run() {
+            publishProgress();
+            long now = System.currentTimeMillis();
+            if (now - lastCheckpointAt >= CHECKPOINT_INTERVAL_MS) {
+                checkpoint(false);
+            }
+            handler.postDelayed(this, PROGRESS_INTERVAL_MS);
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+
+        Intent intent = getIntent();
+        // In-process handoff: no Binder limit however long the list is
+        PlaylistProvider.Playlist playlist = PlaylistProvider.get(intent.getStringExtra(EXTRA_PLAYLIST_ID));
+        sessionId = intent.getStringExtra(EXTRA_SESSION_ID);
+        meta = intent.getStringExtra(EXTRA_META);
+        if (playlist == null) {
+            // The process died with the playlist; hand TVPlayer what we had
+            if (savedInstanceState != null) {
+                setResult(RESULT_OK, resultData(savedInstanceState.getInt(STATE_INDEX, 0),
+                        savedInstanceState.getLong(STATE_POSITION, 0),
+                        savedInstanceState.getLong(STATE_DURATION, -1)));
+            }
+            finish();
+            return;
+        }
+        int startIndex = playlist.start;
+        long position = intent.getIntExtra(EXTRA_POSITION, 0);
+        if (savedInstanceState != null) {
+            startIndex = savedInstanceState.getInt(STATE_INDEX, startIndex);
+            position = savedInstanceState.getLong(STATE_POSITION, position);
+        }
+        startIndex = Math.max(0, Math.min(startIndex, playlist.size() - 1));
+
+        DefaultLoadControl loadControl = new DefaultLoadControl.Builder()
+                .setBufferDurationsMs(
+                        intent.getIntExtra(EXTRA_BUFFER_MIN_MS, DEFAULT_BUFFER_MIN_MS),
+                        intent.getIntExtra(EXTRA_BUFFER_MAX_MS, DEFAULT_BUFFER_MAX_MS),
+                        intent.getIntExtra(EXTRA_BUFFER_FOR_PLAYBACK_MS, DEFAULT_BUFFER_FOR_PLAYBACK_MS),
+                        intent.getIntExtra(EXTRA_BUFFER_AFTER_REBUFFER_MS, DEFAULT_BUFFER_AFTER_REBUFFER_MS))
+                // Short D-pad rewinds are served from memory, not a new Range request
+                .setBackBuffer(intent.getIntExtra(EXTRA_BACK_BUFFER_MS, DEFAULT_BACK_BUFFER_MS), true)
+                .setPrioritizeTimeOverSizeThresholds(true)
+                .build();
+        DefaultRenderersFactory renderers = new DefaultRenderersFactory(this)
+                .setExtensionRendererMode(DefaultRenderersFactory.EXTENSION_RENDERER_MODE_OFF)
+                .setEnableDecoderFallback(true);
+        DefaultHttpDataSource.Factory http = new DefaultHttpDataSource.Factory()
+                .setConnectTimeoutMs(CONNECT_TIMEOUT_MS)
+                .setReadTimeoutMs(READ_TIMEOUT_MS)
+                .setAllowCrossProtocolRedirects(true);
+
+        player = new ExoPlayer.Builder(this, renderers)
+                .setLoadControl(loadControl)
+                // content:// too: episodes downloaded by OfflineDownloadService
+                .setMediaSourceFactory(new DefaultMediaSourceFactory(new DefaultDataSource.Factory(this, http)))
+                .setSeekBackIncrementMs(SEEK_BACK_MS)
+                .setSeekForwardIncrementMs(SEEK_FORWARD_MS)
+                .build();
+        player.setSeekParameters(SeekParameters.CLOSEST_SYNC);
+        player.addListener(new Player.Listener() {
+            @Override
+            public void onPlaybackStateChanged(int state) {
+                publishProgress();
+                if (state == Player.STATE_ENDED) {
+                    endBy = "playback_completion";
+                    finish();
+                }
+            }
+
+            @Override
+            public void onIsPlayingChanged(boolean isPlaying) {
+                publishProgress();
+                if (!isPlaying) {
+                    checkpoint(false);
+                }
+            }
+
+            @Override
+            public void onMediaItemTransition(MediaItem mediaItem, int reason) {
+                checkpoint(false);
+            }
+
+            @Override
+            public void onPlayerError(PlaybackException error) {
+                endBy = "error";
+                checkpoint(false);
+                finish();
+            }
+        });
+        player.addAnalyticsListener(new AnalyticsListener() {
+            @Override
+            public void onBandwidthEstimate(EventTime eventTime, int totalLoadTimeMs,
+                                            long totalBytesLoaded, long estimate) {
+                bitrateEstimate = estimate;
+            }
+
+            @Override
+            public void onDroppedVideoFrames(EventTime eventTime, int count, long elapsedMs) {
+                droppedFrames += count;
+            }
+        });
+
+        List<MediaItem> items = new ArrayList<>(playlist.size());
+        for (int i = 0; i < playlist.size(); i++) {
+            items.add(new MediaItem.Builder()
+                    .setUri(Uri.parse(playlist.url(i)))
+                    .setMediaMetadata(new MediaMetadata.Builder().setTitle(playlist.name(i)).build())
+                    .build());
+        }
+        player.setMediaItems(items, startIndex, position > 0 ? position : C.TIME_UNSET);
+        player.setPlayWhenReady(true);
+        player.prepare();
+
+        playerView = new PlayerView(this);
+        playerView.setKeepScreenOn(true);
+        playerView.setShowBuffering(PlayerView.SHOW_BUFFERING_WHEN_PLAYING);
+        playerView.setPlayer(player);
+        setContentView(playerView);
+
+        getOnBackPressedDispatcher().addCallback(this, new OnBackPressedCallback(true) {
+            @Override
+            public void handleOnBackPressed() {
+                if (playerView.isControllerFullyVisible()) {
+                    playerView.hideController();
+                } else {
+                    finish();
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (player != null) {
+            handler.post(progressTick);
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        handler.removeCallbacks(progressTick);
+        if (player != null) {
+            checkpoint(false);
+            if (!isFinishing()) {
+                player.pause();
+            }
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (player != null) {
+            outState.putInt(STATE_INDEX, player.getCurrentMediaItemIndex());
+            outState.putLong(STATE_POSITION, currentPosition());
+            outState.putLong(STATE_DURATION, currentDuration());
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        handler.removeCallbacks(progressTick);
+        if (player != null) {
+            player.release();
+            player = null;
+        }
+        super.onDestroy();
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        // Let PlayerView map D-pad / media keys to seek and pause first.
+        if (playerView != null && event.getKeyCode() != KeyEvent.KEYCODE_BACK
+                && playerView.dispatchKeyEvent(event)) {
+            return true;
+        }
+        return super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    public void finish() {
+        if (player != null) {
+            boolean finished = "playback_completion".equals(endBy);
+            checkpoint(finished);
+            setResult(RESULT_OK, resultData(player.getCurrentMediaItemIndex(), currentPosition(), currentDuration()));
+        }
+        super.finish();
+    }
+
+    private Intent resultData(int index, long position, long duration) {
+        Intent data = new Intent();
+        data.putExtra("position", (int) position);
+        data.putExtra("duration", (int) duration);
+        data.putExtra("end_by", endBy);
+        data.putExtra("index", index);
+        data.putExtra(EXTRA_SESSION_ID, sessionId);
+        return data;
+    }
+
+    private long currentPosition() {
+        return player.getPlaybackState() == Player.STATE_ENDED
+                ? currentDuration()
+                : Math.max(0, player.getCurrentPosition());
+    }
+
+    private long currentDuration() {
+        long duration = player.getDuration();
+        return duration == C.TIME_UNSET ? -1 : duration;
+    }
+
+    private void checkpoint(boolean finished) {
+        if (player == null || sessionId == null) {
+            return;
+        }
+        lastCheckpointAt = System.currentTimeMillis();
+        NativePlayerSession.checkpoint(this, sessionId, meta, player.getCurrentMediaItemIndex(),
+                currentPosition(), currentDuration(), finished);
+    }
+
+    private void publishProgress() {
+        if (player == null) {
+            return;
+        }
+        Format video = player.getVideoFormat();
+        JSObject progress = new JSObject();
+        progress.put("sessionId", sessionId);
+        progress.put("index", player.getCurrentMediaItemIndex());
+        progress.put("position", currentPosition());
+        progress.put("duration", currentDuration());
+        progress.put("bufferedPosition", player.getBufferedPosition());
+        progress.put("bufferedMs", player.getTotalBufferedDuration());
+        progress.put("state", stateName(player.getPlaybackState()));
+        progress.put("buffering", player.getPlaybackState() == Player.STATE_BUFFERING);
+        progress.put("playing", player.isPlaying());
+        progress.put("bitrateBps", bitrateEstimate);
+        progress.put("videoBitrate", video != null && video.bitrate != Format.NO_VALUE ? video.bitrate : -1);
+        progress.put("droppedFrames", droppedFrames);
+        NativePlayerSession.publish(progress);
+    }
+
+    private static String stateName(int state) {
+        switch (state) {
+            case Player.STATE_BUFFERING:
+                return "buffering";
+            case Player.STATE_READY:
+                return "ready";
+            case Player.STATE_ENDED:
+                return "ended";
+            default:
+                return "idle";
+        }
+    }
+}
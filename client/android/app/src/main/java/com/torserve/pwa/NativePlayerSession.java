@@ -0,0 +1,93 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.getcapacitor.JSObject;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Glue between NativePlayerActivity and the TVPlayer plugin (same process).
+ *
+ * Live progress goes to whichever plugin instance is listening. The current
+ * position is also checkpointed to SharedPreferences every few seconds, so
+ * if the process dies mid-playback the next launch can still record an
+ * accurate resume point (TVPlayer.takePendingPlayback).
+ */
+final class NativePlayerSession {
+    interface Listener {
+        void onProgress(JSObject progress);
+    }
+
+    private static final String PREFS_NAME = "native_player";
+    private static final String PENDING = "pending";
+
+    private static volatile Listener listener;
+
+    private NativePlayerSession() {
+    }
+
+    static void setListener(Listener l) {
+        listener = l;
+    }
+
+    static void clearListener(Listener l) {
+        if (listener == l) {
+            listener = null;
+        }
+    }
+
+    static void publish(JSObject progress) {
+        Listener l = listener;
+        if (l != null) {
+            l.onProgress(progress);
+        }
+    }
+
+    /**
+     * @param meta opaque JSON from play({meta}) (infoHash, fileIndex, ...)
+     */
+    static void checkpoint(Context context, String sessionId, String meta, int index,
+                           long positionMs, long durationMs, boolean finished) {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("sessionId", sessionId);
+            json.put("meta", meta != null ? new JSONObject(meta) : JSONObject.NULL);
+            json.put("index", index);
+            json.put("position", positionMs);
+            json.put("duration", durationMs);
+            json.put("finished", finished);
+            json.put("updatedAt", System.currentTimeMillis());
+        } catch (JSONException e) {
+            return;
+        }
+        prefs(context).edit().putString(PENDING, json.toString()).apply();
+    }
+
+    /** The result reached JS through playerResult: nothing left to recover. */
+    static void clearPending(Context context) {
+        prefs(context).edit().remove(PENDING).apply();
+    }
+
+    /**
+     * @return the checkpoint of a session whose result never reached JS, or
+     *         null. Removed once read.
+     */
+    static JSObject takePending(Context context) {
+        SharedPreferences prefs = prefs(context);
+        String json = prefs.getString(PENDING, null);
+        if (json == null) {
+            return null;
+        }
+        prefs.edit().remove(PENDING).commit();
+        try {
+            return new JSObject(json);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
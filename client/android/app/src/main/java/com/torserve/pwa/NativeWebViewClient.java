@@ -0,0 +1,217 @@
+package com.torserve.pwa;
+
+import android.net.Uri;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import com.getcapacitor.Bridge;
+import com.getcapacitor.BridgeWebViewClient;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bridge WebViewClient that moves selected WebView traffic onto native paths.
+ *
+ * 1. TMDB image GETs are answered from PosterCache. On a miss the image is
+ *    raced across all mirrors natively; if every mirror fails we return
+ *    null so the WebView performs its own request and the JS onError
+ *    fallback chain (getNextImageUrl) still runs.
+ * 2. Other GETs to DohResolver.ROUTED_HOSTS are fetched over DoH-resolved
+ *    addresses, bypassing the system resolver.
+ *
+ * Everything else (the Capacitor local server, the NAS) falls through to
+ * BridgeWebViewClient untouched.
+ */
+public class NativeWebViewClient extends BridgeWebViewClient {
+    // Same shape as IMAGE_PATH_RE in tmdbClient.js
+    private static final Pattern IMAGE_PATH = Pattern.compile("/t/p/(w\\d+|original)/([A-Za-z0-9_-]+\\.(jpg|jpeg|png|webp|svg))$");
+
+    private final Bridge bridge;
+    private final DohHttpClient http;
+    private final PosterFetcher fetcher;
+
+    public NativeWebViewClient(Bridge bridge) {
+        super(bridge);
+        this.bridge = bridge;
+        this.http = DohHttpClient.get(bridge.getContext());
+        this.fetcher = new PosterFetcher(http);
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        String key = imageKey(request);
+        if (key != null) {
+            WebResourceResponse image = interceptImage(key);
+            if (image != null) {
+                return image;
+            }
+        } else if (isRoutedHost(request)) {
+            WebResourceResponse routed = interceptRouted(request);
+            if (routed != null) {
+                return routed;
+            }
+        }
+        return super.shouldInterceptRequest(view, request);
+    }
+
+    private WebResourceResponse interceptImage(String key) {
+        // Resolved lazily: the first lookup scans the cache dir, and this
+        // method runs on a WebView IO thread rather than the UI thread.
+        PosterCache cache = PosterCache.get(bridge.getContext());
+        byte[] bytes = cache.get(key);
+        if (bytes == null) {
+            bytes = fetcher.fetch(key);
+            cache.recordNetworkFetch(bytes != null);
+            if (bytes == null) {
+                return null;
+            }
+            cache.put(key, bytes);
+        }
+        return imageResponse(key, bytes);
+    }
+
+    private WebResourceResponse interceptRouted(WebResourceRequest request) {
+        DohHttpClient.Response response;
+        try {
+            response = http.get(request.getUrl().toString(), request.getRequestHeaders());
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+        return toWebResponse(response);
+    }
+
+    /**
+     * The upstream answer as a WebResourceResponse, or null (body closed)
+     * for statuses WebResourceResponse rejects: 3xx and anything outside
+     * 100-599. The WebView then repeats the request on its own stack,
+     * which follows redirects and revalidates 304s itself.
+     */
+    static WebResourceResponse toWebResponse(DohHttpClient.Response response) {
+        if (response == null) {
+            return null;
+        }
+        int status = response.status;
+        if (status < 100 || status > 599 || (status >= 300 && status < 400)) {
+            closeQuietly(response.body);
+            return null;
+        }
+
+        String contentType = response.header("Content-Type");
+        String mimeType = "application/octet-stream";
+        String encoding = null;
+        if (contentType != null) {
+            String[] parts = contentType.split(";");
+            mimeType = parts[0].trim();
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                    encoding = param.substring("charset=".length()).replace("\"", "");
+                }
+            }
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, String> header : response.headers.entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+            // Hop-by-hop headers describe our socket, not the resource.
+            if (name.equals("transfer-encoding") || name.equals("connection")
+                    || name.equals("keep-alive") || name.equals("content-type")) {
+                continue;
+            }
+            headers.put(header.getKey(), header.getValue());
+        }
+        // Reason must be non-empty ASCII too; HTTP/1.1 allows an empty one
+        String reason = response.reason != null && !response.reason.trim().isEmpty()
+                ? response.reason.trim() : "Status " + status;
+        try {
+            return new WebResourceResponse(mimeType, encoding, status, reason, headers, response.body);
+        } catch (IllegalArgumentException e) {
+            closeQuietly(response.body);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        if (body != null) {
+            try {
+                body.close();
+            } catch (IOException ignored) {
+                // Socket already gone
+            }
+        }
+    }
+
+    static String imageKey(WebResourceRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return null;
+        }
+        Uri url = request.getUrl();
+        if (url == null || !isImageHost(url.getHost(), url.getPath())) {
+            return null;
+        }
+        Matcher matcher = IMAGE_PATH.matcher(url.getPath());
+        if (!matcher.find()) {
+            return null;
+        }
+        return matcher.group(1) + "/" + matcher.group(2);
+    }
+
+    private static boolean isImageHost(String host, String path) {
+        if (host == null || path == null) {
+            return false;
+        }
+        for (String mirror : PosterFetcher.MIRRORS) {
+            int slash = mirror.indexOf('/');
+            String mirrorHost = slash < 0 ? mirror : mirror.substring(0, slash);
+            String mirrorPath = slash < 0 ? "" : mirror.substring(slash);
+            if (host.equalsIgnoreCase(mirrorHost) && path.startsWith(mirrorPath + "/t/p/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isRoutedHost(WebResourceRequest request) {
+        if (!"GET".equalsIgnoreCase(request.getMethod())) {
+            return false;
+        }
+        Uri url = request.getUrl();
+        if (url == null || !"https".equalsIgnoreCase(url.getScheme()) || url.getHost() == null) {
+            return false;
+        }
+        for (String host : DohResolver.ROUTED_HOSTS) {
+            if (host.equalsIgnoreCase(url.getHost())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static WebResourceResponse imageResponse(String key, byte[] bytes) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Access-Control-Allow-Origin", "*");
+        headers.put("Cache-Control", "public, max-age=31536000, immutable");
+        headers.put("Content-Length", String.valueOf(bytes.length));
+        return new WebResourceResponse(mimeType(key), null, 200, "OK", headers,
+                new ByteArrayInputStream(bytes));
+    }
+
+    private static String mimeType(String key) {
+        if (key.endsWith(".png")) {
+            return "image/png";
+        }
+        if (key.endsWith(".webp")) {
+            return "image/webp";
+        }
+        if (key.endsWith(".svg")) {
+            return "image/svg+xml";
+        }
+        return "image/jpeg";
+    }
+}
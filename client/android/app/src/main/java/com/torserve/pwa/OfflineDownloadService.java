@@ -0,0 +1,203 @@
+package com.torserve.pwa;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.Process;
+import android.os.SystemClock;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Foreground host for the offline copies (OfflineDownloads): takes the
+ * queued entries one at a time and runs a SegmentedDownload for each, with
+ * the progress in the notification. START_STICKY brings it back after the
+ * process is killed; after a reboot the plugin restarts it when the app
+ * opens (resumePending), and every download continues from its sidecar.
+ */
+public class OfflineDownloadService extends Service {
+    private static final String CHANNEL_ID = "offline";
+    private static final int NOTIFICATION_ID = 4102;
+    private static final long NOTIFY_INTERVAL_MS = 1000;
+
+    interface Listener {
+        /** Any state change, and progress about once a second. */
+        void onUpdate(OfflineDownloads.Entry entry, long bytesPerSec);
+    }
+
+    static volatile Listener listener;
+    private static volatile SegmentedDownload active;
+    private static volatile String activeId;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "offline-download");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile boolean destroyed;
+    private long lastNotifyAt;
+
+    static void start(Context context) {
+        Intent intent = new Intent(context, OfflineDownloadService.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    /** Starts the service if a download is queued or was interrupted (killed, rebooted). */
+    static void resumePending(Context context) {
+        if (OfflineDownloads.nextPending(context) != null) {
+            start(context);
+        }
+    }
+
+    /** Stops the running download if it is id; the caller has already removed the entry. */
+    static void cancel(String id) {
+        SegmentedDownload download = active;
+        if (download != null && id.equals(activeId)) {
+            download.cancel();
+        }
+    }
+
+    /** {downloaded, total} of the running download, or null if id isn't running. */
+    static long[] progress(String id) {
+        SegmentedDownload download = active;
+        return download != null && id.equals(activeId)
+                ? new long[] {download.downloaded(), download.total()} : null;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        startForegroundCompat(null, -1);
+        // Serialized on the worker: a later start drains what an earlier one missed
+        worker.execute(() -> {
+            OfflineDownloads.Entry entry;
+            while (!destroyed && (entry = OfflineDownloads.nextPending(this)) != null) {
+                download(entry);
+            }
+            if (!destroyed) {
+                stopSelf(startId);
+            }
+        });
+        return START_STICKY;
+    }
+
+    private void download(OfflineDownloads.Entry entry) {
+        String id = entry.id();
+        if (OfflineDownloads.get(this, id) == null) {
+            return; // removed meanwhile
+        }
+        entry.state = OfflineDownloads.RUNNING;
+        entry.error = null;
+        OfflineDownloads.put(this, entry);
+        publish(entry, 0);
+
+        SegmentedDownload download = new SegmentedDownload(
+                entry.url, entry.file(), SegmentedDownload.DEFAULT_SEGMENTS, entry.totalBytes);
+        active = download;
+        activeId = id;
+        lastNotifyAt = 0;
+        try {
+            download.run((downloaded, total, bytesPerSec) -> {
+                long now = SystemClock.elapsedRealtime();
+                if (now - lastNotifyAt < NOTIFY_INTERVAL_MS) {
+                    return;
+                }
+                lastNotifyAt = now;
+                entry.downloadedBytes = downloaded;
+                entry.totalBytes = total;
+                startForegroundCompat(entry.name, total > 0 ? (int) (downloaded * 100 / total) : 0);
+                publish(entry, bytesPerSec);
+            });
+            entry.state = OfflineDownloads.DONE;
+        } catch (IOException e) {
+            // Killed with the service: stays pending and resumes next start
+            entry.state = destroyed ? OfflineDownloads.QUEUED : OfflineDownloads.FAILED;
+            entry.error = destroyed ? null : e.getMessage();
+        } finally {
+            active = null;
+            activeId = null;
+        }
+        entry.downloadedBytes = download.downloaded();
+        entry.totalBytes = download.total();
+        if (OfflineDownloads.get(this, id) == null) {
+            // Removed while running: drop what the last checkpoint wrote
+            SegmentedDownload.delete(entry.file());
+            return;
+        }
+        OfflineDownloads.put(this, entry);
+        publish(entry, 0);
+    }
+
+    private static void publish(OfflineDownloads.Entry entry, long bytesPerSec) {
+        Listener current = listener;
+        if (current != null) {
+            current.onUpdate(entry, bytesPerSec);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        destroyed = true;
+        SegmentedDownload download = active;
+        if (download != null) {
+            download.cancel();
+        }
+        worker.shutdown();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /**
+     * Pre-O builds need the deprecated channel-less Builder and setPriority.
+     *
+     * @param percent &lt; 0: no progress bar yet
+     */
+    @SuppressWarnings("deprecation")
+    private void startForegroundCompat(String name, int percent) {
+        String title = getString(R.string.offline_notification);
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            NotificationChannel channel = new NotificationChannel(
+                    CHANNEL_ID, title, NotificationManager.IMPORTANCE_LOW);
+            channel.setShowBadge(false);
+            manager.createNotificationChannel(channel);
+            builder = new Notification.Builder(this, CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this).setPriority(Notification.PRIORITY_LOW);
+        }
+        builder.setSmallIcon(getApplicationInfo().icon)
+                .setContentTitle(title)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true);
+        if (name != null) {
+            builder.setContentText(name);
+        }
+        if (percent >= 0) {
+            builder.setProgress(100, percent, false);
+        }
+        Notification notification = builder.build();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+}
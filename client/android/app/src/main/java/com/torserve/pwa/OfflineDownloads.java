@@ -0,0 +1,232 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.core.content.FileProvider;
+import com.getcapacitor.JSObject;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Episodes copied from the NAS to this box (OfflineDownloadService), kept
+ * in prefs as a small JSON list. The bytes go to the app's external files
+ * dir (internal storage when there is none) under offline/, named
+ * &lt;infoHash&gt;_&lt;fileIndex&gt;.&lt;ext&gt;; their progress is
+ * SegmentedDownload's ".segments" sidecar, not this list. A finished file
+ * is played through the FileProvider (content://, see file_paths.xml).
+ */
+final class OfflineDownloads {
+    static final String QUEUED = "queued";
+    static final String RUNNING = "running";
+    static final String DONE = "done";
+    static final String FAILED = "failed";
+    private static final String DIR_NAME = "offline";
+    private static final String PREFS_NAME = "offline_downloads";
+    private static final String DOWNLOADS = "downloads";
+    private static final Pattern EXTENSION = Pattern.compile("\\.([A-Za-z0-9]{1,5})$");
+
+    static final class Entry {
+        String infoHash;
+        int fileIndex;
+        String name;
+        /** /stream URL on the NAS, with prewarm=1 */
+        String url;
+        long totalBytes;
+        long downloadedBytes;
+        String path;
+        String state;
+        String error;
+        long updatedAt;
+
+        String id() {
+            return OfflineDownloads.id(infoHash, fileIndex);
+        }
+
+        File file() {
+            return new File(path);
+        }
+
+        static Entry fromJson(JSONObject json) {
+            if (json == null || json.optString("infoHash", "").isEmpty() || json.optString("path", "").isEmpty()) {
+                return null;
+            }
+            Entry entry = new Entry();
+            entry.infoHash = json.optString("infoHash");
+            entry.fileIndex = json.optInt("fileIndex");
+            entry.name = optText(json, "name");
+            entry.url = json.optString("url", null);
+            entry.totalBytes = json.optLong("totalBytes", -1);
+            entry.downloadedBytes = json.optLong("downloadedBytes", 0);
+            entry.path = json.optString("path");
+            entry.state = json.optString("state", QUEUED);
+            entry.error = optText(json, "error");
+            entry.updatedAt = json.optLong("updatedAt", 0);
+            return entry;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("infoHash", infoHash);
+            json.put("fileIndex", fileIndex);
+            json.put("name", name != null ? name : JSONObject.NULL);
+            json.put("url", url);
+            json.put("totalBytes", totalBytes);
+            json.put("downloadedBytes", downloadedBytes);
+            json.put("path", path);
+            json.put("state", state);
+            json.put("error", error != null ? error : JSONObject.NULL);
+            json.put("updatedAt", updatedAt);
+            return json;
+        }
+
+        private static String optText(JSONObject json, String key) {
+            Object value = json.opt(key);
+            return value instanceof String && !((String) value).isEmpty() ? (String) value : null;
+        }
+
+        /** What JS sees: no paths, a content:// uri once the file is complete. */
+        JSObject toResult(Context context) {
+            JSObject ret = new JSObject();
+            ret.put("id", id());
+            ret.put("infoHash", infoHash);
+            ret.put("fileIndex", fileIndex);
+            ret.put("name", name);
+            ret.put("state", state);
+            ret.put("totalBytes", totalBytes);
+            ret.put("downloadedBytes", downloadedBytes);
+            ret.put("error", error);
+            ret.put("uri", DONE.equals(state) ? uri(context, file()) : null);
+            return ret;
+        }
+    }
+
+    private OfflineDownloads() {
+    }
+
+    static String id(String infoHash, int fileIndex) {
+        return infoHash.toLowerCase(Locale.ROOT) + "_" + fileIndex;
+    }
+
+    /** A new queued entry for /stream/&lt;infoHash&gt;/&lt;fileIndex&gt; on serverUrl. */
+    static Entry create(Context context, String serverUrl, String infoHash, int fileIndex, String name, long length) {
+        Entry entry = new Entry();
+        entry.infoHash = infoHash.toLowerCase(Locale.ROOT);
+        entry.fileIndex = fileIndex;
+        entry.name = name;
+        entry.url = serverUrl.replaceAll("/+$", "") + "/stream/" + entry.infoHash + "/" + fileIndex
+                + "?prewarm=1"; // offline copy: no watch progress or turbo on the NAS
+        entry.totalBytes = length > 0 ? length : -1;
+        Matcher ext = EXTENSION.matcher(name != null ? name : "");
+        String fileName = entry.id() + (ext.find() ? "." + ext.group(1).toLowerCase(Locale.ROOT) : "");
+        entry.path = new File(dir(context), fileName).getAbsolutePath();
+        entry.state = QUEUED;
+        entry.updatedAt = System.currentTimeMillis();
+        return entry;
+    }
+
+    static File dir(Context context) {
+        File external = context.getExternalFilesDir(DIR_NAME);
+        File dir = external != null ? external : new File(context.getFilesDir(), DIR_NAME);
+        dir.mkdirs();
+        return dir;
+    }
+
+    static String uri(Context context, File file) {
+        try {
+            return FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", file).toString();
+        } catch (IllegalArgumentException e) {
+            return null; // outside the provider's paths
+        }
+    }
+
+    static synchronized List<Entry> list(Context context) {
+        List<Entry> entries = new ArrayList<>();
+        String json = prefs(context).getString(DOWNLOADS, null);
+        if (json == null) {
+            return entries;
+        }
+        try {
+            JSONArray array = new JSONArray(json);
+            for (int i = 0; i < array.length(); i++) {
+                Entry entry = Entry.fromJson(array.optJSONObject(i));
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        } catch (JSONException e) {
+            prefs(context).edit().remove(DOWNLOADS).apply();
+        }
+        return entries;
+    }
+
+    static synchronized Entry get(Context context, String id) {
+        for (Entry entry : list(context)) {
+            if (entry.id().equals(id)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /** Inserts or replaces by id. */
+    static synchronized void put(Context context, Entry entry) {
+        List<Entry> entries = list(context);
+        entry.updatedAt = System.currentTimeMillis();
+        boolean replaced = false;
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).id().equals(entry.id())) {
+                entries.set(i, entry);
+                replaced = true;
+            }
+        }
+        if (!replaced) {
+            entries.add(entry);
+        }
+        save(context, entries);
+    }
+
+    static synchronized Entry remove(Context context, String id) {
+        List<Entry> entries = list(context);
+        Entry removed = null;
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            if (entries.get(i).id().equals(id)) {
+                removed = entries.remove(i);
+            }
+        }
+        save(context, entries);
+        return removed;
+    }
+
+    /** Oldest queued (or interrupted) entry, or null. */
+    static synchronized Entry nextPending(Context context) {
+        for (Entry entry : list(context)) {
+            if (QUEUED.equals(entry.state) || RUNNING.equals(entry.state)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static void save(Context context, List<Entry> entries) {
+        JSONArray array = new JSONArray();
+        try {
+            for (Entry entry : entries) {
+                array.put(entry.toJson());
+            }
+        } catch (JSONException e) {
+            return;
+        }
+        prefs(context).edit().putString(DOWNLOADS, array.toString()).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
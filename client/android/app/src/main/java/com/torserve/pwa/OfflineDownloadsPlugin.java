@@ -0,0 +1,144 @@
+package com.torserve.pwa;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JS side of OfflineDownloadService (offlineDownloads.js): copy an episode
+ * from the NAS to this box, list the copies, remove one. A finished entry
+ * carries a content:// uri that TVPlayer.play() takes as its url. Updates
+ * come as "offlineProgress" events with the same shape as list() entries
+ * plus bytesPerSec.
+ */
+@CapacitorPlugin(name = "OfflineDownloads")
+public class OfflineDownloadsPlugin extends Plugin {
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "offline-downloads");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void load() {
+        OfflineDownloadService.listener = (entry, bytesPerSec) -> {
+            JSObject event = entry.toResult(getContext());
+            event.put("bytesPerSec", bytesPerSec);
+            notifyListeners("offlineProgress", event);
+        };
+        // Downloads interrupted by a reboot continue once the app is open again
+        worker.execute(() -> OfflineDownloadService.resumePending(getContext()));
+    }
+
+    /**
+     * {serverUrl, infoHash, fileIndex, name, length?} -> the entry. Queues
+     * the file, or resumes a failed one from its saved segments; a finished
+     * copy is returned as is
+     */
+    @PluginMethod
+    public void start(PluginCall call) {
+        String serverUrl = call.getString("serverUrl");
+        String infoHash = call.getString("infoHash");
+        Integer fileIndex = call.getInt("fileIndex");
+        if (serverUrl == null || !(serverUrl.startsWith("http://") || serverUrl.startsWith("https://"))) {
+            call.reject("serverUrl is required");
+            return;
+        }
+        if (infoHash == null || infoHash.isEmpty() || fileIndex == null || fileIndex < 0) {
+            call.reject("infoHash and fileIndex are required");
+            return;
+        }
+        String name = call.getString("name");
+        long length = call.getLong("length", -1L);
+        worker.execute(() -> {
+            OfflineDownloads.Entry entry = OfflineDownloads.get(getContext(), OfflineDownloads.id(infoHash, fileIndex));
+            if (entry == null || OfflineDownloads.FAILED.equals(entry.state)
+                    || (OfflineDownloads.DONE.equals(entry.state) && !entry.file().isFile())) {
+                OfflineDownloads.Entry fresh = OfflineDownloads.create(
+                        getContext(), serverUrl, infoHash, fileIndex, name, length);
+                if (entry != null) {
+                    fresh.path = entry.path; // keeps the segments already on disk
+                    fresh.totalBytes = entry.totalBytes > 0 ? entry.totalBytes : fresh.totalBytes;
+                    fresh.downloadedBytes = entry.downloadedBytes;
+                }
+                entry = fresh;
+                OfflineDownloads.put(getContext(), entry);
+            }
+            if (!OfflineDownloads.DONE.equals(entry.state)) {
+                OfflineDownloadService.start(getContext());
+            }
+            call.resolve(withProgress(entry));
+        });
+    }
+
+    /** -> {downloads: [{id, infoHash, fileIndex, name, state, totalBytes, downloadedBytes, error, uri}]} */
+    @PluginMethod
+    public void list(PluginCall call) {
+        worker.execute(() -> {
+            JSArray downloads = new JSArray();
+            for (OfflineDownloads.Entry entry : OfflineDownloads.list(getContext())) {
+                downloads.put(withProgress(entry));
+            }
+            JSObject ret = new JSObject();
+            ret.put("downloads", downloads);
+            call.resolve(ret);
+        });
+    }
+
+    /** {infoHash, fileIndex} -> {download: entry or null} */
+    @PluginMethod
+    public void find(PluginCall call) {
+        String infoHash = call.getString("infoHash");
+        Integer fileIndex = call.getInt("fileIndex");
+        if (infoHash == null || fileIndex == null) {
+            call.reject("infoHash and fileIndex are required");
+            return;
+        }
+        worker.execute(() -> {
+            OfflineDownloads.Entry entry = OfflineDownloads.get(getContext(), OfflineDownloads.id(infoHash, fileIndex));
+            JSObject ret = new JSObject();
+            ret.put("download", entry != null ? withProgress(entry) : null);
+            call.resolve(ret);
+        });
+    }
+
+    /** {id}: stops it if running and deletes the file */
+    @PluginMethod
+    public void remove(PluginCall call) {
+        String id = call.getString("id");
+        if (id == null) {
+            call.reject("id is required");
+            return;
+        }
+        worker.execute(() -> {
+            OfflineDownloads.Entry removed = OfflineDownloads.remove(getContext(), id);
+            OfflineDownloadService.cancel(id);
+            if (removed != null) {
+                SegmentedDownload.delete(removed.file());
+            }
+            JSObject ret = new JSObject();
+            ret.put("removed", removed != null);
+            call.resolve(ret);
+        });
+    }
+
+    private JSObject withProgress(OfflineDownloads.Entry entry) {
+        long[] live = OfflineDownloadService.progress(entry.id());
+        if (live != null) {
+            entry.downloadedBytes = live[0];
+            entry.totalBytes = live[1];
+        }
+        return entry.toResult(getContext());
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        OfflineDownloadService.listener = null;
+        worker.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.getcapacitor.JSObject;
+import org.json.JSONException;
+
+/**
+ * The play()/playList() whose player is in front, persisted so a result
+ * can still be delivered after the process was killed meanwhile.
+ *
+ * Capacitor brings playerResult back on the recreated activity, but the
+ * PluginCall is gone (or no longer connected to the page that made it):
+ * TVPlayer then takes the meta from here, records the watch history and
+ * keeps the result for TVPlayer.takePendingPlayback on the next page load.
+ */
+final class PendingPlayback {
+    private static final String PREFS_NAME = "pending_playback";
+    private static final String LAUNCH = "launch";
+    private static final String RESULT = "result";
+
+    private PendingPlayback() {
+    }
+
+    /**
+     * @param meta play({history}) / play({meta}), what watch history needs
+     */
+    static void launched(Context context, String packageName, String engine, JSObject meta) {
+        JSObject launch = new JSObject();
+        launch.put("package", packageName);
+        launch.put("engine", engine);
+        launch.put("meta", meta != null ? meta : JSObject.NULL);
+        launch.put("startedAt", System.currentTimeMillis());
+        prefs(context).edit().putString(LAUNCH, launch.toString()).remove(RESULT).apply();
+    }
+
+    /** The launch meta saved by launched(), or null. */
+    static JSObject meta(Context context) {
+        JSObject launch = read(prefs(context), LAUNCH);
+        return launch != null ? launch.getJSObject("meta") : null;
+    }
+
+    /** A result that arrived after a process restart, for takePending(). */
+    static void resultOrphaned(Context context, JSObject result) {
+        JSObject launch = read(prefs(context), LAUNCH);
+        JSObject pending = new JSObject();
+        pending.put("meta", launch != null && launch.getJSObject("meta") != null
+                ? launch.getJSObject("meta") : JSObject.NULL);
+        pending.put("engine", launch != null ? launch.getString("engine") : null);
+        pending.put("updatedAt", System.currentTimeMillis());
+        for (String key : new String[]{"position", "duration", "finished", "endBy", "historyStored", "index"}) {
+            if (result.has(key)) {
+                pending.put(key, result.opt(key));
+            }
+        }
+        prefs(context).edit().remove(LAUNCH).putString(RESULT, pending.toString()).apply();
+    }
+
+    /** The result reached JS through playerResult. */
+    static void clear(Context context) {
+        prefs(context).edit().remove(LAUNCH).remove(RESULT).apply();
+    }
+
+    /**
+     * @return {meta, position, duration, finished, ...} of a result that
+     *         never reached JS, or null. Removed once read.
+     */
+    static JSObject takeResult(Context context) {
+        SharedPreferences prefs = prefs(context);
+        JSObject result = read(prefs, RESULT);
+        if (result != null) {
+            prefs.edit().remove(RESULT).commit();
+        }
+        return result;
+    }
+
+    private static JSObject read(SharedPreferences prefs, String key) {
+        String json = prefs.getString(key, null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return new JSObject(json);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,97 @@
+package com.torserve.pwa;
+
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.content.pm.Signature;
+import android.net.Uri;
+import android.os.Build;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Android side of the plain-Java player-core classes: PlayerLaunch to
+ * Intent, PackageInfo to the values ApkCheck compares.
+ */
+final class PlayerIntents {
+    private PlayerIntents() {
+    }
+
+    /** Data, type, package and extras; launch flags are the caller's. */
+    @SuppressWarnings("unchecked")
+    static Intent toIntent(PlayerLaunch launch) {
+        Intent intent = new Intent(Intent.ACTION_VIEW);
+        intent.setDataAndType(Uri.parse(launch.data), launch.type);
+        if (launch.packageName != null) {
+            intent.setPackage(launch.packageName);
+        }
+        if (launch.grantRead) {
+            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        }
+        for (Map.Entry<String, Object> extra : launch.extras.entrySet()) {
+            String key = extra.getKey();
+            Object value = extra.getValue();
+            if (value instanceof String) {
+                intent.putExtra(key, (String) value);
+            } else if (value instanceof Boolean) {
+                intent.putExtra(key, (boolean) (Boolean) value);
+            } else if (value instanceof Integer) {
+                intent.putExtra(key, (int) (Integer) value);
+            } else if (value instanceof ArrayList) {
+                intent.putStringArrayListExtra(key, (ArrayList<String>) value);
+            } else if (value instanceof String[]) {
+                intent.putExtra(key, (String[]) value);
+            } else if (value instanceof PlayerLaunch.UriArray) {
+                List<String> uris = ((PlayerLaunch.UriArray) value).uris;
+                Uri[] uriArray = new Uri[uris.size()];
+                for (int i = 0; i < uriArray.length; i++) {
+                    uriArray[i] = Uri.parse(uris.get(i));
+                }
+                intent.putExtra(key, uriArray);
+            }
+        }
+        return intent;
+    }
+
+    static PlayerResult.Extras extras(Intent data) {
+        return new PlayerResult.Extras() {
+            @Override
+            public int getInt(String key, int defaultValue) {
+                return data.getIntExtra(key, defaultValue);
+            }
+
+            @Override
+            public String getString(String key) {
+                return data.getStringExtra(key);
+            }
+        };
+    }
+
+    static long versionCode(PackageInfo packageInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            return packageInfo.getLongVersionCode();
+        }
+        return packageInfo.versionCode;
+    }
+
+    /** Signature.toCharsString() of each signer, or null if unknown. */
+    static String[] signers(PackageInfo packageInfo) {
+        Signature[] signatures;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            if (packageInfo.signingInfo == null) {
+                return null;
+            }
+            signatures = packageInfo.signingInfo.getApkContentsSigners();
+        } else {
+            signatures = packageInfo.signatures;
+        }
+        if (signatures == null) {
+            return null;
+        }
+        String[] signers = new String[signatures.length];
+        for (int i = 0; i < signatures.length; i++) {
+            signers[i] = signatures[i].toCharsString();
+        }
+        return signers;
+    }
+}
@@ -0,0 +1,234 @@
+package com.torserve.pwa;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.json.JSONArray;
+
+/**
+ * Serves TVPlayer playlists as M3U over content://<package>.playlist/<id>.m3u.
+ *
+ * Intent extras travel through a Binder transaction capped at ~1 MB, and
+ * asusfilelist/video_list for a season pack with hundreds of long names
+ * overflows it (TransactionTooLargeException). With this provider the
+ * player gets one short Uri; the entries stay in this process as the
+ * JSONArrays the bridge already parsed and are formatted page by page into
+ * a pipe only while the player reads, so neither side ever holds the whole
+ * text.
+ *
+ * Playlists live in memory (last MAX_PLAYLISTS); NativePlayerActivity reads
+ * them directly by id.
+ */
+public class PlaylistProvider extends ContentProvider {
+    static final String MIME_TYPE = "audio/x-mpegurl";
+    // Rough Parcel size (UTF-16 + headers) above which extras get risky.
+    // The 1 MB Binder buffer is shared by the whole process.
+    static final int INTENT_BUDGET_BYTES = 256 * 1024;
+    private static final int PAGE_SIZE = 256;
+    private static final int MAX_PLAYLISTS = 8;
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final Map<String, Playlist> playlists = new LinkedHashMap<>();
+    private static final ExecutorService writers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "playlist-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Playlist entries backed by the JSONArrays from the plugin call. URLs
+     * go through the read-ahead proxy on first use only.
+     */
+    public static class Playlist {
+        final String title;
+        final int start;
+        private final JSONArray urls;
+        private final JSONArray names;
+        private final StreamProxy proxy;
+        private final String[] resolved;
+
+        /**
+         * @param start first entry to play; the M3U lists entries from here on
+         * @param proxy read-ahead proxy to register URLs with, or null
+         */
+        public Playlist(String title, JSONArray urls, JSONArray names, int start, StreamProxy proxy) {
+            this.title = title;
+            this.urls = urls;
+            this.names = names;
+            this.start = Math.max(0, Math.min(start, urls.length() - 1));
+            this.proxy = proxy;
+            this.resolved = new String[urls.length()];
+        }
+
+        public int size() {
+            return urls.length();
+        }
+
+        public synchronized String url(int index) {
+            String url = resolved[index];
+            if (url == null) {
+                url = urls.optString(index);
+                if (proxy != null) {
+                    url = proxy.register(url);
+                }
+                resolved[index] = url;
+            }
+            return url;
+        }
+
+        public String name(int index) {
+            String name = names != null && index < names.length() ? names.optString(index, null) : null;
+            return name != null && !name.isEmpty() ? name : "File " + (index + 1);
+        }
+
+        /** Writes "#EXTM3U" and entries from start on, PAGE_SIZE at a time. */
+        void writeM3u(OutputStream out) throws IOException {
+            StringBuilder page = new StringBuilder(PAGE_SIZE * 160);
+            page.append("#EXTM3U\n");
+            if (title != null) {
+                page.append("#PLAYLIST:").append(singleLine(title)).append('\n');
+            }
+            for (int i = start; i < size(); i++) {
+                page.append("#EXTINF:-1,").append(singleLine(name(i))).append('\n')
+                        .append(url(i)).append('\n');
+                if ((i - start + 1) % PAGE_SIZE == 0) {
+                    out.write(page.toString().getBytes(StandardCharsets.UTF_8));
+                    page.setLength(0);
+                }
+            }
+            out.write(page.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+
+        private static String singleLine(String text) {
+            return text.replace('\r', ' ').replace('\n', ' ');
+        }
+    }
+
+    /** @return playlist id; uriFor(id) is the handle for external players */
+    static String publish(Playlist playlist) {
+        String id = Integer.toString(nextId.incrementAndGet());
+        synchronized (playlists) {
+            playlists.put(id, playlist);
+            Iterator<String> oldest = playlists.keySet().iterator();
+            while (playlists.size() > MAX_PLAYLISTS && oldest.hasNext()) {
+                oldest.next();
+                oldest.remove();
+            }
+        }
+        return id;
+    }
+
+    static Uri uriFor(Context context, String id) {
+        return Uri.parse("content://" + context.getPackageName() + ".playlist/" + id + ".m3u");
+    }
+
+    static Playlist get(String id) {
+        if (id == null) {
+            return null;
+        }
+        synchronized (playlists) {
+            return playlists.get(id);
+        }
+    }
+
+    /**
+     * Would asusfilelist/asusnamelist or video_list + names for these
+     * entries risk the Binder limit? Stops counting once over budget.
+     */
+    static boolean exceedsIntentBudget(JSONArray urls, JSONArray names) {
+        long bytes = 0;
+        for (int i = 0; i < urls.length(); i++) {
+            int nameLength = names != null && i < names.length() ? names.optString(i).length() : 8;
+            // URL once, name up to twice (MX: video_list.name + .filename)
+            bytes += 2L * (urls.optString(i).length() + 2 * nameLength) + 32;
+            if (bytes > INTENT_BUDGET_BYTES) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Playlist fromUri(Uri uri) {
+        String segment = uri.getLastPathSegment();
+        if (segment == null) {
+            return null;
+        }
+        return get(segment.endsWith(".m3u") ? segment.substring(0, segment.length() - 4) : segment);
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return MIME_TYPE;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        Playlist playlist = fromUri(uri);
+        if (playlist == null) {
+            return null;
+        }
+        // Size is unknown until the pipe is drained
+        MatrixCursor cursor = new MatrixCursor(new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE}, 1);
+        cursor.addRow(new Object[]{uri.getLastPathSegment(), null});
+        return cursor;
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        Playlist playlist = fromUri(uri);
+        if (playlist == null) {
+            throw new FileNotFoundException("Playlist expired: " + uri);
+        }
+        ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("Cannot open pipe: " + e.getMessage());
+        }
+        ParcelFileDescriptor writeEnd = pipe[1];
+        writers.execute(() -> {
+            try (OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(writeEnd)) {
+                playlist.writeM3u(out);
+            } catch (IOException ignored) {
+                // Player stopped reading
+            }
+        });
+        return pipe[0];
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+}
@@ -0,0 +1,288 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-level LRU cache for TMDB posters and backdrops.
+ *
+ * Level 1 keeps encoded image bytes in memory, level 2 keeps them as files in
+ * the app cache dir. Both levels are bounded by bytes, not entry count, since
+ * a w1280 backdrop weighs ~20x a w185 poster. The directory lives outside the
+ * WebView HTTP cache, so the cache invalidation after an APK update
+ * (MainActivity, WebCacheInvalidator) leaves it alone.
+ *
+ * Keys are "<size>/<file>" (e.g. "w342/abc.jpg"), independent of the mirror
+ * the bytes came from.
+ */
+public class PosterCache {
+    private static final String DIR_NAME = "poster_cache";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final long DEFAULT_MEMORY_BYTES = 16L * 1024 * 1024;
+    private static final long DEFAULT_DISK_BYTES = 150L * 1024 * 1024;
+
+    private static PosterCache instance;
+
+    private final File dir;
+    private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(256, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    private final long memoryLimit;
+    private final long diskLimit;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+    private final AtomicLong networkFetches = new AtomicLong();
+    private final AtomicLong networkFailures = new AtomicLong();
+
+    public static synchronized PosterCache get(Context context) {
+        if (instance == null) {
+            long heapShare = Runtime.getRuntime().maxMemory() / 16;
+            instance = new PosterCache(
+                    new File(context.getApplicationContext().getCacheDir(), DIR_NAME),
+                    Math.min(DEFAULT_MEMORY_BYTES, heapShare),
+                    DEFAULT_DISK_BYTES);
+        }
+        return instance;
+    }
+
+    public PosterCache(File dir, long memoryLimit, long diskLimit) {
+        this.dir = dir;
+        this.memoryLimit = memoryLimit;
+        this.diskLimit = diskLimit;
+        loadDiskIndex();
+    }
+
+    /**
+     * Rebuild the disk LRU order from file mtimes (touched on every hit).
+     */
+    private void loadDiskIndex() {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Comparator.comparingLong is API 24
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        synchronized (this) {
+            for (File file : files) {
+                if (file.getName().endsWith(TMP_SUFFIX)) {
+                    file.delete();
+                    continue;
+                }
+                disk.put(file.getName(), file.length());
+                diskBytes += file.length();
+            }
+            trimDisk(diskLimit);
+        }
+    }
+
+    /**
+     * @return cached bytes, or null on a miss at both levels
+     */
+    public byte[] get(String key) {
+        String name = fileName(key);
+        synchronized (this) {
+            byte[] bytes = memory.get(name);
+            if (bytes != null) {
+                memoryHits.incrementAndGet();
+                return bytes;
+            }
+            if (disk.get(name) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+
+        File file = new File(dir, name);
+        byte[] bytes = readFile(file);
+        if (bytes == null) {
+            synchronized (this) {
+                Long size = disk.remove(name);
+                if (size != null) {
+                    diskBytes -= size;
+                }
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        file.setLastModified(System.currentTimeMillis());
+        diskHits.incrementAndGet();
+        putMemory(name, bytes);
+        return bytes;
+    }
+
+    public void put(String key, byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return;
+        }
+        String name = fileName(key);
+        putMemory(name, bytes);
+
+        File tmp = new File(dir, name + TMP_SUFFIX);
+        File target = new File(dir, name);
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            return;
+        }
+
+        synchronized (this) {
+            Long previous = disk.put(name, (long) bytes.length);
+            if (previous != null) {
+                diskBytes -= previous;
+            }
+            diskBytes += bytes.length;
+            trimDisk(diskLimit);
+        }
+    }
+
+    private synchronized void putMemory(String name, byte[] bytes) {
+        // A single image bigger than 1/8 of the budget would flush the whole row.
+        if (bytes.length > memoryLimit / 8) {
+            return;
+        }
+        byte[] previous = memory.put(name, bytes);
+        if (previous != null) {
+            memoryBytes -= previous.length;
+        }
+        memoryBytes += bytes.length;
+        trimMemory(memoryLimit);
+    }
+
+    private void trimMemory(long limit) {
+        Iterator<Map.Entry<String, byte[]>> it = memory.entrySet().iterator();
+        while (memoryBytes > limit && it.hasNext()) {
+            memoryBytes -= it.next().getValue().length;
+            it.remove();
+            memoryEvictions.incrementAndGet();
+        }
+    }
+
+    private void trimDisk(long limit) {
+        Iterator<Map.Entry<String, Long>> it = disk.entrySet().iterator();
+        while (diskBytes > limit && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            diskBytes -= eldest.getValue();
+            it.remove();
+            new File(dir, eldest.getKey()).delete();
+            diskEvictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drop in-memory entries down to the given fraction of the budget.
+     * Disk entries are untouched; they cost no heap.
+     */
+    public synchronized void trimMemoryTo(float fraction) {
+        trimMemory((long) (memoryLimit * Math.max(0f, Math.min(1f, fraction))));
+    }
+
+    public synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+        List<String> names = new ArrayList<>(disk.keySet());
+        disk.clear();
+        diskBytes = 0;
+        for (String name : names) {
+            new File(dir, name).delete();
+        }
+    }
+
+    void recordNetworkFetch(boolean ok) {
+        if (ok) {
+            networkFetches.incrementAndGet();
+        } else {
+            networkFailures.incrementAndGet();
+        }
+    }
+
+    public synchronized Stats stats() {
+        Stats stats = new Stats();
+        stats.memoryHits = memoryHits.get();
+        stats.diskHits = diskHits.get();
+        stats.misses = misses.get();
+        stats.memoryEvictions = memoryEvictions.get();
+        stats.diskEvictions = diskEvictions.get();
+        stats.networkFetches = networkFetches.get();
+        stats.networkFailures = networkFailures.get();
+        stats.memoryEntries = memory.size();
+        stats.memoryBytes = memoryBytes;
+        stats.memoryLimit = memoryLimit;
+        stats.diskEntries = disk.size();
+        stats.diskBytes = diskBytes;
+        stats.diskLimit = diskLimit;
+        return stats;
+    }
+
+    private static String fileName(String key) {
+        // Keys come from the /t/p/<size>/<file> matcher, so they are already
+        // filesystem-safe apart from the separator.
+        return key.replace('/', '_');
+    }
+
+    private static byte[] readFile(File file) {
+        long length = file.length();
+        if (length <= 0 || length > Integer.MAX_VALUE) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) length];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < bytes.length) {
+                int read = in.read(bytes, offset, bytes.length - offset);
+                if (read < 0) {
+                    return null;
+                }
+                offset += read;
+            }
+            return bytes;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static class Stats {
+        public long memoryHits;
+        public long diskHits;
+        public long misses;
+        public long memoryEvictions;
+        public long diskEvictions;
+        public long networkFetches;
+        public long networkFailures;
+        public int memoryEntries;
+        public long memoryBytes;
+        public long memoryLimit;
+        public int diskEntries;
+        public long diskBytes;
+        public long diskLimit;
+
+        public double hitRate() {
+            long hits = memoryHits + diskHits;
+            long total = hits + misses;
+            return total == 0 ? 0d : (double) hits / total;
+        }
+    }
+}
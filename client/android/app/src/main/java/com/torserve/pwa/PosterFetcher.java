@@ -0,0 +1,151 @@
+package com.torserve.pwa;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fetches a TMDB image by racing every mirror at once; first 200 wins.
+ *
+ * Mirrors match IMAGE_MIRRORS in tmdbClient.js. A serial cascade pays one
+ * full timeout per dead mirror, which is exactly the case (DNS poisoning,
+ * mirror outage) where the user is already waiting longest. Mirror hosts are
+ * resolved through DohResolver; the system resolver is only the fallback.
+ */
+public class PosterFetcher {
+    static final String[] MIRRORS = {
+            "nl.imagetmdb.com",
+            "imagetmdb.com",
+            "de.imagetmdb.com",
+            "pl.imagetmdb.com",
+            "lampa.byskaz.ru/tmdb/img",
+            "image.tmdb.org"
+    };
+
+    private static final int CONNECT_TIMEOUT_MS = 4000;
+    private static final int READ_TIMEOUT_MS = 8000;
+    private static final long RACE_TIMEOUT_MS = 10000;
+    private static final int MAX_IMAGE_BYTES = 8 * 1024 * 1024;
+
+    private final DohHttpClient http;
+    private final ExecutorService executor = Executors.newFixedThreadPool(8, r -> {
+        Thread thread = new Thread(r, "poster-fetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public PosterFetcher(DohHttpClient http) {
+        this.http = http;
+    }
+
+    /**
+     * @param key "<size>/<file>" as produced by NativeWebViewClient
+     * @return image bytes from the fastest mirror, or null if all failed
+     */
+    public byte[] fetch(String key) {
+        ExecutorCompletionService<byte[]> race = new ExecutorCompletionService<>(executor);
+        List<Future<byte[]>> pending = new ArrayList<>(MIRRORS.length);
+        for (String mirror : MIRRORS) {
+            String url = "https://" + mirror + "/t/p/" + key;
+            pending.add(race.submit(() -> download(url)));
+        }
+
+        long deadline = System.currentTimeMillis() + RACE_TIMEOUT_MS;
+        try {
+            for (int i = 0; i < pending.size(); i++) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                Future<byte[]> done = race.poll(remaining, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    break;
+                }
+                try {
+                    byte[] bytes = done.get();
+                    if (bytes != null) {
+                        return bytes;
+                    }
+                } catch (ExecutionException ignored) {
+                    // This mirror lost; keep waiting for the others.
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Future<byte[]> future : pending) {
+                future.cancel(true);
+            }
+        }
+        return null;
+    }
+
+    private byte[] download(String url) throws IOException {
+        DohHttpClient.Response response = http.get(url, null);
+        if (response != null) {
+            try (InputStream in = response.body) {
+                if (response.status == HttpURLConnection.HTTP_OK) {
+                    return readImage(response.header("Content-Type"), response.header("Content-Length"), in);
+                }
+                if (response.status < 300 || response.status >= 400) {
+                    return null;
+                }
+            }
+            // Redirects: let HttpURLConnection follow them below.
+        }
+
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setInstanceFollowRedirects(true);
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+            try (InputStream in = conn.getInputStream()) {
+                return readImage(conn.getContentType(), conn.getHeaderField("Content-Length"), in);
+            }
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static byte[] readImage(String type, String contentLength, InputStream in) throws IOException {
+        if (type != null && !type.startsWith("image/")) {
+            // Captive portals and DPI stubs answer 200 with HTML.
+            return null;
+        }
+        long length = -1;
+        try {
+            length = contentLength != null ? Long.parseLong(contentLength.trim()) : -1;
+        } catch (NumberFormatException ignored) {
+            // Unknown length: read until EOF below.
+        }
+        if (length > MAX_IMAGE_BYTES) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? (int) length : 64 * 1024);
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            out.write(buffer, 0, read);
+            if (out.size() > MAX_IMAGE_BYTES) {
+                return null;
+            }
+        }
+        return out.size() > 0 ? out.toByteArray() : null;
+    }
+}
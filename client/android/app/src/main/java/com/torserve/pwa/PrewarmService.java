@@ -0,0 +1,168 @@
+package com.torserve.pwa;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.Service;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ServiceInfo;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.Process;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Foreground host for EpisodePrewarmer. While Vimu/MX is on screen this app
+ * is in the background and may be frozen or killed; a (silent) foreground
+ * service keeps the warming thread alive until playerResult stops it.
+ */
+public class PrewarmService extends Service {
+    static final String EXTRA_PLAYING_URL = "playing_url";
+    static final String EXTRA_URLS = "urls";
+    static final String EXTRA_NAMES = "names";
+    static final String ACTION_STOP = "com.torserve.pwa.action.STOP_PREWARM";
+    private static final String CHANNEL_ID = "prewarm";
+    private static final int NOTIFICATION_ID = 4101;
+
+    private static volatile EpisodePrewarmer active;
+    // start() was called and onDestroy() hasn't run yet
+    private static volatile boolean started;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            r.run();
+        }, "episode-prewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param urls  upcoming entries (raw NAS URLs, not read-ahead proxy ones)
+     * @param names their file names
+     */
+    static void start(Context context, String playingUrl, ArrayList<String> urls, ArrayList<String> names) {
+        Intent intent = new Intent(context, PrewarmService.class);
+        intent.putExtra(EXTRA_PLAYING_URL, playingUrl);
+        intent.putStringArrayListExtra(EXTRA_URLS, urls);
+        intent.putStringArrayListExtra(EXTRA_NAMES, names);
+        startCompat(context, intent);
+        started = true;
+    }
+
+    /**
+     * Stops warming; returns what it did, or null if nothing was running.
+     * Sent as ACTION_STOP rather than stopService(): a service stopped
+     * before its onStartCommand ran never calls startForeground(), and the
+     * system kills the app for that.
+     */
+    static EpisodePrewarmer.Stats stop(Context context) {
+        EpisodePrewarmer prewarmer = active;
+        active = null;
+        if (prewarmer != null) {
+            prewarmer.cancel();
+        }
+        if (started) {
+            try {
+                startCompat(context, new Intent(context, PrewarmService.class).setAction(ACTION_STOP));
+            } catch (RuntimeException e) {
+                // Background start restrictions: it was started a while ago,
+                // so it is in the foreground by now
+                context.stopService(new Intent(context, PrewarmService.class));
+            }
+        }
+        return prewarmer != null ? prewarmer.stats() : null;
+    }
+
+    private static void startCompat(Context context, Intent intent) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            context.startForegroundService(intent);
+        } else {
+            context.startService(intent);
+        }
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        startForegroundCompat();
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            EpisodePrewarmer prewarmer = active;
+            active = null;
+            if (prewarmer != null) {
+                prewarmer.cancel();
+            }
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        if (intent == null) {
+            stopSelf(startId);
+            return START_NOT_STICKY;
+        }
+        ArrayList<String> urls = intent.getStringArrayListExtra(EXTRA_URLS);
+        if (urls == null || urls.isEmpty()) {
+            stopSelf(startId);
+            return START_NOT_STICKY;
+        }
+        EpisodePrewarmer previous = active;
+        if (previous != null) {
+            previous.cancel();
+        }
+        EpisodePrewarmer prewarmer = new EpisodePrewarmer(
+                intent.getStringExtra(EXTRA_PLAYING_URL), urls, intent.getStringArrayListExtra(EXTRA_NAMES));
+        active = prewarmer;
+        worker.execute(() -> {
+            prewarmer.run();
+            // Done early: drop the notification, keep the stats for playerResult
+            if (active == prewarmer) {
+                stopSelf(startId);
+            }
+        });
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        started = false;
+        EpisodePrewarmer prewarmer = active;
+        if (prewarmer != null) {
+            prewarmer.cancel();
+        }
+        worker.shutdownNow();
+        super.onDestroy();
+    }
+
+    @Override
+    public IBinder onBind(Intent intent) {
+        return null;
+    }
+
+    /** Pre-O builds need the deprecated channel-less Builder and setPriority. */
+    @SuppressWarnings("deprecation")
+    private void startForegroundCompat() {
+        String title = getString(R.string.prewarm_notification);
+        Notification.Builder builder;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager manager = getSystemService(NotificationManager.class);
+            NotificationChannel channel = new NotificationChannel(
+                    CHANNEL_ID, title, NotificationManager.IMPORTANCE_MIN);
+            channel.setShowBadge(false);
+            manager.createNotificationChannel(channel);
+            builder = new Notification.Builder(this, CHANNEL_ID);
+        } else {
+            builder = new Notification.Builder(this).setPriority(Notification.PRIORITY_MIN);
+        }
+        Notification notification = builder
+                .setSmallIcon(getApplicationInfo().icon)
+                .setContentTitle(title)
+                .setOngoing(true)
+                .build();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+        } else {
+            startForeground(NOTIFICATION_ID, notification);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.torserve.pwa;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The read-ahead StreamProxy of the current playback and its stats ticker.
+ *
+ * Owned by the process, not by a TVPlayer instance: the player keeps
+ * reading from the proxy while MainActivity rebuilds a WebView whose
+ * renderer was reclaimed, and the new TVPlayer's playerResult stops it.
+ */
+final class ReadAhead {
+    interface Listener {
+        void onStats(StreamProxy.Stats stats);
+    }
+
+    private static final long STATS_INTERVAL_MS = 1000;
+
+    private static StreamProxy proxy;
+    private static ScheduledExecutorService statsTicker;
+    private static volatile Listener listener;
+
+    private ReadAhead() {
+    }
+
+    static void setListener(Listener l) {
+        listener = l;
+    }
+
+    static void clearListener(Listener l) {
+        if (listener == l) {
+            listener = null;
+        }
+    }
+
+    /** A fresh loopback proxy, replacing any previous one. */
+    static synchronized StreamProxy start(int bufferMb) throws IOException {
+        stop();
+        StreamProxy started = new StreamProxy(bufferMb);
+        proxy = started;
+        statsTicker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "read-ahead-stats");
+            thread.setDaemon(true);
+            return thread;
+        });
+        statsTicker.scheduleAtFixedRate(() -> {
+            Listener l = listener;
+            if (l != null) {
+                l.onStats(started.stats());
+            }
+        }, STATS_INTERVAL_MS, STATS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return started;
+    }
+
+    /** Stops the proxy; returns its last stats, or null if none was running. */
+    static synchronized StreamProxy.Stats stop() {
+        if (statsTicker != null) {
+            statsTicker.shutdownNow();
+            statsTicker = null;
+        }
+        if (proxy == null) {
+            return null;
+        }
+        StreamProxy.Stats stats = proxy.stats();
+        proxy.stop();
+        proxy = null;
+        return stats;
+    }
+
+    /** See StreamProxy.trimMemory. */
+    static synchronized void trimMemory(float fraction) {
+        if (proxy != null) {
+            proxy.trimMemory(fraction);
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package com.torserve.pwa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Fixed-size ring buffer that a background thread keeps filled ahead of the
+ * player's current read position in one upstream /stream URL.
+ *
+ * The ring holds the contiguous file range [windowStart, windowEnd). The
+ * producer never runs more than (capacity - backBuffer) bytes ahead of the
+ * consumer, so the last backBuffer bytes behind the player stay available
+ * for short backward seeks. A seek outside the window bumps the generation;
+ * the producer drops its upstream connection and reopens at the new offset.
+ * Upstream errors are retried from windowEnd while the player keeps draining
+ * what is already buffered: that is where the rebuffers go away.
+ */
+class ReadAheadBuffer {
+    private static final int CHUNK_BYTES = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    private static final long RETRY_BASE_MS = 250;
+    private static final long RETRY_MAX_MS = 4000;
+    // Per serving thread: the slice handed to the socket outside the lock
+    // (initialValue, not withInitial: that one is API 26)
+    private static final ThreadLocal<ByteBuffer> COPY_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(CHUNK_BYTES * 2);
+        }
+    };
+
+    private final String upstreamUrl;
+    // Replaced by shrink() under memory pressure, so only touched under lock
+    private ByteBuffer ring;
+    private int capacity;
+    private int backBuffer;
+    private final Object lock = new Object();
+
+    private long windowStart;
+    private long windowEnd;
+    private long readPos;
+    private long generation;
+    private long length = -1;
+    private String contentType;
+    private boolean eof;
+    private boolean closed;
+    private IOException fatal;
+
+    long upstreamBytes;
+    long servedBytes;
+    long bufferSeeks;
+    long upstreamSeeks;
+    long reconnects;
+
+    private final Thread producer;
+
+    ReadAheadBuffer(String upstreamUrl, int capacity, long startOffset) {
+        this.upstreamUrl = upstreamUrl;
+        this.capacity = capacity;
+        this.backBuffer = capacity / 8;
+        this.ring = ByteBuffer.allocateDirect(capacity);
+        this.windowStart = this.windowEnd = this.readPos = startOffset;
+        this.producer = new Thread(this::produce, "read-ahead");
+        this.producer.setDaemon(true);
+        this.producer.start();
+    }
+
+    /**
+     * True if offset is buffered or will be reached by the producer shortly,
+     * i.e. serving it does not need a new upstream request.
+     */
+    boolean covers(long offset) {
+        synchronized (lock) {
+            return offset >= windowStart && offset <= windowEnd + CHUNK_BYTES * 16L;
+        }
+    }
+
+    /**
+     * Reposition the window. Keeps the buffer when the offset is covered.
+     */
+    void seek(long offset) {
+        synchronized (lock) {
+            if (offset >= windowStart && offset <= windowEnd + CHUNK_BYTES * 16L) {
+                bufferSeeks++;
+                readPos = offset;
+            } else {
+                upstreamSeeks++;
+                generation++;
+                windowStart = windowEnd = readPos = offset;
+                eof = false;
+                fatal = null;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the upstream response headers arrive.
+     *
+     * @return total resource length, or -1 if upstream did not report one
+     */
+    long awaitLength(long timeoutMs) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (lock) {
+            while (length < 0 && !eof && fatal == null && !closed) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new IOException("Upstream did not respond");
+                }
+                waitUninterruptibly(wait);
+            }
+            if (fatal != null && length < 0) {
+                throw fatal;
+            }
+            return length;
+        }
+    }
+
+    String contentType() {
+        synchronized (lock) {
+            return contentType;
+        }
+    }
+
+    /**
+     * Copy up to maxBytes starting at offset into out, waiting for the
+     * producer as needed.
+     *
+     * @return bytes written, or -1 when offset can no longer be served from
+     *         this window (another reader seeked away, EOF, or shutdown)
+     */
+    int transferTo(long offset, WritableByteChannel out, long maxBytes) throws IOException {
+        ByteBuffer copy = COPY_BUFFER.get();
+        synchronized (lock) {
+            while (!closed && offset >= windowEnd && !eof && offset >= windowStart) {
+                if (fatal != null) {
+                    throw fatal;
+                }
+                waitUninterruptibly(1000);
+            }
+            if (closed || offset < windowStart || offset >= windowEnd) {
+                return -1;
+            }
+            int index = (int) (offset % capacity);
+            int available = (int) Math.min(windowEnd - offset, capacity - index);
+            int count = (int) Math.min(Math.min(available, maxBytes), copy.capacity());
+            // Copied while locked: readPos is shared by every connection, so
+            // a seek from another one (probe, parallel range) lets the
+            // producer overwrite this slice as soon as the lock is released.
+            ByteBuffer slice = ring.duplicate();
+            slice.limit(index + count);
+            slice.position(index);
+            copy.clear();
+            copy.put(slice);
+            copy.flip();
+        }
+
+        // The socket write itself stays outside the lock
+        int written = 0;
+        while (copy.hasRemaining()) {
+            written += out.write(copy);
+        }
+        synchronized (lock) {
+            if (offset + written > readPos) {
+                readPos = offset + written;
+            }
+            servedBytes += written;
+            lock.notifyAll();
+        }
+        return written;
+    }
+
+    /** Bytes buffered ahead of the player. */
+    long bufferedAhead() {
+        synchronized (lock) {
+            return Math.max(0, windowEnd - readPos);
+        }
+    }
+
+    int capacity() {
+        synchronized (lock) {
+            return capacity;
+        }
+    }
+
+    /**
+     * Move the window into a smaller ring (memory pressure). Keeps the
+     * bytes around the player's position; what no longer fits ahead of it
+     * is dropped and read again from upstream.
+     *
+     * @return false if the ring is already that small
+     */
+    boolean shrink(int newCapacity) {
+        synchronized (lock) {
+            if (closed || newCapacity >= capacity) {
+                return false;
+            }
+            long from = Math.min(windowEnd, Math.max(windowStart, readPos - newCapacity / 8));
+            long to = Math.min(windowEnd, from + newCapacity);
+            ByteBuffer fresh = ByteBuffer.allocateDirect(newCapacity);
+            for (long pos = from; pos < to; ) {
+                int src = (int) (pos % capacity);
+                int dst = (int) (pos % newCapacity);
+                int count = (int) Math.min(to - pos, Math.min(capacity - src, newCapacity - dst));
+                ByteBuffer slice = ring.duplicate();
+                slice.limit(src + count);
+                slice.position(src);
+                ByteBuffer target = fresh.duplicate();
+                target.position(dst);
+                target.put(slice);
+                pos += count;
+            }
+            ring = fresh;
+            capacity = newCapacity;
+            backBuffer = newCapacity / 8;
+            windowStart = from;
+            if (to < windowEnd) {
+                // Producer reopens upstream from the new end
+                windowEnd = to;
+                generation++;
+                eof = false;
+            }
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    long length() {
+        synchronized (lock) {
+            return length;
+        }
+    }
+
+    void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        producer.interrupt();
+    }
+
+    private void produce() {
+        long attempt = 0;
+        ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+        while (true) {
+            long gen;
+            long from;
+            synchronized (lock) {
+                while (!closed && eof) {
+                    waitUninterruptibly(1000);
+                }
+                if (closed) {
+                    return;
+                }
+                gen = generation;
+                from = windowEnd;
+            }
+
+            HttpURLConnection conn = null;
+            try {
+                conn = (HttpURLConnection) new URL(upstreamUrl).openConnection();
+                conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                conn.setReadTimeout(READ_TIMEOUT_MS);
+                conn.setRequestProperty("Range", "bytes=" + from + "-");
+                int status = conn.getResponseCode();
+                if (status == 416) {
+                    markEof(gen);
+                    continue;
+                }
+                if (status != 206 && !(status == 200 && from == 0)) {
+                    throw new IOException("Upstream HTTP " + status);
+                }
+                onHeaders(conn, from);
+                attempt = 0;
+
+                try (InputStream in = conn.getInputStream();
+                     ReadableByteChannel channel = Channels.newChannel(in)) {
+                    while (true) {
+                        chunk.clear();
+                        int read = channel.read(chunk);
+                        if (read == -1) {
+                            markEof(gen);
+                            break;
+                        }
+                        chunk.flip();
+                        if (!append(gen, chunk)) {
+                            break; // seeked or closed
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                synchronized (lock) {
+                    if (closed) {
+                        return;
+                    }
+                    reconnects++;
+                    if (++attempt > 8) {
+                        fatal = e;
+                        lock.notifyAll();
+                    }
+                }
+                sleepBackoff(attempt);
+            } finally {
+                if (conn != null) {
+                    conn.disconnect();
+                }
+            }
+        }
+    }
+
+    private void onHeaders(HttpURLConnection conn, long from) {
+        long total = -1;
+        String range = conn.getHeaderField("Content-Range");
+        if (range != null && range.lastIndexOf('/') >= 0) {
+            try {
+                total = Long.parseLong(range.substring(range.lastIndexOf('/') + 1).trim());
+            } catch (NumberFormatException ignored) {
+                // "*": unknown total
+            }
+        }
+        if (total < 0 && conn.getContentLengthLong() >= 0) {
+            total = from + conn.getContentLengthLong();
+        }
+        synchronized (lock) {
+            if (total >= 0) {
+                length = total;
+            }
+            if (contentType == null) {
+                contentType = conn.getContentType();
+            }
+            fatal = null;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * @return false when the generation changed or the buffer closed
+     */
+    private boolean append(long gen, ByteBuffer chunk) {
+        synchronized (lock) {
+            while (chunk.hasRemaining()) {
+                while (!closed && gen == generation && windowEnd - readPos >= capacity - backBuffer) {
+                    waitUninterruptibly(1000);
+                }
+                if (closed || gen != generation) {
+                    return false;
+                }
+                int index = (int) (windowEnd % capacity);
+                int room = (int) Math.min(capacity - backBuffer - (windowEnd - readPos), capacity - index);
+                int count = Math.min(room, chunk.remaining());
+                ByteBuffer src = chunk.duplicate();
+                src.limit(src.position() + count);
+                ByteBuffer dst = ring.duplicate();
+                dst.position(index);
+                dst.put(src);
+                chunk.position(chunk.position() + count);
+
+                windowEnd += count;
+                upstreamBytes += count;
+                if (windowEnd - windowStart > capacity) {
+                    windowStart = windowEnd - capacity;
+                }
+                lock.notifyAll();
+            }
+            return true;
+        }
+    }
+
+    private void markEof(long gen) {
+        synchronized (lock) {
+            if (gen == generation) {
+                eof = true;
+                if (length < 0) {
+                    length = windowEnd;
+                }
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void waitUninterruptibly(long ms) {
+        try {
+            lock.wait(ms);
+        } catch (InterruptedException ignored) {
+            // close() interrupts; callers re-check `closed`.
+        }
+    }
+
+    private static void sleepBackoff(long attempt) {
+        long delay = Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(attempt, 5));
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException ignored) {
+            // Woken by close()/seek; loop re-checks state.
+        }
+    }
+}
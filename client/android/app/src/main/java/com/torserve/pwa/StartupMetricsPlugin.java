@@ -0,0 +1,48 @@
+package com.torserve.pwa;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import org.json.JSONException;
+
+/**
+ * JS side of StartupTrace: the "home rendered" mark and the launch history.
+ */
+@CapacitorPlugin(name = "StartupMetrics")
+public class StartupMetricsPlugin extends Plugin {
+
+    /**
+     * Called by HomePanel once the first rows are on screen
+     */
+    @PluginMethod
+    public void markHomeRendered(PluginCall call) {
+        boolean first = StartupTrace.mark(StartupTrace.HOME_RENDERED);
+        if (first) {
+            StartupTrace.record(getContext());
+            // Lets the system report time-to-full-display as well.
+            getBridge().executeOnMainThread(() -> getActivity().reportFullyDrawn());
+        }
+        JSObject ret = new JSObject();
+        ret.put("recorded", first);
+        call.resolve(ret);
+    }
+
+    /**
+     * Current launch timeline, the last launches (newest first) and the
+     * WebView cache invalidation report of the last update
+     */
+    @PluginMethod
+    public void getTimeline(PluginCall call) {
+        try {
+            JSObject ret = new JSObject();
+            ret.put("current", StartupTrace.timeline());
+            ret.put("history", StartupTrace.history(getContext()));
+            ret.put("cacheInvalidation", WebCacheInvalidator.lastReport(getContext()));
+            call.resolve(ret);
+        } catch (JSONException e) {
+            call.reject("Cannot read startup timeline: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Cold-start timeline: launcher tap -> usable home screen.
+ *
+ * All marks are SystemClock.elapsedRealtime() values, so they are monotonic
+ * and comparable with Process.getStartElapsedRealtime(). Each phase is also
+ * wrapped in an android.os.Trace section so it shows up in systrace/Perfetto.
+ *
+ * The finished timeline of each launch is kept in a rolling history of the
+ * last HISTORY_SIZE launches to catch regressions between releases.
+ */
+public final class StartupTrace {
+    public static final String PROCESS_START = "processStart";
+    public static final String ON_CREATE = "onCreate";
+    public static final String BRIDGE_READY = "bridgeReady";
+    public static final String HOME_SNAPSHOT_READ = "homeSnapshotRead";
+    public static final String WEBVIEW_FIRST_LOAD = "webViewFirstLoad";
+    public static final String HOME_RENDERED = "homeRendered";
+
+    private static final String PREFS_NAME = "startup_trace";
+    private static final String PREFS_HISTORY = "history";
+    private static final int HISTORY_SIZE = 20;
+    private static final String ASYNC_SECTION = "startup:launchToHome";
+    private static final int ASYNC_COOKIE = 1;
+
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+    private static boolean coldStart = true;
+    private static boolean recorded;
+    private static String launchKind;
+    private static long versionCode;
+
+    private StartupTrace() {
+    }
+
+    /**
+     * First call in MainActivity.onCreate. A second activity in the same
+     * process (e.g. recreated after trim) is recorded as a warm start.
+     */
+    public static synchronized void begin(long appVersionCode) {
+        launchKind = coldStart ? "cold" : "warm";
+        coldStart = false;
+        recorded = false;
+        versionCode = appVersionCode;
+        marks.clear();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.beginAsyncSection(ASYNC_SECTION, ASYNC_COOKIE);
+        }
+        if (launchKind.equals("cold") && Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            marks.put(PROCESS_START, Process.getStartElapsedRealtime());
+        }
+        marks.put(ON_CREATE, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Record a mark once per launch; later repeats (page reloads, second
+     * home render) are ignored.
+     */
+    public static synchronized boolean mark(String name) {
+        if (marks.containsKey(name)) {
+            return false;
+        }
+        marks.put(name, SystemClock.elapsedRealtime());
+        if (HOME_RENDERED.equals(name) && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(ASYNC_SECTION, ASYNC_COOKIE);
+        }
+        return true;
+    }
+
+    public static void beginSection(String name) {
+        Trace.beginSection("startup:" + name);
+    }
+
+    public static void endSection() {
+        Trace.endSection();
+    }
+
+    /**
+     * Persist the current launch into the rolling history. Called once the
+     * home screen reports it rendered.
+     */
+    public static synchronized void record(Context context) {
+        if (recorded || !marks.containsKey(HOME_RENDERED)) {
+            return;
+        }
+        recorded = true;
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        try {
+            JSONArray previous = new JSONArray(prefs.getString(PREFS_HISTORY, "[]"));
+            JSONArray history = new JSONArray();
+            history.put(timeline());
+            for (int i = 0; i < previous.length() && history.length() < HISTORY_SIZE; i++) {
+                history.put(previous.getJSONObject(i));
+            }
+            prefs.edit().putString(PREFS_HISTORY, history.toString()).apply();
+        } catch (JSONException e) {
+            prefs.edit().remove(PREFS_HISTORY).apply();
+        }
+    }
+
+    /**
+     * @return {kind, versionCode, at, marks: {name: ms}, phases: {name: ms}} where
+     *         marks are relative to the earliest mark and phases are deltas
+     *         between consecutive marks
+     */
+    public static synchronized JSONObject timeline() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("kind", launchKind);
+        json.put("versionCode", versionCode);
+        json.put("at", System.currentTimeMillis());
+
+        JSONObject relative = new JSONObject();
+        JSONObject phases = new JSONObject();
+        long origin = -1;
+        long previous = -1;
+        for (Map.Entry<String, Long> mark : marks.entrySet()) {
+            long value = mark.getValue();
+            if (origin < 0) {
+                origin = value;
+            }
+            relative.put(mark.getKey(), value - origin);
+            if (previous >= 0) {
+                phases.put(mark.getKey(), value - previous);
+            }
+            previous = value;
+        }
+        json.put("marks", relative);
+        json.put("phases", phases);
+        json.put("totalMs", origin >= 0 ? previous - origin : 0);
+        return json;
+    }
+
+    public static JSONArray history(Context context) throws JSONException {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return new JSONArray(prefs.getString(PREFS_HISTORY, "[]"));
+    }
+}
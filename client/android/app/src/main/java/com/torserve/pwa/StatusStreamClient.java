@@ -0,0 +1,447 @@
+package com.torserve.pwa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * One persistent /api/status/stream (SSE) connection, parsed off the UI
+ * thread (replaces the 5 s /api/status poll of statusPolling.js on native).
+ *
+ * Keeps the last status and hands the listener only what changed since
+ * the previous push, at most once per minIntervalMs:
+ *
+ *   { upserts: [{infoHash, <changed fields>}], removed: [infoHash],
+ *     order: [infoHash] (only when membership/order changed),
+ *     serverStatus, connected (only when changed) }
+ *
+ * A new torrent's upsert carries all its fields; a field the server no
+ * longer sends comes as null. Reconnects with backoff;
+ * the server sends a full status on connect, which diffs against the kept
+ * state, so a reconnect costs the WebView nothing if nothing changed.
+ */
+class StatusStreamClient {
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    // Server heartbeat is every 30 s
+    private static final int READ_TIMEOUT_MS = 75000;
+    private static final long MIN_RETRY_MS = 1000;
+    private static final long MAX_RETRY_MS = 30000;
+
+    interface Listener {
+        void onDiff(JSONObject diff);
+    }
+
+    static class Stats {
+        long events;
+        long pushes;
+        long reconnects;
+        long bytes;
+        boolean connected;
+    }
+
+    private final String streamUrl;
+    private final Listener listener;
+    private final long minIntervalMs;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "status-stream-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Last known state, guarded by this
+    private final Map<String, JSONObject> torrents = new LinkedHashMap<>();
+    private String serverStatus;
+    private boolean connected;
+    // Pending diff, guarded by this
+    private final Map<String, JSONObject> pendingUpserts = new LinkedHashMap<>();
+    private final Set<String> pendingRemoved = new LinkedHashSet<>();
+    private boolean pendingOrder;
+    private boolean pendingServerStatus;
+    private boolean pendingConnected;
+    private boolean flushScheduled;
+    private long lastFlushAt;
+    private final Stats stats = new Stats();
+
+    private Thread reader;
+    private volatile HttpURLConnection connection;
+    private volatile boolean running;
+
+    StatusStreamClient(String streamUrl, Listener listener, long minIntervalMs) {
+        this.streamUrl = streamUrl;
+        this.listener = listener;
+        this.minIntervalMs = Math.max(0, minIntervalMs);
+    }
+
+    String url() {
+        return streamUrl;
+    }
+
+    synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new Thread(() -> readLoop(Thread.currentThread()), "status-stream");
+        thread.setDaemon(true);
+        reader = thread;
+        thread.start();
+        scheduleFlush(); // whatever changed while paused
+    }
+
+    /**
+     * Drops the connection and holds pushes; state is kept for the next
+     * start(), which pushes connected: false until the stream is back.
+     */
+    synchronized void stop() {
+        running = false;
+        setConnected(false);
+        HttpURLConnection conn = connection;
+        if (conn != null) {
+            conn.disconnect();
+        }
+        if (reader != null) {
+            reader.interrupt();
+            reader = null;
+        }
+    }
+
+    void shutdown() {
+        stop();
+        flusher.shutdownNow();
+    }
+
+    synchronized boolean isRunning() {
+        return running;
+    }
+
+    /** False once stop() was called, or start() replaced this reader. */
+    private synchronized boolean active(Thread self) {
+        return running && reader == self;
+    }
+
+    /** Full last state: {serverStatus, connected, torrents: [...]}. */
+    synchronized JSONObject snapshot() throws JSONException {
+        JSONObject result = new JSONObject();
+        result.put("serverStatus", serverStatus != null ? serverStatus : JSONObject.NULL);
+        result.put("connected", connected);
+        JSONArray list = new JSONArray();
+        for (JSONObject torrent : torrents.values()) {
+            list.put(torrent);
+        }
+        result.put("torrents", list);
+        return result;
+    }
+
+    synchronized Stats stats() {
+        Stats copy = new Stats();
+        copy.events = stats.events;
+        copy.pushes = stats.pushes;
+        copy.reconnects = stats.reconnects;
+        copy.bytes = stats.bytes;
+        copy.connected = connected;
+        return copy;
+    }
+
+    private void readLoop(Thread self) {
+        long retryMs = MIN_RETRY_MS;
+        while (active(self)) {
+            boolean gotEvent = false;
+            HttpURLConnection conn = null;
+            try {
+                conn = (HttpURLConnection) new URL(streamUrl).openConnection();
+                connection = conn;
+                conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+                conn.setReadTimeout(READ_TIMEOUT_MS);
+                conn.setRequestProperty("Accept", "text/event-stream");
+                conn.setRequestProperty("Accept-Encoding", "identity");
+                if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("HTTP " + conn.getResponseCode());
+                }
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8));
+                String event = null;
+                StringBuilder data = new StringBuilder();
+                String line;
+                while (active(self) && (line = in.readLine()) != null) {
+                    synchronized (this) {
+                        stats.bytes += line.length() + 1;
+                    }
+                    if (line.isEmpty()) {
+                        if (data.length() > 0 && (event == null || "status".equals(event))) {
+                            if (onStatus(data.toString())) {
+                                gotEvent = true;
+                                retryMs = MIN_RETRY_MS;
+                            }
+                        }
+                        event = null;
+                        data.setLength(0);
+                    } else if (line.startsWith(":")) {
+                        // heartbeat
+                    } else if (line.startsWith("event:")) {
+                        event = line.substring(6).trim();
+                    } else if (line.startsWith("data:")) {
+                        if (data.length() > 0) {
+                            data.append('\n');
+                        }
+                        data.append(line.startsWith("data: ") ? line.substring(6) : line.substring(5));
+                    }
+                }
+            } catch (IOException e) {
+                // fall through to reconnect
+            } finally {
+                if (connection == conn) {
+                    connection = null;
+                }
+                if (conn != null) {
+                    conn.disconnect();
+                }
+            }
+            synchronized (this) {
+                if (!active(self)) {
+                    break;
+                }
+                setConnected(false);
+                stats.reconnects++;
+            }
+            if (!sleep(retryMs) || !active(self)) {
+                break;
+            }
+            if (!gotEvent) {
+                retryMs = Math.min(MAX_RETRY_MS, retryMs * 2);
+            }
+        }
+    }
+
+    private boolean onStatus(String json) {
+        JSONObject payload;
+        try {
+            payload = new JSONObject(json);
+        } catch (JSONException e) {
+            return false;
+        }
+        synchronized (this) {
+            stats.events++;
+            apply(payload);
+        }
+        setConnected(true);
+        return true;
+    }
+
+    /** Merges a full status payload into the kept state and the pending diff. */
+    synchronized void apply(JSONObject payload) {
+        String status = payload.optString("serverStatus", null);
+        if (status != null && !status.equals(serverStatus)) {
+            serverStatus = status;
+            pendingServerStatus = true;
+        }
+
+        JSONArray list = payload.optJSONArray("torrents");
+        List<String> order = new ArrayList<>();
+        Map<String, JSONObject> next = new LinkedHashMap<>();
+        for (int i = 0; list != null && i < list.length(); i++) {
+            JSONObject torrent = list.optJSONObject(i);
+            String hash = torrent != null ? torrent.optString("infoHash", null) : null;
+            if (hash == null || next.containsKey(hash)) {
+                continue;
+            }
+            order.add(hash);
+            next.put(hash, torrent);
+
+            JSONObject previous = torrents.get(hash);
+            JSONObject changed = changedFields(previous, torrent);
+            if (changed != null) {
+                JSONObject pending = pendingUpserts.get(hash);
+                if (pending == null) {
+                    pendingUpserts.put(hash, changed);
+                } else {
+                    mergeInto(pending, changed);
+                }
+                pendingRemoved.remove(hash);
+            }
+        }
+        for (String hash : torrents.keySet()) {
+            if (!next.containsKey(hash)) {
+                pendingRemoved.add(hash);
+                pendingUpserts.remove(hash);
+            }
+        }
+        if (!order.equals(new ArrayList<>(torrents.keySet()))) {
+            pendingOrder = true;
+        }
+        torrents.clear();
+        torrents.putAll(next);
+        scheduleFlush();
+    }
+
+    private synchronized void setConnected(boolean value) {
+        if (connected != value) {
+            connected = value;
+            pendingConnected = true;
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (!running || flushScheduled || !hasPending()) {
+            return;
+        }
+        long delay = Math.max(0, lastFlushAt + minIntervalMs - System.currentTimeMillis());
+        flushScheduled = true;
+        try {
+            flusher.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            flushScheduled = false; // shut down
+        }
+    }
+
+    private boolean hasPending() {
+        return !pendingUpserts.isEmpty() || !pendingRemoved.isEmpty()
+                || pendingOrder || pendingServerStatus || pendingConnected;
+    }
+
+    private void flush() {
+        JSONObject diff;
+        synchronized (this) {
+            flushScheduled = false;
+            if (!running || !hasPending()) {
+                return; // paused: start() pushes what accumulated
+            }
+            lastFlushAt = System.currentTimeMillis();
+            try {
+                diff = takeDiff();
+            } catch (JSONException e) {
+                return;
+            }
+            stats.pushes++;
+        }
+        listener.onDiff(diff);
+    }
+
+    /** Builds the pending diff and clears it. */
+    synchronized JSONObject takeDiff() throws JSONException {
+        JSONObject diff = new JSONObject();
+        JSONArray upserts = new JSONArray();
+        for (Map.Entry<String, JSONObject> entry : pendingUpserts.entrySet()) {
+            JSONObject upsert = entry.getValue();
+            upsert.put("infoHash", entry.getKey());
+            upserts.put(upsert);
+        }
+        diff.put("upserts", upserts);
+        JSONArray removed = new JSONArray();
+        for (String hash : pendingRemoved) {
+            removed.put(hash);
+        }
+        diff.put("removed", removed);
+        if (pendingOrder) {
+            JSONArray order = new JSONArray();
+            for (String hash : torrents.keySet()) {
+                order.put(hash);
+            }
+            diff.put("order", order);
+        }
+        if (pendingServerStatus) {
+            diff.put("serverStatus", serverStatus);
+        }
+        if (pendingConnected) {
+            diff.put("connected", connected);
+        }
+        pendingUpserts.clear();
+        pendingRemoved.clear();
+        pendingOrder = false;
+        pendingServerStatus = false;
+        pendingConnected = false;
+        return diff;
+    }
+
+    /**
+     * Fields of next that differ from previous (all of them if new), fields
+     * previous had and next lacks as JSON null; null if nothing changed.
+     */
+    static JSONObject changedFields(JSONObject previous, JSONObject next) {
+        JSONObject changed = null;
+        Iterator<String> keys = next.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object value = next.opt(key);
+            if (previous != null && sameValue(previous.opt(key), value)) {
+                continue;
+            }
+            if (changed == null) {
+                changed = new JSONObject();
+            }
+            try {
+                changed.put(key, value);
+            } catch (JSONException ignored) {
+                // keys come from a parsed object
+            }
+        }
+        if (previous == null) {
+            return changed;
+        }
+        // Dropped fields: a merge on the JS side would keep the old value
+        Iterator<String> previousKeys = previous.keys();
+        while (previousKeys.hasNext()) {
+            String key = previousKeys.next();
+            if (next.has(key) || previous.isNull(key)) {
+                continue;
+            }
+            if (changed == null) {
+                changed = new JSONObject();
+            }
+            try {
+                changed.put(key, JSONObject.NULL);
+            } catch (JSONException ignored) {
+                // keys come from a parsed object
+            }
+        }
+        return changed;
+    }
+
+    private static boolean sameValue(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return ((Number) a).doubleValue() == ((Number) b).doubleValue();
+        }
+        // files arrays etc.: same server serializer, so same text if unchanged
+        return a.equals(b) || a.toString().equals(b.toString());
+    }
+
+    private static void mergeInto(JSONObject target, JSONObject source) {
+        Iterator<String> keys = source.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            try {
+                target.put(key, source.opt(key));
+            } catch (JSONException ignored) {
+                // keys come from a parsed object
+            }
+        }
+    }
+
+    private static boolean sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        }
+    }
+}
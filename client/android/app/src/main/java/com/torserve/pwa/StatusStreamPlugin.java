@@ -0,0 +1,129 @@
+package com.torserve.pwa;
+
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * JS side of StatusStreamClient: torrent status as "statusDiff" events
+ * instead of full /api/status payloads parsed on the WebView main thread.
+ * The connection is dropped while the activity is paused (external player,
+ * home screen) and resumed with it.
+ */
+@CapacitorPlugin(name = "StatusStream")
+public class StatusStreamPlugin extends Plugin {
+    private static final int DEFAULT_MAX_RATE_MS = 1000;
+    private static final int MIN_MAX_RATE_MS = 100;
+
+    private StatusStreamClient client;
+    private boolean paused;
+
+    /**
+     * Start (or retarget) the stream for serverUrl; resolves with the last
+     * known full state so the UI can render before the first diff
+     */
+    @PluginMethod
+    public void start(PluginCall call) {
+        String serverUrl = call.getString("serverUrl");
+        if (serverUrl == null || serverUrl.isEmpty()) {
+            call.reject("serverUrl is required");
+            return;
+        }
+        int maxRateMs = Math.max(MIN_MAX_RATE_MS, call.getInt("maxRateMs", DEFAULT_MAX_RATE_MS));
+        String streamUrl = serverUrl.replaceAll("/+$", "") + "/api/status/stream";
+
+        StatusStreamClient current;
+        synchronized (this) {
+            if (client != null && !client.url().equals(streamUrl)) {
+                client.shutdown();
+                client = null;
+            }
+            if (client == null) {
+                client = new StatusStreamClient(streamUrl,
+                        diff -> notifyListeners("statusDiff", toJSObject(diff)), maxRateMs);
+            }
+            current = client;
+            if (!paused) {
+                current.start();
+            }
+        }
+        try {
+            call.resolve(toJSObject(current.snapshot()));
+        } catch (JSONException e) {
+            call.reject("Cannot read status: " + e.getMessage());
+        }
+    }
+
+    @PluginMethod
+    public void stop(PluginCall call) {
+        synchronized (this) {
+            if (client != null) {
+                client.shutdown();
+                client = null;
+            }
+        }
+        call.resolve();
+    }
+
+    /** Last full state, e.g. after a WebView reload */
+    @PluginMethod
+    public void getState(PluginCall call) {
+        StatusStreamClient current;
+        synchronized (this) {
+            current = client;
+        }
+        if (current == null) {
+            call.reject("Status stream not started");
+            return;
+        }
+        try {
+            JSObject ret = toJSObject(current.snapshot());
+            StatusStreamClient.Stats stats = current.stats();
+            JSObject statsJson = new JSObject();
+            statsJson.put("events", stats.events);
+            statsJson.put("pushes", stats.pushes);
+            statsJson.put("reconnects", stats.reconnects);
+            statsJson.put("bytes", stats.bytes);
+            ret.put("stats", statsJson);
+            call.resolve(ret);
+        } catch (JSONException e) {
+            call.reject("Cannot read status: " + e.getMessage());
+        }
+    }
+
+    @Override
+    protected synchronized void handleOnPause() {
+        paused = true;
+        if (client != null) {
+            client.stop();
+        }
+    }
+
+    @Override
+    protected synchronized void handleOnResume() {
+        paused = false;
+        if (client != null) {
+            client.start();
+        }
+    }
+
+    @Override
+    protected synchronized void handleOnDestroy() {
+        if (client != null) {
+            client.shutdown();
+            client = null;
+        }
+    }
+
+    private static JSObject toJSObject(JSONObject json) {
+        try {
+            return new JSObject(json.toString());
+        } catch (JSONException e) {
+            return new JSObject();
+        }
+    }
+}
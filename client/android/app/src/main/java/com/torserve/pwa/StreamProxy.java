@@ -0,0 +1,369 @@
+package com.torserve.pwa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback HTTP proxy between the external player and the NAS /stream URL.
+ *
+ * TVPlayer.play()/playList() register each upstream URL here and hand the
+ * player http://127.0.0.1:<port>/s/<id> instead. Each registered stream gets
+ * a ReadAheadBuffer that keeps reading ahead of the player, so short
+ * bandwidth dips are absorbed by the buffer instead of stalling the player.
+ *
+ * Range requests inside the buffered window (and slightly ahead of it) are
+ * served from memory. Reads near the end of the file (MKV cues, MP4 moov)
+ * are passed through without disturbing the main window.
+ */
+public class StreamProxy {
+    public static final int DEFAULT_BUFFER_MB = 32;
+    private static final int MIN_BUFFER_BYTES = 4 * 1024 * 1024;
+    private static final long TAIL_PASSTHROUGH_BYTES = 16L * 1024 * 1024;
+    private static final int MAX_REQUEST_BYTES = 16 * 1024;
+    private static final long HEADER_TIMEOUT_MS = 20000;
+
+    private final ServerSocketChannel server;
+    private final ExecutorService workers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "stream-proxy");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile int bufferBytes;
+    private volatile boolean running = true;
+
+    private long lastStatsAt = System.currentTimeMillis();
+    private long lastUpstreamBytes;
+
+    public StreamProxy(int bufferMb) throws IOException {
+        this.bufferBytes = Math.max(4, bufferMb) * 1024 * 1024;
+        this.server = ServerSocketChannel.open();
+        this.server.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        workers.execute(this::acceptLoop);
+    }
+
+    /**
+     * @return loopback URL the player should open instead of upstreamUrl
+     */
+    public String register(String upstreamUrl) {
+        String id = Integer.toString(nextId.incrementAndGet());
+        streams.put(id, new Stream(upstreamUrl));
+        return "http://127.0.0.1:" + server.socket().getLocalPort() + "/s/" + id;
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // Already closed.
+        }
+        for (Stream stream : streams.values()) {
+            stream.close();
+        }
+        streams.clear();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Memory pressure (MemoryPressure.onTrimMemory): shrink the read-ahead
+     * rings to fraction of their configured size, never below 4 MB. Streams
+     * opened afterwards get the smaller ring too.
+     */
+    public synchronized void trimMemory(float fraction) {
+        int target = Math.max(MIN_BUFFER_BYTES, (int) (bufferBytes * fraction));
+        if (target >= bufferBytes) {
+            return;
+        }
+        bufferBytes = target;
+        for (Stream stream : streams.values()) {
+            ReadAheadBuffer buffer = stream.buffer;
+            if (buffer != null) {
+                buffer.shrink(target);
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Aggregate buffer fill and upstream throughput since the previous call.
+     */
+    public synchronized Stats stats() {
+        Stats stats = new Stats();
+        long upstream = 0;
+        for (Stream stream : streams.values()) {
+            ReadAheadBuffer buffer = stream.buffer;
+            if (buffer == null) {
+                continue;
+            }
+            stats.activeStreams++;
+            stats.bufferedBytes += buffer.bufferedAhead();
+            stats.capacityBytes += buffer.capacity();
+            stats.servedBytes += buffer.servedBytes;
+            stats.bufferSeeks += buffer.bufferSeeks;
+            stats.upstreamSeeks += buffer.upstreamSeeks;
+            stats.reconnects += buffer.reconnects;
+            upstream += buffer.upstreamBytes;
+        }
+        long now = System.currentTimeMillis();
+        long elapsed = Math.max(1, now - lastStatsAt);
+        stats.upstreamBytes = upstream;
+        stats.throughputBps = Math.max(0, upstream - lastUpstreamBytes) * 1000 / elapsed;
+        lastStatsAt = now;
+        lastUpstreamBytes = upstream;
+        return stats;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                SocketChannel client = server.accept();
+                workers.execute(() -> handle(client));
+            } catch (IOException e) {
+                if (!running) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (SocketChannel channel = client) {
+            Request request = readRequest(channel);
+            if (request == null) {
+                return;
+            }
+            Stream stream = request.path.startsWith("/s/") ? streams.get(request.path.substring(3)) : null;
+            if (stream == null) {
+                writeHead(channel, "404 Not Found", null, 0, null);
+                return;
+            }
+            stream.serve(channel, request);
+        } catch (IOException ignored) {
+            // Player closed the connection (seek, stop) - normal.
+        }
+    }
+
+    private static Request readRequest(SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_REQUEST_BYTES);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                return null;
+            }
+            String head = new String(buffer.array(), 0, buffer.position(), StandardCharsets.ISO_8859_1);
+            int end = head.indexOf("\r\n\r\n");
+            if (end < 0) {
+                continue;
+            }
+            String[] lines = head.substring(0, end).split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length < 2) {
+                return null;
+            }
+            Request request = new Request();
+            request.method = requestLine[0];
+            request.path = requestLine[1];
+            for (int i = 1; i < lines.length; i++) {
+                String line = lines[i];
+                if (line.toLowerCase(Locale.ROOT).startsWith("range:")) {
+                    parseRange(request, line.substring(6).trim());
+                }
+            }
+            return request;
+        }
+        return null;
+    }
+
+    private static void parseRange(Request request, String value) {
+        // Players only send single ranges: "bytes=start-" or "bytes=start-end"
+        if (!value.startsWith("bytes=") || value.contains(",")) {
+            return;
+        }
+        String spec = value.substring(6);
+        int dash = spec.indexOf('-');
+        try {
+            if (dash > 0) {
+                request.start = Long.parseLong(spec.substring(0, dash).trim());
+                String end = spec.substring(dash + 1).trim();
+                request.end = end.isEmpty() ? -1 : Long.parseLong(end);
+                request.ranged = true;
+            }
+        } catch (NumberFormatException ignored) {
+            // Treat as a plain GET.
+        }
+    }
+
+    private static void writeHead(SocketChannel channel, String status, String contentType,
+                                  long contentLength, String contentRange) throws IOException {
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status).append("\r\n");
+        head.append("Accept-Ranges: bytes\r\n");
+        if (contentType != null) {
+            head.append("Content-Type: ").append(contentType).append("\r\n");
+        }
+        if (contentLength >= 0) {
+            head.append("Content-Length: ").append(contentLength).append("\r\n");
+        }
+        if (contentRange != null) {
+            head.append("Content-Range: ").append(contentRange).append("\r\n");
+        }
+        head.append("Connection: close\r\n\r\n");
+        ByteBuffer bytes = ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private class Stream {
+        final String upstreamUrl;
+        volatile ReadAheadBuffer buffer;
+
+        Stream(String upstreamUrl) {
+            this.upstreamUrl = upstreamUrl;
+        }
+
+        void serve(SocketChannel channel, Request request) throws IOException {
+            long start = request.ranged ? request.start : 0;
+            ReadAheadBuffer buf = activate(start);
+
+            long length = buf.awaitLength(HEADER_TIMEOUT_MS);
+            if (length >= 0 && start >= length) {
+                writeHead(channel, "416 Range Not Satisfiable", null, 0, "bytes */" + length);
+                return;
+            }
+
+            boolean tailRead = length > 0 && start >= length - TAIL_PASSTHROUGH_BYTES
+                    && !buf.covers(start);
+            if (tailRead) {
+                passThrough(channel, request, start);
+                return;
+            }
+            buf.seek(start);
+
+            long end = request.end >= 0 ? request.end : (length > 0 ? length - 1 : -1);
+            if (length > 0 && end >= length) {
+                end = length - 1;
+            }
+            String type = buf.contentType() != null ? buf.contentType() : "video/*";
+            if (request.ranged) {
+                writeHead(channel, "206 Partial Content", type,
+                        end >= 0 ? end - start + 1 : -1,
+                        "bytes " + start + "-" + end + "/" + (length >= 0 ? length : "*"));
+            } else {
+                writeHead(channel, "200 OK", type, length, null);
+            }
+            if ("HEAD".equalsIgnoreCase(request.method)) {
+                return;
+            }
+
+            long position = start;
+            while (end < 0 || position <= end) {
+                long want = end < 0 ? Long.MAX_VALUE : end - position + 1;
+                int written = buf.transferTo(position, channel, want);
+                if (written < 0) {
+                    return;
+                }
+                position += written;
+            }
+        }
+
+        /**
+         * The player reads one file at a time; moving to another playlist
+         * entry releases the previous entry's buffer.
+         */
+        private ReadAheadBuffer activate(long start) {
+            synchronized (StreamProxy.this) {
+                if (buffer == null) {
+                    for (Stream other : streams.values()) {
+                        if (other != this) {
+                            other.close();
+                        }
+                    }
+                    buffer = new ReadAheadBuffer(upstreamUrl, bufferBytes, start);
+                }
+                return buffer;
+            }
+        }
+
+        /**
+         * Index/trailer reads go straight upstream so they don't evict the
+         * window the player is about to continue from.
+         */
+        private void passThrough(SocketChannel channel, Request request, long start) throws IOException {
+            HttpURLConnection conn = (HttpURLConnection) new URL(upstreamUrl).openConnection();
+            try {
+                String range = "bytes=" + start + "-" + (request.end >= 0 ? request.end : "");
+                conn.setRequestProperty("Range", range);
+                int status = conn.getResponseCode();
+                String contentRange = conn.getHeaderField("Content-Range");
+                String statusLine = status == 206 ? "206 Partial Content"
+                        : status == 200 ? "200 OK" : status + " Upstream Error";
+                writeHead(channel, statusLine,
+                        conn.getContentType(), conn.getContentLengthLong(), contentRange);
+                if ("HEAD".equalsIgnoreCase(request.method) || status >= 400) {
+                    return;
+                }
+                ByteBuffer direct = ByteBuffer.allocateDirect(64 * 1024);
+                try (InputStream in = conn.getInputStream();
+                     ReadableByteChannel source = Channels.newChannel(in)) {
+                    while (source.read(direct) != -1) {
+                        direct.flip();
+                        while (direct.hasRemaining()) {
+                            channel.write(direct);
+                        }
+                        direct.clear();
+                    }
+                }
+            } finally {
+                conn.disconnect();
+            }
+        }
+
+        void close() {
+            ReadAheadBuffer buf = buffer;
+            buffer = null;
+            if (buf != null) {
+                buf.close();
+            }
+        }
+    }
+
+    private static class Request {
+        String method;
+        String path;
+        boolean ranged;
+        long start;
+        long end = -1;
+    }
+
+    public static class Stats {
+        public int activeStreams;
+        public long bufferedBytes;
+        public long capacityBytes;
+        public long upstreamBytes;
+        public long servedBytes;
+        public long throughputBps;
+        public long bufferSeeks;
+        public long upstreamSeeks;
+        public long reconnects;
+    }
+}
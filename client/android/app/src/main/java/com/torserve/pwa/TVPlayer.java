@@ -4,7 +4,6 @@ import android.app.Activity;
 import android.content.Intent;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
-import android.content.pm.Signature;
 import android.net.Uri;
 import android.os.Build;
 import android.provider.Settings;
@@ -16,10 +15,16 @@ import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.ActivityCallback;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.JSObject;
+import com.getcapacitor.JSArray;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import org.json.JSONArray;
 
 @CapacitorPlugin(name = "TVPlayer")
@@ -32,86 +37,148 @@ public class TVPlayer extends Plugin {
     private static final int INSTALL_PARSE_FAILED_NO_CERTIFICATES = -103;
     private static final int INSTALL_PARSE_FAILED_INCONSISTENT_CERTIFICATES = -104;
 
+    private final ExecutorService apkDownloads = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "apk-download");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile ApkDownloader activeDownload;
+    // APKs already checked by validateApkForInstall: path -> "length:lastModified"
+    private final Map<String, String> validatedApks = new ConcurrentHashMap<>();
+
+    // play()/playList() in flight with an activity launched: BridgeMetrics
+    // handoff (until onPause) and session (until playerResult)
+    private long playbackStartedAt;
+    private int playbackPlayer;
+    private boolean handoffPending;
+
+    private final Runnable installedPlayersChanged =
+            () -> notifyListeners("installedPlayersChanged", new JSObject());
+    private final NativePlayerSession.Listener nativePlayerProgress =
+            progress -> notifyListeners("nativePlayerProgress", progress);
+    private final ReadAhead.Listener readAheadStats = stats -> {
+        if (!MemoryPressure.isRendererGone()) {
+            notifyListeners("readAheadStats", readAheadStatsJson(stats));
+        }
+    };
+
+    @Override
+    public void load() {
+        InstalledPlayers.get(getContext()).addListener(installedPlayersChanged);
+        NativePlayerSession.setListener(nativePlayerProgress);
+        ReadAhead.setListener(readAheadStats);
+    }
+
     /**
      * Check if a package (player app) is installed
      */
     @PluginMethod
     public void isPackageInstalled(PluginCall call) {
-        String packageName = call.getString("package");
-        if (packageName == null) {
-            call.reject("Package name required");
-            return;
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.IS_PACKAGE_INSTALLED);
+        try {
+            String packageName = call.getString("package");
+            if (packageName == null) {
+                call.reject("Package name required");
+                return;
+            }
+            try {
+                getContext().getPackageManager().getPackageInfo(packageName, 0);
+                JSObject result = new JSObject();
+                result.put("installed", true);
+                call.resolve(result);
+            } catch (PackageManager.NameNotFoundException e) {
+                JSObject result = new JSObject();
+                result.put("installed", false);
+                call.resolve(result);
+            }
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.IS_PACKAGE_INSTALLED, startedAt);
         }
+    }
+
+    /**
+     * Every known external player in one call: installed, versionCode and
+     * the features TVPlayer supports for it (resume, playlist, result).
+     * Answered from InstalledPlayers' memory cache; a package add/remove/
+     * replace drops the cache and fires "installedPlayersChanged".
+     */
+    @PluginMethod
+    public void getInstalledPlayers(PluginCall call) {
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.GET_INSTALLED_PLAYERS);
         try {
-            getContext().getPackageManager().getPackageInfo(packageName, 0);
-            JSObject result = new JSObject();
-            result.put("installed", true);
-            call.resolve(result);
-        } catch (PackageManager.NameNotFoundException e) {
-            JSObject result = new JSObject();
-            result.put("installed", false);
-            call.resolve(result);
+            InstalledPlayers players = InstalledPlayers.get(getContext());
+            JSArray list = new JSArray();
+            for (InstalledPlayers.Entry entry : players.query(call.getBoolean("refresh", false))) {
+                JSObject features = new JSObject();
+                features.put("resume", entry.player.resume);
+                features.put("playlist", entry.player.playlist);
+                features.put("result", entry.player.result);
+
+                JSObject player = new JSObject();
+                player.put("package", entry.player.packageName);
+                player.put("name", entry.player.name);
+                player.put("installed", entry.installed);
+                player.put("versionCode", entry.versionCode);
+                player.put("versionName", entry.versionName);
+                player.put("features", features);
+                list.put(player);
+            }
+            JSObject ret = new JSObject();
+            ret.put("players", list);
+            ret.put("cachedAt", players.snapshotAt());
+            call.resolve(ret);
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.GET_INSTALLED_PLAYERS, startedAt);
         }
     }
 
     /**
      * Play a single video file with player-specific extras
      * Based on MatriX Vimu.kt and MX.kt implementations
+     * engine: "native" plays in-app (NativePlayerActivity) instead
+     * history: {infoHash, fileIndex, ...} stores the result in WatchHistoryStore
      */
     @PluginMethod
     public void play(PluginCall call) {
-        String url = call.getString("url");
-        String packageName = call.getString("package");
-        String title = call.getString("title", "Video");
-        int position = call.getInt("position", 0); // Resume position
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.PLAY);
+        try {
+            String url = call.getString("url");
+            String packageName = call.getString("package");
+            String title = call.getString("title", "Video");
+            int position = call.getInt("position", 0); // Resume position
 
-        if (url == null) {
-            call.reject("URL is required");
-            return;
-        }
+            if (url == null) {
+                call.reject("URL is required");
+                return;
+            }
 
-        try {
-            Intent intent = new Intent(Intent.ACTION_VIEW);
-            intent.setDataAndType(Uri.parse(url), "video/*");
-            // AND-01: Prevent double chooser and activity stacking
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-            intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-
-            if (packageName != null && !packageName.isEmpty()) {
-                intent.setPackage(packageName);
-
-                // Common extras for result
-                intent.putExtra("return_result", true);
-
-                // Vimu Player extras (net.gtvbox.videoplayer)
-                if (packageName.contains("gtvbox")) {
-                    intent.putExtra("forcename", title); // Show title instead of URL
-                    intent.putExtra("forcedirect", true); // Direct access without buffering
-                    if (position > 0)
-                        intent.putExtra("startfrom", position); // Resume Vimu
+            try {
+                // Optional loopback read-ahead proxy between player and NAS;
+                // an offline copy (content://) is already local
+                if (call.getBoolean("readAhead", false) && !url.startsWith("content://")) {
+                    url = startReadAhead(call).register(url);
                 }
 
-                // MX Player extras (com.mxtech.videoplayer)
-                if (packageName.contains("mxtech")) {
-                    intent.putExtra("title", title);
-                    intent.putExtra("sticky", false);
-                    if (position > 0)
-                        intent.putExtra("position", position); // Resume MX
+                if (isNativeEngine(call)) {
+                    launchNativePlayer(call, new PlaylistProvider.Playlist(title,
+                            new JSONArray().put(url), new JSONArray().put(title), 0, null), position);
+                    trackPlayback(call, BridgeMetrics.PLAYER_NATIVE, startedAt);
+                    return;
                 }
 
-                // VLC extras
-                if (packageName.contains("videolan")) {
-                    intent.putExtra("title", title);
-                    if (position > 0)
-                        intent.putExtra("from_start", false); // VLC specific?
-                    // VLC doesn't support standard position extra well, depends on version
-                }
-            }
+                Intent intent = PlayerIntents.toIntent(PlayerLaunch.file(url, title, packageName, position));
+                // AND-01: Prevent double chooser and activity stacking
+                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
 
-            startActivityForResult(call, intent, "playerResult");
-        } catch (Exception e) {
-            call.reject("Error launching player: " + e.getMessage());
+                startActivityForResult(call, intent, "playerResult");
+                trackPlayback(call, BridgeMetrics.player(packageName, false), startedAt);
+            } catch (Exception e) {
+                call.reject("Error launching player: " + e.getMessage());
+            }
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.PLAY, startedAt);
         }
     }
 
@@ -119,175 +186,355 @@ public class TVPlayer extends Plugin {
      * Play a playlist of video files (for series/multi-file torrents)
      * Vimu uses: asusfilelist, asusnamelist, startindex
      * MX uses: video_list, video_list.name
+     * playlistMode: "extras" (above), "m3u" (one content:// M3U handle from
+     * PlaylistProvider, entries from startIndex on) or "auto" (default):
+     * m3u once the extras would approach the Binder transaction limit.
+     * prewarm (default true): warm the next prewarmCount (1-2) entries on
+     * the NAS while this one plays (PrewarmService), reported in the result.
      */
     @PluginMethod
     public void playList(PluginCall call) {
-        String packageName = call.getString("package");
-        String title = call.getString("title", "Playlist");
-        JSONArray urlsJson = call.getArray("urls");
-        JSONArray namesJson = call.getArray("names");
-        int startIndex = call.getInt("startIndex", 0);
-        int position = call.getInt("position", 0);
-
-        if (urlsJson == null || urlsJson.length() == 0) {
-            call.reject("URLs array is required");
-            return;
-        }
-
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.PLAY_LIST);
         try {
-            ArrayList<String> urls = new ArrayList<>();
-            ArrayList<String> names = new ArrayList<>();
-
-            for (int i = 0; i < urlsJson.length(); i++) {
-                urls.add(urlsJson.getString(i));
-                names.add(namesJson != null && i < namesJson.length()
-                        ? namesJson.getString(i)
-                        : "File " + (i + 1));
-            }
-
-            Intent intent = new Intent(Intent.ACTION_VIEW);
-            // AND-01: Prevent double chooser
-            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-            intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
-            intent.putExtra("return_result", true); // Request result
-
-            if (packageName != null && packageName.contains("gtvbox")) {
-                // Vimu playlist format (from Vimu.kt)
-                intent.setPackage(packageName);
-                intent.setDataAndType(Uri.parse(urls.get(startIndex)),
-                        "application/vnd.gtvbox.filelist");
-                intent.putExtra("forcename", title);
-                intent.putStringArrayListExtra("asusfilelist", urls);
-                intent.putStringArrayListExtra("asusnamelist", names);
-                intent.putExtra("startindex", startIndex);
-                if (position > 0 && startIndex >= 0)
-                    intent.putExtra("startfrom", position);
-            } else if (packageName != null && packageName.contains("mxtech")) {
-                // MX Player playlist format (from MX.kt)
-                intent.setPackage(packageName);
-                intent.setDataAndType(Uri.parse(urls.get(startIndex)), "video/*");
-                intent.putExtra("title", title);
-                Uri[] uriArray = new Uri[urls.size()];
-                for (int i = 0; i < urls.size(); i++) {
-                    uriArray[i] = Uri.parse(urls.get(i));
+            String packageName = call.getString("package");
+            String title = call.getString("title", "Playlist");
+            JSONArray urlsJson = call.getArray("urls");
+            JSONArray namesJson = call.getArray("names");
+            int startIndex = call.getInt("startIndex", 0);
+            int position = call.getInt("position", 0);
+
+            if (urlsJson == null || urlsJson.length() == 0) {
+                call.reject("URLs array is required");
+                return;
+            }
+
+            try {
+                StreamProxy proxy = call.getBoolean("readAhead", false) ? startReadAhead(call) : null;
+                PlaylistProvider.Playlist playlist =
+                        new PlaylistProvider.Playlist(title, urlsJson, namesJson, startIndex, proxy);
+                startIndex = playlist.start;
+                if (call.getBoolean("prewarm", true)) {
+                    startPrewarm(urlsJson, namesJson, startIndex, call.getInt("prewarmCount", 2));
                 }
-                intent.putExtra("video_list", uriArray);
-                intent.putExtra("video_list.name", names.toArray(new String[0]));
-                intent.putExtra("video_list.filename", names.toArray(new String[0]));
-                intent.putExtra("video_list_is_explicit", true);
-                if (position > 0)
-                    intent.putExtra("position", position);
-            } else {
-                // Fallback: play single file from startIndex
-                intent.setDataAndType(Uri.parse(urls.get(startIndex)), "video/*");
-                if (packageName != null) {
-                    intent.setPackage(packageName);
+
+                if (isNativeEngine(call)) {
+                    launchNativePlayer(call, playlist, position);
+                    trackPlayback(call, BridgeMetrics.PLAYER_NATIVE, startedAt);
+                    return;
                 }
-            }
 
-            startActivityForResult(call, intent, "playerResult");
-        } catch (Exception e) {
-            call.reject("Error launching playlist: " + e.getMessage());
+                String mode = call.getString("playlistMode", "auto");
+                boolean m3u = "m3u".equals(mode)
+                        || (!"extras".equals(mode) && PlaylistProvider.exceedsIntentBudget(urlsJson, namesJson));
+                ArrayList<String> urls = new ArrayList<>();
+                ArrayList<String> names = new ArrayList<>();
+                if (!m3u) {
+                    for (int i = 0; i < playlist.size(); i++) {
+                        urls.add(playlist.url(i));
+                        names.add(playlist.name(i));
+                    }
+                }
+
+                PlayerLaunch launch;
+                if (m3u) {
+                    // Binder-safe: one short Uri, entries are read from PlaylistProvider
+                    Uri playlistUri = PlaylistProvider.uriFor(getContext(), PlaylistProvider.publish(playlist));
+                    launch = PlayerLaunch.m3u(playlistUri.toString(), PlaylistProvider.MIME_TYPE, packageName, title, position);
+                } else {
+                    launch = PlayerLaunch.playlist(packageName, title, urls, names, startIndex, position);
+                }
+                Intent intent = PlayerIntents.toIntent(launch);
+                // AND-01: Prevent double chooser
+                intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                intent.addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+
+                startActivityForResult(call, intent, "playerResult");
+                trackPlayback(call, BridgeMetrics.player(packageName, false), startedAt);
+            } catch (Exception e) {
+                call.reject("Error launching playlist: " + e.getMessage());
+            }
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.PLAY_LIST, startedAt);
         }
     }
 
     @ActivityCallback
     private void playerResult(PluginCall call, ActivityResult result) {
-        if (call == null)
-            return;
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.PLAYER_RESULT);
+        try {
+            // The process was killed while the player was in front, or the
+            // WebView's renderer was (MainActivity recreates it on resume):
+            // nobody waits for this result any more (see PendingPlayback)
+            boolean rendererGone = MemoryPressure.isRendererGone();
+            boolean orphaned = call == null || playbackStartedAt == 0 || rendererGone;
+
+            Intent data = result.getData();
+            JSObject ret = new JSObject();
+
+            if (data != null) {
+                // Finished: endBy is completion OR position is near duration (95%)
+                PlayerResult parsed = PlayerResult.parse(PlayerIntents.extras(data));
+                int position = parsed.position;
+                int duration = parsed.duration;
+                boolean finished = parsed.finished;
+                ret.put("position", position);
+                ret.put("duration", duration);
+                ret.put("endBy", parsed.endBy);
+                ret.put("finished", finished);
+
+                // Stored natively, so the result survives a WebView that is gone
+                JSObject historyMeta = call != null ? call.getObject("history") : null;
+                if (historyMeta == null && orphaned) {
+                    historyMeta = PendingPlayback.meta(getContext());
+                }
+                WatchHistoryStore.Entry history = WatchHistoryStore.Entry.fromJson(historyMeta);
+                if (history != null && position >= 0) {
+                    WatchHistoryStore store = WatchHistoryStore.get(getContext());
+                    store.execute(() -> store.record(history, position, Math.max(duration, 0), finished));
+                    ret.put("historyStored", true);
+                }
 
-        Intent data = result.getData();
-        JSObject ret = new JSObject();
+                // Native engine: result is in JS now, drop the crash checkpoint
+                if (data.getStringExtra(NativePlayerActivity.EXTRA_SESSION_ID) != null) {
+                    NativePlayerSession.clearPending(getContext());
+                    ret.put("index", data.getIntExtra("index", 0));
+                    ret.put("engine", "native");
+                }
+            } else {
+                ret.put("position", -1);
+                ret.put("message", "No data returned");
+            }
+
+            StreamProxy.Stats readAhead = ReadAhead.stop();
+            if (readAhead != null) {
+                ret.put("readAhead", readAheadStatsJson(readAhead));
+            }
+            EpisodePrewarmer.Stats prewarm = PrewarmService.stop(getContext());
+            if (prewarm != null) {
+                ret.put("prewarm", prewarmStatsJson(prewarm));
+            }
 
-        if (data != null) {
-            // MX Player / Vimu standard return keys
-            int position = data.getIntExtra("position", -1);
-            int duration = data.getIntExtra("duration", -1);
-            String endBy = data.getStringExtra("end_by"); // user, playback_completion
-
-            // Try distinct known keys if standard fail
-            if (position == -1)
-                position = data.getIntExtra("current_position", -1);
-
-            ret.put("position", position);
-            ret.put("duration", duration);
-            ret.put("endBy", endBy);
-
-            // Mark as finished if endBy is completion OR position is near duration (95%)
-            boolean finished = "playback_completion".equals(endBy);
-            if (!finished && duration > 0 && position > duration * 0.95) {
-                finished = true;
-            }
-            ret.put("finished", finished);
-        } else {
-            ret.put("position", -1);
-            ret.put("message", "No data returned");
+            if (playbackStartedAt != 0) {
+                BridgeMetrics.session(playbackPlayer, playbackStartedAt);
+                playbackStartedAt = 0;
+                handoffPending = false;
+            }
+            if (orphaned) {
+                PendingPlayback.resultOrphaned(getContext(), ret);
+            } else {
+                PendingPlayback.clear(getContext());
+            }
+            if (call != null && !rendererGone) {
+                call.resolve(ret);
+            }
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.PLAYER_RESULT, startedAt);
         }
+    }
 
-        call.resolve(ret);
+    private void trackPlayback(PluginCall call, int player, long startedAt) {
+        playbackStartedAt = startedAt;
+        playbackPlayer = player;
+        handoffPending = true;
+        JSObject meta = call.getObject("history");
+        PendingPlayback.launched(getContext(), call.getString("package"), call.getString("engine", "external"),
+                meta != null ? meta : call.getObject("meta"));
+    }
+
+    /** Our activity leaves the foreground: the player is up. */
+    @Override
+    protected void handleOnPause() {
+        if (handoffPending) {
+            handoffPending = false;
+            BridgeMetrics.handoff(playbackPlayer, playbackStartedAt);
+            MemoryPressure.setPlayerInFront(getBridge().getWebView(), true);
+        }
+    }
+
+    @Override
+    protected void handleOnResume() {
+        MemoryPressure.setPlayerInFront(getBridge().getWebView(), false);
     }
 
     /**
-     * Get the current app version (versionName + versionCode)
-     * Used by the auto-updater to compare with remote version.json
+     * Latency histograms of the bridge methods and the per-player handoff
+     * and session times (see BridgeMetrics). reset: true zeroes them after
+     * reading.
      */
     @PluginMethod
-    public void getAppVersion(PluginCall call) {
+    public void getMetrics(PluginCall call) {
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.GET_METRICS);
         try {
-            PackageInfo pInfo = getContext().getPackageManager()
-                    .getPackageInfo(getContext().getPackageName(), 0);
-            JSObject result = new JSObject();
-            result.put("versionName", pInfo.versionName);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-                result.put("versionCode", pInfo.getLongVersionCode());
-            } else {
-                result.put("versionCode", pInfo.versionCode);
+            JSObject ret = BridgeMetrics.toJson();
+            if (call.getBoolean("reset", false)) {
+                BridgeMetrics.reset();
             }
-            call.resolve(result);
-        } catch (PackageManager.NameNotFoundException e) {
-            call.reject("Cannot read package info: " + e.getMessage());
+            call.resolve(ret);
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.GET_METRICS, startedAt);
         }
     }
 
-    private long getVersionCode(PackageInfo packageInfo) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-            return packageInfo.getLongVersionCode();
+    private void startPrewarm(JSONArray urls, JSONArray names, int startIndex, int count) {
+        ArrayList<String> next = new ArrayList<>();
+        ArrayList<String> nextNames = new ArrayList<>();
+        int end = Math.min(urls.length(), startIndex + 1 + Math.max(1, Math.min(count, 2)));
+        for (int i = startIndex + 1; i < end; i++) {
+            next.add(urls.optString(i));
+            nextNames.add(names != null && i < names.length() ? names.optString(i) : null);
+        }
+        if (next.isEmpty()) {
+            return;
+        }
+        try {
+            PrewarmService.start(getContext(), urls.optString(startIndex), next, nextNames);
+        } catch (RuntimeException e) {
+            // Background start restrictions: playback works without it
         }
-        return packageInfo.versionCode;
     }
 
-    private Signature[] getPackageSignatures(PackageInfo packageInfo) {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-            if (packageInfo.signingInfo == null) {
-                return null;
-            }
-            return packageInfo.signingInfo.getApkContentsSigners();
-        }
-        return packageInfo.signatures;
+    private JSObject prewarmStatsJson(EpisodePrewarmer.Stats stats) {
+        JSObject ret = new JSObject();
+        ret.put("entries", stats.entries);
+        ret.put("ranges", stats.ranges);
+        ret.put("rangesWarmed", stats.rangesWarmed);
+        ret.put("warmedBytes", stats.warmedBytes);
+        ret.put("backoffs", stats.backoffs);
+        ret.put("notReadyRetries", stats.notReadyRetries);
+        ret.put("errors", stats.errors);
+        ret.put("durationMs", stats.durationMs);
+        ret.put("finished", stats.finished);
+        return ret;
+    }
+
+    private static boolean isNativeEngine(PluginCall call) {
+        return "native".equals(call.getString("engine"));
     }
 
-    private boolean signaturesMatch(PackageInfo installedInfo, PackageInfo apkInfo) {
-        Signature[] installedSignatures = getPackageSignatures(installedInfo);
-        Signature[] apkSignatures = getPackageSignatures(apkInfo);
-        if (installedSignatures == null || apkSignatures == null) {
-            return false;
+    /**
+     * In-app Media3 playback. Same "playerResult" callback as the external
+     * players; live progress arrives as "nativePlayerProgress" events.
+     * Optional buffer tuning: bufferMinMs, bufferMaxMs, bufferForPlaybackMs,
+     * bufferAfterRebufferMs, backBufferMs. meta is stored with the position
+     * checkpoints and handed back by takePendingPlayback.
+     * Entries are handed over by PlaylistProvider id, never as extras.
+     */
+    private void launchNativePlayer(PluginCall call, PlaylistProvider.Playlist playlist, int position) {
+        Intent intent = new Intent(getContext(), NativePlayerActivity.class);
+        intent.putExtra(NativePlayerActivity.EXTRA_PLAYLIST_ID, PlaylistProvider.publish(playlist));
+        intent.putExtra(NativePlayerActivity.EXTRA_POSITION, position);
+        intent.putExtra(NativePlayerActivity.EXTRA_SESSION_ID, UUID.randomUUID().toString());
+        JSObject meta = call.getObject("meta");
+        if (meta != null) {
+            intent.putExtra(NativePlayerActivity.EXTRA_META, meta.toString());
         }
-        if (installedSignatures.length != apkSignatures.length) {
-            return false;
+        putIntOption(call, intent, "bufferMinMs", NativePlayerActivity.EXTRA_BUFFER_MIN_MS);
+        putIntOption(call, intent, "bufferMaxMs", NativePlayerActivity.EXTRA_BUFFER_MAX_MS);
+        putIntOption(call, intent, "bufferForPlaybackMs", NativePlayerActivity.EXTRA_BUFFER_FOR_PLAYBACK_MS);
+        putIntOption(call, intent, "bufferAfterRebufferMs", NativePlayerActivity.EXTRA_BUFFER_AFTER_REBUFFER_MS);
+        putIntOption(call, intent, "backBufferMs", NativePlayerActivity.EXTRA_BACK_BUFFER_MS);
+        startActivityForResult(call, intent, "playerResult");
+    }
+
+    private static void putIntOption(PluginCall call, Intent intent, String option, String extra) {
+        Integer value = call.getInt(option);
+        if (value != null && value > 0) {
+            intent.putExtra(extra, value);
         }
+    }
 
-        Set<String> installed = new HashSet<>();
-        for (Signature signature : installedSignatures) {
-            installed.add(signature.toCharsString());
+    /**
+     * A playback whose result never reached JS (app killed while playing):
+     * {pending: {meta, index, position, duration, finished, updatedAt,
+     * historyStored} | null}. That is the result a player returned to the
+     * recreated app (PendingPlayback), else the last checkpoint of a native
+     * playback. Cleared once returned.
+     */
+    @PluginMethod
+    public void takePendingPlayback(PluginCall call) {
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.TAKE_PENDING_PLAYBACK);
+        try {
+            JSObject ret = new JSObject();
+            JSObject pending = NativePlayerSession.takePending(getContext());
+            JSObject orphaned = PendingPlayback.takeResult(getContext());
+            if (orphaned != null) {
+                pending = orphaned;
+            }
+            ret.put("pending", pending != null ? pending : JSObject.NULL);
+            call.resolve(ret);
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.TAKE_PENDING_PLAYBACK, startedAt);
         }
+    }
+
+    /**
+     * Start a fresh loopback proxy (ReadAhead, replacing any previous one).
+     * Stats are pushed to JS as "readAheadStats" events until the player
+     * returns.
+     */
+    private StreamProxy startReadAhead(PluginCall call) throws IOException {
+        return ReadAhead.start(call.getInt("readAheadMb", StreamProxy.DEFAULT_BUFFER_MB));
+    }
 
-        Set<String> apk = new HashSet<>();
-        for (Signature signature : apkSignatures) {
-            apk.add(signature.toCharsString());
+    private JSObject readAheadStatsJson(StreamProxy.Stats stats) {
+        JSObject ret = new JSObject();
+        ret.put("activeStreams", stats.activeStreams);
+        ret.put("bufferedBytes", stats.bufferedBytes);
+        ret.put("capacityBytes", stats.capacityBytes);
+        ret.put("fill", stats.capacityBytes > 0 ? (double) stats.bufferedBytes / stats.capacityBytes : 0d);
+        ret.put("throughputBps", stats.throughputBps);
+        ret.put("upstreamBytes", stats.upstreamBytes);
+        ret.put("servedBytes", stats.servedBytes);
+        ret.put("bufferSeeks", stats.bufferSeeks);
+        ret.put("upstreamSeeks", stats.upstreamSeeks);
+        ret.put("reconnects", stats.reconnects);
+        return ret;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        InstalledPlayers.get(getContext()).removeListener(installedPlayersChanged);
+        NativePlayerSession.clearListener(nativePlayerProgress);
+        ReadAhead.clearListener(readAheadStats);
+        // Its call belongs to this bridge
+        ApkDownloader download = activeDownload;
+        if (download != null) {
+            download.cancel();
         }
+        if (getActivity().isFinishing()) {
+            ReadAhead.stop();
+            PrewarmService.stop(getContext());
+        }
+        // else recreated (WebView renderer lost): the player may still read
+        // through the proxy; the next instance's playerResult stops both
+    }
 
-        return installed.equals(apk);
+    /**
+     * Get the current app version (versionName + versionCode)
+     * Used by the auto-updater to compare with remote version.json
+     */
+    @PluginMethod
+    public void getAppVersion(PluginCall call) {
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.GET_APP_VERSION);
+        try {
+            try {
+                PackageInfo pInfo = getContext().getPackageManager()
+                        .getPackageInfo(getContext().getPackageName(), 0);
+                JSObject result = new JSObject();
+                result.put("versionName", pInfo.versionName);
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                    result.put("versionCode", pInfo.getLongVersionCode());
+                } else {
+                    result.put("versionCode", pInfo.versionCode);
+                }
+                call.resolve(result);
+            } catch (PackageManager.NameNotFoundException e) {
+                call.reject("Cannot read package info: " + e.getMessage());
+            }
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.GET_APP_VERSION, startedAt);
+        }
     }
 
     private String validateApkForInstall(String path) {
@@ -302,25 +549,11 @@ public class TVPlayer extends Plugin {
                     packageInfoFlags);
             PackageInfo apkInfo = packageManager.getPackageArchiveInfo(path, packageInfoFlags);
 
-            if (apkInfo == null) {
-                return "Cannot read APK manifest";
-            }
-
-            if (!getContext().getPackageName().equals(apkInfo.packageName)) {
-                return "APK package does not match installed app";
-            }
-
-            long installedVersionCode = getVersionCode(installedInfo);
-            long apkVersionCode = getVersionCode(apkInfo);
-            if (apkVersionCode > 0 && installedVersionCode > 0 && apkVersionCode <= installedVersionCode) {
-                return "APK is not newer than the installed app";
-            }
-
-            if (!signaturesMatch(installedInfo, apkInfo)) {
-                return "APK signature does not match installed app";
-            }
-
-            return null;
+            return ApkCheck.validate(getContext().getPackageName(),
+                    PlayerIntents.versionCode(installedInfo), PlayerIntents.signers(installedInfo),
+                    apkInfo != null ? apkInfo.packageName : null,
+                    apkInfo != null ? PlayerIntents.versionCode(apkInfo) : 0,
+                    apkInfo != null ? PlayerIntents.signers(apkInfo) : null);
         } catch (PackageManager.NameNotFoundException e) {
             return "Cannot read installed app info: " + e.getMessage();
         }
@@ -346,73 +579,266 @@ public class TVPlayer extends Plugin {
     }
 
     /**
-     * Install an APK file from the given path.
-     * Uses FileProvider to expose the file safely (Android 7+).
-     * The OS will prompt the user to confirm installation.
+     * Download an update APK into the cache dir natively.
+     * Resumes an interrupted download with a Range request, checks SHA-256
+     * against version.json and validates the archive once, so installApk()
+     * doesn't have to parse it again. Progress is pushed as
+     * "apkDownloadProgress" events.
      */
     @PluginMethod
-    public void installApk(PluginCall call) {
-        String path = call.getString("path");
-        if (path == null || path.isEmpty()) {
-            call.reject("Path is required");
-            return;
-        }
+    public void downloadApk(PluginCall call) {
+        long callStartedAt = BridgeMetrics.begin(BridgeMetrics.DOWNLOAD_APK);
+        // Ends on the worker once the download is queued, here otherwise
+        boolean queued = false;
+        try {
+            String fileName = call.getString("fileName");
+            List<String> urls = new ArrayList<>();
+            try {
+                JSArray urlArray = call.getArray("urls");
+                if (urlArray != null) {
+                    urls.addAll(urlArray.<String>toList());
+                }
+            } catch (Exception e) {
+                call.reject("Invalid urls: " + e.getMessage());
+                return;
+            }
+            String singleUrl = call.getString("url");
+            if (singleUrl != null && !singleUrl.isEmpty()) {
+                urls.add(singleUrl);
+            }
+            if (urls.isEmpty()) {
+                call.reject("URL is required");
+                return;
+            }
+            if (fileName == null || fileName.isEmpty() || fileName.contains("/") || fileName.startsWith(".")) {
+                call.reject("Valid fileName is required");
+                return;
+            }
+            if (activeDownload != null) {
+                call.reject("APK download already in progress");
+                return;
+            }
 
-        // Strip file:// prefix if present
-        if (path.startsWith("file://")) {
-            path = path.substring(7);
+            String expectedSha256 = call.getString("sha256");
+            boolean validate = call.getBoolean("validate", true);
+            File target = new File(getContext().getCacheDir(), fileName);
+            ApkDownloader downloader = new ApkDownloader();
+            activeDownload = downloader;
+            apkDownloads.execute(() -> {
+                long startedAt = System.currentTimeMillis();
+                try {
+                    ApkDownloader.Result result = downloader.download(urls, target, expectedSha256,
+                            (downloaded, total, bytesPerSec) -> {
+                                JSObject progress = new JSObject();
+                                progress.put("downloaded", downloaded);
+                                progress.put("total", total);
+                                progress.put("percent", total > 0 ? (int) (downloaded * 100 / total) : -1);
+                                progress.put("bytesPerSec", bytesPerSec);
+                                notifyListeners("apkDownloadProgress", progress);
+                            });
+
+                    // validate=false for delta patches: the rebuilt APK is checked instead
+                    if (validate) {
+                        String validationError = validateApkForInstall(target.getPath());
+                        if (validationError != null) {
+                            target.delete();
+                            call.reject(validationError);
+                            return;
+                        }
+                        validatedApks.put(target.getPath(), apkStamp(target));
+                    }
+
+                    JSObject ret = new JSObject();
+                    ret.put("path", "file://" + target.getAbsolutePath());
+                    ret.put("sha256", result.sha256);
+                    ret.put("bytes", result.bytes);
+                    ret.put("resumedFrom", result.resumedFrom);
+                    ret.put("cached", result.cached);
+                    ret.put("verified", result.verified);
+                    ret.put("url", result.url);
+                    ret.put("durationMs", System.currentTimeMillis() - startedAt);
+                    call.resolve(ret);
+                } catch (IOException e) {
+                    call.reject("APK download failed: " + e.getMessage());
+                } finally {
+                    activeDownload = null;
+                    BridgeMetrics.end(BridgeMetrics.DOWNLOAD_APK, callStartedAt);
+                }
+            });
+            queued = true;
+        } finally {
+            if (!queued) {
+                BridgeMetrics.end(BridgeMetrics.DOWNLOAD_APK, callStartedAt);
+            }
         }
+    }
 
-        File file = new File(path);
-        if (!file.exists()) {
-            call.reject("APK file not found: " + path);
-            return;
+    /**
+     * Stop the running downloadApk(). The partial file is kept for resume.
+     */
+    @PluginMethod
+    public void cancelApkDownload(PluginCall call) {
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.CANCEL_APK_DOWNLOAD);
+        try {
+            ApkDownloader download = activeDownload;
+            if (download != null) {
+                download.cancel();
+            }
+            call.resolve();
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.CANCEL_APK_DOWNLOAD, startedAt);
         }
+    }
 
+    /**
+     * Rebuild an update APK from the installed base.apk and a downloaded
+     * delta patch (ApkPatcher), then run the usual validateApkForInstall
+     * checks on the result. Resolves with the same {path, sha256} shape as
+     * downloadApk() so installApk() can follow directly.
+     */
+    @PluginMethod
+    public void applyApkPatch(PluginCall call) {
+        long callStartedAt = BridgeMetrics.begin(BridgeMetrics.APPLY_APK_PATCH);
+        // Ends on the worker once the patch is queued, here otherwise
+        boolean queued = false;
         try {
-            String validationError = validateApkForInstall(path);
-            if (validationError != null) {
-                call.reject(validationError);
+            String patchPath = call.getString("patchPath");
+            String fileName = call.getString("fileName");
+            if (patchPath == null || patchPath.isEmpty()) {
+                call.reject("patchPath is required");
                 return;
             }
-
-            // Android 8+: app-level "install unknown apps" gate can block installer launch.
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O &&
-                    !getContext().getPackageManager().canRequestPackageInstalls()) {
-                Intent settingsIntent = new Intent(Settings.ACTION_MANAGE_UNKNOWN_APP_SOURCES);
-                settingsIntent.setData(Uri.parse("package:" + getContext().getPackageName()));
-                settingsIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                getContext().startActivity(settingsIntent);
-                call.reject("Install permission not granted. Enable 'Install unknown apps' for this app.");
+            if (fileName == null || fileName.isEmpty() || fileName.contains("/") || fileName.startsWith(".")) {
+                call.reject("Valid fileName is required");
                 return;
             }
+            if (patchPath.startsWith("file://")) {
+                patchPath = patchPath.substring(7);
+            }
+            File patch = new File(patchPath);
+            File base = new File(getContext().getApplicationInfo().sourceDir);
+            File target = new File(getContext().getCacheDir(), fileName);
+            String expectedSha256 = call.getString("sha256");
+
+            apkDownloads.execute(() -> {
+                long startedAt = System.currentTimeMillis();
+                try {
+                    ApkPatcher.Result result = ApkPatcher.apply(base, patch, target, expectedSha256);
+                    patch.delete();
+
+                    String validationError = validateApkForInstall(target.getPath());
+                    if (validationError != null) {
+                        target.delete();
+                        call.reject(validationError);
+                        return;
+                    }
+                    validatedApks.put(target.getPath(), apkStamp(target));
+
+                    JSObject ret = new JSObject();
+                    ret.put("path", "file://" + target.getAbsolutePath());
+                    ret.put("sha256", result.sha256);
+                    ret.put("bytes", result.bytes);
+                    ret.put("copiedBytes", result.copiedBytes);
+                    ret.put("insertedBytes", result.insertedBytes);
+                    ret.put("durationMs", System.currentTimeMillis() - startedAt);
+                    call.resolve(ret);
+                } catch (IOException e) {
+                    // Useless against this base; the caller falls back to the full APK.
+                    patch.delete();
+                    call.reject("APK patch failed: " + e.getMessage());
+                } finally {
+                    BridgeMetrics.end(BridgeMetrics.APPLY_APK_PATCH, callStartedAt);
+                }
+            });
+            queued = true;
+        } finally {
+            if (!queued) {
+                BridgeMetrics.end(BridgeMetrics.APPLY_APK_PATCH, callStartedAt);
+            }
+        }
+    }
 
-            Uri contentUri = FileProvider.getUriForFile(
-                    getContext(),
-                    getContext().getPackageName() + ".fileprovider",
-                    file);
+    private static String apkStamp(File file) {
+        return file.length() + ":" + file.lastModified();
+    }
 
-            Intent installIntent = new Intent(Intent.ACTION_INSTALL_PACKAGE);
-            installIntent.setData(contentUri);
-            installIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            installIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-            installIntent.putExtra(Intent.EXTRA_NOT_UNKNOWN_SOURCE, true);
-            installIntent.putExtra(Intent.EXTRA_RETURN_RESULT, true);
+    /**
+     * Install an APK file from the given path.
+     * Uses FileProvider to expose the file safely (Android 7+).
+     * The OS will prompt the user to confirm installation.
+     */
+    @PluginMethod
+    public void installApk(PluginCall call) {
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.INSTALL_APK);
+        try {
+            String path = call.getString("path");
+            if (path == null || path.isEmpty()) {
+                call.reject("Path is required");
+                return;
+            }
+
+            // Strip file:// prefix if present
+            if (path.startsWith("file://")) {
+                path = path.substring(7);
+            }
 
-            if (installIntent.resolveActivity(getContext().getPackageManager()) != null) {
-                startActivityForResult(call, installIntent, "apkInstallResult");
+            File file = new File(path);
+            if (!file.exists()) {
+                call.reject("APK file not found: " + path);
                 return;
             }
 
-            // Fallback for OEMs that don't expose ACTION_INSTALL_PACKAGE
-            Intent viewIntent = new Intent(Intent.ACTION_VIEW);
-            viewIntent.setDataAndType(contentUri, "application/vnd.android.package-archive");
-            viewIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-            viewIntent.putExtra(Intent.EXTRA_RETURN_RESULT, true);
-            startActivityForResult(call, viewIntent, "apkInstallResult");
-        } catch (Exception e) {
-            call.reject("Error installing APK: " + e.getMessage());
+            try {
+                // Skip re-parsing an archive downloadApk() already validated, as
+                // long as the file hasn't been touched since.
+                if (!apkStamp(file).equals(validatedApks.get(file.getPath()))) {
+                    String validationError = validateApkForInstall(path);
+                    if (validationError != null) {
+                        call.reject(validationError);
+                        return;
+                    }
+                }
+
+                // Android 8+: app-level "install unknown apps" gate can block installer launch.
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O &&
+                        !getContext().getPackageManager().canRequestPackageInstalls()) {
+                    Intent settingsIntent = new Intent(Settings.ACTION_MANAGE_UNKNOWN_APP_SOURCES);
+                    settingsIntent.setData(Uri.parse("package:" + getContext().getPackageName()));
+                    settingsIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                    getContext().startActivity(settingsIntent);
+                    call.reject("Install permission not granted. Enable 'Install unknown apps' for this app.");
+                    return;
+                }
+
+                Uri contentUri = FileProvider.getUriForFile(
+                        getContext(),
+                        getContext().getPackageName() + ".fileprovider",
+                        file);
+
+                Intent installIntent = new Intent(Intent.ACTION_INSTALL_PACKAGE);
+                installIntent.setData(contentUri);
+                installIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                installIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                installIntent.putExtra(Intent.EXTRA_NOT_UNKNOWN_SOURCE, true);
+                installIntent.putExtra(Intent.EXTRA_RETURN_RESULT, true);
+
+                if (installIntent.resolveActivity(getContext().getPackageManager()) != null) {
+                    startActivityForResult(call, installIntent, "apkInstallResult");
+                    return;
+                }
+
+                // Fallback for OEMs that don't expose ACTION_INSTALL_PACKAGE
+                Intent viewIntent = new Intent(Intent.ACTION_VIEW);
+                viewIntent.setDataAndType(contentUri, "application/vnd.android.package-archive");
+                viewIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                viewIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+                viewIntent.putExtra(Intent.EXTRA_RETURN_RESULT, true);
+                startActivityForResult(call, viewIntent, "apkInstallResult");
+            } catch (Exception e) {
+                call.reject("Error installing APK: " + e.getMessage());
+            }
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.INSTALL_APK, startedAt);
         }
     }
 
@@ -421,31 +847,35 @@ public class TVPlayer extends Plugin {
         if (call == null) {
             return;
         }
+        long startedAt = BridgeMetrics.begin(BridgeMetrics.APK_INSTALL_RESULT);
+        try {
+            JSObject ret = new JSObject();
+            ret.put("resultCode", result.getResultCode());
+
+            Intent data = result.getData();
+            int installResult = Integer.MIN_VALUE;
+            if (data != null && data.hasExtra(INSTALL_RESULT_EXTRA)) {
+                installResult = data.getIntExtra(INSTALL_RESULT_EXTRA, Integer.MIN_VALUE);
+                ret.put("installResult", installResult);
+                ret.put("installStatus", describeInstallResult(installResult));
+            }
 
-        JSObject ret = new JSObject();
-        ret.put("resultCode", result.getResultCode());
-
-        Intent data = result.getData();
-        int installResult = Integer.MIN_VALUE;
-        if (data != null && data.hasExtra(INSTALL_RESULT_EXTRA)) {
-            installResult = data.getIntExtra(INSTALL_RESULT_EXTRA, Integer.MIN_VALUE);
-            ret.put("installResult", installResult);
-            ret.put("installStatus", describeInstallResult(installResult));
-        }
+            if (result.getResultCode() == Activity.RESULT_OK
+                    || installResult == INSTALL_SUCCEEDED) {
+                call.resolve(ret);
+                return;
+            }
 
-        if (result.getResultCode() == Activity.RESULT_OK
-                || installResult == INSTALL_SUCCEEDED) {
-            call.resolve(ret);
-            return;
-        }
+            String message = "APK installation was cancelled";
+            if (installResult != Integer.MIN_VALUE) {
+                message = "APK installation failed: " + describeInstallResult(installResult);
+            } else if (result.getResultCode() == Activity.RESULT_FIRST_USER) {
+                message = "APK installation failed";
+            }
 
-        String message = "APK installation was cancelled";
-        if (installResult != Integer.MIN_VALUE) {
-            message = "APK installation failed: " + describeInstallResult(installResult);
-        } else if (result.getResultCode() == Activity.RESULT_FIRST_USER) {
-            message = "APK installation failed";
+            call.reject(message, "APK_INSTALL_FAILED", ret);
+        } finally {
+            BridgeMetrics.end(BridgeMetrics.APK_INSTALL_RESULT, startedAt);
         }
-
-        call.reject(message, "APK_INSTALL_FAILED", ret);
     }
 }
@@ -0,0 +1,163 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.net.Uri;
+import com.getcapacitor.JSObject;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import org.json.JSONException;
+
+/**
+ * .torrent files opened with the app (VIEW intent, content:// or file://).
+ *
+ * read() parses the file once through TorrentMeta and writes the same bytes
+ * to cache/torrent_intake/&lt;infoHash&gt;.torrent, so the preview never holds
+ * the file in memory and the upload doesn't depend on the sender's URI
+ * grant outliving the confirm dialog. upload() streams that file as the
+ * request body (fixed-length, 64 KB buffer) to the NAS's /api/add/torrent;
+ * none of it passes through the JS bridge.
+ */
+final class TorrentIntake {
+    private static final String DIR_NAME = "torrent_intake";
+    private static final String UPLOAD_PATH = "/api/add/torrent";
+    private static final String CONTENT_TYPE = "application/x-bittorrent";
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    // The NAS answers once the engine is up; with the metadata cached that is quick
+    private static final int READ_TIMEOUT_MS = 120000;
+    private static final int MAX_RESPONSE_BYTES = 64 * 1024;
+    private static final long STALE_AFTER_MS = 24L * 60 * 60 * 1000;
+
+    private TorrentIntake() {
+    }
+
+    static boolean isSupported(Uri uri) {
+        String scheme = uri != null ? uri.getScheme() : null;
+        return "content".equals(scheme) || "file".equals(scheme);
+    }
+
+    /** Parses uri and keeps its bytes for upload(); removes day-old leftovers. */
+    static TorrentMeta read(Context context, Uri uri) throws IOException {
+        File dir = dir(context);
+        deleteStale(dir);
+        File tmp = File.createTempFile("intake", ".part", dir);
+        TorrentMeta meta;
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) {
+                throw new FileNotFoundException("Cannot open " + uri);
+            }
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                meta = TorrentMeta.parse(in, out);
+            }
+        } catch (IOException | RuntimeException e) {
+            tmp.delete();
+            throw e;
+        }
+        File target = new File(dir, meta.infoHash + ".torrent");
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Cannot store torrent file");
+        }
+        return meta;
+    }
+
+    /** The file read() kept for infoHash, or null. */
+    static File file(Context context, String infoHash) {
+        if (infoHash == null || !infoHash.matches("[0-9a-fA-F]{40}")) {
+            return null;
+        }
+        File file = new File(dir(context), infoHash.toLowerCase(Locale.ROOT) + ".torrent");
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * POSTs the file to serverUrl + /api/add/torrent.
+     * @return the NAS's answer ({infoHash, name[, backend]})
+     * @throws IOException with the NAS's error message on a non-2xx status
+     */
+    static JSObject upload(File file, String serverUrl) throws IOException {
+        String base = serverUrl.endsWith("/") ? serverUrl.substring(0, serverUrl.length() - 1) : serverUrl;
+        HttpURLConnection conn = (HttpURLConnection) new URL(base + UPLOAD_PATH).openConnection();
+        try {
+            conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+            conn.setReadTimeout(READ_TIMEOUT_MS);
+            conn.setRequestMethod("POST");
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", CONTENT_TYPE);
+            conn.setRequestProperty("Accept", "application/json");
+            conn.setFixedLengthStreamingMode(file.length());
+
+            byte[] buffer = new byte[BUFFER_BYTES];
+            try (InputStream in = new FileInputStream(file); OutputStream out = conn.getOutputStream()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+            }
+
+            int status = conn.getResponseCode();
+            boolean ok = status >= 200 && status < 300;
+            String body = readBody(ok ? conn.getInputStream() : conn.getErrorStream());
+            JSObject json = parse(body);
+            if (!ok) {
+                String error = json != null ? json.getString("error") : null;
+                throw new IOException(error != null ? error : "HTTP " + status);
+            }
+            return json != null ? json : new JSObject();
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static File dir(Context context) {
+        File dir = new File(context.getCacheDir(), DIR_NAME);
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static void deleteStale(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - STALE_AFTER_MS;
+        for (File file : files) {
+            if (file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        if (in == null) {
+            return "";
+        }
+        try (InputStream body = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while (out.size() < MAX_RESPONSE_BYTES && (read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static JSObject parse(String body) {
+        try {
+            return body.isEmpty() ? null : new JSObject(body);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+}
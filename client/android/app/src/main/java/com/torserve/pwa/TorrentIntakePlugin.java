@@ -0,0 +1,117 @@
+package com.torserve.pwa;
+
+import android.net.Uri;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * JS side of TorrentIntake (torrentIntake.js): preview a .torrent the app
+ * was opened with, then upload it to the NAS or discard it. Magnet links
+ * don't need this and still go to /api/add from JS.
+ */
+@CapacitorPlugin(name = "TorrentIntake")
+public class TorrentIntakePlugin extends Plugin {
+    // The bridge result stays small for season packs with thousands of files
+    private static final int MAX_PREVIEW_FILES = 500;
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "torrent-intake");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * {url} (content:// or file://) -> {id, infoHash, name, files: [{path,
+     * length}], fileCount, totalLength, pieceLength, pieceCount, private,
+     * torrentBytes}. files is capped at MAX_PREVIEW_FILES, fileCount is not
+     */
+    @PluginMethod
+    public void preview(PluginCall call) {
+        String url = call.getString("url");
+        Uri uri = url != null ? Uri.parse(url) : null;
+        if (!TorrentIntake.isSupported(uri)) {
+            call.reject("content:// or file:// url is required");
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                call.resolve(toJson(TorrentIntake.read(getContext(), uri)));
+            } catch (TorrentMeta.FormatException e) {
+                call.reject("Not a valid torrent file: " + e.getMessage());
+            } catch (IOException | SecurityException e) {
+                call.reject("Cannot read torrent file: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * {id, serverUrl}: streams the previewed file to the NAS and resolves
+     * with its answer ({infoHash, name[, backend]})
+     */
+    @PluginMethod
+    public void upload(PluginCall call) {
+        String serverUrl = call.getString("serverUrl");
+        if (serverUrl == null || !(serverUrl.startsWith("http://") || serverUrl.startsWith("https://"))) {
+            call.reject("serverUrl is required");
+            return;
+        }
+        File file = TorrentIntake.file(getContext(), call.getString("id"));
+        if (file == null) {
+            call.reject("Unknown or expired torrent id");
+            return;
+        }
+        worker.execute(() -> {
+            try {
+                JSObject ret = TorrentIntake.upload(file, serverUrl);
+                file.delete();
+                call.resolve(ret);
+            } catch (IOException e) {
+                call.reject("Upload failed: " + e.getMessage());
+            }
+        });
+    }
+
+    @PluginMethod
+    public void discard(PluginCall call) {
+        File file = TorrentIntake.file(getContext(), call.getString("id"));
+        JSObject ret = new JSObject();
+        ret.put("removed", file != null && file.delete());
+        call.resolve(ret);
+    }
+
+    private static JSObject toJson(TorrentMeta meta) {
+        JSArray files = new JSArray();
+        for (int i = 0; i < meta.files.size() && i < MAX_PREVIEW_FILES; i++) {
+            TorrentMeta.FileEntry file = meta.files.get(i);
+            JSObject entry = new JSObject();
+            entry.put("path", file.path);
+            entry.put("length", file.length);
+            files.put(entry);
+        }
+        JSObject ret = new JSObject();
+        ret.put("id", meta.infoHash);
+        ret.put("infoHash", meta.infoHash);
+        ret.put("name", meta.name);
+        ret.put("files", files);
+        ret.put("fileCount", meta.files.size());
+        ret.put("totalLength", meta.totalLength);
+        ret.put("pieceLength", meta.pieceLength);
+        ret.put("pieceCount", meta.pieceCount);
+        ret.put("private", meta.isPrivate);
+        ret.put("torrentBytes", meta.torrentBytes);
+        return ret;
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        worker.shutdown();
+    }
+}
@@ -0,0 +1,113 @@
+package com.torserve.pwa;
+
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import org.json.JSONException;
+
+/**
+ * JS access to WatchHistoryStore (used by watchHistory.js on native).
+ * Every call runs on the store's thread, behind TVPlayer's writes.
+ */
+@CapacitorPlugin(name = "WatchHistory")
+public class WatchHistoryPlugin extends Plugin {
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * Store a playback result: {infoHash, fileIndex, fileName, torrentName,
+     * tmdbId, mediaType, position, duration, finished}. Resolves with
+     * {entry} (null when the entry was removed as finished/short)
+     */
+    @PluginMethod
+    public void record(PluginCall call) {
+        WatchHistoryStore.Entry meta = WatchHistoryStore.Entry.fromJson(call.getData());
+        if (meta == null) {
+            call.reject("infoHash and fileIndex are required");
+            return;
+        }
+        WatchHistoryStore store = WatchHistoryStore.get(getContext());
+        store.execute(() -> resolveEntry(call, store.record(meta,
+                call.getLong("position", 0L), call.getLong("duration", 0L), call.getBoolean("finished", false))));
+    }
+
+    @PluginMethod
+    public void get(PluginCall call) {
+        String infoHash = call.getString("infoHash");
+        Integer fileIndex = call.getInt("fileIndex");
+        if (infoHash == null || fileIndex == null) {
+            call.reject("infoHash and fileIndex are required");
+            return;
+        }
+        WatchHistoryStore store = WatchHistoryStore.get(getContext());
+        store.execute(() -> resolveEntry(call, store.find(infoHash, fileIndex)));
+    }
+
+    /**
+     * Newest first: {items, nextCursor}. Pass nextCursor back as cursor for
+     * the following page
+     */
+    @PluginMethod
+    public void page(PluginCall call) {
+        int limit = Math.max(1, Math.min(call.getInt("limit", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE));
+        WatchHistoryStore store = WatchHistoryStore.get(getContext());
+        store.execute(() -> resolvePage(call, store.page(limit, call.getString("cursor"))));
+    }
+
+    @PluginMethod
+    public void removeTorrent(PluginCall call) {
+        String infoHash = call.getString("infoHash");
+        if (infoHash == null) {
+            call.reject("infoHash is required");
+            return;
+        }
+        WatchHistoryStore store = WatchHistoryStore.get(getContext());
+        store.execute(() -> {
+            JSObject ret = new JSObject();
+            ret.put("removed", store.removeTorrent(infoHash));
+            call.resolve(ret);
+        });
+    }
+
+    /**
+     * One-time migration of the localStorage entries: {entries: [...]}
+     */
+    @PluginMethod
+    public void importEntries(PluginCall call) {
+        JSArray entries = call.getArray("entries", new JSArray());
+        WatchHistoryStore store = WatchHistoryStore.get(getContext());
+        store.execute(() -> {
+            JSObject ret = new JSObject();
+            ret.put("imported", store.importEntries(entries));
+            call.resolve(ret);
+        });
+    }
+
+    private static void resolvePage(PluginCall call, WatchHistoryStore.Page page) {
+        try {
+            JSArray items = new JSArray();
+            for (WatchHistoryStore.Entry entry : page.items) {
+                items.put(entry.toJson());
+            }
+            JSObject ret = new JSObject();
+            ret.put("items", items);
+            ret.put("nextCursor", page.nextCursor != null ? page.nextCursor : JSObject.NULL);
+            call.resolve(ret);
+        } catch (JSONException e) {
+            call.reject("Cannot read watch history: " + e.getMessage());
+        }
+    }
+
+    private static void resolveEntry(PluginCall call, WatchHistoryStore.Entry entry) {
+        try {
+            JSObject ret = new JSObject();
+            ret.put("entry", entry != null ? entry.toJson() : JSObject.NULL);
+            call.resolve(ret);
+        } catch (JSONException e) {
+            call.reject("Cannot read watch history: " + e.getMessage());
+        }
+    }
+}
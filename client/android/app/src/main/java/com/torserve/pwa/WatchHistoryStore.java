@@ -0,0 +1,348 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Resume positions for "Continue Watching" (replaces the watch_history_v1
+ * localStorage blob of watchHistory.js, which was re-sorted and rewritten
+ * whole on every save and therefore capped at 30 entries).
+ *
+ * One row per torrent file, unique on (info_hash, file_index), indexed on
+ * updated_at for the resume row. A save is a single-row UPDATE or INSERT;
+ * the row is paged newest first with a keyset cursor. TVPlayer writes
+ * player results here itself, so they survive a dead WebView.
+ *
+ * Database work runs on the store's single thread (execute), never the UI
+ * thread, and in call order: a page() after a player result sees it.
+ *
+ * Same rules as watchHistory.js: finished (flag or >= 95%) or short
+ * (< 2 min) sessions remove the entry instead of storing it.
+ */
+public class WatchHistoryStore extends SQLiteOpenHelper {
+    private static final String DB_NAME = "watch_history.db";
+    private static final int DB_VERSION = 1;
+    static final long MIN_RESUME_POSITION_MS = 2 * 60 * 1000;
+    static final double FINISHED_RATIO = 0.95;
+    static final int MAX_ENTRIES = 5000;
+    private static final int PRUNE_EVERY_INSERTS = 64;
+    private static final String COLUMNS =
+            "id, info_hash, file_index, file_name, torrent_name, tmdb_id, media_type, position, duration, updated_at";
+
+    private static WatchHistoryStore instance;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "watch-history");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int insertsSincePrune;
+
+    public static class Entry {
+        long id;
+        String infoHash;
+        int fileIndex;
+        String fileName;
+        String torrentName;
+        Long tmdbId;
+        String mediaType;
+        long position;
+        long duration;
+        long updatedAt;
+
+        /** From the JS meta / localStorage shape ({infoHash, fileIndex, ...}); null if unusable. */
+        static Entry fromJson(JSONObject json) {
+            if (json == null) {
+                return null;
+            }
+            String hash = json.optString("infoHash", null);
+            Object index = json.opt("fileIndex");
+            if (hash == null || hash.isEmpty() || !(index instanceof Number)) {
+                return null;
+            }
+            Entry entry = new Entry();
+            entry.infoHash = hash.toLowerCase(Locale.ROOT);
+            entry.fileIndex = ((Number) index).intValue();
+            entry.fileName = optText(json, "fileName");
+            entry.torrentName = optText(json, "torrentName");
+            Object tmdbId = json.opt("tmdbId");
+            if (tmdbId instanceof Number) {
+                entry.tmdbId = ((Number) tmdbId).longValue();
+            } else if (tmdbId instanceof String) {
+                try {
+                    entry.tmdbId = Long.parseLong((String) tmdbId);
+                } catch (NumberFormatException ignored) {
+                    // not a TMDB id
+                }
+            }
+            entry.mediaType = optText(json, "mediaType");
+            entry.position = Math.max(0, json.optLong("position", 0));
+            entry.duration = Math.max(0, json.optLong("duration", 0));
+            entry.updatedAt = json.optLong("updatedAt", 0);
+            return entry;
+        }
+
+        /** Same shape as the old localStorage entries. */
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("infoHash", infoHash);
+            json.put("fileIndex", fileIndex);
+            json.put("fileName", fileName != null ? fileName : JSONObject.NULL);
+            json.put("torrentName", torrentName != null ? torrentName : JSONObject.NULL);
+            json.put("tmdbId", tmdbId != null ? tmdbId : JSONObject.NULL);
+            json.put("mediaType", mediaType != null ? mediaType : JSONObject.NULL);
+            json.put("position", position);
+            json.put("duration", duration);
+            json.put("updatedAt", updatedAt);
+            return json;
+        }
+
+        private static String optText(JSONObject json, String key) {
+            Object value = json.opt(key);
+            return value instanceof String && !((String) value).isEmpty() ? (String) value : null;
+        }
+    }
+
+    public static class Page {
+        final List<Entry> items = new ArrayList<>();
+        /** Pass back to page() for the next page; null after the last one. */
+        String nextCursor;
+    }
+
+    public static synchronized WatchHistoryStore get(Context context) {
+        if (instance == null) {
+            instance = new WatchHistoryStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private WatchHistoryStore(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /** Runs task on the store's thread, after everything queued before it. */
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE watch_history ("
+                + "id INTEGER PRIMARY KEY,"
+                + "info_hash TEXT NOT NULL,"
+                + "file_index INTEGER NOT NULL,"
+                + "file_name TEXT,"
+                + "torrent_name TEXT,"
+                + "tmdb_id INTEGER,"
+                + "media_type TEXT,"
+                + "position INTEGER NOT NULL,"
+                + "duration INTEGER NOT NULL,"
+                + "updated_at INTEGER NOT NULL)");
+        db.execSQL("CREATE UNIQUE INDEX watch_history_file ON watch_history (info_hash, file_index)");
+        db.execSQL("CREATE INDEX watch_history_updated ON watch_history (updated_at)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // v1 is the only schema so far
+    }
+
+    static boolean isFinished(long position, long duration, boolean finished) {
+        return finished || (duration > 0 && position >= duration * FINISHED_RATIO);
+    }
+
+    /**
+     * Store the outcome of a playback session for meta's file.
+     * @return the stored entry, or null if it was removed (finished/short)
+     */
+    Entry record(Entry meta, long position, long duration, boolean finished) {
+        position = Math.max(0, position);
+        if (isFinished(position, duration, finished) || position < MIN_RESUME_POSITION_MS) {
+            remove(meta.infoHash, meta.fileIndex);
+            return null;
+        }
+        meta.position = position;
+        meta.duration = Math.max(0, duration);
+        meta.updatedAt = System.currentTimeMillis();
+        upsert(meta, false);
+        return meta;
+    }
+
+    /**
+     * Entries from the old localStorage map; a stored row wins when it is
+     * newer. @return rows written
+     */
+    int importEntries(JSONArray entries) {
+        SQLiteDatabase db = getWritableDatabase();
+        int written = 0;
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < entries.length(); i++) {
+                Entry entry = Entry.fromJson(entries.optJSONObject(i));
+                if (entry == null || entry.position < MIN_RESUME_POSITION_MS) {
+                    continue;
+                }
+                if (entry.updatedAt <= 0) {
+                    entry.updatedAt = System.currentTimeMillis();
+                }
+                if (upsert(entry, true)) {
+                    written++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return written;
+    }
+
+    /**
+     * UPDATE by (info_hash, file_index), INSERT when absent. A missing
+     * tmdbId/mediaType keeps the stored one (resume from home has no movie).
+     */
+    private boolean upsert(Entry entry, boolean onlyIfNewer) {
+        SQLiteDatabase db = getWritableDatabase();
+        try (SQLiteStatement update = db.compileStatement("UPDATE watch_history SET "
+                + "file_name = COALESCE(?, file_name), torrent_name = COALESCE(?, torrent_name), "
+                + "tmdb_id = COALESCE(?, tmdb_id), media_type = COALESCE(?, media_type), "
+                + "position = ?, duration = ?, updated_at = ? "
+                + "WHERE info_hash = ? AND file_index = ?" + (onlyIfNewer ? " AND updated_at < ?" : ""))) {
+            bindNullable(update, 1, entry.fileName);
+            bindNullable(update, 2, entry.torrentName);
+            if (entry.tmdbId != null) {
+                update.bindLong(3, entry.tmdbId);
+            } else {
+                update.bindNull(3);
+            }
+            bindNullable(update, 4, entry.mediaType);
+            update.bindLong(5, entry.position);
+            update.bindLong(6, entry.duration);
+            update.bindLong(7, entry.updatedAt);
+            update.bindString(8, entry.infoHash);
+            update.bindLong(9, entry.fileIndex);
+            if (onlyIfNewer) {
+                update.bindLong(10, entry.updatedAt);
+            }
+            if (update.executeUpdateDelete() > 0) {
+                return true;
+            }
+        }
+        try (SQLiteStatement insert = db.compileStatement("INSERT OR IGNORE INTO watch_history "
+                + "(info_hash, file_index, file_name, torrent_name, tmdb_id, media_type, position, duration, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            insert.bindString(1, entry.infoHash);
+            insert.bindLong(2, entry.fileIndex);
+            bindNullable(insert, 3, entry.fileName);
+            bindNullable(insert, 4, entry.torrentName);
+            if (entry.tmdbId != null) {
+                insert.bindLong(5, entry.tmdbId);
+            } else {
+                insert.bindNull(5);
+            }
+            bindNullable(insert, 6, entry.mediaType);
+            insert.bindLong(7, entry.position);
+            insert.bindLong(8, entry.duration);
+            insert.bindLong(9, entry.updatedAt);
+            if (insert.executeInsert() == -1) {
+                return false; // newer row exists (import)
+            }
+        }
+        pruneOccasionally(db);
+        return true;
+    }
+
+    private synchronized void pruneOccasionally(SQLiteDatabase db) {
+        if (++insertsSincePrune < PRUNE_EVERY_INSERTS) {
+            return;
+        }
+        insertsSincePrune = 0;
+        db.execSQL("DELETE FROM watch_history WHERE id IN (SELECT id FROM watch_history "
+                + "ORDER BY updated_at DESC, id DESC LIMIT -1 OFFSET " + MAX_ENTRIES + ")");
+    }
+
+    Entry find(String infoHash, int fileIndex) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT " + COLUMNS + " FROM watch_history WHERE info_hash = ? AND file_index = ?",
+                new String[]{infoHash.toLowerCase(Locale.ROOT), Integer.toString(fileIndex)})) {
+            return cursor.moveToFirst() ? read(cursor) : null;
+        }
+    }
+
+    /** Newest first, limit rows after cursor (null = from the top). */
+    Page page(int limit, String cursor) {
+        long beforeUpdatedAt = Long.MAX_VALUE;
+        long beforeId = Long.MAX_VALUE;
+        if (cursor != null) {
+            int colon = cursor.indexOf(':');
+            try {
+                beforeUpdatedAt = Long.parseLong(cursor.substring(0, colon));
+                beforeId = Long.parseLong(cursor.substring(colon + 1));
+            } catch (RuntimeException ignored) {
+                // bad cursor: first page
+            }
+        }
+        Page page = new Page();
+        String before = Long.toString(beforeUpdatedAt);
+        try (Cursor rows = getReadableDatabase().rawQuery(
+                "SELECT " + COLUMNS + " FROM watch_history "
+                        + "WHERE updated_at <= ? AND (updated_at < ? OR id < ?) "
+                        + "ORDER BY updated_at DESC, id DESC LIMIT ?",
+                new String[]{before, before, Long.toString(beforeId), Integer.toString(limit + 1)})) {
+            while (rows.moveToNext()) {
+                if (page.items.size() == limit) {
+                    Entry last = page.items.get(limit - 1);
+                    page.nextCursor = last.updatedAt + ":" + last.id;
+                    break;
+                }
+                page.items.add(read(rows));
+            }
+        }
+        return page;
+    }
+
+    int remove(String infoHash, int fileIndex) {
+        return getWritableDatabase().delete("watch_history", "info_hash = ? AND file_index = ?",
+                new String[]{infoHash.toLowerCase(Locale.ROOT), Integer.toString(fileIndex)});
+    }
+
+    /** All files of a torrent, e.g. when it is deleted. */
+    int removeTorrent(String infoHash) {
+        return getWritableDatabase().delete("watch_history", "info_hash = ?",
+                new String[]{infoHash.toLowerCase(Locale.ROOT)});
+    }
+
+    private static Entry read(Cursor cursor) {
+        Entry entry = new Entry();
+        entry.id = cursor.getLong(0);
+        entry.infoHash = cursor.getString(1);
+        entry.fileIndex = cursor.getInt(2);
+        entry.fileName = cursor.isNull(3) ? null : cursor.getString(3);
+        entry.torrentName = cursor.isNull(4) ? null : cursor.getString(4);
+        entry.tmdbId = cursor.isNull(5) ? null : cursor.getLong(5);
+        entry.mediaType = cursor.isNull(6) ? null : cursor.getString(6);
+        entry.position = cursor.getLong(7);
+        entry.duration = cursor.getLong(8);
+        entry.updatedAt = cursor.getLong(9);
+        return entry;
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+}
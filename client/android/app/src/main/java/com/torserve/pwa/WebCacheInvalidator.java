@@ -0,0 +1,358 @@
+package com.torserve.pwa;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Evicts only the WebView cache entries of bundled web assets that changed
+ * between two APK versions. Posters, TMDB responses and anything else not
+ * served from the app origin stay cached across OTA updates.
+ *
+ * The asset "hash" is the CRC-32 + size of each assets/public/* entry, read
+ * from the APK's zip central directory (no decompression). The manifest of
+ * the installed version is kept in filesDir and diffed on the next upgrade.
+ *
+ * WebView keeps its HTTP and code cache in Chromium's "simple cache" format:
+ * one <16 hex>_0 file per entry whose header carries the cache key (URL), so
+ * stale entries can be found and deleted without touching the others. A
+ * missing entry file is just a cache miss for Chromium.
+ */
+class WebCacheInvalidator {
+    static final String REPORT_PREFS = "startup_cache";
+    static final String LAST_REPORT = "last_cache_invalidation";
+
+    private static final String MANIFEST_FILE = "web_assets_manifest.json";
+    private static final String ASSET_PREFIX = "assets/public/";
+    private static final String[] CACHE_ROOTS = {"WebView", "org.chromium.android_webview"};
+    private static final int MAX_SCAN_DEPTH = 6;
+
+    // net/disk_cache/simple/simple_entry_format.h
+    private static final long SIMPLE_INITIAL_MAGIC = 0xfcfb6d1ba7725c30L;
+    private static final int SIMPLE_HEADER_BYTES = 24;
+    private static final int MAX_KEY_BYTES = 64 * 1024;
+    private static final String[] SIMPLE_ENTRY_SUFFIXES = {"_0", "_1", "_s"};
+
+    private final Context context;
+    private final String origin;
+
+    /**
+     * @param localUrl bridge local URL the bundled assets are served from,
+     *                 e.g. http://localhost
+     */
+    WebCacheInvalidator(Context context, String localUrl) {
+        this.context = context.getApplicationContext();
+        this.origin = stripTrailingSlash(localUrl != null ? localUrl : "http://localhost");
+    }
+
+    /**
+     * Blocking; call from a background thread.
+     */
+    Report run() {
+        long startedAt = SystemClock.elapsedRealtime();
+        Report report = new Report();
+
+        Map<String, String> current = readApkManifest();
+        Map<String, String> previous = readSavedManifest();
+        Set<String> stalePaths = null; // null = every app-origin entry
+        if (previous != null && current != null) {
+            stalePaths = new HashSet<>();
+            for (Map.Entry<String, String> asset : previous.entrySet()) {
+                if (!asset.getValue().equals(current.get(asset.getKey()))) {
+                    stalePaths.add(asset.getKey());
+                }
+            }
+            for (String path : current.keySet()) {
+                if (!previous.containsKey(path)) {
+                    stalePaths.add(path); // a new asset may shadow an old cached 404
+                }
+            }
+            if (stalePaths.contains("/index.html")) {
+                stalePaths.add("/");
+            }
+            report.mode = "selective";
+            report.changedAssets = stalePaths.size();
+        } else {
+            report.mode = "origin";
+            report.changedAssets = -1;
+        }
+
+        for (String root : CACHE_ROOTS) {
+            scan(new File(context.getCacheDir(), root), stalePaths, report, 0);
+        }
+        report.fullClearNeeded = report.unknownFormat && report.entriesScanned == 0;
+
+        if (current != null) {
+            saveManifest(current);
+        }
+        report.durationMs = SystemClock.elapsedRealtime() - startedAt;
+        return report;
+    }
+
+    private void scan(File dir, Set<String> stalePaths, Report report, int depth) {
+        File[] files = dir.listFiles();
+        if (files == null || depth > MAX_SCAN_DEPTH) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                scan(file, stalePaths, report, depth + 1);
+            } else if (isSimpleEntry(name)) {
+                String url = resourceUrl(readKey(file));
+                if (url == null) {
+                    continue;
+                }
+                report.entriesScanned++;
+                if (isStale(url, stalePaths)) {
+                    evict(dir, name.substring(0, 16), report);
+                }
+            } else if (name.equals("data_0") || name.startsWith("f_")) {
+                // Blockfile backend (very old WebView): entries can't be
+                // addressed individually.
+                report.unknownFormat = true;
+            }
+        }
+    }
+
+    private boolean isStale(String url, Set<String> stalePaths) {
+        if (!url.startsWith(origin + "/")) {
+            return false;
+        }
+        if (stalePaths == null) {
+            return true;
+        }
+        String path = url.substring(origin.length());
+        int cut = indexOfAny(path, '?', '#');
+        return stalePaths.contains(cut >= 0 ? path.substring(0, cut) : path);
+    }
+
+    private static void evict(File dir, String hash, Report report) {
+        boolean evicted = false;
+        for (String suffix : SIMPLE_ENTRY_SUFFIXES) {
+            File file = new File(dir, hash + suffix);
+            long size = file.length();
+            if (file.delete()) {
+                report.bytesEvicted += size;
+                evicted = true;
+            }
+        }
+        if (evicted) {
+            report.entriesEvicted++;
+        }
+    }
+
+    private static boolean isSimpleEntry(String name) {
+        if (name.length() != 18 || !name.endsWith("_0")) {
+            return false;
+        }
+        for (int i = 0; i < 16; i++) {
+            if (Character.digit(name.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the cache key stored in a simple-cache _0 file, or null if the
+     *         header doesn't match
+     */
+    static String readKey(File file) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            byte[] header = new byte[SIMPLE_HEADER_BYTES];
+            in.readFully(header);
+            if (readLongLe(header, 0) != SIMPLE_INITIAL_MAGIC) {
+                return null;
+            }
+            long keyLength = readIntLe(header, 12) & 0xffffffffL;
+            if (keyLength == 0 || keyLength > MAX_KEY_BYTES
+                    || SIMPLE_HEADER_BYTES + keyLength > in.length()) {
+                return null;
+            }
+            byte[] key = new byte[(int) keyLength];
+            in.readFully(key);
+            return new String(key, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * HTTP cache keys may be prefixed with the network isolation key
+     * ("_dk_<site> <site> <url>"); code cache keys are "_key<url> \n<origin>".
+     */
+    static String resourceUrl(String key) {
+        if (key == null) {
+            return null;
+        }
+        String trimmed = key.trim();
+        if (trimmed.startsWith("_key")) {
+            String rest = trimmed.substring(4).trim();
+            int end = indexOfWhitespace(rest);
+            return end >= 0 ? rest.substring(0, end) : rest;
+        }
+        int space = Math.max(trimmed.lastIndexOf(' '), trimmed.lastIndexOf('\n'));
+        return space >= 0 ? trimmed.substring(space + 1) : trimmed;
+    }
+
+    /**
+     * @return "/path" -> "crc:size" for every bundled web asset, or null if
+     *         the APK can't be read
+     */
+    private Map<String, String> readApkManifest() {
+        String apk = context.getApplicationInfo().sourceDir;
+        try (ZipFile zip = new ZipFile(apk)) {
+            Map<String, String> manifest = new HashMap<>();
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (!entry.isDirectory() && name.startsWith(ASSET_PREFIX)) {
+                    manifest.put("/" + name.substring(ASSET_PREFIX.length()),
+                            Long.toHexString(entry.getCrc()) + ":" + entry.getSize());
+                }
+            }
+            return manifest;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Map<String, String> readSavedManifest() {
+        File file = new File(context.getFilesDir(), MANIFEST_FILE);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            JSONObject json = new JSONObject(readFile(file));
+            Map<String, String> manifest = new HashMap<>();
+            Iterator<String> keys = json.keys();
+            while (keys.hasNext()) {
+                String path = keys.next();
+                manifest.put(path, json.getString(path));
+            }
+            return manifest;
+        } catch (IOException | JSONException e) {
+            return null;
+        }
+    }
+
+    private static String readFile(File file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+        byte[] buffer = new byte[16 * 1024];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void saveManifest(Map<String, String> manifest) {
+        File file = new File(context.getFilesDir(), MANIFEST_FILE);
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(new JSONObject(manifest).toString().getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+        }
+    }
+
+    static void saveReport(Context context, Report report) {
+        SharedPreferences prefs = context.getSharedPreferences(REPORT_PREFS, Context.MODE_PRIVATE);
+        try {
+            prefs.edit().putString(LAST_REPORT, report.toJson().toString()).apply();
+        } catch (JSONException ignored) {
+            // Diagnostics only.
+        }
+    }
+
+    /**
+     * @return the report of the last upgrade, or null before the first one
+     */
+    static JSONObject lastReport(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(REPORT_PREFS, Context.MODE_PRIVATE);
+        String json = prefs.getString(LAST_REPORT, null);
+        try {
+            return json != null ? new JSONObject(json) : null;
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    private static long readLongLe(byte[] b, int offset) {
+        return (readIntLe(b, offset) & 0xffffffffL) | ((long) readIntLe(b, offset + 4) << 32);
+    }
+
+    private static int readIntLe(byte[] b, int offset) {
+        return (b[offset] & 0xff) | (b[offset + 1] & 0xff) << 8
+                | (b[offset + 2] & 0xff) << 16 | (b[offset + 3] & 0xff) << 24;
+    }
+
+    private static int indexOfWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOfAny(String s, char a, char b) {
+        int i = s.indexOf(a);
+        int j = s.indexOf(b);
+        return i < 0 ? j : (j < 0 ? i : Math.min(i, j));
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    static class Report {
+        /** "selective" (manifest diff) or "origin" (no previous manifest: all app-origin entries) */
+        String mode;
+        int changedAssets;
+        int entriesScanned;
+        int entriesEvicted;
+        long bytesEvicted;
+        long durationMs;
+        boolean unknownFormat;
+        boolean fullClearNeeded;
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("mode", fullClearNeeded ? "full" : mode);
+            json.put("changedAssets", changedAssets);
+            json.put("entriesScanned", entriesScanned);
+            json.put("entriesEvicted", entriesEvicted);
+            json.put("bytesEvicted", bytesEvicted);
+            json.put("durationMs", durationMs);
+            json.put("at", System.currentTimeMillis());
+            return json;
+        }
+    }
+}
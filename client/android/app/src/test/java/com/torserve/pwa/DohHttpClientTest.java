@@ -0,0 +1,195 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class DohHttpClientTest {
+    /** Keep-alive HTTP/1.1 server on loopback that answers every request with the next canned response. */
+    private static final class Server implements Runnable {
+        final ServerSocket socket = new ServerSocket(0, 8, InetAddress.getLoopbackAddress());
+        final AtomicInteger connections = new AtomicInteger();
+        final List<String> requests = Collections.synchronizedList(new ArrayList<>());
+        final List<byte[]> responses = Collections.synchronizedList(new ArrayList<>());
+
+        Server() throws IOException {
+            Thread thread = new Thread(this, "test-http");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        String url(String path) {
+            return "http://127.0.0.1:" + socket.getLocalPort() + path;
+        }
+
+        @Override
+        public void run() {
+            while (!socket.isClosed()) {
+                try {
+                    Socket client = socket.accept();
+                    connections.incrementAndGet();
+                    Thread thread = new Thread(() -> serve(client), "test-http-conn");
+                    thread.setDaemon(true);
+                    thread.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serve(Socket client) {
+            try (Socket s = client) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.ISO_8859_1));
+                OutputStream out = s.getOutputStream();
+                String line;
+                while ((line = in.readLine()) != null) {
+                    StringBuilder request = new StringBuilder(line).append('\n');
+                    while ((line = in.readLine()) != null && !line.isEmpty()) {
+                        request.append(line).append('\n');
+                    }
+                    requests.add(request.toString());
+                    out.write(responses.remove(0));
+                    out.flush();
+                }
+            } catch (IOException ignored) {
+                // Client went away
+            }
+        }
+    }
+
+    private Server server;
+    private DohHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new Server();
+        DohResolver loopback = new DohResolver(null) {
+            @Override
+            public List<InetAddress> lookup(String host) {
+                return Collections.singletonList(InetAddress.getLoopbackAddress());
+            }
+        };
+        client = new DohHttpClient(loopback);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.socket.close();
+    }
+
+    private static byte[] response(String head, byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] headBytes = (head + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        out.write(headBytes, 0, headBytes.length);
+        out.write(body, 0, body.length);
+        return out.toByteArray();
+    }
+
+    private static byte[] text(String head, String body) {
+        return response(head, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(DohHttpClient.Response response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = response.body) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return out.toString("UTF-8");
+    }
+
+    @Test
+    public void reusesTheConnectionOnceABodyIsRead() throws IOException {
+        server.responses.add(text("HTTP/1.1 200 OK\r\n", "one"));
+        server.responses.add(text("HTTP/1.1 200 OK\r\n", "two"));
+
+        assertEquals("one", read(client.get(server.url("/a"), null)));
+        assertEquals("two", read(client.get(server.url("/b"), null)));
+        assertEquals(1, server.connections.get());
+        assertTrue(server.requests.get(0).contains("Accept-Encoding: gzip"));
+        assertFalse(server.requests.get(0).contains("Connection: close"));
+    }
+
+    @Test
+    public void decodesGzip() throws IOException {
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write("{\"results\":[]}".getBytes(StandardCharsets.UTF_8));
+        }
+        server.responses.add(response("HTTP/1.1 200 OK\r\nContent-Encoding: gzip\r\n", gzipped.toByteArray()));
+
+        DohHttpClient.Response response = client.get(server.url("/movie"), null);
+        assertNull(response.header("Content-Encoding"));
+        assertNull(response.header("Content-Length"));
+        assertEquals("{\"results\":[]}", read(response));
+    }
+
+    @Test
+    public void servesFreshResponsesFromTheCache() throws IOException {
+        server.responses.add(text("HTTP/1.1 200 OK\r\nCache-Control: public, max-age=600\r\nContent-Type: application/json\r\n", "cached"));
+
+        assertEquals("cached", read(client.get(server.url("/genre"), null)));
+        assertEquals("cached", read(client.get(server.url("/genre"), null)));
+        assertEquals(1, server.requests.size());
+    }
+
+    @Test
+    public void revalidatesWithTheETag() throws IOException {
+        server.responses.add(text("HTTP/1.1 200 OK\r\nCache-Control: no-cache\r\nETag: \"v1\"\r\n", "body"));
+        server.responses.add(text("HTTP/1.1 304 Not Modified\r\nETag: \"v1\"\r\n", ""));
+
+        assertEquals("body", read(client.get(server.url("/config"), null)));
+        DohHttpClient.Response revalidated = client.get(server.url("/config"), null);
+        assertEquals(200, revalidated.status);
+        assertEquals("body", read(revalidated));
+        assertTrue(server.requests.get(1).contains("If-None-Match: \"v1\""));
+    }
+
+    @Test
+    public void leavesUncacheableResponsesAlone() {
+        Map<String, String> headers = new HashMap<>();
+        assertEquals(-1, DohResponseCache.freshnessMs(200, headers));
+        headers.put("Cache-Control", "max-age=60");
+        assertEquals(60_000, DohResponseCache.freshnessMs(200, headers));
+        assertEquals(-1, DohResponseCache.freshnessMs(404, headers));
+        headers.put("Age", "20");
+        assertEquals(40_000, DohResponseCache.freshnessMs(200, headers));
+        headers.put("Vary", "Cookie");
+        assertEquals(-1, DohResponseCache.freshnessMs(200, headers));
+        headers.remove("Vary");
+        headers.put("Content-Type", "image/jpeg");
+        assertEquals(-1, DohResponseCache.freshnessMs(200, headers));
+
+        Map<String, String> conditional = new HashMap<>();
+        conditional.put("If-None-Match", "\"v1\"");
+        assertFalse(DohResponseCache.usable(conditional));
+    }
+}
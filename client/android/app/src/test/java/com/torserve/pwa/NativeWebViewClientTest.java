@@ -0,0 +1,79 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.webkit.WebResourceResponse;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class NativeWebViewClientTest {
+    /** Upstream body that remembers whether the socket was released. */
+    private static final class TrackedBody extends ByteArrayInputStream {
+        boolean closed;
+
+        TrackedBody(String text) {
+            super(text.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static DohHttpClient.Response response(int status, String reason, TrackedBody body) {
+        DohHttpClient.Response response = new DohHttpClient.Response();
+        response.status = status;
+        response.reason = reason;
+        response.body = body;
+        return response;
+    }
+
+    @Test
+    public void redirectFallsBackToTheWebViewAndClosesTheBody() {
+        TrackedBody body = new TrackedBody("moved");
+        DohHttpClient.Response redirect = response(302, "Found", body);
+        redirect.headers.put("Location", "https://image.tmdb.org/t/p/w500/a.jpg");
+
+        assertNull(NativeWebViewClient.toWebResponse(redirect));
+        assertTrue(body.closed);
+    }
+
+    @Test
+    public void notModifiedAndBogusStatusesFallBackToo() {
+        TrackedBody notModified = new TrackedBody("");
+        assertNull(NativeWebViewClient.toWebResponse(response(304, "Not Modified", notModified)));
+        assertTrue(notModified.closed);
+
+        TrackedBody bogus = new TrackedBody("");
+        assertNull(NativeWebViewClient.toWebResponse(response(999, "Weird", bogus)));
+        assertTrue(bogus.closed);
+    }
+
+    @Test
+    public void okAndErrorStatusesPassThrough() {
+        TrackedBody body = new TrackedBody("{}");
+        DohHttpClient.Response ok = response(200, "", body);
+        ok.headers.put("Content-Type", "application/json; charset=utf-8");
+        ok.headers.put("Transfer-Encoding", "chunked");
+
+        WebResourceResponse web = NativeWebViewClient.toWebResponse(ok);
+        assertNotNull(web);
+        assertEquals(200, web.getStatusCode());
+        assertEquals("application/json", web.getMimeType());
+        assertEquals("utf-8", web.getEncoding());
+        assertFalse(web.getResponseHeaders().containsKey("Transfer-Encoding"));
+        assertFalse(body.closed);
+
+        WebResourceResponse notFound = NativeWebViewClient.toWebResponse(response(404, "Not Found", new TrackedBody("")));
+        assertEquals(404, notFound.getStatusCode());
+    }
+}
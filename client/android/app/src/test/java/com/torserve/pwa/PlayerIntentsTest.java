@@ -0,0 +1,98 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Intent;
+import android.content.pm.PackageInfo;
+import android.content.pm.Signature;
+import android.net.Uri;
+import android.os.Parcelable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+public class PlayerIntentsTest {
+    private static ArrayList<String> list(String... values) {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+
+    @Test
+    public void vimuFileIntentCarriesTypedExtras() {
+        Intent intent = PlayerIntents.toIntent(
+                PlayerLaunch.file("http://nas/stream/a/0", "Movie", "net.gtvbox.videoplayer", 5000));
+        assertEquals(Intent.ACTION_VIEW, intent.getAction());
+        assertEquals(Uri.parse("http://nas/stream/a/0"), intent.getData());
+        assertEquals("video/*", intent.getType());
+        assertEquals("net.gtvbox.videoplayer", intent.getPackage());
+        assertEquals(5000, intent.getIntExtra("startfrom", -1));
+        assertEquals("Movie", intent.getStringExtra("forcename"));
+        assertTrue(intent.getBooleanExtra("forcedirect", false));
+    }
+
+    @Test
+    public void mxPlaylistBecomesAUriArray() {
+        Intent intent = PlayerIntents.toIntent(PlayerLaunch.playlist("com.mxtech.videoplayer.ad", "Show",
+                list("http://nas/1", "http://nas/2"), list("e1", "e2"), 0, 0));
+        Parcelable[] uris = intent.getParcelableArrayExtra("video_list");
+        assertArrayEquals(new Parcelable[]{Uri.parse("http://nas/1"), Uri.parse("http://nas/2")}, uris);
+        assertArrayEquals(new String[]{"e1", "e2"}, intent.getStringArrayExtra("video_list.name"));
+    }
+
+    @Test
+    public void vimuPlaylistKeepsStringLists() {
+        Intent intent = PlayerIntents.toIntent(PlayerLaunch.playlist("net.gtvbox.videoplayer", "Show",
+                list("http://nas/1", "http://nas/2"), list("e1", "e2"), 1, 0));
+        assertEquals(list("http://nas/1", "http://nas/2"), intent.getStringArrayListExtra("asusfilelist"));
+        assertEquals(1, intent.getIntExtra("startindex", -1));
+    }
+
+    @Test
+    public void m3uGrantsReadPermission() {
+        Intent intent = PlayerIntents.toIntent(PlayerLaunch.m3u("content://com.torserve.pwa.playlist/p.m3u",
+                "audio/x-mpegurl", "", "Show", 0));
+        assertTrue((intent.getFlags() & Intent.FLAG_GRANT_READ_URI_PERMISSION) != 0);
+        assertNull(intent.getPackage());
+    }
+
+    @Test
+    public void parsesAPlayerResultIntent() {
+        Intent data = new Intent();
+        data.putExtra("position", 600_000);
+        data.putExtra("duration", 1_200_000);
+        data.putExtra("end_by", "user");
+        PlayerResult result = PlayerResult.parse(PlayerIntents.extras(data));
+        assertEquals(600_000, result.position);
+        assertEquals("user", result.endBy);
+        assertFalse(result.finished);
+    }
+
+    @Test
+    public void readsTheLongVersionCode() {
+        PackageInfo info = new PackageInfo();
+        info.setLongVersionCode((7L << 32) | 42);
+        assertEquals((7L << 32) | 42, PlayerIntents.versionCode(info));
+    }
+
+    @Test
+    public void unknownSignersAreNull() {
+        assertNull(PlayerIntents.signers(new PackageInfo()));
+    }
+
+    @Test
+    @Config(sdk = 27)
+    public void readsLegacySignatures() {
+        PackageInfo info = new PackageInfo();
+        info.versionCode = 42;
+        info.signatures = new Signature[]{new Signature("0a0b"), new Signature("0c0d")};
+        assertEquals(42, PlayerIntents.versionCode(info));
+        assertArrayEquals(new String[]{"0a0b", "0c0d"}, PlayerIntents.signers(info));
+    }
+}
@@ -0,0 +1,78 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import org.json.JSONArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class PlaylistProviderTest {
+    private static JSONArray urls(int count) {
+        JSONArray urls = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            urls.put("http://nas/stream/abc/" + i);
+        }
+        return urls;
+    }
+
+    @Test
+    public void clampsTheStartIndex() {
+        assertEquals(0, new PlaylistProvider.Playlist("Show", urls(3), null, -4, null).start);
+        assertEquals(2, new PlaylistProvider.Playlist("Show", urls(3), null, 9, null).start);
+    }
+
+    @Test
+    public void namesFallBackToTheEntryNumber() {
+        JSONArray names = new JSONArray().put("S01E01").put("");
+        PlaylistProvider.Playlist playlist = new PlaylistProvider.Playlist("Show", urls(3), names, 0, null);
+        assertEquals("S01E01", playlist.name(0));
+        assertEquals("File 2", playlist.name(1));
+        assertEquals("File 3", playlist.name(2));
+        assertEquals("http://nas/stream/abc/2", playlist.url(2));
+    }
+
+    @Test
+    public void writesTheM3uFromTheStartEntry() throws Exception {
+        JSONArray names = new JSONArray().put("S01E01").put("S01E02\nextra");
+        PlaylistProvider.Playlist playlist = new PlaylistProvider.Playlist("My\rShow", urls(2), names, 1, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        playlist.writeM3u(out);
+        assertEquals("#EXTM3U\n"
+                + "#PLAYLIST:My Show\n"
+                + "#EXTINF:-1,S01E02 extra\n"
+                + "http://nas/stream/abc/1\n", out.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    public void aSeasonFitsTheIntentBudgetAWholeSeriesDoesNot() {
+        JSONArray names = new JSONArray();
+        for (int i = 0; i < 5000; i++) {
+            names.put("Show.S01E" + i + ".2160p.WEB-DL.DDP5.1.Atmos.HDR.H.265-GROUP.mkv");
+        }
+        assertFalse(PlaylistProvider.exceedsIntentBudget(urls(24), names));
+        assertTrue(PlaylistProvider.exceedsIntentBudget(urls(5000), names));
+    }
+
+    @Test
+    public void keepsOnlyTheLatestPlaylists() {
+        PlaylistProvider.Playlist first = new PlaylistProvider.Playlist("first", urls(1), null, 0, null);
+        String firstId = PlaylistProvider.publish(first);
+        assertSame(first, PlaylistProvider.get(firstId));
+
+        String lastId = null;
+        for (int i = 0; i < 8; i++) {
+            lastId = PlaylistProvider.publish(new PlaylistProvider.Playlist("next", urls(1), null, 0, null));
+        }
+        assertNull(PlaylistProvider.get(firstId));
+        assertEquals("next", PlaylistProvider.get(lastId).title);
+        assertNull(PlaylistProvider.get(null));
+    }
+}
@@ -0,0 +1,43 @@
+package com.torserve.pwa;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Update check on the single-signer fast path and a rotated signer set. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApkCheckBenchmark {
+    @Param({"1", "3"})
+    public int signers;
+
+    private String[] installed;
+    private String[] apk;
+
+    @Setup
+    public void setup() {
+        installed = new String[signers];
+        apk = new String[signers];
+        for (int i = 0; i < signers; i++) {
+            // Signature.toCharsString() of an RSA-2048 cert is ~1.5k hex chars
+            StringBuilder cert = new StringBuilder();
+            for (int j = 0; j < 96; j++) {
+                cert.append("3082030d308201f5a00302").append(i);
+            }
+            installed[i] = cert.toString();
+            apk[signers - 1 - i] = new String(installed[i].toCharArray());
+        }
+    }
+
+    @Benchmark
+    public String validate() {
+        return ApkCheck.validate("com.torserve.pwa", 37, installed, "com.torserve.pwa", 38, apk);
+    }
+}
@@ -0,0 +1,34 @@
+package com.torserve.pwa;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * record() as BridgeMetrics calls it on every bridge call, uncontended and
+ * from 4 threads. Run with -prof gc: gc.alloc.rate.norm should be 0.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LatencyHistogramBenchmark {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private long value = 1234;
+
+    @Benchmark
+    public void record() {
+        value = value * 6364136223846793005L + 1442695040888963407L;
+        histogram.record((value >>> 40) & 0xfffff);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        histogram.record(System.nanoTime() & 0xfffff);
+    }
+}
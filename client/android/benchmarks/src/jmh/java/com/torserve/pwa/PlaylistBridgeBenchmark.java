@@ -0,0 +1,79 @@
+package com.torserve.pwa;
+
+import android.content.Intent;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The whole extras-mode playList() path, from the call data the bridge
+ * parsed to the Intent handed to startActivityForResult: JSONArray to
+ * ArrayList, PlayerLaunch, then PlayerIntents.toIntent with its Uri
+ * parsing and Bundle extras. org.json, Uri and Intent are the framework
+ * classes from Robolectric's android-all jar. The Binder marshalling of
+ * the Intent needs a device and is not included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaylistBridgeBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int size;
+
+    private String payload;
+
+    @Setup
+    public void setup() throws JSONException {
+        JSONArray urls = new JSONArray();
+        JSONArray names = new JSONArray();
+        for (int i = 0; i < size; i++) {
+            urls.put("http://192.168.1.10:3000/stream/0123456789abcdef0123456789abcdef01234567/" + i);
+            names.put("Show.S01E" + i + ".1080p.mkv");
+        }
+        JSONObject data = new JSONObject();
+        data.put("title", "Show");
+        data.put("urls", urls);
+        data.put("names", names);
+        data.put("startIndex", size / 2);
+        data.put("position", 60000);
+        payload = data.toString();
+    }
+
+    /** Same steps as TVPlayer.playList for playlistMode "extras". */
+    private Intent launch(String packageName) throws JSONException {
+        JSONObject data = new JSONObject(payload);
+        JSONArray urlsJson = data.getJSONArray("urls");
+        JSONArray namesJson = data.optJSONArray("names");
+        int start = Math.max(0, Math.min(data.optInt("startIndex", 0), urlsJson.length() - 1));
+        ArrayList<String> urls = new ArrayList<>();
+        ArrayList<String> names = new ArrayList<>();
+        for (int i = 0; i < urlsJson.length(); i++) {
+            urls.add(urlsJson.optString(i));
+            String name = namesJson != null && i < namesJson.length() ? namesJson.optString(i, null) : null;
+            names.add(name != null && !name.isEmpty() ? name : "File " + (i + 1));
+        }
+        PlayerLaunch launch = PlayerLaunch.playlist(packageName, data.optString("title", "Playlist"),
+                urls, names, start, data.optInt("position", 0));
+        return PlayerIntents.toIntent(launch);
+    }
+
+    @Benchmark
+    public Intent vimu() throws JSONException {
+        return launch("net.gtvbox.videoplayer");
+    }
+
+    @Benchmark
+    public Intent mx() throws JSONException {
+        return launch("com.mxtech.videoplayer.ad");
+    }
+}
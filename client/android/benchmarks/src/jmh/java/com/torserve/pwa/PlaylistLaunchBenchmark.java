@@ -0,0 +1,47 @@
+package com.torserve.pwa;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of building the launch for a playList() call, per player, from a
+ * season (10) to a whole-series (10000) playlist.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PlaylistLaunchBenchmark {
+    @Param({"10", "1000", "10000"})
+    public int size;
+
+    private ArrayList<String> urls;
+    private ArrayList<String> names;
+
+    @Setup
+    public void setup() {
+        urls = new ArrayList<>(size);
+        names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            urls.add("http://192.168.1.10:3000/stream/0123456789abcdef0123456789abcdef01234567/" + i);
+            names.add("Show.S01E" + i + ".1080p.mkv");
+        }
+    }
+
+    @Benchmark
+    public PlayerLaunch vimu() {
+        return PlayerLaunch.playlist("net.gtvbox.videoplayer", "Show", urls, names, size / 2, 60000);
+    }
+
+    @Benchmark
+    public PlayerLaunch mx() {
+        return PlayerLaunch.playlist("com.mxtech.videoplayer.ad", "Show", urls, names, size / 2, 60000);
+    }
+}
@@ -0,0 +1,56 @@
+package com.torserve.pwa;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Whether a downloaded update APK may be installed over this app, on
+ * values PackageManager already extracted (signatures as
+ * Signature.toCharsString()). Returns the reason it may not, or null.
+ */
+public final class ApkCheck {
+    private ApkCheck() {
+    }
+
+    /**
+     * @param apkPackage null when the archive's manifest couldn't be read
+     */
+    public static String validate(String installedPackage, long installedVersionCode, String[] installedSigners,
+                                  String apkPackage, long apkVersionCode, String[] apkSigners) {
+        if (apkPackage == null) {
+            return "Cannot read APK manifest";
+        }
+        if (!installedPackage.equals(apkPackage)) {
+            return "APK package does not match installed app";
+        }
+        if (apkVersionCode > 0 && installedVersionCode > 0 && apkVersionCode <= installedVersionCode) {
+            return "APK is not newer than the installed app";
+        }
+        if (!signaturesMatch(installedSigners, apkSigners)) {
+            return "APK signature does not match installed app";
+        }
+        return null;
+    }
+
+    /** Same signer set (order-insensitive); unknown signers never match. */
+    public static boolean signaturesMatch(String[] installed, String[] apk) {
+        if (installed == null || apk == null) {
+            return false;
+        }
+        if (installed.length != apk.length) {
+            return false;
+        }
+        if (installed.length == 1) {
+            return installed[0] != null && installed[0].equals(apk[0]);
+        }
+        Set<String> installedSet = new HashSet<>();
+        for (String signature : installed) {
+            installedSet.add(signature);
+        }
+        Set<String> apkSet = new HashSet<>();
+        for (String signature : apk) {
+            apkSet.add(signature);
+        }
+        return installedSet.equals(apkSet);
+    }
+}
@@ -0,0 +1,244 @@
+package com.torserve.pwa;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Finds TorServe servers by asking hosts for /api/status, many at once.
+ *
+ * One thread and one Selector drive up to maxInFlight non-blocking
+ * connections; each sends a plain HTTP/1.1 GET and reads at most 4 KB,
+ * enough to see the status line and the start of the JSON. A /24 sweep
+ * is bounded by the per-host timeout times ceil(254 / maxInFlight): hosts
+ * without the port answer with a RST right away, absent ones time out.
+ */
+public final class LanProbe {
+    public static final String STATUS_PATH = "/api/status";
+    private static final int RESPONSE_BYTES = 4096;
+    private static final long SELECT_MS = 20;
+
+    public static final class Hit {
+        public final String host;
+        public final int port;
+        /** Connect to identified response, in ms. */
+        public final long rttMillis;
+
+        Hit(String host, int port, long rttMillis) {
+            this.host = host;
+            this.port = port;
+            this.rttMillis = rttMillis;
+        }
+
+        public String url() {
+            return "http://" + host + ":" + port;
+        }
+    }
+
+    private LanProbe() {
+    }
+
+    /** Site-local IPv4 addresses of the interfaces that are up (Wi-Fi, Ethernet). */
+    public static List<Inet4Address> localAddresses() {
+        List<Inet4Address> addresses = new ArrayList<>();
+        try {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                NetworkInterface nif = interfaces.nextElement();
+                if (!nif.isUp() || nif.isLoopback() || nif.isPointToPoint()) {
+                    continue; // VPN tunnels are point-to-point
+                }
+                for (InterfaceAddress address : nif.getInterfaceAddresses()) {
+                    InetAddress inet = address.getAddress();
+                    if (inet instanceof Inet4Address && inet.isSiteLocalAddress()) {
+                        addresses.add((Inet4Address) inet);
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            // No interfaces to sweep
+        }
+        return addresses;
+    }
+
+    /** .1 to .254 of self's /24, without self. */
+    public static List<InetSocketAddress> subnet24(Inet4Address self, int port) {
+        byte[] ip = self.getAddress();
+        int own = ip[3] & 0xff;
+        List<InetSocketAddress> targets = new ArrayList<>(253);
+        for (int last = 1; last <= 254; last++) {
+            if (last == own) {
+                continue;
+            }
+            String host = (ip[0] & 0xff) + "." + (ip[1] & 0xff) + "." + (ip[2] & 0xff) + "." + last;
+            targets.add(new InetSocketAddress(host, port));
+        }
+        return targets;
+    }
+
+    /**
+     * @param targets       resolved addresses (unresolved ones are skipped)
+     * @param maxInFlight   concurrent connections
+     * @param hostTimeoutMs per host, from connect to identified response
+     * @return servers that answered like TorServe, fastest first
+     */
+    public static List<Hit> probe(List<InetSocketAddress> targets, int maxInFlight, long hostTimeoutMs)
+            throws IOException {
+        Deque<InetSocketAddress> queue = new ArrayDeque<>(targets);
+        List<Hit> hits = new ArrayList<>();
+        Selector selector = Selector.open();
+        try {
+            while (!queue.isEmpty() || !selector.keys().isEmpty()) {
+                while (!queue.isEmpty() && selector.keys().size() < maxInFlight) {
+                    start(selector, queue.poll(), hostTimeoutMs);
+                }
+                selector.select(SELECT_MS);
+                long now = System.nanoTime();
+                Iterator<SelectionKey> ready = selector.selectedKeys().iterator();
+                while (ready.hasNext()) {
+                    SelectionKey key = ready.next();
+                    ready.remove();
+                    Attempt attempt = (Attempt) key.attachment();
+                    if (!attempt.step(key)) {
+                        attempt.close(key);
+                    } else if (attempt.identified) {
+                        hits.add(new Hit(attempt.host, attempt.target.getPort(),
+                                (now - attempt.startedAt) / 1_000_000));
+                        attempt.close(key);
+                    }
+                }
+                for (SelectionKey key : new ArrayList<>(selector.keys())) {
+                    Attempt attempt = (Attempt) key.attachment();
+                    if (now - attempt.deadline > 0) {
+                        attempt.close(key);
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly((SocketChannel) key.channel());
+            }
+            selector.close();
+        }
+        rank(hits);
+        return hits;
+    }
+
+    static void rank(List<Hit> hits) {
+        Collections.sort(hits, (a, b) -> Long.compare(a.rttMillis, b.rttMillis));
+    }
+
+    private static void start(Selector selector, InetSocketAddress target, long timeoutMs) {
+        if (target == null || target.isUnresolved()) {
+            return;
+        }
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            Attempt attempt = new Attempt(target, timeoutMs);
+            boolean connected = channel.connect(target);
+            channel.register(selector, connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, attempt);
+        } catch (IOException e) {
+            closeQuietly(channel);
+        }
+    }
+
+    /** Status line 200 or 503 (circuit open: still our server) and the JSON shape. */
+    static boolean looksLikeTorServe(String response) {
+        if (!response.startsWith("HTTP/1.")) {
+            return false;
+        }
+        int space = response.indexOf(' ');
+        if (space < 0 || response.length() < space + 4) {
+            return false;
+        }
+        String status = response.substring(space + 1, space + 4);
+        if (!"200".equals(status) && !"503".equals(status)) {
+            return false;
+        }
+        int body = response.indexOf("\r\n\r\n");
+        return body >= 0 && response.indexOf("\"serverStatus\"", body) >= 0;
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // Nothing to do
+            }
+        }
+    }
+
+    private static final class Attempt {
+        final InetSocketAddress target;
+        final String host;
+        final long startedAt = System.nanoTime();
+        final long deadline;
+        final ByteBuffer request;
+        final ByteBuffer response = ByteBuffer.allocate(RESPONSE_BYTES);
+        boolean identified;
+
+        Attempt(InetSocketAddress target, long timeoutMs) {
+            this.target = target;
+            this.host = target.getAddress().getHostAddress();
+            this.deadline = startedAt + timeoutMs * 1_000_000;
+            this.request = ByteBuffer.wrap(("GET " + STATUS_PATH + " HTTP/1.1\r\n"
+                    + "Host: " + host + ":" + target.getPort() + "\r\n"
+                    + "Accept: application/json\r\n"
+                    + "User-Agent: TorServe-Discovery\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        }
+
+        /** Advances on readiness; false when this host is done without a hit. */
+        boolean step(SelectionKey key) {
+            SocketChannel channel = (SocketChannel) key.channel();
+            try {
+                if (key.isConnectable()) {
+                    if (!channel.finishConnect()) {
+                        return true;
+                    }
+                    key.interestOps(SelectionKey.OP_WRITE);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    channel.write(request);
+                    if (!request.hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                    return true;
+                }
+                if (key.isValid() && key.isReadable()) {
+                    int read = channel.read(response);
+                    String text = new String(response.array(), 0, response.position(), StandardCharsets.ISO_8859_1);
+                    identified = looksLikeTorServe(text);
+                    return identified || (read >= 0 && response.hasRemaining());
+                }
+                return true;
+            } catch (IOException e) {
+                return false; // refused, reset, unreachable
+            }
+        }
+
+        void close(SelectionKey key) {
+            key.cancel();
+            closeQuietly((SocketChannel) key.channel());
+        }
+    }
+}
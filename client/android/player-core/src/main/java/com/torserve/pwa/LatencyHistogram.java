@@ -0,0 +1,123 @@
+package com.torserve.pwa;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-memory latency histogram, safe to record into from any thread
+ * without locks or allocation: log-linear buckets (8 per power of two, so
+ * a percentile is off by at most 12.5%) over 0 us .. 2^34 us (~4.7 h);
+ * larger values land in the last bucket.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 34;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 1) * SUB_COUNT;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        buckets.incrementAndGet(bucketOf(micros));
+        sumMicros.addAndGet(micros);
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros)) {
+            // another thread moved max meanwhile: compare again
+        }
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_COUNT) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int mantissa = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + mantissa;
+    }
+
+    /** Smallest value that falls in bucket. */
+    static long lowerBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int group = bucket / SUB_COUNT;
+        return (long) (SUB_COUNT + bucket % SUB_COUNT) << (group - 1);
+    }
+
+    /** Largest value that falls in bucket. */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        return lowerBound(bucket) + (1L << (bucket / SUB_COUNT - 1)) - 1;
+    }
+
+    /** Zeroes the counts; values recorded concurrently may survive it. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        sumMicros.set(0);
+        maxMicros.set(0);
+    }
+
+    /**
+     * Copy for reporting; the count is the sum of the buckets. Not atomic
+     * against concurrent record() calls: a value may be in its bucket but
+     * not yet in the sum or max.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = buckets.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sumMicros.get(), maxMicros.get());
+    }
+
+    public static final class Snapshot {
+        private final long[] buckets;
+        public final long count;
+        public final long sumMicros;
+        public final long maxMicros;
+
+        Snapshot(long[] buckets, long count, long sumMicros, long maxMicros) {
+            this.buckets = buckets;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            this.maxMicros = maxMicros;
+        }
+
+        public long meanMicros() {
+            return count > 0 ? sumMicros / count : 0;
+        }
+
+        /**
+         * Value at quantile q (0..1): the upper bound of the bucket holding
+         * it, capped at the recorded max. 0 when empty.
+         */
+        public long percentileMicros(double q) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(q * count));
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), maxMicros);
+                }
+            }
+            return maxMicros;
+        }
+    }
+}
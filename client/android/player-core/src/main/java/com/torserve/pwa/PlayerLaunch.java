@@ -0,0 +1,138 @@
+package com.torserve.pwa;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What TVPlayer.play()/playList() hand to an external player, without
+ * android.content.Intent: data Uri, MIME type, package and extras in the
+ * shape each player expects (from MatriX Vimu.kt / MX.kt). TVPlayer turns
+ * it into the Intent (PlayerIntents.toIntent) and adds the launch flags.
+ *
+ * Extra values are String, Boolean, Integer, ArrayList&lt;String&gt;,
+ * String[] or UriArray.
+ */
+public final class PlayerLaunch {
+    public static final String VIMU = "gtvbox";
+    public static final String MX = "mxtech";
+    public static final String VLC = "videolan";
+    public static final String VIMU_PLAYLIST_TYPE = "application/vnd.gtvbox.filelist";
+    public static final String VIDEO_TYPE = "video/*";
+
+    /** Uri[] extra (MX video_list), kept as strings until TVPlayer parses them. */
+    public static final class UriArray {
+        public final List<String> uris;
+
+        UriArray(List<String> uris) {
+            this.uris = uris;
+        }
+    }
+
+    public final String data;
+    public final String type;
+    public final String packageName;
+    /** content:// playlist or offline copy: the player needs read permission on data. */
+    public final boolean grantRead;
+    public final Map<String, Object> extras = new LinkedHashMap<>();
+
+    private PlayerLaunch(String data, String type, String packageName, boolean grantRead) {
+        this.data = data;
+        this.type = type;
+        this.packageName = packageName != null && !packageName.isEmpty() ? packageName : null;
+        this.grantRead = grantRead;
+    }
+
+    private static boolean is(String packageName, String player) {
+        return packageName != null && packageName.contains(player);
+    }
+
+    /**
+     * Single file; position (ms) > 0 resumes where the player supports it.
+     * A content:// url (downloaded episode) is granted to the player.
+     */
+    public static PlayerLaunch file(String url, String title, String packageName, int position) {
+        PlayerLaunch launch = new PlayerLaunch(url, VIDEO_TYPE, packageName, url.startsWith("content://"));
+        if (launch.packageName == null) {
+            return launch;
+        }
+        // Common extras for result
+        launch.extras.put("return_result", true);
+
+        // Vimu Player extras (net.gtvbox.videoplayer)
+        if (is(packageName, VIMU)) {
+            launch.extras.put("forcename", title); // Show title instead of URL
+            launch.extras.put("forcedirect", true); // Direct access without buffering
+            if (position > 0)
+                launch.extras.put("startfrom", position); // Resume Vimu
+        }
+
+        // MX Player extras (com.mxtech.videoplayer)
+        if (is(packageName, MX)) {
+            launch.extras.put("title", title);
+            launch.extras.put("sticky", false);
+            if (position > 0)
+                launch.extras.put("position", position); // Resume MX
+        }
+
+        // VLC extras
+        if (is(packageName, VLC)) {
+            launch.extras.put("title", title);
+            if (position > 0)
+                launch.extras.put("from_start", false); // VLC specific?
+            // VLC doesn't support standard position extra well, depends on version
+        }
+        return launch;
+    }
+
+    /**
+     * Playlist as extras: Vimu asusfilelist/asusnamelist, MX video_list,
+     * otherwise just the start entry.
+     * @param urls  player-facing URLs (already through the read-ahead proxy)
+     * @param names display names, same size as urls
+     */
+    public static PlayerLaunch playlist(String packageName, String title, ArrayList<String> urls,
+                                        ArrayList<String> names, int startIndex, int position) {
+        PlayerLaunch launch;
+        if (is(packageName, VIMU)) {
+            // Vimu playlist format (from Vimu.kt)
+            launch = new PlayerLaunch(urls.get(startIndex), VIMU_PLAYLIST_TYPE, packageName, false);
+            launch.extras.put("return_result", true);
+            launch.extras.put("forcename", title);
+            launch.extras.put("asusfilelist", urls);
+            launch.extras.put("asusnamelist", names);
+            launch.extras.put("startindex", startIndex);
+            if (position > 0 && startIndex >= 0)
+                launch.extras.put("startfrom", position);
+        } else if (is(packageName, MX)) {
+            // MX Player playlist format (from MX.kt)
+            launch = new PlayerLaunch(urls.get(startIndex), VIDEO_TYPE, packageName, false);
+            launch.extras.put("return_result", true);
+            launch.extras.put("title", title);
+            String[] nameArray = names.toArray(new String[0]);
+            launch.extras.put("video_list", new UriArray(urls));
+            launch.extras.put("video_list.name", nameArray);
+            launch.extras.put("video_list.filename", nameArray);
+            launch.extras.put("video_list_is_explicit", true);
+            if (position > 0)
+                launch.extras.put("position", position);
+        } else {
+            // Fallback: play single file from startIndex
+            launch = new PlayerLaunch(urls.get(startIndex), VIDEO_TYPE, packageName, false);
+            launch.extras.put("return_result", true);
+        }
+        return launch;
+    }
+
+    /** Binder-safe playlist: one content:// M3U handle instead of extras. */
+    public static PlayerLaunch m3u(String playlistUri, String mimeType, String packageName, String title, int position) {
+        PlayerLaunch launch = new PlayerLaunch(playlistUri, mimeType, packageName, true);
+        launch.extras.put("return_result", true);
+        launch.extras.put("title", title);
+        if (launch.packageName != null && position > 0) {
+            launch.extras.put(is(packageName, VIMU) ? "startfrom" : "position", position);
+        }
+        return launch;
+    }
+}
@@ -0,0 +1,52 @@
+package com.torserve.pwa;
+
+/**
+ * The {position, duration, endBy, finished} an external player returns,
+ * read from the result Intent's extras (MX Player / Vimu keys).
+ */
+public final class PlayerResult {
+    /** Past this fraction of the duration the file counts as watched. */
+    public static final double FINISHED_RATIO = 0.95;
+    public static final String END_BY_COMPLETION = "playback_completion";
+
+    /** Intent.getIntExtra / getStringExtra, so this runs without android. */
+    public interface Extras {
+        int getInt(String key, int defaultValue);
+
+        String getString(String key);
+    }
+
+    public final int position;
+    public final int duration;
+    /** "user", "playback_completion" or null */
+    public final String endBy;
+    public final boolean finished;
+
+    public PlayerResult(int position, int duration, String endBy, boolean finished) {
+        this.position = position;
+        this.duration = duration;
+        this.endBy = endBy;
+        this.finished = finished;
+    }
+
+    public static PlayerResult parse(Extras extras) {
+        // MX Player / Vimu standard return keys
+        int position = extras.getInt("position", -1);
+        int duration = extras.getInt("duration", -1);
+        String endBy = extras.getString("end_by"); // user, playback_completion
+
+        // Try distinct known keys if standard fail
+        if (position == -1)
+            position = extras.getInt("current_position", -1);
+
+        return new PlayerResult(position, duration, endBy, isFinished(position, duration, endBy));
+    }
+
+    /** Finished if endBy is completion OR position is past 95% of duration. */
+    public static boolean isFinished(int position, int duration, String endBy) {
+        if (END_BY_COMPLETION.equals(endBy)) {
+            return true;
+        }
+        return duration > 0 && position > duration * FINISHED_RATIO;
+    }
+}
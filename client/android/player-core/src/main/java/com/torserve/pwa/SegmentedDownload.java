@@ -0,0 +1,534 @@
+package com.torserve.pwa;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copies one NAS stream (/stream/:infoHash/:fileIndex) to a local file
+ * over several parallel Range requests.
+ *
+ * The file is preallocated to its full length and each segment thread
+ * writes at its own offsets with positional FileChannel writes: no shared
+ * file position, no reassembly. Progress lives in "&lt;file&gt;.segments"
+ * (start, end and done bytes per segment) and is only written
+ * after force() on the data, so it never claims bytes the disk doesn't
+ * have. A new SegmentedDownload on the same file continues from there,
+ * also after a reboot; the sidecar goes away when every segment is done,
+ * so a target without one is complete.
+ *
+ * A file in a torrent never changes under the same infoHash/index, so the
+ * total length (checked against every Content-Range) is the only validator.
+ */
+public final class SegmentedDownload {
+    public static final int DEFAULT_SEGMENTS = 4;
+    static final long MIN_SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final String STATE_SUFFIX = ".segments";
+    private static final int BUFFER_BYTES = 256 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 30000;
+    private static final long CHECKPOINT_INTERVAL_MS = 2000;
+    private static final long PROGRESS_INTERVAL_MS = 500;
+    // Consecutive failures of one segment without a byte of progress: the
+    // NAS answers 503 until the first piece of a range is downloaded
+    private static final int MAX_FAILURES = 20;
+    private static final long RETRY_BASE_MS = 1000;
+    private static final long RETRY_MAX_MS = 30000;
+
+    public interface Listener {
+        void onProgress(long downloaded, long total, long bytesPerSec);
+    }
+
+    /** [start, end) of the file; done bytes from start are on disk. */
+    static final class Segment {
+        final long start;
+        final long end;
+        final AtomicLong done;
+
+        Segment(long start, long end, long done) {
+            this.start = start;
+            this.end = end;
+            this.done = new AtomicLong(done);
+        }
+
+        long next() {
+            return start + done.get();
+        }
+
+        boolean finished() {
+            return next() >= end;
+        }
+    }
+
+    /** HTTP error or a different file: retrying won't help. */
+    static final class BadSourceException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BadSourceException(String message) {
+            super(message);
+        }
+    }
+
+    private final String url;
+    private final File target;
+    private final int segmentCount;
+    private final long minSegmentBytes;
+    private final Set<HttpURLConnection> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    private volatile boolean cancelled;
+    private boolean rangeless;
+    private volatile long total = -1;
+    private volatile List<Segment> segments = Collections.emptyList();
+
+    /**
+     * @param knownLength file length if the caller has it (torrent file list),
+     *                    otherwise &lt;= 0 and it is asked from the server
+     */
+    public SegmentedDownload(String url, File target, int segments, long knownLength) {
+        this(url, target, segments, knownLength, MIN_SEGMENT_BYTES);
+    }
+
+    SegmentedDownload(String url, File target, int segments, long knownLength, long minSegmentBytes) {
+        this.url = url;
+        this.target = target;
+        this.segmentCount = Math.max(1, segments);
+        this.minSegmentBytes = Math.max(1, minSegmentBytes);
+        this.total = knownLength > 0 ? knownLength : -1;
+    }
+
+    public static File stateFile(File target) {
+        return new File(target.getPath() + STATE_SUFFIX);
+    }
+
+    public static boolean isComplete(File target) {
+        return target.isFile() && !stateFile(target).exists();
+    }
+
+    /** The file and its progress, e.g. when the user removes a download. */
+    public static void delete(File target) {
+        target.delete();
+        stateFile(target).delete();
+        new File(stateFile(target).getPath() + ".tmp").delete();
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public long downloaded() {
+        long sum = 0;
+        for (Segment segment : segments) {
+            sum += segment.done.get();
+        }
+        return sum;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        for (HttpURLConnection conn : connections) {
+            conn.disconnect(); // unblocks a read waiting on the NAS
+        }
+    }
+
+    /** Blocks until the file is complete; throws when cancelled or failed (progress kept). */
+    public void run(Listener listener) throws IOException {
+        List<Segment> resumed = readState(target);
+        if (resumed != null && target.length() == stateTotal(resumed) && (total < 0 || total == stateTotal(resumed))) {
+            total = stateTotal(resumed);
+            segments = resumed;
+        } else {
+            if (total < 0) {
+                total = probeLength();
+            }
+            File dir = target.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Cannot create " + dir);
+            }
+            if (dir != null && dir.getUsableSpace() < total) {
+                throw new IOException("Not enough space: need " + total + " bytes, " + dir.getUsableSpace() + " free");
+            }
+            try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+                raf.setLength(total);
+            }
+            segments = plan(total, rangeless ? 1 : segmentCount, minSegmentBytes);
+            writeState(target, segments);
+        }
+
+        List<Segment> pending = new ArrayList<>();
+        for (Segment segment : segments) {
+            if (!segment.finished()) {
+                pending.add(segment);
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(target, "rw");
+             FileChannel channel = raf.getChannel()) {
+            CountDownLatch finished = new CountDownLatch(pending.size());
+            for (int i = 0; i < pending.size(); i++) {
+                Segment segment = pending.get(i);
+                Thread thread = new Thread(() -> {
+                    try {
+                        fetchWithRetry(segment, channel);
+                    } finally {
+                        finished.countDown();
+                    }
+                }, "offline-segment-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            long lastReportAt = System.nanoTime();
+            long lastReportBytes = downloaded();
+            long lastCheckpointAt = lastReportAt;
+            boolean done = false;
+            boolean interrupted = false;
+            while (!done) {
+                try {
+                    done = finished.await(PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    cancel(); // segment threads stop within a read or a sleep
+                }
+                long now = System.nanoTime();
+                if (!done && now - lastCheckpointAt >= CHECKPOINT_INTERVAL_MS * 1_000_000) {
+                    checkpoint(channel);
+                    lastCheckpointAt = now;
+                }
+                long bytes = downloaded();
+                if (listener != null) {
+                    long elapsedMs = Math.max(1, (now - lastReportAt) / 1_000_000);
+                    listener.onProgress(bytes, total, done ? 0 : (bytes - lastReportBytes) * 1000 / elapsedMs);
+                }
+                lastReportAt = now;
+                lastReportBytes = bytes;
+            }
+            checkpoint(channel);
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        if (downloaded() < total) {
+            throw new IOException("Download cancelled");
+        }
+        stateFile(target).delete();
+    }
+
+    /** Snapshot done first, force the data, then persist: the file never claims unsynced bytes. */
+    private void checkpoint(FileChannel channel) throws IOException {
+        List<Segment> snapshot = new ArrayList<>(segments.size());
+        for (Segment segment : segments) {
+            snapshot.add(new Segment(segment.start, segment.end, segment.done.get()));
+        }
+        channel.force(false);
+        writeState(target, snapshot);
+    }
+
+    private void fetchWithRetry(Segment segment, FileChannel channel) {
+        int failures = 0;
+        while (!segment.finished() && !cancelled && failure.get() == null) {
+            long before = segment.done.get();
+            long retryAfterMs = 0;
+            IOException error;
+            try {
+                fetch(segment, channel);
+                continue;
+            } catch (BadSourceException e) {
+                fail(e);
+                return;
+            } catch (IOException e) {
+                if (cancelled) {
+                    return;
+                }
+                error = e;
+                if (e instanceof RetryLaterException) {
+                    retryAfterMs = ((RetryLaterException) e).delayMs;
+                }
+            }
+            failures = segment.done.get() > before ? 0 : failures + 1;
+            if (failures >= MAX_FAILURES) {
+                fail(error);
+                return;
+            }
+            if (!sleep(Math.max(retryAfterMs, backoffMs(failures)))) {
+                return;
+            }
+        }
+    }
+
+    private void fetch(Segment segment, FileChannel channel) throws IOException {
+        long from = segment.next();
+        HttpURLConnection conn = open(from, segment.end - 1);
+        try {
+            int status = conn.getResponseCode();
+            checkStatus(conn, status);
+            if (status == HttpURLConnection.HTTP_OK) {
+                if (segment.start > 0) {
+                    throw new BadSourceException("Server ignores Range requests");
+                }
+                from = 0; // whole file again: only possible for a single segment
+                segment.done.set(0);
+            } else {
+                checkContentRange(conn.getHeaderField("Content-Range"), from);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+            byte[] array = buffer.array();
+            try (InputStream in = conn.getInputStream()) {
+                long position = from;
+                while (position < segment.end && !cancelled) {
+                    int want = (int) Math.min(array.length, segment.end - position);
+                    int read = in.read(array, 0, want);
+                    if (read < 0) {
+                        throw new IOException("Connection closed at " + position + " of " + segment.end);
+                    }
+                    buffer.clear().limit(read);
+                    while (buffer.hasRemaining()) {
+                        position += channel.write(buffer, position);
+                    }
+                    segment.done.set(position - segment.start);
+                }
+            }
+        } finally {
+            connections.remove(conn);
+            conn.disconnect();
+        }
+    }
+
+    /** Length from a one-byte Range probe (Content-Range total, or Content-Length of a 200). */
+    private long probeLength() throws IOException {
+        IOException last = null;
+        for (int attempt = 1; attempt <= MAX_FAILURES && !cancelled; attempt++) {
+            long delayMs = backoffMs(attempt);
+            HttpURLConnection conn = open(0, 0);
+            try {
+                int status = conn.getResponseCode();
+                checkStatus(conn, status);
+                if (status == HttpURLConnection.HTTP_OK) {
+                    long length = conn.getContentLengthLong();
+                    if (length > 0) {
+                        rangeless = true;
+                        return length;
+                    }
+                    throw new BadSourceException("Server sent no length");
+                }
+                return contentRangeTotal(conn.getHeaderField("Content-Range"));
+            } catch (BadSourceException e) {
+                throw e;
+            } catch (RetryLaterException e) {
+                last = e;
+                delayMs = Math.max(delayMs, e.delayMs);
+            } catch (IOException e) {
+                last = e;
+            } finally {
+                connections.remove(conn);
+                conn.disconnect();
+            }
+            if (!sleep(delayMs)) {
+                break;
+            }
+        }
+        throw last != null && !cancelled ? last : new IOException("Download cancelled");
+    }
+
+    private HttpURLConnection open(long from, long toInclusive) throws IOException {
+        if (cancelled) {
+            throw new IOException("Download cancelled");
+        }
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        connections.add(conn);
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        conn.setInstanceFollowRedirects(true); // torrents moved to TorrServer answer 302
+        conn.setRequestProperty("Accept-Encoding", "identity");
+        conn.setRequestProperty("Range", "bytes=" + from + "-" + toInclusive);
+        return conn;
+    }
+
+    private static void checkStatus(HttpURLConnection conn, int status) throws IOException {
+        if (status == HttpURLConnection.HTTP_OK || status == HttpURLConnection.HTTP_PARTIAL) {
+            return;
+        }
+        if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+            throw new RetryLaterException(retryAfterMs(conn.getHeaderField("Retry-After")));
+        }
+        if (status >= 500) {
+            throw new IOException("HTTP " + status);
+        }
+        throw new BadSourceException("HTTP " + status);
+    }
+
+    private void checkContentRange(String header, long from) throws IOException {
+        long[] range = parseContentRange(header);
+        if (range == null || range[0] != from) {
+            throw new BadSourceException("Unexpected Content-Range: " + header);
+        }
+        if (range[2] != total) {
+            throw new BadSourceException("File length changed: " + range[2] + ", expected " + total);
+        }
+    }
+
+    private static long contentRangeTotal(String header) throws IOException {
+        long[] range = parseContentRange(header);
+        if (range == null || range[2] <= 0) {
+            throw new BadSourceException("Unexpected Content-Range: " + header);
+        }
+        return range[2];
+    }
+
+    /** "bytes a-b/total" to {a, b, total}; null when malformed or total unknown. */
+    static long[] parseContentRange(String header) {
+        if (header == null || !header.startsWith("bytes ")) {
+            return null;
+        }
+        int dash = header.indexOf('-', 6);
+        int slash = header.indexOf('/', dash + 1);
+        if (dash < 0 || slash < 0) {
+            return null;
+        }
+        try {
+            return new long[] {
+                    Long.parseLong(header.substring(6, dash).trim()),
+                    Long.parseLong(header.substring(dash + 1, slash).trim()),
+                    Long.parseLong(header.substring(slash + 1).trim())
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static long retryAfterMs(String header) {
+        if (header == null) {
+            return 0;
+        }
+        try {
+            return Math.min(RETRY_MAX_MS, Long.parseLong(header.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            return 0; // HTTP-date form: plain backoff
+        }
+    }
+
+    private static long backoffMs(int failures) {
+        return Math.min(RETRY_MAX_MS, RETRY_BASE_MS << Math.min(Math.max(0, failures - 1), 5));
+    }
+
+    private void fail(IOException e) {
+        failure.compareAndSet(null, e);
+        cancel();
+    }
+
+    private boolean sleep(long ms) {
+        long until = System.nanoTime() + ms * 1_000_000;
+        while (!cancelled) {
+            long left = (until - System.nanoTime()) / 1_000_000;
+            if (left <= 0) {
+                return true;
+            }
+            try {
+                Thread.sleep(Math.min(left, 200)); // cancel() is seen within 200 ms
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /** Up to count segments of at least minBytes each; the last one takes the remainder. */
+    static List<Segment> plan(long total, int count, long minBytes) {
+        long n = Math.max(1, Math.min(count, total / Math.max(1, minBytes)));
+        long size = total / n;
+        List<Segment> plan = new ArrayList<>((int) n);
+        for (int i = 0; i < n; i++) {
+            long start = i * size;
+            plan.add(new Segment(start, i == n - 1 ? total : start + size, 0));
+        }
+        return plan;
+    }
+
+    private static long stateTotal(List<Segment> segments) {
+        return segments.get(segments.size() - 1).end;
+    }
+
+    /** One "start end done" line per segment; written to a temp file and renamed. */
+    static void writeState(File target, List<Segment> segments) throws IOException {
+        File state = stateFile(target);
+        File tmp = new File(state.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp);
+             Writer writer = new OutputStreamWriter(out, StandardCharsets.US_ASCII)) {
+            for (Segment segment : segments) {
+                writer.write(segment.start + " " + segment.end + " " + segment.done.get() + "\n");
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(state)) {
+            tmp.delete();
+            throw new IOException("Cannot write " + state);
+        }
+    }
+
+    /** Segments from the sidecar, or null when there is none or it doesn't add up. */
+    static List<Segment> readState(File target) {
+        File state = stateFile(target);
+        if (!state.isFile()) {
+            return null;
+        }
+        List<Segment> segments = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(state), StandardCharsets.US_ASCII))) {
+            long expectedStart = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 3) {
+                    return null;
+                }
+                long start = Long.parseLong(parts[0]);
+                long end = Long.parseLong(parts[1]);
+                long done = Long.parseLong(parts[2]);
+                if (start != expectedStart || end <= start || done < 0 || done > end - start) {
+                    return null;
+                }
+                segments.add(new Segment(start, end, done));
+                expectedStart = end;
+            }
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+        return segments.isEmpty() ? null : segments;
+    }
+
+    private static final class RetryLaterException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        final long delayMs;
+
+        RetryLaterException(long delayMs) {
+            super("HTTP 503");
+            this.delayMs = delayMs;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.torserve.pwa;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the intake preview shows of a .torrent file, read in one pass.
+ *
+ * The bencode is pulled from the stream through one 8 KB buffer: "pieces"
+ * (20 bytes per piece, megabytes for large torrents) is skipped, never
+ * stored. The info-hash is SHA-1 over the info dictionary's raw bytes as
+ * they go by, so it matches what trackers and the NAS compute even for
+ * non-canonical encodings. With a copy stream every byte read is also
+ * written there, so the caller can keep the file without reading it twice.
+ */
+public final class TorrentMeta {
+    public static final long MAX_TORRENT_BYTES = 32L * 1024 * 1024;
+    static final int MAX_FILES = 100_000;
+    private static final int MAX_DEPTH = 64;
+    private static final int MAX_KEY_BYTES = 1024;
+    private static final int MAX_STRING_BYTES = 64 * 1024;
+    private static final int PIECE_HASH_BYTES = 20;
+
+    /** Not a (supported) .torrent: bad bencode, missing fields, too big. */
+    public static final class FormatException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FormatException(String message) {
+            super(message);
+        }
+    }
+
+    public static final class FileEntry {
+        /** Path inside the torrent, "/"-separated, without the torrent name. */
+        public final String path;
+        public final long length;
+
+        FileEntry(String path, long length) {
+            this.path = path;
+            this.length = length;
+        }
+    }
+
+    /** Lowercase hex SHA-1 of the info dictionary. */
+    public final String infoHash;
+    public final String name;
+    /** Content files in torrent order; BEP 47 padding files left out. */
+    public final List<FileEntry> files;
+    public final long totalLength;
+    public final long pieceLength;
+    public final int pieceCount;
+    public final boolean isPrivate;
+    /** Size of the .torrent file itself. */
+    public final long torrentBytes;
+
+    private TorrentMeta(String infoHash, Info info, long torrentBytes) {
+        this.infoHash = infoHash;
+        this.name = info.name;
+        this.files = Collections.unmodifiableList(info.files);
+        this.totalLength = info.totalLength;
+        this.pieceLength = info.pieceLength;
+        this.pieceCount = info.pieceCount;
+        this.isPrivate = info.isPrivate;
+        this.torrentBytes = torrentBytes;
+    }
+
+    public static TorrentMeta parse(InputStream in) throws IOException {
+        return parse(in, null);
+    }
+
+    /**
+     * @param copy receives the whole file as read (trailing bytes after the
+     *             root dictionary included); may be null
+     */
+    public static TorrentMeta parse(InputStream in, OutputStream copy) throws IOException {
+        Source src = new Source(in, copy);
+        if (src.read() != 'd') {
+            throw new FormatException("Not a torrent file");
+        }
+        Info info = null;
+        String infoHash = null;
+        int b;
+        while ((b = src.require()) != 'e') {
+            String key = readKey(src, b);
+            if ("info".equals(key)) {
+                if (info != null) {
+                    throw new FormatException("Duplicate info dictionary");
+                }
+                src.digest = sha1();
+                if (src.require() != 'd') {
+                    throw new FormatException("info is not a dictionary");
+                }
+                info = readInfo(src);
+                infoHash = hex(src.digest.digest());
+                src.digest = null;
+            } else {
+                skipValue(src, src.require(), 1);
+            }
+        }
+        if (info == null) {
+            throw new FormatException("No info dictionary");
+        }
+        src.drain();
+        return new TorrentMeta(infoHash, info, src.total);
+    }
+
+    private static final class Info {
+        String name;
+        String utf8Name;
+        long length = -1;
+        List<FileEntry> files;
+        long totalLength;
+        long pieceLength;
+        int pieceCount;
+        boolean isPrivate;
+    }
+
+    private static Info readInfo(Source src) throws IOException {
+        Info info = new Info();
+        int b;
+        while ((b = src.require()) != 'e') {
+            String key = readKey(src, b);
+            switch (key) {
+                case "name":
+                    info.name = readString(src, key);
+                    break;
+                case "name.utf-8":
+                    info.utf8Name = readString(src, key);
+                    break;
+                case "length":
+                    info.length = readLength(src, key);
+                    break;
+                case "piece length":
+                    info.pieceLength = readLength(src, key);
+                    break;
+                case "private":
+                    info.isPrivate = readInt(src, key) == 1;
+                    break;
+                case "pieces": {
+                    int first = src.require();
+                    long bytes = readStringLength(src, first, key);
+                    if (bytes % PIECE_HASH_BYTES != 0) {
+                        throw new FormatException("Bad pieces length");
+                    }
+                    src.skip(bytes);
+                    info.pieceCount = (int) (bytes / PIECE_HASH_BYTES);
+                    break;
+                }
+                case "files":
+                    info.files = readFiles(src);
+                    break;
+                default:
+                    skipValue(src, src.require(), 2);
+            }
+        }
+        if (info.utf8Name != null) {
+            info.name = info.utf8Name;
+        }
+        if (info.name == null || info.name.isEmpty()) {
+            throw new FormatException("Torrent has no name");
+        }
+        if (info.files != null) {
+            for (FileEntry file : info.files) {
+                info.totalLength += file.length;
+            }
+        } else if (info.length >= 0) {
+            info.files = new ArrayList<>(1);
+            info.files.add(new FileEntry(info.name, info.length));
+            info.totalLength = info.length;
+        } else {
+            throw new FormatException("Torrent has neither length nor files");
+        }
+        return info;
+    }
+
+    private static List<FileEntry> readFiles(Source src) throws IOException {
+        if (src.require() != 'l') {
+            throw new FormatException("files is not a list");
+        }
+        List<FileEntry> files = new ArrayList<>();
+        int seen = 0;
+        int b;
+        while ((b = src.require()) != 'e') {
+            if (b != 'd') {
+                throw new FormatException("files entry is not a dictionary");
+            }
+            if (++seen > MAX_FILES) {
+                throw new FormatException("Too many files");
+            }
+            String path = null;
+            String utf8Path = null;
+            long length = -1;
+            boolean padding = false;
+            while ((b = src.require()) != 'e') {
+                String key = readKey(src, b);
+                switch (key) {
+                    case "length":
+                        length = readLength(src, key);
+                        break;
+                    case "path":
+                        path = readPath(src);
+                        break;
+                    case "path.utf-8":
+                        utf8Path = readPath(src);
+                        break;
+                    case "attr":
+                        padding = readString(src, key).indexOf('p') >= 0;
+                        break;
+                    default:
+                        skipValue(src, src.require(), 4);
+                }
+            }
+            if (utf8Path != null) {
+                path = utf8Path;
+            }
+            if (path == null || length < 0) {
+                throw new FormatException("files entry without path or length");
+            }
+            if (!padding) {
+                files.add(new FileEntry(path, length));
+            }
+        }
+        return files;
+    }
+
+    private static String readPath(Source src) throws IOException {
+        if (src.require() != 'l') {
+            throw new FormatException("path is not a list");
+        }
+        StringBuilder path = new StringBuilder();
+        int b;
+        while ((b = src.require()) != 'e') {
+            if (path.length() > 0) {
+                path.append('/');
+            }
+            path.append(decode(readBytes(src, b, MAX_STRING_BYTES, "path")));
+        }
+        if (path.length() == 0) {
+            throw new FormatException("Empty file path");
+        }
+        return path.toString();
+    }
+
+    private static String readKey(Source src, int first) throws IOException {
+        return decode(readBytes(src, first, MAX_KEY_BYTES, "key"));
+    }
+
+    private static String readString(Source src, String key) throws IOException {
+        return decode(readBytes(src, src.require(), MAX_STRING_BYTES, key));
+    }
+
+    private static long readLength(Source src, String key) throws IOException {
+        long value = readInt(src, key);
+        if (value < 0) {
+            throw new FormatException(key + " is negative");
+        }
+        return value;
+    }
+
+    private static long readInt(Source src, String key) throws IOException {
+        if (src.require() != 'i') {
+            throw new FormatException(key + " is not an integer");
+        }
+        return readIntBody(src);
+    }
+
+    /** After the 'i'. */
+    private static long readIntBody(Source src) throws IOException {
+        int b = src.require();
+        boolean negative = b == '-';
+        if (negative) {
+            b = src.require();
+        }
+        long value = 0;
+        int digits = 0;
+        while (b != 'e') {
+            if (b < '0' || b > '9' || ++digits > 18) {
+                throw new FormatException("Bad integer");
+            }
+            value = value * 10 + (b - '0');
+            b = src.require();
+        }
+        if (digits == 0) {
+            throw new FormatException("Bad integer");
+        }
+        return negative ? -value : value;
+    }
+
+    /** "&lt;length&gt;:" of a string whose first digit is already read. */
+    private static long readStringLength(Source src, int first, String what) throws IOException {
+        if (first < '0' || first > '9') {
+            throw new FormatException(what + " is not a string");
+        }
+        long length = first - '0';
+        int digits = 1;
+        int b;
+        while ((b = src.require()) != ':') {
+            if (b < '0' || b > '9' || ++digits > 18) {
+                throw new FormatException("Bad string length");
+            }
+            length = length * 10 + (b - '0');
+        }
+        return length;
+    }
+
+    private static byte[] readBytes(Source src, int first, int max, String what) throws IOException {
+        long length = readStringLength(src, first, what);
+        if (length > max) {
+            throw new FormatException(what + " is too long");
+        }
+        byte[] bytes = new byte[(int) length];
+        src.readFully(bytes);
+        return bytes;
+    }
+
+    private static void skipValue(Source src, int first, int depth) throws IOException {
+        if (depth > MAX_DEPTH) {
+            throw new FormatException("Nesting too deep");
+        }
+        int b;
+        switch (first) {
+            case 'i':
+                readIntBody(src);
+                break;
+            case 'l':
+                while ((b = src.require()) != 'e') {
+                    skipValue(src, b, depth + 1);
+                }
+                break;
+            case 'd':
+                while ((b = src.require()) != 'e') {
+                    src.skip(readStringLength(src, b, "key"));
+                    skipValue(src, src.require(), depth + 1);
+                }
+                break;
+            default:
+                src.skip(readStringLength(src, first, "value"));
+        }
+    }
+
+    private static String decode(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            out[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            out[i * 2 + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(out);
+    }
+
+    /** Buffered reader that hashes consumed bytes while digest is set. */
+    private static final class Source {
+        private final InputStream in;
+        private final OutputStream copy;
+        private final byte[] buf = new byte[8192];
+        private int pos;
+        private int limit;
+        long total;
+        MessageDigest digest;
+
+        Source(InputStream in, OutputStream copy) {
+            this.in = in;
+            this.copy = copy;
+        }
+
+        private boolean fill() throws IOException {
+            while (pos >= limit) {
+                int n = in.read(buf);
+                if (n < 0) {
+                    return false;
+                }
+                total += n;
+                if (total > MAX_TORRENT_BYTES) {
+                    throw new FormatException("Torrent file is too large");
+                }
+                if (copy != null) {
+                    copy.write(buf, 0, n);
+                }
+                pos = 0;
+                limit = n;
+            }
+            return true;
+        }
+
+        int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            byte b = buf[pos++];
+            if (digest != null) {
+                digest.update(b);
+            }
+            return b & 0xff;
+        }
+
+        int require() throws IOException {
+            int b = read();
+            if (b < 0) {
+                throw new FormatException("Truncated torrent file");
+            }
+            return b;
+        }
+
+        void readFully(byte[] dst) throws IOException {
+            int offset = 0;
+            while (offset < dst.length) {
+                if (!fill()) {
+                    throw new FormatException("Truncated torrent file");
+                }
+                int n = Math.min(limit - pos, dst.length - offset);
+                System.arraycopy(buf, pos, dst, offset, n);
+                consume(n);
+                offset += n;
+            }
+        }
+
+        void skip(long bytes) throws IOException {
+            while (bytes > 0) {
+                if (!fill()) {
+                    throw new FormatException("Truncated torrent file");
+                }
+                int n = (int) Math.min(limit - pos, bytes);
+                consume(n);
+                bytes -= n;
+            }
+        }
+
+        private void consume(int n) {
+            if (digest != null) {
+                digest.update(buf, pos, n);
+            }
+            pos += n;
+        }
+
+        /** Reads to EOF so the copy and torrentBytes cover the whole file. */
+        void drain() throws IOException {
+            pos = limit;
+            while (fill()) {
+                pos = limit;
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ApkCheckTest {
+    private static final String PKG = "com.torserve.pwa";
+    private static final String[] KEY = {"3082abcd"};
+
+    @Test
+    public void acceptsANewerApkWithTheSameSigner() {
+        assertNull(ApkCheck.validate(PKG, 37, KEY, PKG, 38, new String[]{"3082abcd"}));
+    }
+
+    @Test
+    public void rejectsUnreadableForeignOrOldApks() {
+        assertEquals("Cannot read APK manifest", ApkCheck.validate(PKG, 37, KEY, null, 0, null));
+        assertEquals("APK package does not match installed app", ApkCheck.validate(PKG, 37, KEY, "other", 38, KEY));
+        assertEquals("APK is not newer than the installed app", ApkCheck.validate(PKG, 37, KEY, PKG, 37, KEY));
+        assertEquals("APK signature does not match installed app",
+                ApkCheck.validate(PKG, 37, KEY, PKG, 38, new String[]{"3082ffff"}));
+    }
+
+    @Test
+    public void unknownVersionCodesSkipTheDowngradeCheck() {
+        assertNull(ApkCheck.validate(PKG, 0, KEY, PKG, 0, KEY));
+    }
+
+    @Test
+    public void signerSetsCompareOrderInsensitive() {
+        assertTrue(ApkCheck.signaturesMatch(new String[]{"a", "b"}, new String[]{"b", "a"}));
+        assertFalse(ApkCheck.signaturesMatch(new String[]{"a", "b"}, new String[]{"a"}));
+        assertFalse(ApkCheck.signaturesMatch(new String[]{"a"}, null));
+        assertFalse(ApkCheck.signaturesMatch(new String[]{null}, new String[]{null}));
+    }
+}
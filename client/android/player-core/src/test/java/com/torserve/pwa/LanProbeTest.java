@@ -0,0 +1,131 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class LanProbeTest {
+    private static final String LOOPBACK = "127.0.0.1";
+
+    /** Stand-in for the NAS (or some other HTTP server) on a free loopback port. */
+    private static HttpServer server(int status, String body, long delayMs) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(LOOPBACK, 0), 0);
+        server.createContext(LanProbe.STATUS_PATH, exchange -> {
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static InetSocketAddress at(HttpServer server) {
+        return new InetSocketAddress(LOOPBACK, server.getAddress().getPort());
+    }
+
+    private static int closedPort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getByName(LOOPBACK))) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Test
+    public void findsOnlyTorServeAndRanksByRtt() throws Exception {
+        HttpServer slow = server(200, "{\"serverStatus\":\"ok\",\"torrents\":[]}", 150);
+        HttpServer fast = server(200, "{\"serverStatus\":\"ok\",\"torrents\":[]}", 0);
+        HttpServer degraded = server(503, "{\"serverStatus\":\"circuit_open\",\"torrents\":[]}", 0);
+        HttpServer other = server(200, "{\"hello\":\"world\"}", 0);
+        try {
+            List<InetSocketAddress> targets = Arrays.asList(at(slow), at(other),
+                    new InetSocketAddress(LOOPBACK, closedPort()), at(degraded), at(fast));
+            List<LanProbe.Hit> hits = LanProbe.probe(targets, 2, 2000);
+
+            assertEquals(3, hits.size());
+            assertEquals(slow.getAddress().getPort(), hits.get(2).port);
+            assertTrue(hits.get(2).rttMillis >= 150);
+            assertTrue(hits.get(0).rttMillis <= hits.get(1).rttMillis);
+            assertEquals("http://127.0.0.1:" + slow.getAddress().getPort(), hits.get(2).url());
+        } finally {
+            slow.stop(0);
+            fast.stop(0);
+            degraded.stop(0);
+            other.stop(0);
+        }
+    }
+
+    @Test
+    public void slowHostsTimeOut() throws Exception {
+        HttpServer hanging = server(200, "{\"serverStatus\":\"ok\"}", 1000);
+        try {
+            long startedAt = System.nanoTime();
+            List<LanProbe.Hit> hits = LanProbe.probe(Arrays.asList(at(hanging)), 4, 200);
+            long elapsedMs = (System.nanoTime() - startedAt) / 1_000_000;
+            assertTrue(hits.isEmpty());
+            assertTrue(elapsedMs < 900);
+        } finally {
+            hanging.stop(0);
+        }
+    }
+
+    @Test
+    public void boundedConcurrencyStillCoversEveryTarget() throws Exception {
+        HttpServer nas = server(200, "{\"serverStatus\":\"ok\"}", 0);
+        try {
+            int closed = closedPort();
+            List<InetSocketAddress> targets = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                targets.add(new InetSocketAddress(LOOPBACK, closed));
+            }
+            targets.add(at(nas));
+            List<LanProbe.Hit> hits = LanProbe.probe(targets, 8, 1000);
+            assertEquals(1, hits.size());
+            assertEquals(nas.getAddress().getPort(), hits.get(0).port);
+        } finally {
+            nas.stop(0);
+        }
+    }
+
+    @Test
+    public void subnetSkipsSelfNetworkAndBroadcast() throws Exception {
+        Inet4Address self = (Inet4Address) InetAddress.getByName("192.168.1.37");
+        List<InetSocketAddress> targets = LanProbe.subnet24(self, 3000);
+        assertEquals(253, targets.size());
+        assertEquals("192.168.1.1", targets.get(0).getHostString());
+        assertEquals("192.168.1.254", targets.get(252).getHostString());
+        for (InetSocketAddress target : targets) {
+            assertFalse(target.getHostString().equals("192.168.1.37"));
+            assertEquals(3000, target.getPort());
+        }
+    }
+
+    @Test
+    public void recognisesTheStatusResponse() {
+        assertTrue(LanProbe.looksLikeTorServe("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n\r\n{\"serverStatus\":\"ok\""));
+        assertTrue(LanProbe.looksLikeTorServe("HTTP/1.1 503 Service Unavailable\r\n\r\n{\"serverStatus\":\"error\"}"));
+        assertFalse(LanProbe.looksLikeTorServe("HTTP/1.1 200 OK\r\n\r\n{\"status\":\"ok\"}"));
+        assertFalse(LanProbe.looksLikeTorServe("HTTP/1.1 404 Not Found\r\n\r\n{\"serverStatus\":\"ok\"}"));
+        assertFalse(LanProbe.looksLikeTorServe("HTTP/1.1 200 OK\r\nX-Note: \"serverStatus\"\r\n"));
+        assertFalse(LanProbe.looksLikeTorServe("SSH-2.0-OpenSSH_9.6\r\n"));
+    }
+}
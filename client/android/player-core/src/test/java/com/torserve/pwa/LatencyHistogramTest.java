@@ -0,0 +1,71 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void bucketsCoverEveryValueOnce() {
+        for (long v = 0; v < 100_000; v++) {
+            int bucket = LatencyHistogram.bucketOf(v);
+            assertTrue(v >= LatencyHistogram.lowerBound(bucket));
+            assertTrue(v <= LatencyHistogram.upperBound(bucket));
+        }
+        for (int b = 1; b < LatencyHistogram.BUCKETS; b++) {
+            assertEquals(LatencyHistogram.upperBound(b - 1) + 1, LatencyHistogram.lowerBound(b));
+        }
+    }
+
+    @Test
+    public void hugeValuesLandInTheLastBucket() {
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf((1L << 34) - 1));
+    }
+
+    @Test
+    public void percentilesStayWithinABucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L); // 1..1000 ms
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.count);
+        assertEquals(500_500, snapshot.meanMicros());
+        assertEquals(1_000_000, snapshot.maxMicros);
+        long p50 = snapshot.percentileMicros(0.5);
+        long p99 = snapshot.percentileMicros(0.99);
+        assertTrue(p50 >= 500_000 && p50 <= 500_000 * 1.125);
+        assertTrue(p99 >= 990_000 && p99 <= 1_000_000);
+    }
+
+    @Test
+    public void concurrentRecordsAreAllCounted() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i % 5000);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(400_000, snapshot.count);
+        assertEquals(4999, snapshot.maxMicros);
+    }
+
+    @Test
+    public void resetEmptiesIt() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(42);
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().count);
+        assertEquals(0, histogram.snapshot().percentileMicros(0.99));
+    }
+}
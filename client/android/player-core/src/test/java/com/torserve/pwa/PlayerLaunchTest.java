@@ -0,0 +1,89 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class PlayerLaunchTest {
+    private static final String VIMU = "net.gtvbox.videoplayer";
+    private static final String MX = "com.mxtech.videoplayer.ad";
+
+    private static ArrayList<String> list(String... values) {
+        return new ArrayList<>(Arrays.asList(values));
+    }
+
+    @Test
+    public void fileWithoutPackageHasNoExtras() {
+        PlayerLaunch launch = PlayerLaunch.file("http://nas/stream/a/0", "Movie", "", 5000);
+        assertEquals(PlayerLaunch.VIDEO_TYPE, launch.type);
+        assertNull(launch.packageName);
+        assertTrue(launch.extras.isEmpty());
+    }
+
+    @Test
+    public void fileResumesVimuWithStartfromAndMxWithPosition() {
+        PlayerLaunch vimu = PlayerLaunch.file("http://nas/stream/a/0", "Movie", VIMU, 5000);
+        assertEquals(5000, vimu.extras.get("startfrom"));
+        assertEquals("Movie", vimu.extras.get("forcename"));
+        assertEquals(true, vimu.extras.get("return_result"));
+
+        PlayerLaunch mx = PlayerLaunch.file("http://nas/stream/a/0", "Movie", MX, 5000);
+        assertEquals(5000, mx.extras.get("position"));
+        assertFalse(mx.extras.containsKey("startfrom"));
+    }
+
+    @Test
+    public void offlineFileIsGrantedToThePlayer() {
+        assertTrue(PlayerLaunch.file("content://com.torserve.pwa.fileprovider/offline/a_0.mkv", "Movie", VIMU, 0).grantRead);
+        assertFalse(PlayerLaunch.file("http://nas/stream/a/0", "Movie", VIMU, 0).grantRead);
+    }
+
+    @Test
+    public void fileDoesNotResumeFromZero() {
+        PlayerLaunch vimu = PlayerLaunch.file("http://nas/stream/a/0", "Movie", VIMU, 0);
+        assertFalse(vimu.extras.containsKey("startfrom"));
+    }
+
+    @Test
+    public void vimuPlaylistStartsAtStartIndex() {
+        ArrayList<String> urls = list("u0", "u1", "u2");
+        PlayerLaunch launch = PlayerLaunch.playlist(VIMU, "Show", urls, list("e0", "e1", "e2"), 1, 0);
+        assertEquals("u1", launch.data);
+        assertEquals(PlayerLaunch.VIMU_PLAYLIST_TYPE, launch.type);
+        assertSame(urls, launch.extras.get("asusfilelist"));
+        assertEquals(1, launch.extras.get("startindex"));
+    }
+
+    @Test
+    public void mxPlaylistCarriesUrisAndNames() {
+        PlayerLaunch launch = PlayerLaunch.playlist(MX, "Show", list("u0", "u1"), list("e0", "e1"), 0, 7000);
+        assertEquals(Arrays.asList("u0", "u1"), ((PlayerLaunch.UriArray) launch.extras.get("video_list")).uris);
+        assertArrayEquals(new String[]{"e0", "e1"}, (String[]) launch.extras.get("video_list.name"));
+        assertArrayEquals(new String[]{"e0", "e1"}, (String[]) launch.extras.get("video_list.filename"));
+        assertEquals(7000, launch.extras.get("position"));
+    }
+
+    @Test
+    public void unknownPlayerGetsTheStartEntryOnly() {
+        PlayerLaunch launch = PlayerLaunch.playlist("org.videolan.vlc", "Show", list("u0", "u1"), list("e0", "e1"), 1, 0);
+        assertEquals("u1", launch.data);
+        assertEquals(1, launch.extras.size());
+    }
+
+    @Test
+    public void m3uGrantsReadAndUsesThePlayersResumeKey() {
+        PlayerLaunch vimu = PlayerLaunch.m3u("content://pkg.playlist/1.m3u", "audio/x-mpegurl", VIMU, "Show", 9000);
+        assertTrue(vimu.grantRead);
+        assertEquals(9000, vimu.extras.get("startfrom"));
+
+        PlayerLaunch any = PlayerLaunch.m3u("content://pkg.playlist/1.m3u", "audio/x-mpegurl", null, "Show", 9000);
+        assertFalse(any.extras.containsKey("position"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class PlayerResultTest {
+    private static PlayerResult parse(Map<String, Object> values) {
+        return PlayerResult.parse(new PlayerResult.Extras() {
+            @Override
+            public int getInt(String key, int defaultValue) {
+                Object value = values.get(key);
+                return value instanceof Integer ? (Integer) value : defaultValue;
+            }
+
+            @Override
+            public String getString(String key) {
+                Object value = values.get(key);
+                return value instanceof String ? (String) value : null;
+            }
+        });
+    }
+
+    @Test
+    public void readsMxAndVimuKeys() {
+        Map<String, Object> extras = new HashMap<>();
+        extras.put("position", 60000);
+        extras.put("duration", 120000);
+        extras.put("end_by", "user");
+        PlayerResult result = parse(extras);
+        assertEquals(60000, result.position);
+        assertEquals(120000, result.duration);
+        assertEquals("user", result.endBy);
+        assertFalse(result.finished);
+    }
+
+    @Test
+    public void fallsBackToCurrentPosition() {
+        Map<String, Object> extras = new HashMap<>();
+        extras.put("current_position", 42000);
+        PlayerResult result = parse(extras);
+        assertEquals(42000, result.position);
+        assertEquals(-1, result.duration);
+        assertNull(result.endBy);
+    }
+
+    @Test
+    public void completionOrPastNinetyFivePercentIsFinished() {
+        assertTrue(PlayerResult.isFinished(0, 0, PlayerResult.END_BY_COMPLETION));
+        assertTrue(PlayerResult.isFinished(96, 100, "user"));
+        // Exactly 95% is not past it
+        assertFalse(PlayerResult.isFinished(95, 100, "user"));
+        // Unknown duration never counts
+        assertFalse(PlayerResult.isFinished(500000, -1, null));
+    }
+}
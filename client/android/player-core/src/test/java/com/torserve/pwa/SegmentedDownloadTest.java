@@ -0,0 +1,196 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SegmentedDownloadTest {
+    private static final int CHUNK = 16 * 1024;
+
+    private final byte[] content = new byte[300 * 1024 + 17];
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicLong servedBytes = new AtomicLong();
+    /** Requests answered 503 (piece not downloaded yet) before serving. */
+    private final AtomicInteger notReady = new AtomicInteger();
+    private volatile long chunkDelayMs;
+    private HttpServer server;
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(content);
+        dir = Files.createTempDirectory("segmented").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stream/abc/0", exchange -> {
+            requests.incrementAndGet();
+            if (notReady.getAndDecrement() > 0) {
+                exchange.getResponseHeaders().set("Retry-After", "0");
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            int start = 0;
+            int end = content.length - 1;
+            int status = 200;
+            if (range != null) {
+                String[] bounds = range.substring("bytes=".length()).split("-");
+                start = Integer.parseInt(bounds[0]);
+                end = Math.min(end, Integer.parseInt(bounds[1]));
+                status = 206;
+                exchange.getResponseHeaders().set("Content-Range",
+                        "bytes " + start + "-" + end + "/" + content.length);
+            }
+            exchange.sendResponseHeaders(status, end - start + 1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (int at = start; at <= end; at += CHUNK) {
+                    int len = Math.min(CHUNK, end + 1 - at);
+                    out.write(content, at, len);
+                    out.flush();
+                    servedBytes.addAndGet(len);
+                    if (chunkDelayMs > 0) {
+                        Thread.sleep(chunkDelayMs);
+                    }
+                }
+            } catch (IOException | InterruptedException e) {
+                // Client went away (cancel)
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/stream/abc/0?prewarm=1";
+    }
+
+    private SegmentedDownload download(File target, long knownLength) {
+        return new SegmentedDownload(url(), target, 4, knownLength, 64 * 1024);
+    }
+
+    @Test
+    public void fetchesEverySegmentIntoOnePreallocatedFile() throws Exception {
+        File target = new File(dir, "episode.mkv");
+        AtomicLong reported = new AtomicLong();
+        download(target, -1).run((downloaded, total, speed) -> reported.set(downloaded));
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertTrue(SegmentedDownload.isComplete(target));
+        assertFalse(SegmentedDownload.stateFile(target).exists());
+        assertEquals(content.length, reported.get());
+        assertEquals(5, requests.get()); // length probe + 4 segments
+        assertEquals(content.length + 1, servedBytes.get());
+    }
+
+    @Test
+    public void resumesFromPersistedSegments() throws Exception {
+        File target = new File(dir, "episode.mkv");
+        List<SegmentedDownload.Segment> plan = SegmentedDownload.plan(content.length, 4, 64 * 1024);
+        long already = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(target, "rw")) {
+            raf.setLength(content.length);
+            for (SegmentedDownload.Segment segment : plan) {
+                int half = (int) (segment.end - segment.start) / 2;
+                raf.seek(segment.start);
+                raf.write(content, (int) segment.start, half);
+                segment.done.set(half);
+                already += half;
+            }
+        }
+        SegmentedDownload.writeState(target, plan);
+
+        download(target, content.length).run(null);
+
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertEquals(content.length - already, servedBytes.get());
+        assertTrue(SegmentedDownload.isComplete(target));
+    }
+
+    @Test
+    public void waitsOutNotReadyAnswers() throws Exception {
+        notReady.set(2);
+        File target = new File(dir, "episode.mkv");
+        download(target, content.length).run(null);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void cancelKeepsProgressForTheNextRun() throws Exception {
+        chunkDelayMs = 100;
+        File target = new File(dir, "episode.mkv");
+        SegmentedDownload first = download(target, content.length);
+        assertThrows(IOException.class, () -> first.run((downloaded, total, speed) -> {
+            if (downloaded > 0) {
+                first.cancel();
+            }
+        }));
+        assertFalse(SegmentedDownload.isComplete(target));
+        List<SegmentedDownload.Segment> saved = SegmentedDownload.readState(target);
+        long kept = 0;
+        for (SegmentedDownload.Segment segment : saved) {
+            kept += segment.done.get();
+        }
+        assertTrue(kept > 0);
+
+        chunkDelayMs = 0;
+        servedBytes.set(0);
+        download(target, content.length).run(null);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertTrue(servedBytes.get() <= content.length - kept);
+    }
+
+    @Test
+    public void lengthMismatchIsNotRetried() {
+        File target = new File(dir, "episode.mkv");
+        SegmentedDownload wrong = download(target, content.length + 1);
+        IOException error = assertThrows(IOException.class, () -> wrong.run(null));
+        assertTrue(error.getMessage().contains("length"));
+    }
+
+    @Test
+    public void plansAtLeastMinimumSizedSegments() {
+        List<SegmentedDownload.Segment> plan = SegmentedDownload.plan(100, 4, 30);
+        assertEquals(3, plan.size());
+        assertEquals(0, plan.get(0).start);
+        assertEquals(33, plan.get(1).start);
+        assertEquals(100, plan.get(2).end);
+        assertEquals(1, SegmentedDownload.plan(10, 4, 30).size());
+    }
+
+    @Test
+    public void parsesContentRange() {
+        assertArrayEquals(new long[] {0, 0, 1234}, SegmentedDownload.parseContentRange("bytes 0-0/1234"));
+        assertNull(SegmentedDownload.parseContentRange("bytes 0-0/*"));
+        assertNull(SegmentedDownload.parseContentRange("bytes */1234"));
+        assertNull(SegmentedDownload.parseContentRange(null));
+    }
+}
@@ -0,0 +1,149 @@
+package com.torserve.pwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class TorrentMetaTest {
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] str(byte[] value) {
+        return concat(bytes(value.length + ":"), value);
+    }
+
+    private static String sha1Hex(byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-1").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static TorrentMeta parse(byte[] torrent) throws IOException {
+        return TorrentMeta.parse(new ByteArrayInputStream(torrent));
+    }
+
+    private static byte[] pieces(int count) {
+        return str(new byte[count * 20]);
+    }
+
+    @Test
+    public void singleFileTorrent() throws Exception {
+        byte[] info = concat(bytes("d6:lengthi1000e4:name9:movie.mkv12:piece lengthi16384e6:pieces"),
+                pieces(3), bytes("e"));
+        byte[] torrent = concat(bytes("d8:announce20:http://tracker/annce4:info"), info, bytes("e"));
+
+        TorrentMeta meta = parse(torrent);
+        assertEquals(sha1Hex(info), meta.infoHash);
+        assertEquals("movie.mkv", meta.name);
+        assertEquals(1, meta.files.size());
+        assertEquals("movie.mkv", meta.files.get(0).path);
+        assertEquals(1000, meta.totalLength);
+        assertEquals(16384, meta.pieceLength);
+        assertEquals(3, meta.pieceCount);
+        assertFalse(meta.isPrivate);
+        assertEquals(torrent.length, meta.torrentBytes);
+    }
+
+    @Test
+    public void multiFileTorrentSkipsPaddingFiles() throws Exception {
+        byte[] info = concat(bytes("d5:filesl"),
+                bytes("d6:lengthi700e4:pathl8:Season 17:e01.mkveed"),
+                bytes("4:attr1:p6:lengthi324e4:pathl4:.pad3:324eed"),
+                bytes("6:lengthi300e4:pathl6:extras7:nfo.txtee"),
+                bytes("e4:name4:Show12:piece lengthi1024e6:pieces"), pieces(1),
+                bytes("7:privatei1ee"));
+        byte[] torrent = concat(bytes("d4:info"), info, bytes("e"));
+
+        TorrentMeta meta = parse(torrent);
+        assertEquals(sha1Hex(info), meta.infoHash);
+        assertEquals("Show", meta.name);
+        assertEquals(2, meta.files.size());
+        assertEquals("Season 1/e01.mkv", meta.files.get(0).path);
+        assertEquals("extras/nfo.txt", meta.files.get(1).path);
+        assertEquals(1000, meta.totalLength);
+        assertTrue(meta.isPrivate);
+    }
+
+    @Test
+    public void hashesTheRawInfoBytesEvenWhenUnsorted() throws Exception {
+        // Keys out of order and an unknown nested value: a re-encoder would
+        // produce a different hash, the raw byte range must not
+        byte[] info = concat(bytes("d4:name1:x6:lengthi5e1:zld1:ai-3eelee12:piece lengthi1e6:pieces"),
+                pieces(5), bytes("e"));
+        byte[] torrent = concat(bytes("d7:comment3:abc4:info"), info, bytes("8:url-listl1:uee"));
+        assertEquals(sha1Hex(info), parse(torrent).infoHash);
+    }
+
+    @Test
+    public void prefersUtf8NameAndPath() throws Exception {
+        byte[] name = bytes("\u0424\u0438\u043b\u044c\u043c");
+        byte[] torrent = concat(bytes("d4:infod5:filesld6:lengthi1e4:pathl1:?e10:path.utf-8l"), str(name),
+                bytes("eee4:name1:?10:name.utf-8"), str(name), bytes("6:pieces0:ee"));
+        TorrentMeta meta = parse(torrent);
+        assertEquals("\u0424\u0438\u043b\u044c\u043c", meta.name);
+        assertEquals(meta.name, meta.files.get(0).path);
+    }
+
+    @Test
+    public void copiesEveryByteIncludingTrailingData() throws Exception {
+        byte[] torrent = concat(bytes("d4:infod6:lengthi1e4:name1:a6:pieces"), pieces(2000), bytes("ee\n"));
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        TorrentMeta meta = TorrentMeta.parse(new ByteArrayInputStream(torrent), copy);
+        assertEquals(2000, meta.pieceCount);
+        assertEquals(torrent.length, meta.torrentBytes);
+        assertTrue(Arrays.equals(torrent, copy.toByteArray()));
+    }
+
+    @Test
+    public void rejectsBrokenFiles() {
+        String[] broken = {
+                "",
+                "le",
+                "d8:announce3:abce",                      // no info
+                "d4:infod6:lengthi1e6:pieces0:ee",        // no name
+                "d4:infod4:name1:a6:pieces0:ee",          // neither length nor files
+                "d4:infod6:lengthi-1e4:name1:aee",        // negative length
+                "d4:infod6:lengthi1e4:name1:a6:pieces3:abcee", // pieces not a multiple of 20
+                "d4:infod6:lengthi1e4:name1:a",           // truncated
+                "d4:infod6:lengthi1x4:name1:aee",         // bad integer
+        };
+        for (String torrent : broken) {
+            assertThrows(TorrentMeta.FormatException.class, () -> parse(bytes(torrent)));
+        }
+    }
+
+    @Test
+    public void rejectsDeepNesting() {
+        StringBuilder torrent = new StringBuilder("d1:x");
+        for (int i = 0; i < 100; i++) {
+            torrent.append('l');
+        }
+        assertThrows(TorrentMeta.FormatException.class, () -> parse(bytes(torrent.toString())));
+    }
+
+    @Test
+    public void filesAreUnmodifiable() throws Exception {
+        TorrentMeta meta = parse(bytes("d4:infod6:lengthi1e4:name1:a6:pieces0:ee"));
+        assertThrows(UnsupportedOperationException.class, () -> meta.files.clear());
+    }
+}
@@ -9,8 +9,9 @@ import { buildMovieTorrentQueries } from './utils/movieTorrentSearch.js'
 import { fetchServerSearchJson } from './utils/serverSearchTransport.js'
 import { getSearchResultActionKey, resolveSearchResultMagnet, verifySearchResultBeforeAdd } from './utils/searchResultActions.js'
 import { dispatchSystemBack } from './utils/backButton.js'
-import { recordPlaybackResult, getResumePosition, getResumeItems, getResumeEntry, removeResumeEntries } from './utils/watchHistory.js'
+import { recordPlaybackResult, getResumeItems, fetchResumeEntry, loadWatchHistory, removeResumeEntries } from './utils/watchHistory.js'
 import { scrobbleTrakt } from './utils/traktApi.js'
+import { withPlayerEngine, recoverInterruptedPlayback } from './utils/playerEngine.js'
 
 // Components
 import Poster from './components/Poster'
@@ -19,12 +20,16 @@ import SettingsPanel from './components/SettingsPanel'
 import SearchPanel from './components/SearchPanel'
 import TorrentModal from './components/TorrentModal'
 import AutoDownloadPanel from './components/AutoDownloadPanel'
+import OfflineDownloadsPanel from './components/OfflineDownloadsPanel'
 import HomePanel from './components/HomePanel'
 import UpdateModal from './components/UpdateModal'
+import TorrentIntakeModal from './components/TorrentIntakeModal'
 
 // Utilities
 import { checkForUpdate, tryInstallPending } from './utils/appUpdater'
+import { isTorrentFileUrl, previewTorrentFile, discardTorrentFile } from './utils/torrentIntake'
 import { createSerializedPollTask } from './utils/statusPolling.js'
+import { startStatusStream } from './utils/statusStream.js'
 
 // Hooks
 import SpatialEngine, { useSpatialArbiter, useSpatialItem } from './hooks/useSpatialNavigation'
@@ -32,6 +37,16 @@ import SpatialEngine, { useSpatialArbiter, useSpatialItem } from './hooks/useSpa
 // Helpers
 import { buildServerRequestUrl, cleanTitle, resolveInitialServerUrl } from './utils/helpers'
 import { loadServerUrlFromPrefs, persistServerUrl } from './utils/serverUrlStore'
+import { resolveServerUrl } from './utils/nasDiscovery'
+import {
+  findOfflineUri,
+  isOfflineSupported,
+  listOfflineDownloads,
+  mergeOfflineDownload,
+  onOfflineProgress,
+  removeOfflineDownload,
+  startOfflineDownload
+} from './utils/offlineDownloads'
 
 // Register Custom Java Bridge
 const TVPlayer = registerPlugin('TVPlayer')
@@ -153,17 +168,29 @@ function App() {
   // State: App Update
   const [updateInfo, setUpdateInfo] = useState(null)
 
+  // State: .torrent file opened with the app, awaiting confirm (torrentIntake.js)
+  const [torrentIntake, setTorrentIntake] = useState(null)
+
   // Continue Watching: unfinished playback sessions (watchHistory.js)
   const [resumeItems, setResumeItems] = useState(() => getResumeItems())
 
+  // Copies kept on the box (offlineDownloads.js), live from progress events
+  const [offlineDownloads, setOfflineDownloads] = useState([])
+  const [showOfflineDownloads, setShowOfflineDownloads] = useState(false)
+
   // VOICE-01: Centralized voice search (no more prompt() fallback)
   const { startListening, isListening, ToastPortal } = useVoiceSearch()
 
   // ─── Spatial Registry ───
   const handleBack = useCallback(() => {
     if (updateInfo?.available) { /* handled by UpdateModal dismiss */ }
+    else if (torrentIntake) {
+      discardTorrentFile(torrentIntake.id)
+      setTorrentIntake(null)
+    }
     else if (selectedTorrent) setSelectedTorrent(null)
     else if (showSettings) setShowSettings(false)
+    else if (showOfflineDownloads) setShowOfflineDownloads(false)
     else if (showSearch) {
       manualSearchAbortRef.current?.abort()
       manualSearchAbortRef.current = null
@@ -187,7 +214,7 @@ function App() {
     }
     else if (activeView === 'home') setActiveView('list')
     else CapacitorApp.exitApp()
-  }, [updateInfo, selectedTorrent, showSettings, showSearch, showSidebar, activeMovie, activePerson, activeCategory, activeView])
+  }, [updateInfo, torrentIntake, selectedTorrent, showSettings, showOfflineDownloads, showSearch, showSidebar, activeMovie, activePerson, activeCategory, activeView])
 
   const { setActiveZone } = useSpatialArbiter(handleBack)
 
@@ -201,6 +228,7 @@ function App() {
   // Diagnostics Button Ref -> Now opens Settings (Status Tab)
   const diagnosticsRef = useSpatialItem('main')
   const voiceRef = useSpatialItem('main')
+  const offlineBtnRef = useSpatialItem('main')
 
   // My List View Refs
   const continuePlayRef = useSpatialItem('main')
@@ -215,7 +243,9 @@ function App() {
   // 1. Zone Management (Passive)
   useEffect(() => {
     if (updateInfo?.available) setActiveZone('modal')
+    else if (torrentIntake) setActiveZone('modal')
     else if (showSettings) setActiveZone('settings')
+    else if (showOfflineDownloads) setActiveZone('offline')
     else if (selectedTorrent) setActiveZone('modal')
     else if (showSearch) setActiveZone('search')
     else if (showAutoDownload) setActiveZone('auto-download')
@@ -225,19 +255,26 @@ function App() {
     else if (activeView === 'home' && activePerson) setActiveZone('person')
     else if (activeView === 'home' && activeCategory) setActiveZone('category')
     else setActiveZone('main')
-  }, [updateInfo, showSettings, selectedTorrent, showSearch, showAutoDownload, activeMovie, activePerson, activeCategory, showSidebar, activeView, setActiveZone])
+  }, [updateInfo, torrentIntake, showSettings, showOfflineDownloads, selectedTorrent, showSearch, showAutoDownload, activeMovie, activePerson, activeCategory, showSidebar, activeView, setActiveZone])
 
   // Hydrate serverUrl from native Preferences once on mount. localStorage can be
   // wiped on APK update; Preferences survives, so prefer it when they diverge.
+  // Then make sure it still points at the NAS: an empty or stale LAN address
+  // (new DHCP lease) is replaced by what native discovery finds.
   useEffect(() => {
     let cancelled = false
-    loadServerUrlFromPrefs().then((stored) => {
-      if (cancelled || !stored) return
+    loadServerUrlFromPrefs().then(async (stored) => {
+      if (cancelled) return
       const current = (localStorage.getItem('serverUrl') || '').trim().replace(/\/+$/, '')
-      if (stored !== current) {
+      if (stored && stored !== current) {
         localStorage.setItem('serverUrl', stored)
         setServerUrl(stored)
       }
+      const saved = stored || current
+      const resolved = await resolveServerUrl(saved)
+      if (cancelled || !resolved || resolved === saved) return
+      console.log('[Discovery] Server moved:', saved || '(none)', '→', resolved)
+      setServerUrl(await persistServerUrl(resolved))
     })
     return () => { cancelled = true }
   }, [])
@@ -257,11 +294,56 @@ function App() {
 
   const fetchStatus = useMemo(() => createSerializedPollTask(fetchStatusImpl), [fetchStatusImpl])
 
+  // Native: status pushed as diffs by the StatusStream plugin. Web, or an
+  // APK without the plugin: poll /api/status.
   useEffect(() => {
-    fetchStatus()
-    const timer = setInterval(fetchStatus, 5000)
-    return () => clearInterval(timer)
-  }, [fetchStatus])
+    let cancelled = false
+    let stopStream = null
+    let timer = null
+    startStatusStream({
+      serverUrl,
+      onTorrents: setTorrents,
+      onServerStatus: setServerStatus
+    }).then(stop => {
+      if (cancelled) { stop?.(); return }
+      stopStream = stop
+      if (stop) return
+      fetchStatus()
+      timer = setInterval(fetchStatus, 5000)
+    })
+    return () => {
+      cancelled = true
+      stopStream?.()
+      if (timer) clearInterval(timer)
+    }
+  }, [serverUrl, fetchStatus])
+
+  // Native watch history is loaded asynchronously. A native playback killed
+  // with the app never resolved play(): record its last checkpoint so
+  // "Continue Watching" still has the right position.
+  useEffect(() => {
+    loadWatchHistory()
+      .then(() => recoverInterruptedPlayback())
+      .then(() => setResumeItems(getResumeItems()))
+  }, [])
+
+  // Offline copies: the stored list, then progress events on top of it.
+  // Events that arrive before list() resolves are newer, so they win.
+  useEffect(() => {
+    if (!isOfflineSupported()) return
+    let cancelled = false
+    let unsubscribe = null
+    listOfflineDownloads().then(list => {
+      if (!cancelled) setOfflineDownloads(prev => prev.reduce(mergeOfflineDownload, list))
+    })
+    onOfflineProgress(download => setOfflineDownloads(prev => mergeOfflineDownload(prev, download)))
+      .then(off => { if (cancelled) off(); else unsubscribe = off })
+      .catch(e => console.warn('[Offline] progress listener failed:', e?.message || e))
+    return () => {
+      cancelled = true
+      unsubscribe?.()
+    }
+  }, [])
 
   // Check for app updates on launch
   useEffect(() => {
@@ -274,9 +356,22 @@ function App() {
   }, [])
 
   // Handle external magnet links (Android intent-filter) - BUG-2 fix
+  // .torrent files (content:// / file://) get a native preview first
   useEffect(() => {
     const handleAppUrlOpen = async ({ url }) => {
       console.log('[Intent] Received URL:', url)
+      if (isTorrentFileUrl(url)) {
+        try {
+          const preview = await previewTorrentFile(url)
+          setTorrentIntake(prev => {
+            if (prev && prev.id !== preview.id) discardTorrentFile(prev.id)
+            return preview
+          })
+        } catch (e) {
+          console.error('[Intent] Cannot read torrent file:', e)
+        }
+        return
+      }
       if (!url || !url.startsWith('magnet:')) return
 
       try {
@@ -402,7 +497,10 @@ function App() {
       const base = serverUrl.replace(/\/$/, '');
       const streamUrl = `${base}/stream/${hash}/${index}`;
 
-      console.log('[DEBUG] Final Play URL:', streamUrl);
+      // A finished offline copy plays from the box (content://), NAS or not
+      const offlineUri = await findOfflineUri(hash, index)
+
+      console.log('[DEBUG] Final Play URL:', offlineUri || streamUrl);
 
       // 3. Mark last played
       const torrentName = torrents.find(t => t.infoHash === hash)?.name
@@ -416,13 +514,13 @@ function App() {
       // 4. Start playback via Custom Plugin, resuming from the saved
       // position. The plugin maps it to Vimu `startfrom` / MX `position`
       // and resolves with {position, duration, finished} on player exit.
-      const resumeFrom = getResumePosition(hash, index)
-      const playOptions = { url: streamUrl, title: fileName }
+      const prevEntry = await fetchResumeEntry(hash, index)
+      const resumeFrom = prevEntry?.position || 0
+      const playOptions = { url: offlineUri || streamUrl, title: fileName }
       if (resumeFrom > 0) playOptions.position = resumeFrom
 
       // Resolve a TMDB id for this playback: prefer the movie currently open,
       // fall back to one previously stored on the resume entry (home → resume).
-      const prevEntry = getResumeEntry(hash, index)
       const movie = activeMovieRef.current
       const tmdbId = movie?.id ?? prevEntry?.tmdbId ?? null
       const mediaType = movie
@@ -432,7 +530,9 @@ function App() {
       // Trakt scrobble: start before launch, stop after the player returns.
       if (tmdbId) scrobbleTrakt({ tmdbId, mediaType, progress: 0, action: 'start' })
 
-      const result = await TVPlayer.play(playOptions)
+      // history: the plugin stores the result natively before resolving
+      const history = { infoHash: hash, fileIndex: index, fileName, torrentName, tmdbId, mediaType }
+      const result = await TVPlayer.play(withPlayerEngine({ ...playOptions, history }, history))
 
       recordPlaybackResult({
         infoHash: hash,
@@ -457,6 +557,18 @@ function App() {
     }
   }, [serverUrl, torrents])
 
+  const handleDownloadOffline = useCallback(async (hash, index, name, length) => {
+    const download = await startOfflineDownload({ serverUrl, infoHash: hash, fileIndex: index, name, length })
+    if (download) setOfflineDownloads(prev => mergeOfflineDownload(prev, download))
+    return download
+  }, [serverUrl])
+
+  const handleRemoveOffline = useCallback(async (id) => {
+    if (await removeOfflineDownload(id)) {
+      setOfflineDownloads(prev => prev.filter(d => d.id !== id))
+    }
+  }, [])
+
   const handlePlayAll = useCallback(async (torrent) => {
     const videoFiles = torrent.files?.filter(f => /\.(mp4|mkv|avi|mov|webm)$/i.test(f.name)) || []
     if (videoFiles.length === 0) return
@@ -768,13 +880,25 @@ function App() {
     )
   }
 
+  const offlinePanel = showOfflineDownloads && (
+    <OfflineDownloadsPanel
+      downloads={offlineDownloads}
+      onPlay={(d) => handlePlay(d.infoHash, d.fileIndex, d.name)}
+      onRemove={handleRemoveOffline}
+      onClose={() => setShowOfflineDownloads(false)}
+    />
+  )
+
   if (serverStatus === 'circuit_open' || serverStatus === 'error') {
+    // Copies on the box still play without the NAS
+    if (offlinePanel) return offlinePanel
     return (
       <ErrorScreen
         status={serverStatus}
         retryAfter={retryAfter}
         onRetry={fetchStatus}
         onSettings={() => setShowSettings(true)}
+        onOfflineDownloads={isOfflineSupported() ? () => setShowOfflineDownloads(true) : undefined}
       />
     )
   }
@@ -793,6 +917,23 @@ function App() {
         />
       )}
 
+      {/* .torrent Intake Preview */}
+      {torrentIntake && !updateInfo?.available && (
+        <TorrentIntakeModal
+          preview={torrentIntake}
+          serverUrl={serverUrl}
+          onAdded={() => {
+            setTorrentIntake(null)
+            setActiveView('list')
+            fetchStatus()
+          }}
+          onDismiss={() => {
+            discardTorrentFile(torrentIntake.id)
+            setTorrentIntake(null)
+          }}
+        />
+      )}
+
       {/* Navbar */}
       <div className={`flex-shrink-0 bg-[#141414]/90 backdrop-blur-md px-6 py-4 flex justify-between items-center shadow-lg border-b border-gray-800 transition-all duration-300`}>
         <h1 className="text-2xl font-bold bg-clip-text text-transparent bg-gradient-to-r from-blue-500 to-purple-500">PWA-TorServe</h1>
@@ -803,6 +944,9 @@ function App() {
           </div>
           <ServerStatusBar ref={diagnosticsRef} status={serverStatus} onDiagnosticsClick={() => { setSettingsTab('status'); setShowSettings(true); }} />
           <button ref={autoDownloadRef} tabIndex="0" onClick={() => setShowAutoDownload(true)} className="focusable p-2 hover:bg-gray-800 rounded-full transition-colors" title="Авто-загрузка">📺</button>
+          {isOfflineSupported() && (
+            <button ref={offlineBtnRef} tabIndex="0" onClick={() => setShowOfflineDownloads(true)} className="focusable p-2 hover:bg-gray-800 rounded-full transition-colors" title="На устройстве">📥</button>
+          )}
           <button
             ref={voiceRef}
             onClick={handleVoiceSearch}
@@ -813,6 +957,7 @@ function App() {
       </div>
 
       {showAutoDownload && <AutoDownloadPanel serverUrl={serverUrl} torrents={torrents} onClose={() => setShowAutoDownload(false)} />}
+      {offlinePanel}
       {serverStatus === 'degraded' && <DegradedBanner lastStateChange={lastStateChange} />}
       {showSettings && (
         <SettingsPanel
@@ -1024,6 +1169,8 @@ function App() {
             onPlayAll={handlePlayAll}
             onCopyUrl={copyUrl}
             onDelete={deleteTorrent}
+            offlineDownloads={offlineDownloads}
+            onDownloadOffline={isOfflineSupported() ? handleDownloadOffline : undefined}
             onForceTs={async (hash) => {
               try {
                 const res = await fetch(`${serverUrl}/api/torrents/${hash}/failover`, { method: 'POST' })
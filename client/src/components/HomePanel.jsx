@@ -37,6 +37,8 @@ import {
     writeHomeFocus,
     writeHomeSnapshot
 } from '../utils/homeSnapshot'
+import { markHomeRendered } from '../utils/startupMetrics'
+import { onMemoryPressure, shouldTrimOffscreen } from '../utils/memoryPressure'
 
 const getHomeRowItemCap = layout => layout === 'ranked' ? 10 : 20
 
@@ -125,6 +127,9 @@ const HomePanel = ({
     const [watchedIds, setWatchedIds] = useState(() => new Set())
     // TMDB items resolved from the connected Trakt account's watchlist.
     const [traktWatchlist, setTraktWatchlist] = useState([])
+    // Rows swapped for placeholders under memory pressure (native
+    // onTrimMemory); each comes back once it nears the viewport again.
+    const [trimmedRowIds, setTrimmedRowIds] = useState(() => new Set())
 
     // ADR-003: Centralized navigation state
     const [activeArea, setActiveArea] = useState('content') // 'content' | 'sidebar'
@@ -486,6 +491,13 @@ const HomePanel = ({
         return () => { cancelled = true }
     }, [])
 
+    // Cold-start timeline: first frame with real rows closes the launch trace
+    useEffect(() => {
+        if (loading || visibleRows.length === 0) return
+        const frame = requestAnimationFrame(() => { markHomeRendered() })
+        return () => cancelAnimationFrame(frame)
+    }, [loading, visibleRows])
+
     // ANTI-06: Prefetch Discovery - warm up bypass layers cache after initial load
     useEffect(() => {
         if (loading || Object.keys(categories).length === 0) return
@@ -705,6 +717,26 @@ const HomePanel = ({
         return rowFocusCallbacksRef.current.get(rowId)
     }, [handleRowFocus])
 
+    // Keep the focused row and its neighbours, drop the rest (posters included).
+    useEffect(() => onMemoryPressure((event) => {
+        if (!shouldTrimOffscreen(event)) return
+        const nodes = [...(homeScrollRef.current?.querySelectorAll('[data-row-id]') || [])]
+        const focusedAt = Math.max(0, nodes.findIndex(node => node.dataset.rowId === savedFocusRef.current?.rowId))
+        const ids = nodes
+            .filter((node, index) => Math.abs(index - focusedAt) > 1 && rowsByIdRef.current[node.dataset.rowId])
+            .map(node => node.dataset.rowId)
+        if (ids.length > 0) setTrimmedRowIds(prev => new Set([...prev, ...ids]))
+    }), [])
+
+    const restoreTrimmedRow = useCallback((category) => {
+        setTrimmedRowIds(prev => {
+            if (!prev.has(category.id)) return prev
+            const next = new Set(prev)
+            next.delete(category.id)
+            return next
+        })
+    }, [])
+
     const restoreHomeFocus = useCallback((saved) => {
         const scroller = homeScrollRef.current
         if (!scroller || !saved?.rowId) return false
@@ -769,6 +801,9 @@ const HomePanel = ({
     }, [enrichNextRankedBatch])
 
     const renderRow = (row) => {
+        if (trimmedRowIds.has(row.id)) {
+            return <LazyRow key={row.id} category={row} onVisible={restoreTrimmedRow} />
+        }
         const props = {
             ...row,
             items: row.items,
@@ -0,0 +1,108 @@
+/**
+ * Offline Downloads Panel
+ * Copies of episodes kept on the TV box (offlineDownloads.js): play a
+ * finished one, follow a running one, remove either. Works without the
+ * NAS, so App also opens it from the error screen.
+ *
+ * Back/Escape is handled by App's handleBack chain (zone 'offline').
+ */
+
+import { useEffect, useRef } from 'react'
+import { useSpatialItem } from '../hooks/useSpatialNavigation'
+import { formatSize } from '../utils/helpers'
+
+const STATE_LABELS = {
+    queued: 'В очереди',
+    running: 'Загружается',
+    done: 'На устройстве',
+    failed: 'Ошибка'
+}
+
+function PanelButton({ onClick, className, children, title }) {
+    const spatialRef = useSpatialItem('offline')
+    return (
+        <button
+            ref={spatialRef}
+            onClick={onClick}
+            title={title}
+            className={`focusable px-3 py-2 rounded-lg text-sm font-medium transition-all focus:ring-4 focus:ring-blue-500 focus:outline-none ${className}`}
+        >
+            {children}
+        </button>
+    )
+}
+
+function DownloadRow({ download, onPlay, onRemove }) {
+    const { state, totalBytes, downloadedBytes, bytesPerSec, error } = download
+    const percent = totalBytes > 0 ? Math.min(100, Math.floor((downloadedBytes / totalBytes) * 100)) : 0
+    const active = state === 'queued' || state === 'running'
+
+    return (
+        <div className="bg-gray-800/50 rounded-xl p-3 flex items-center gap-3">
+            <div className="flex-1 min-w-0">
+                <div className="text-white font-medium truncate">{download.name || download.id}</div>
+                <div className="text-xs text-gray-400 mt-1">
+                    {STATE_LABELS[state] || state}
+                    {active && totalBytes > 0 && ` — ${percent}% из ${formatSize(totalBytes)}`}
+                    {active && bytesPerSec > 0 && ` · ${formatSize(bytesPerSec)}/с`}
+                    {state === 'done' && totalBytes > 0 && ` · ${formatSize(totalBytes)}`}
+                    {state === 'failed' && error && ` · ${error}`}
+                </div>
+                {active && (
+                    <div className="h-1 bg-gray-700 rounded mt-2 overflow-hidden">
+                        <div className="h-full bg-blue-500" style={{ width: `${percent}%` }} />
+                    </div>
+                )}
+            </div>
+            {state === 'done' && (
+                <PanelButton onClick={() => onPlay(download)} className="bg-green-600 hover:bg-green-500 text-white">
+                    ▶ Смотреть
+                </PanelButton>
+            )}
+            <PanelButton onClick={() => onRemove(download.id)} className="bg-gray-700 hover:bg-red-600 text-white" title="Удалить с устройства">
+                🗑
+            </PanelButton>
+        </div>
+    )
+}
+
+export default function OfflineDownloadsPanel({ downloads = [], onPlay, onRemove, onClose }) {
+    const closeRef = useRef(null)
+    const closeSpatialRef = useSpatialItem('offline')
+
+    useEffect(() => {
+        closeRef.current?.focus()
+    }, [])
+
+    return (
+        <div
+            className="fixed inset-0 z-50 flex items-center justify-center bg-black/80 backdrop-blur-sm p-4"
+            onClick={(e) => e.target === e.currentTarget && onClose()}
+        >
+            <div className="bg-gray-900 rounded-2xl w-full max-w-xl max-h-[75vh] overflow-hidden flex flex-col">
+                <div className="flex justify-between items-center p-4 border-b border-gray-800">
+                    <h2 className="text-xl font-bold text-white">📥 На устройстве</h2>
+                    <button
+                        ref={(node) => { closeRef.current = node; closeSpatialRef(node) }}
+                        onClick={onClose}
+                        className="focusable text-gray-400 hover:text-white text-2xl p-2 rounded-lg focus:ring-4 focus:ring-blue-500 focus:outline-none"
+                    >
+                        ✕
+                    </button>
+                </div>
+
+                <div className="flex-1 overflow-y-auto p-4 space-y-3">
+                    {downloads.length === 0 ? (
+                        <p className="text-gray-400 text-center py-8">
+                            Пока ничего не скачано. Откройте торрент и нажмите «Скачать» у серии.
+                        </p>
+                    ) : (
+                        downloads.map(d => (
+                            <DownloadRow key={d.id} download={d} onPlay={onPlay} onRemove={onRemove} />
+                        ))
+                    )}
+                </div>
+            </div>
+        </div>
+    )
+}
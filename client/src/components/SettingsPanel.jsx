@@ -1,9 +1,12 @@
 import { useState, useEffect, useRef, useCallback } from 'react'
 import { App } from '@capacitor/app'
+import { Capacitor } from '@capacitor/core'
 import { useSpatialItem } from '../hooks/useSpatialNavigation'
 import { cleanTitle } from '../utils/helpers'
 import { getLayerStatus } from '../utils/tmdbClient'
 import { getTraktStatus, startTraktDevice, pollTraktDevice, disconnectTrakt } from '../utils/traktApi'
+import { getPlayerEngine, setPlayerEngine } from '../utils/playerEngine'
+import { discoverServers } from '../utils/nasDiscovery'
 
 const TABS = [
     { id: 'general', name: 'Основные', icon: '⚙️' },
@@ -177,6 +180,7 @@ const SettingsPanel = ({
     // General State
     const [speedMode, setSpeedModeState] = useState(localStorage.getItem('speedMode') || 'balanced')
     const [speedLoading, setSpeedLoading] = useState(false)
+    const [playerEngine, setPlayerEngineState] = useState(getPlayerEngine)
 
     // Status State
     const [statusData, setStatusData] = useState(null)
@@ -189,6 +193,10 @@ const SettingsPanel = ({
     const [streamMetrics, setStreamMetrics] = useState([])
     const [timeline, setTimeline] = useState([])
 
+    // LAN discovery State (nasDiscovery.js)
+    const [discovering, setDiscovering] = useState(false)
+    const [discoveryResult, setDiscoveryResult] = useState(null)
+
     // Poster Test State
     const [testResult, setTestResult] = useState(null)
     const [testLoading, setTestLoading] = useState(false)
@@ -205,6 +213,7 @@ const SettingsPanel = ({
     // Spatial Refs
     const closeBtnRef = useSpatialItem('settings')
     const serverInputRef = useSpatialItem('settings')
+    const discoverBtnRef = useSpatialItem('settings')
     const proxyInputRef = useSpatialItem('settings')
     const clearCacheRef = useSpatialItem('settings')
 
@@ -235,6 +244,15 @@ const SettingsPanel = ({
         window.location.reload()
     }
 
+    const handleDiscover = async () => {
+        setDiscovering(true)
+        setDiscoveryResult(null)
+        const [best] = await discoverServers({ force: true })
+        setDiscovering(false)
+        setDiscoveryResult(best || { url: null })
+        if (best) onServerUrlChange(best.url, true)
+    }
+
     const fetchStatus = async () => {
         setStatusLoading(true)
         try {
@@ -445,6 +463,23 @@ const SettingsPanel = ({
                                 </div>
                             </section>
 
+                            <section>
+                                <label className="text-xs font-bold text-gray-500 uppercase tracking-widest mb-3 block">🎬 Плеер</label>
+                                <div className="flex gap-2">
+                                    {[{ id: 'external', name: '📺 Внешний', desc: 'Vimu / MX / VLC' }, { id: 'native', name: '⚡ Встроенный', desc: 'Media3, быстрый старт' }].map(m => (
+                                        <SpeedButton
+                                            key={m.id}
+                                            mode={m}
+                                            active={playerEngine === m.id}
+                                            onClick={() => {
+                                                setPlayerEngine(m.id)
+                                                setPlayerEngineState(m.id)
+                                            }}
+                                        />
+                                    ))}
+                                </div>
+                            </section>
+
                             <TraktSection />
                         </div>
                     )}
@@ -492,6 +527,22 @@ const SettingsPanel = ({
                                     className="focusable w-full bg-gray-800 text-sm text-white px-4 py-3 rounded-lg border border-gray-700 focus:border-blue-500 outline-none transition-colors"
                                     placeholder="http://192.168.x.x:3000"
                                 />
+                                {Capacitor.isNativePlatform() && (
+                                    <button
+                                        ref={discoverBtnRef}
+                                        tabIndex="0"
+                                        onClick={handleDiscover}
+                                        disabled={discovering}
+                                        className="focusable w-full mt-2 py-2 bg-white/5 text-gray-300 rounded-lg text-sm border border-white/10 hover:bg-white/10 transition-colors"
+                                    >
+                                        {discovering ? 'Поиск в сети...' : '🔍 Найти сервер в сети'}
+                                    </button>
+                                )}
+                                {discoveryResult && (
+                                    <div className={`text-xs mt-2 ${discoveryResult.url ? 'text-green-400' : 'text-yellow-400'}`}>
+                                        {discoveryResult.url ? `Найден: ${discoveryResult.url} (${discoveryResult.rttMs} мс)` : 'Сервер не найден'}
+                                    </div>
+                                )}
                             </section>
 
                             <div className="pt-4 border-t border-white/10 pb-4">
@@ -44,9 +44,10 @@ export const DegradedBanner = ({ lastStateChange }) => {
  * ErrorScreen - Full-screen error for circuit breaker / critical errors
  * NOTE: Now includes Settings button for mobile users who need to change server URL
  */
-export const ErrorScreen = ({ status, retryAfter, onRetry, onSettings }) => {
+export const ErrorScreen = ({ status, retryAfter, onRetry, onSettings, onOfflineDownloads }) => {
     const [countdown, setCountdown] = useState(retryAfter || 300)
     const settingsBtnRef = React.useRef(null)
+    const offlineBtnRef = React.useRef(null)
     const retryBtnRef = React.useRef(null)
 
     useEffect(() => {
@@ -57,11 +58,10 @@ export const ErrorScreen = ({ status, retryAfter, onRetry, onSettings }) => {
     const handleKeyDown = (e) => {
         if (e.key === 'ArrowDown' || e.key === 'ArrowUp') {
             e.preventDefault()
-            if (document.activeElement === settingsBtnRef.current) {
-                retryBtnRef.current?.focus()
-            } else {
-                settingsBtnRef.current?.focus() || retryBtnRef.current?.focus()
-            }
+            const buttons = [settingsBtnRef, offlineBtnRef, retryBtnRef].map(r => r.current).filter(Boolean)
+            const at = buttons.indexOf(document.activeElement)
+            const step = e.key === 'ArrowDown' ? 1 : -1
+            buttons[(at + step + buttons.length) % buttons.length]?.focus()
         } else if (e.key === 'Enter' || e.key === 'OK') {
             document.activeElement?.click?.()
         }
@@ -103,6 +103,18 @@ export const ErrorScreen = ({ status, retryAfter, onRetry, onSettings }) => {
                         </button>
                     )}
 
+                    {/* Copies on the box play without the server */}
+                    {onOfflineDownloads && (
+                        <button
+                            ref={offlineBtnRef}
+                            onClick={onOfflineDownloads}
+                            tabIndex={0}
+                            className="bg-green-700 hover:bg-green-600 focus:bg-green-600 focus:ring-4 focus:ring-green-300 text-white px-6 py-3 rounded-lg font-bold transition-colors outline-none"
+                        >
+                            📥 Скачанное на устройстве
+                        </button>
+                    )}
+
                     <button
                         ref={retryBtnRef}
                         onClick={onRetry}
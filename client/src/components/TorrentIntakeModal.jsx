@@ -0,0 +1,160 @@
+/**
+ * TorrentIntakeModal — превью .torrent-файла, открытого в приложении
+ * Имя, список файлов и размеры до загрузки на NAS (TorrentIntakePlugin)
+ */
+import { useState, useCallback } from 'react';
+import { useSpatialItem } from '../hooks/useSpatialNavigation';
+import { uploadTorrentFile } from '../utils/torrentIntake';
+import { formatSize } from '../utils/helpers';
+
+// Rows shown before "и ещё N"
+const VISIBLE_FILES = 12;
+
+export default function TorrentIntakeModal({ preview, serverUrl, onAdded, onDismiss }) {
+    const [status, setStatus] = useState('idle'); // idle | uploading | error
+    const [errorMsg, setErrorMsg] = useState('');
+
+    const addBtnRef = useSpatialItem('modal');
+    const cancelBtnRef = useSpatialItem('modal');
+
+    const handleAdd = useCallback(async () => {
+        setStatus('uploading');
+        try {
+            const result = await uploadTorrentFile(preview.id, serverUrl);
+            onAdded(result);
+        } catch (e) {
+            setStatus('error');
+            setErrorMsg(e.message || 'Ошибка загрузки');
+        }
+    }, [preview.id, serverUrl, onAdded]);
+
+    const files = preview.files || [];
+    const hiddenCount = (preview.fileCount || files.length) - Math.min(files.length, VISIBLE_FILES);
+
+    return (
+        <div className="details-overlay" style={{ zIndex: 9999 }}>
+            <div
+                style={{
+                    background: 'linear-gradient(180deg, #1e293b 0%, #0f172a 100%)',
+                    borderRadius: '24px',
+                    padding: '2rem',
+                    maxWidth: '640px',
+                    width: '90%',
+                    maxHeight: '80vh',
+                    display: 'flex',
+                    flexDirection: 'column',
+                    border: '1px solid #334155',
+                    animation: 'fadeIn 0.3s ease-out'
+                }}
+            >
+                {/* Header */}
+                <h2 style={{
+                    fontSize: '1.5rem',
+                    fontWeight: 700,
+                    color: '#f1f5f9',
+                    marginBottom: '0.5rem',
+                    wordBreak: 'break-word'
+                }}>
+                    {preview.name}
+                </h2>
+                <p style={{ fontSize: '1rem', color: '#94a3b8', marginBottom: '1rem' }}>
+                    {formatSize(preview.totalLength) || '0 B'} · файлов: {preview.fileCount || files.length}
+                    {preview.private && ' · приватный'}
+                </p>
+
+                {/* File list */}
+                <div style={{
+                    overflowY: 'auto',
+                    flex: 1,
+                    minHeight: 0,
+                    borderTop: '1px solid #334155',
+                    borderBottom: '1px solid #334155',
+                    padding: '0.5rem 0'
+                }}>
+                    {files.slice(0, VISIBLE_FILES).map((file) => (
+                        <div
+                            key={file.path}
+                            style={{
+                                display: 'flex',
+                                justifyContent: 'space-between',
+                                gap: '1rem',
+                                fontSize: '0.95rem',
+                                color: '#cbd5e1',
+                                padding: '0.25rem 0'
+                            }}
+                        >
+                            <span style={{ overflow: 'hidden', textOverflow: 'ellipsis', whiteSpace: 'nowrap' }}>
+                                {file.path}
+                            </span>
+                            <span style={{ color: '#94a3b8', flexShrink: 0 }}>{formatSize(file.length)}</span>
+                        </div>
+                    ))}
+                    {hiddenCount > 0 && (
+                        <div style={{ fontSize: '0.9rem', color: '#64748b', paddingTop: '0.25rem' }}>
+                            и ещё {hiddenCount}
+                        </div>
+                    )}
+                </div>
+
+                {/* Error Message */}
+                {status === 'error' && (
+                    <p style={{
+                        color: '#ef4444',
+                        marginTop: '1rem',
+                        fontSize: '0.95rem'
+                    }}>
+                        ❌ {errorMsg}
+                    </p>
+                )}
+
+                {/* Buttons */}
+                <div style={{
+                    display: 'flex',
+                    flexDirection: 'column',
+                    gap: '0.75rem',
+                    marginTop: '1.5rem',
+                    flexShrink: 0
+                }}>
+                    <button
+                        ref={addBtnRef}
+                        tabIndex="0"
+                        className="focusable"
+                        onClick={handleAdd}
+                        disabled={status === 'uploading'}
+                        style={{
+                            background: 'linear-gradient(135deg, #3b82f6 0%, #2563eb 100%)',
+                            color: 'white',
+                            fontSize: '1.25rem',
+                            fontWeight: 700,
+                            padding: '1rem 2rem',
+                            borderRadius: '14px',
+                            border: 'none',
+                            cursor: 'pointer',
+                            opacity: status === 'uploading' ? 0.7 : 1
+                        }}
+                    >
+                        {status === 'uploading' ? 'Отправка...' : status === 'error' ? 'Попробовать снова' : 'Добавить'}
+                    </button>
+
+                    <button
+                        ref={cancelBtnRef}
+                        tabIndex="0"
+                        className="focusable"
+                        onClick={onDismiss}
+                        style={{
+                            background: 'transparent',
+                            color: '#94a3b8',
+                            fontSize: '1rem',
+                            padding: '0.75rem 1.5rem',
+                            borderRadius: '12px',
+                            border: '1px solid #475569',
+                            cursor: 'pointer'
+                        }}
+                    >
+                        Отмена
+                    </button>
+                </div>
+            </div>
+        </div>
+    );
+}
@@ -2,6 +2,7 @@ import { useState, useEffect } from 'react'
 import { pushBackHandler } from '../utils/backButton.js'
 import { cleanTitle, formatSize, organizeFiles } from '../utils/helpers'
 import { getMetadata } from '../utils/tmdbClient'
+import { offlineDownloadId } from '../utils/offlineDownloads'
 import SpatialEngine, { useSpatialItem } from '../hooks/useSpatialNavigation'
 
 const RatingBadge = ({ rating }) => {
@@ -14,18 +15,21 @@ const RatingBadge = ({ rating }) => {
     )
 }
 
-const EpisodeItem = ({ file, idx, onClick }) => {
+const EpisodeItem = ({ file, idx, onClick, offline }) => {
     const spatialRef = useSpatialItem('modal')
     return (
-        <button
-            ref={spatialRef}
-            onClick={onClick}
-            className="focusable w-full px-3 py-2 text-left border-t border-gray-800 focus:bg-blue-600 focus:text-white flex items-center gap-2 text-sm"
-        >
-            {idx !== undefined && <span className="text-blue-400 font-mono text-xs w-5">{idx + 1}</span>}
-            <span className="flex-1 text-gray-300 truncate">{cleanTitle(file.name) || file.name}</span>
-            <span className="text-xs text-gray-500">{formatSize(file.length)}</span>
-        </button>
+        <div className="flex items-stretch border-t border-gray-800">
+            <button
+                ref={spatialRef}
+                onClick={onClick}
+                className="focusable flex-1 min-w-0 px-3 py-2 text-left focus:bg-blue-600 focus:text-white flex items-center gap-2 text-sm"
+            >
+                {idx !== undefined && <span className="text-blue-400 font-mono text-xs w-5">{idx + 1}</span>}
+                <span className="flex-1 text-gray-300 truncate">{cleanTitle(file.name) || file.name}</span>
+                <span className="text-xs text-gray-500">{formatSize(file.length)}</span>
+            </button>
+            {offline?.onDownloadOffline && <OfflineRowButton file={file} {...offline} />}
+        </div>
     )
 }
 
@@ -56,6 +60,82 @@ const TsBoostButton = ({ torrent, onForceTs }) => {
     )
 }
 
+// State of the offline copy of one file. The entry from App's live list
+// wins over what start() returned, so a copy that already finished or is
+// still running never offers "Скачать" again.
+// state: idle | busy | error | queued | running | done | failed
+const useOfflineCopy = ({ torrent, file, download, onDownloadOffline }) => {
+    const [started, setStarted] = useState(null)
+    const [status, setStatus] = useState('idle') // idle | busy | error
+
+    const entry = download || started
+    const state = status === 'busy' ? 'busy' : entry?.state || status
+    const percent = entry?.totalBytes > 0
+        ? Math.min(100, Math.floor((entry.downloadedBytes / entry.totalBytes) * 100))
+        : 0
+
+    const start = async () => {
+        setStatus('busy')
+        const result = await onDownloadOffline(torrent.infoHash, file.index, file.name, file.length)
+        setStarted(result)
+        setStatus(result ? 'idle' : 'error')
+    }
+
+    const busy = state === 'busy' || state === 'queued' || state === 'running' || state === 'done'
+    return { state, percent, start, busy }
+}
+
+// Copies the file to the box for offline playback; play() picks the copy
+// up once it is complete. Shown for single-file torrents, episode rows
+// carry their own OfflineRowButton.
+const OfflineButton = ({ torrent, file, download, onDownloadOffline }) => {
+    const btnRef = useSpatialItem('modal')
+    const { state, percent, start, busy } = useOfflineCopy({ torrent, file, download, onDownloadOffline })
+
+    if (!onDownloadOffline || !file) return null
+
+    const label = state === 'busy' ? '⏳ Ставим в очередь...'
+        : state === 'queued' || state === 'running' ? `⬇ Загружается — ${percent}%`
+        : state === 'done' ? '✅ Уже на устройстве'
+        : state === 'failed' ? '🔁 Загрузка прервалась — повторить'
+        : state === 'error' ? '❌ Не удалось начать загрузку'
+        : '⬇ Скачать на устройство'
+
+    return (
+        <button
+            ref={btnRef}
+            disabled={busy}
+            onClick={start}
+            className="focusable w-full bg-gray-800 text-gray-200 py-2 rounded font-bold focus:bg-white focus:text-black mb-2 disabled:opacity-60"
+        >{label}</button>
+    )
+}
+
+const OfflineRowButton = ({ torrent, file, download, onDownloadOffline }) => {
+    const btnRef = useSpatialItem('modal')
+    const { state, percent, start, busy } = useOfflineCopy({ torrent, file, download, onDownloadOffline })
+
+    const label = state === 'busy' ? '⏳'
+        : state === 'queued' || state === 'running' ? `${percent}%`
+        : state === 'done' ? '✅'
+        : state === 'failed' || state === 'error' ? '🔁'
+        : '⬇'
+    const title = state === 'done' ? 'Уже на устройстве'
+        : state === 'failed' || state === 'error' ? 'Повторить загрузку на устройство'
+        : 'Скачать на устройство'
+
+    return (
+        <button
+            ref={btnRef}
+            disabled={busy}
+            onClick={start}
+            title={title}
+            aria-label={title}
+            className="focusable w-14 shrink-0 text-xs text-gray-300 focus:bg-white focus:text-black disabled:opacity-60"
+        >{label}</button>
+    )
+}
+
 const TorrentModal = ({
     torrent,
     onClose,
@@ -63,6 +143,8 @@ const TorrentModal = ({
     onPlayAll,
     onCopyUrl,
     onDelete,
+    onDownloadOffline,
+    offlineDownloads = [],
     onForceTs
 }) => {
     const [showFullOverview, setShowFullOverview] = useState(false)
@@ -138,6 +220,10 @@ const TorrentModal = ({
     const extraList = sortedEpisodes.length > 0 ? sortedExtras : []
 
     const firstVideo = mainList[0] || torrent.files?.[0]
+    const offlineFor = (file) => {
+        const id = file && offlineDownloadId(torrent.infoHash, file.index)
+        return offlineDownloads.find(d => d.id === id)
+    }
     const cleanedName = cleanTitle(torrent.name)
 
     const backdropStyle = metadata?.backdrop
@@ -219,6 +305,16 @@ const TorrentModal = ({
                         className={`focusable w-full bg-white text-black py-3 rounded font-bold focus:bg-yellow-400 mb-2 ${!allowInteraction ? 'opacity-50' : ''}`}
                     >▶ Play</button>
 
+                    {/* Offline copy of the only file (Android); episodes have one per row */}
+                    {videoFiles.length <= 1 && (
+                        <OfflineButton
+                            torrent={torrent}
+                            file={firstVideo}
+                            download={offlineFor(firstVideo)}
+                            onDownloadOffline={onDownloadOffline}
+                        />
+                    )}
+
                     {/* Manual TorrServer boost for crawling downloads */}
                     <TsBoostButton torrent={torrent} onForceTs={onForceTs} />
 
@@ -245,6 +341,7 @@ const TorrentModal = ({
                                         idx={idx}
                                         file={file}
                                         onClick={() => onPlay(torrent.infoHash, file.index, file.name)}
+                                        offline={{ torrent, download: offlineFor(file), onDownloadOffline }}
                                     />
                                 ))}
 
@@ -266,6 +363,7 @@ const TorrentModal = ({
                                                 key={file.index}
                                                 file={file}
                                                 onClick={() => onPlay(torrent.infoHash, file.index, file.name)}
+                                                offline={{ torrent, download: offlineFor(file), onDownloadOffline }}
                                             />
                                         ))}
                                     </div>
@@ -92,3 +92,71 @@ describe('TorrentModal delete confirmation', () => {
         expect(screen.getByText('Удалить торрент?')).toBeTruthy()
     })
 })
+
+describe('TorrentModal offline copies', () => {
+    const series = {
+        infoHash: 'ABC123',
+        name: 'Test Series',
+        files: [
+            { index: 0, name: 'Episode 1.mkv', length: 1024 },
+            { index: 1, name: 'Episode 2.mkv', length: 2048 }
+        ]
+    }
+
+    const renderModal = (props) => render(
+        <TorrentModal
+            onClose={() => {}}
+            onPlay={() => {}}
+            onPlayAll={() => {}}
+            onCopyUrl={() => {}}
+            onDelete={vi.fn(async () => {})}
+            {...props}
+        />
+    )
+
+    it('downloads the episode of the row, not the first one', async () => {
+        const onDownloadOffline = vi.fn(async () => ({ id: 'abc123_1', state: 'queued', totalBytes: 2048, downloadedBytes: 0 }))
+        renderModal({ torrent: series, onDownloadOffline })
+
+        expect(screen.queryByRole('button', { name: '⬇ Скачать на устройство' })).toBeNull()
+        const rowButtons = screen.getAllByRole('button', { name: 'Скачать на устройство' })
+        expect(rowButtons).toHaveLength(2)
+
+        await act(async () => {
+            fireEvent.click(rowButtons[1])
+            await Promise.resolve()
+        })
+
+        expect(onDownloadOffline).toHaveBeenCalledWith('ABC123', 1, 'Episode 2.mkv', 2048)
+        expect(rowButtons[1].textContent).toBe('0%')
+        expect(rowButtons[1].disabled).toBe(true)
+    })
+
+    it('shows copies already on the box instead of offering them again', () => {
+        renderModal({
+            torrent: series,
+            onDownloadOffline: vi.fn(),
+            offlineDownloads: [
+                { id: 'abc123_0', state: 'done', totalBytes: 1024, downloadedBytes: 1024 },
+                { id: 'abc123_1', state: 'running', totalBytes: 200, downloadedBytes: 50 }
+            ]
+        })
+
+        const done = screen.getByRole('button', { name: 'Уже на устройстве' })
+        expect(done.disabled).toBe(true)
+        const running = screen.getByText('25%')
+        expect(running.disabled).toBe(true)
+        expect(screen.queryByRole('button', { name: 'Скачать на устройство' })).toBeNull()
+    })
+
+    it('keeps one offline button for a single-file torrent', () => {
+        renderModal({
+            torrent: { infoHash: 'abc123', name: 'Movie', files: [{ index: 0, name: 'Movie.mkv', length: 1024 }] },
+            onDownloadOffline: vi.fn(),
+            offlineDownloads: [{ id: 'abc123_0', state: 'failed', totalBytes: 1024, downloadedBytes: 10 }]
+        })
+
+        const retry = screen.getByRole('button', { name: '🔁 Загрузка прервалась — повторить' })
+        expect(retry.disabled).toBe(false)
+    })
+})
@@ -24,14 +24,16 @@ export default function UpdateModal({ updateInfo, onDismiss }) {
                 (pct) => setProgress(pct),
                 {
                     version: updateInfo.version,
-                    versionCode: updateInfo.versionCode
+                    versionCode: updateInfo.versionCode,
+                    sha256: updateInfo.sha256,
+                    delta: updateInfo.delta
                 }
             );
         } catch (e) {
             setStatus('error');
             setErrorMsg(e.message || 'Ошибка загрузки');
         }
-    }, [updateInfo.url, updateInfo.version, updateInfo.versionCode]);
+    }, [updateInfo.url, updateInfo.version, updateInfo.versionCode, updateInfo.sha256, updateInfo.delta]);
 
     return (
         <div className="details-overlay" style={{ zIndex: 9999 }}>
@@ -2,18 +2,40 @@ import { describe, expect, it } from 'vitest'
 import fs from 'fs'
 import path from 'path'
 
-const mainActivitySrc = fs.readFileSync(
-    path.resolve(import.meta.dirname, '../../android/app/src/main/java/com/torserve/pwa/MainActivity.java'),
-    'utf8'
-)
+const javaDir = path.resolve(import.meta.dirname, '../../android/app/src/main/java/com/torserve/pwa')
+const mainActivitySrc = fs.readFileSync(path.join(javaDir, 'MainActivity.java'), 'utf8')
+const invalidatorSrc = fs.readFileSync(path.join(javaDir, 'WebCacheInvalidator.java'), 'utf8')
 
 describe('Android startup cache guard', () => {
-    it('clears stale WebView cache after an APK versionCode change', () => {
-        expect(mainActivitySrc).toContain('clearWebViewCacheAfterUpdate')
+    it('invalidates stale WebView cache after an APK versionCode change', () => {
+        expect(mainActivitySrc).toContain('startCacheInvalidation')
         expect(mainActivitySrc).toContain('getPackageInfo(getPackageName()')
         expect(mainActivitySrc).toContain('LAST_CACHE_CLEAR_VERSION_CODE = "last_cache_clear_version_code"')
         expect(mainActivitySrc).toContain('getLong(LAST_CACHE_CLEAR_VERSION_CODE')
-        expect(mainActivitySrc).toContain('webView.clearCache(true)')
         expect(mainActivitySrc).toContain('edit().putLong(LAST_CACHE_CLEAR_VERSION_CODE')
     })
+
+    it('evicts only changed bundled assets, off the main thread', () => {
+        expect(mainActivitySrc).toContain('CapConfig.loadDefault(this)')
+        expect(mainActivitySrc).toContain('new WebCacheInvalidator(this,')
+        expect(mainActivitySrc).toContain('"web-cache-invalidate"')
+        // Full wipe is only the fallback for caches that can't be read per entry
+        expect(mainActivitySrc).toContain('fullClear = report.fullClearNeeded')
+        expect(mainActivitySrc).toContain('webView.clearCache(true)')
+        expect(invalidatorSrc).toContain('entry.getCrc()')
+        expect(invalidatorSrc).toContain('if (!url.startsWith(origin + "/"))')
+    })
+
+    it('creates the bridge only after the invalidation, without blocking the UI thread', () => {
+        expect(mainActivitySrc).toContain('protected void load()')
+        expect(mainActivitySrc).toContain('if (cacheInvalidationPending) {')
+        expect(mainActivitySrc).toContain('runOnUiThread(() -> onCacheInvalidated(clear))')
+        expect(mainActivitySrc).not.toContain('.join(')
+    })
+
+    it('reports entries, bytes and time spent', () => {
+        expect(invalidatorSrc).toContain('json.put("entriesEvicted", entriesEvicted)')
+        expect(invalidatorSrc).toContain('json.put("bytesEvicted", bytesEvicted)')
+        expect(invalidatorSrc).toContain('json.put("durationMs", durationMs)')
+    })
 })
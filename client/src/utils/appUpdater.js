@@ -134,7 +134,7 @@ export async function getCurrentVersion() {
 
 /**
  * Check if an update is available.
- * Returns { available: boolean, version?: string, notes?: string, url?: string, forceUpdate?: boolean }
+ * Returns { available: boolean, version?: string, notes?: string, url?: string, sha256?: string, forceUpdate?: boolean }
  */
 export async function checkForUpdate() {
     if (!Capacitor.isNativePlatform()) {
@@ -198,11 +198,18 @@ export async function checkForUpdate() {
             clearPendingInstall();
         }
 
+        // Binary patch from exactly the installed build, if the release has one
+        const delta = Array.isArray(remote.deltas)
+            ? remote.deltas.find(d => d?.url && Number(d.fromVersionCode) === Number(local.versionCode)) || null
+            : null;
+
         return {
             available,
             forceUpdate,
             version: remote.version,
             versionCode: remote.versionCode,
+            sha256: remote.sha256 || null,
+            delta,
             notes: remote.notes || '',
             url: fromLocalStatic ? (getLocalApkUrl(localBase, remote.version) || remote.url) : remote.url,
             currentVersion: local.versionName
@@ -213,12 +220,51 @@ export async function checkForUpdate() {
     }
 }
 
+/**
+ * Download candidates for a release asset: the LAN server first (avoids TLS
+ * issues on old Android / skewed clocks), then the original URL.
+ */
+function getDownloadCandidates(url) {
+    const localBase = getLocalUpdaterBase();
+    const urls = [];
+    if (localBase) {
+        urls.push(`${localBase}/api/updater/apk?url=${encodeURIComponent(url)}`);
+    }
+    urls.push(url);
+    return urls;
+}
+
+/**
+ * Fetch the binary patch from the installed versionCode and rebuild the
+ * new APK natively from base.apk (TVPlayer.applyApkPatch).
+ */
+async function downloadViaDelta(delta, fileName, targetSha256) {
+    const patch = await TVPlayer.downloadApk({
+        urls: getDownloadCandidates(delta.url),
+        fileName: fileName.replace(/\.apk$/, `-from-${delta.fromVersionCode}.tsdelta`),
+        sha256: delta.sha256 || undefined,
+        validate: false
+    });
+    const rebuilt = await TVPlayer.applyApkPatch({
+        patchPath: patch.path,
+        fileName,
+        sha256: targetSha256 || undefined
+    });
+    console.log('[Updater] Delta applied:', patch.bytes, 'byte patch ->', rebuilt.bytes, 'byte APK in', rebuilt.durationMs, 'ms');
+    return { ...rebuilt, verified: true, delta: true };
+}
+
 /**
  * Download the APK and trigger installation.
- * Uses CapacitorHttp (native HTTP, no CORS) + Filesystem for writing.
+ * The download runs natively (TVPlayer.downloadApk): streamed to the cache dir,
+ * resumed with HTTP Range after a dropped connection and SHA-256 checked
+ * against version.json when it publishes a hash.
+ * When version.json publishes a delta from the installed versionCode, only the
+ * patch is downloaded and the APK is rebuilt on the device; any failure there
+ * falls back to the full APK.
  * @param {string} url - Direct download URL for the APK
  * @param {function} onProgress - Optional callback(percent: number)
- * @param {{ version?: string }} options - Optional release metadata
+ * @param {{ version?: string, versionCode?: number, sha256?: string, delta?: Object }} options - Optional release metadata
  * @returns {Promise<void>}
  */
 export async function downloadAndInstall(url, onProgress, options = {}) {
@@ -229,71 +275,42 @@ export async function downloadAndInstall(url, onProgress, options = {}) {
     const version = String(options.version || 'latest').replace(/[^\w.-]/g, '_');
     const fileName = `update-${version}.apk`;
     let attemptedPendingInstall = null;
+    let progressListener = null;
 
     try {
-        const pending = readPendingInstall();
-        const canReuseCached = pending?.url === url && pending?.fileName === fileName;
-
-        if (canReuseCached) {
-            try {
-                await Filesystem.stat({ path: fileName, directory: Directory.Cache });
-                if (onProgress) onProgress(95);
-                attemptedPendingInstall = pending;
-                await installPendingApk(pending, onProgress);
-                return;
-            } catch {
-                // Cache entry is stale -> continue with fresh download.
-            }
-        }
-
         if (onProgress) onProgress(5);
 
-        // Prefer local LAN server to avoid TLS issues on old Android / skewed clocks.
-        const localBase = getLocalUpdaterBase();
-        const downloadCandidates = [];
-        if (localBase) {
-            downloadCandidates.push(`${localBase}/api/updater/apk?url=${encodeURIComponent(url)}`);
+        if (onProgress) {
+            progressListener = await TVPlayer.addListener('apkDownloadProgress', ({ percent }) => {
+                if (percent >= 0) onProgress(5 + Math.round(percent * 0.85));
+            });
         }
-        downloadCandidates.push(url);
 
-        let response = null;
-        let lastError = null;
-        for (const candidate of downloadCandidates) {
+        let download = null;
+        if (options.delta?.url) {
             try {
-                response = await CapacitorHttp.get({
-                    url: candidate,
-                    responseType: 'blob',
-                    readTimeout: 120000,
-                    connectTimeout: 30000
-                });
-                if (response.status >= 200 && response.status < 300) break;
-                lastError = new Error(`HTTP ${response.status} from ${candidate}`);
-                response = null;
+                download = await downloadViaDelta(options.delta, fileName, options.sha256);
             } catch (e) {
-                lastError = e;
-                response = null;
+                console.warn('[Updater] Delta update failed, downloading full APK:', e?.message || e);
             }
         }
-        if (!response) throw lastError || new Error('Download failed');
-
-        if (response.status < 200 || response.status >= 300) {
-            throw new Error(`Download failed: HTTP ${response.status}`);
+        if (!download) {
+            // Returns at once if this release is already downloaded and verified.
+            download = await TVPlayer.downloadApk({
+                urls: getDownloadCandidates(url),
+                fileName,
+                sha256: options.sha256 || undefined
+            });
         }
-
-        if (onProgress) onProgress(60);
-
-        // response.data is base64-encoded when responseType is 'blob'
-        await Filesystem.writeFile({
-            path: fileName,
-            data: response.data,
-            directory: Directory.Cache
-        });
+        console.log('[Updater] APK ready:', download.bytes, 'bytes, resumedFrom', download.resumedFrom ?? 0,
+            download.cached ? '(cached)' : '', download.verified ? 'sha256 ok' : 'sha256 not published');
 
         attemptedPendingInstall = {
             url,
             fileName,
             version,
             versionCode: options.versionCode ?? null,
+            sha256: download.sha256,
             timestamp: Date.now()
         };
         writePendingInstall(attemptedPendingInstall);
@@ -308,6 +325,8 @@ export async function downloadAndInstall(url, onProgress, options = {}) {
         }
         console.error('[Updater] Download/install failed:', e);
         throw e;
+    } finally {
+        progressListener?.remove();
     }
 }
 
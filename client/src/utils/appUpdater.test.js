@@ -8,7 +8,10 @@ const {
 } = vi.hoisted(() => ({
     mockTVPlayer: {
         getAppVersion: vi.fn(),
-        installApk: vi.fn()
+        installApk: vi.fn(),
+        downloadApk: vi.fn(),
+        applyApkPatch: vi.fn(),
+        addListener: vi.fn()
     },
     mockCapacitor: {
         isNativePlatform: vi.fn(() => true)
@@ -36,7 +39,7 @@ vi.mock('@capacitor/filesystem', () => ({
     }
 }))
 
-import { checkForUpdate, tryInstallPending } from './appUpdater.js'
+import { checkForUpdate, downloadAndInstall, tryInstallPending } from './appUpdater.js'
 
 describe('checkForUpdate', () => {
     beforeEach(() => {
@@ -69,6 +72,128 @@ describe('checkForUpdate', () => {
         expect(update.available).toBe(true)
         expect(update.url).toBe('http://192.168.8.203:3000/pwa-torserve-v3.17.1.apk')
     })
+
+    it('passes the published sha256 through', async () => {
+        mockCapacitorHttp.get.mockResolvedValueOnce({
+            status: 200,
+            data: { version: '3.17.1', versionCode: 36, url: 'https://example.com/app.apk', sha256: 'abc123' }
+        })
+
+        const update = await checkForUpdate()
+
+        expect(update.sha256).toBe('abc123')
+    })
+
+    it('offers the delta patch built from the installed versionCode only', async () => {
+        mockCapacitorHttp.get.mockResolvedValueOnce({
+            status: 200,
+            data: {
+                version: '3.17.1',
+                versionCode: 36,
+                url: 'https://example.com/app.apk',
+                deltas: [
+                    { fromVersionCode: 34, url: 'https://example.com/34.tsdelta' },
+                    { fromVersionCode: 35, url: 'https://example.com/35.tsdelta', sha256: 'patchsha' }
+                ]
+            }
+        })
+
+        const update = await checkForUpdate()
+
+        expect(update.delta).toEqual({ fromVersionCode: 35, url: 'https://example.com/35.tsdelta', sha256: 'patchsha' })
+    })
+})
+
+describe('downloadAndInstall', () => {
+    const apkUrl = 'https://github.com/dbobkov245-source/PWA-TORSERVE/releases/download/v3.17.1/pwa-torserve-v3.17.1.apk'
+    let progressHandler
+    const removeListener = vi.fn()
+
+    beforeEach(() => {
+        localStorage.clear()
+        vi.clearAllMocks()
+
+        mockCapacitor.isNativePlatform.mockReturnValue(true)
+        progressHandler = null
+        mockTVPlayer.getAppVersion.mockResolvedValue({ versionName: '3.17.1', versionCode: 36 })
+        mockTVPlayer.addListener.mockImplementation(async (event, handler) => {
+            progressHandler = handler
+            return { remove: removeListener }
+        })
+        mockTVPlayer.downloadApk.mockImplementation(async () => {
+            progressHandler?.({ percent: 50 })
+            return { path: 'file:///cache/update-3.17.1.apk', sha256: 'abc123', bytes: 1000, resumedFrom: 0 }
+        })
+        mockFilesystem.getUri.mockResolvedValue({ uri: 'file:///cache/update-3.17.1.apk' })
+    })
+
+    it('downloads natively via the LAN proxy first and verifies the published hash', async () => {
+        localStorage.setItem('serverUrl', '192.168.8.203:3000')
+        const onProgress = vi.fn()
+
+        await downloadAndInstall(apkUrl, onProgress, { version: '3.17.1', versionCode: 36, sha256: 'abc123' })
+
+        expect(mockTVPlayer.downloadApk).toHaveBeenCalledWith({
+            urls: [
+                `http://192.168.8.203:3000/api/updater/apk?url=${encodeURIComponent(apkUrl)}`,
+                apkUrl
+            ],
+            fileName: 'update-3.17.1.apk',
+            sha256: 'abc123'
+        })
+        expect(mockCapacitorHttp.get).not.toHaveBeenCalled()
+        expect(mockFilesystem.writeFile).not.toHaveBeenCalled()
+        expect(onProgress).toHaveBeenCalledWith(48)
+        expect(mockTVPlayer.installApk).toHaveBeenCalledWith({ path: 'file:///cache/update-3.17.1.apk' })
+        expect(removeListener).toHaveBeenCalled()
+        expect(localStorage.getItem('app_update_pending_install')).toBeNull()
+    })
+
+    it('rebuilds the APK from a delta patch instead of downloading it', async () => {
+        mockTVPlayer.downloadApk.mockResolvedValueOnce({ path: 'file:///cache/update-3.17.1-from-35.tsdelta', bytes: 200 })
+        mockTVPlayer.applyApkPatch.mockResolvedValueOnce({ path: 'file:///cache/update-3.17.1.apk', sha256: 'abc123', bytes: 1000 })
+        const delta = { fromVersionCode: 35, url: 'https://example.com/35.tsdelta', sha256: 'patchsha' }
+
+        await downloadAndInstall(apkUrl, null, { version: '3.17.1', versionCode: 36, sha256: 'abc123', delta })
+
+        expect(mockTVPlayer.downloadApk).toHaveBeenCalledTimes(1)
+        expect(mockTVPlayer.downloadApk).toHaveBeenCalledWith({
+            urls: ['https://example.com/35.tsdelta'],
+            fileName: 'update-3.17.1-from-35.tsdelta',
+            sha256: 'patchsha',
+            validate: false
+        })
+        expect(mockTVPlayer.applyApkPatch).toHaveBeenCalledWith({
+            patchPath: 'file:///cache/update-3.17.1-from-35.tsdelta',
+            fileName: 'update-3.17.1.apk',
+            sha256: 'abc123'
+        })
+        expect(mockTVPlayer.installApk).toHaveBeenCalledWith({ path: 'file:///cache/update-3.17.1.apk' })
+    })
+
+    it('falls back to the full APK when the patch does not apply', async () => {
+        mockTVPlayer.downloadApk.mockResolvedValueOnce({ path: 'file:///cache/update-3.17.1-from-35.tsdelta', bytes: 200 })
+        mockTVPlayer.applyApkPatch.mockRejectedValueOnce(new Error('APK patch failed: Patch is for a different base APK'))
+        const delta = { fromVersionCode: 35, url: 'https://example.com/35.tsdelta' }
+
+        await downloadAndInstall(apkUrl, null, { version: '3.17.1', versionCode: 36, delta })
+
+        expect(mockTVPlayer.downloadApk).toHaveBeenLastCalledWith({
+            urls: [apkUrl],
+            fileName: 'update-3.17.1.apk',
+            sha256: undefined
+        })
+        expect(mockTVPlayer.installApk).toHaveBeenCalled()
+    })
+
+    it('does not start the installer when the download fails', async () => {
+        mockTVPlayer.downloadApk.mockRejectedValueOnce(new Error('APK download failed: SHA-256 mismatch'))
+
+        await expect(downloadAndInstall(apkUrl, null, { version: '3.17.1' })).rejects.toThrow('SHA-256 mismatch')
+
+        expect(mockTVPlayer.installApk).not.toHaveBeenCalled()
+        expect(localStorage.getItem('app_update_pending_install')).toBeNull()
+    })
 })
 
 describe('tryInstallPending', () => {
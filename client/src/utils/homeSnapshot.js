@@ -1,3 +1,13 @@
+/**
+ * homeSnapshot.js — last home rows, rendered on the first frame of a cold
+ * start while fresh rows load.
+ *
+ * On Android the snapshot is an app file that MainActivity starts reading
+ * before the WebView is even created; window.TorServeHomeSnapshot (a
+ * JavascriptInterface, present before this bundle runs) hands it over
+ * synchronously. Web, and the first launch after the update, fall back
+ * to localStorage.
+ */
 const SNAPSHOT_KEY = 'home:snapshot:v2'
 const FOCUS_KEY = 'home:focus:v2'
 const MAX_STALE_MS = 24 * 60 * 60 * 1000
@@ -34,10 +44,21 @@ function sanitizeSnapshotValue(value) {
   return value
 }
 
+function getNativeStore() {
+  return typeof window !== 'undefined' ? window.TorServeHomeSnapshot || null : null
+}
+
 export function writeHomeSnapshot(rows, now = Date.now()) {
   try {
     const sanitizedRows = sanitizeSnapshotValue(rows)
-    localStorage.setItem(SNAPSHOT_KEY, JSON.stringify({ rows: sanitizedRows, savedAt: now }))
+    const serialized = JSON.stringify({ rows: sanitizedRows, savedAt: now })
+    const nativeStore = getNativeStore()
+    if (nativeStore) {
+      nativeStore.write(serialized)
+      localStorage.removeItem(SNAPSHOT_KEY)
+      return
+    }
+    localStorage.setItem(SNAPSHOT_KEY, serialized)
   } catch {
     // Cache writes are best-effort (for example, storage quota may be exhausted).
   }
@@ -45,7 +66,7 @@ export function writeHomeSnapshot(rows, now = Date.now()) {
 
 export function readHomeSnapshot(now = Date.now()) {
   try {
-    const rawValue = localStorage.getItem(SNAPSHOT_KEY)
+    const rawValue = getNativeStore()?.read() ?? localStorage.getItem(SNAPSHOT_KEY)
     if (rawValue === null) return null
 
     const value = JSON.parse(rawValue)
@@ -122,3 +122,24 @@ it('tolerates storage quota errors when writing snapshot and focus', () => {
     horizontalScroll: 0,
   })).not.toThrow()
 })
+
+it('uses the native snapshot store when the Android interface is present', () => {
+  const files = {}
+  window.TorServeHomeSnapshot = {
+    read: vi.fn(() => files.snapshot ?? null),
+    write: vi.fn(json => { files.snapshot = json }),
+  }
+  try {
+    localStorage.setItem('home:snapshot:v2', JSON.stringify({ rows: [{ id: 'old' }], savedAt: 1000 }))
+    // First launch after the update: nothing native yet, localStorage still read
+    expect(readHomeSnapshot(2000).rows).toEqual([{ id: 'old' }])
+
+    writeHomeSnapshot([{ id: 'x', fetcher: () => {} }], 1000)
+
+    expect(window.TorServeHomeSnapshot.write).toHaveBeenCalledTimes(1)
+    expect(localStorage.getItem('home:snapshot:v2')).toBeNull()
+    expect(readHomeSnapshot(2000)).toEqual({ rows: [{ id: 'x' }], savedAt: 1000 })
+  } finally {
+    delete window.TorServeHomeSnapshot
+  }
+})
@@ -0,0 +1,67 @@
+/**
+ * installedPlayers.js — which external players are installed, and what
+ * TVPlayer can do with each (resume / playlist / result).
+ *
+ * One TVPlayer.getInstalledPlayers() call answers for every player in the
+ * manifest <queries>; the native side caches it and invalidates on package
+ * add/remove/replace. The result is also kept here, so a player picker
+ * renders from memory after the first open. No-op on web.
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core'
+
+let tvPlayer = null
+let cached = null
+let inFlight = null
+let changeListener = null
+
+function getPlugin() {
+    if (!tvPlayer) tvPlayer = registerPlugin('TVPlayer')
+    return tvPlayer
+}
+
+function watchPackageChanges() {
+    if (changeListener) return
+    changeListener = Promise.resolve(
+        getPlugin().addListener('installedPlayersChanged', () => { cached = null })
+    ).catch(() => null)
+}
+
+/**
+ * @param {{ refresh?: boolean }} [options] refresh bypasses both caches
+ * @returns {Promise<Array<{package: string, name: string, installed: boolean,
+ *   versionCode: number, versionName: string|null,
+ *   features: {resume: boolean, playlist: boolean, result: boolean}}>>}
+ */
+export async function getInstalledPlayers({ refresh = false } = {}) {
+    if (!Capacitor.isNativePlatform()) return []
+    if (cached && !refresh) return cached
+    if (inFlight && !refresh) return inFlight
+
+    watchPackageChanges()
+    const request = getPlugin().getInstalledPlayers({ refresh })
+        .then(({ players } = {}) => {
+            cached = Array.isArray(players) ? players : []
+            return cached
+        })
+        .catch(e => {
+            console.warn('[Players] getInstalledPlayers failed:', e?.message || e)
+            return []
+        })
+        .finally(() => {
+            if (inFlight === request) inFlight = null
+        })
+    inFlight = request
+    return request
+}
+
+/** Installed players only, in picker order. */
+export async function getAvailablePlayers(options) {
+    return (await getInstalledPlayers(options)).filter(player => player.installed)
+}
+
+export function resetInstalledPlayersForTests() {
+    tvPlayer = null
+    cached = null
+    inFlight = null
+    changeListener = null
+}
@@ -0,0 +1,88 @@
+import { beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin, listeners } = vi.hoisted(() => {
+    const listeners = {}
+    return {
+        listeners,
+        isNativePlatformMock: vi.fn(() => true),
+        plugin: {
+            getInstalledPlayers: vi.fn(),
+            addListener: vi.fn(async (event, handler) => {
+                listeners[event] = handler
+                return { remove: vi.fn() }
+            })
+        }
+    }
+})
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
+import { getAvailablePlayers, getInstalledPlayers, resetInstalledPlayersForTests } from './installedPlayers.js'
+
+const vimu = {
+    package: 'net.gtvbox.videoplayer',
+    name: 'Vimu',
+    installed: true,
+    versionCode: 1100,
+    versionName: '11.0',
+    features: { resume: true, playlist: true, result: true }
+}
+const vlc = {
+    package: 'org.videolan.vlc',
+    name: 'VLC',
+    installed: false,
+    versionCode: 0,
+    versionName: null,
+    features: { resume: false, playlist: false, result: false }
+}
+
+describe('installedPlayers', () => {
+    beforeEach(() => {
+        resetInstalledPlayersForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        plugin.getInstalledPlayers.mockReset()
+        plugin.getInstalledPlayers.mockResolvedValue({ players: [vimu, vlc] })
+    })
+
+    it('answers repeated and concurrent calls with one bridge round trip', async () => {
+        const [first, second] = await Promise.all([getInstalledPlayers(), getInstalledPlayers()])
+        const third = await getInstalledPlayers()
+
+        expect(first).toEqual([vimu, vlc])
+        expect(second).toBe(first)
+        expect(third).toBe(first)
+        expect(plugin.getInstalledPlayers).toHaveBeenCalledTimes(1)
+    })
+
+    it('drops the cache when a player package changes', async () => {
+        await getInstalledPlayers()
+        listeners.installedPlayersChanged()
+        plugin.getInstalledPlayers.mockResolvedValueOnce({ players: [vimu, { ...vlc, installed: true }] })
+
+        const players = await getAvailablePlayers()
+
+        expect(players.map(p => p.package)).toEqual(['net.gtvbox.videoplayer', 'org.videolan.vlc'])
+        expect(plugin.getInstalledPlayers).toHaveBeenCalledTimes(2)
+    })
+
+    it('passes refresh through to the native cache', async () => {
+        await getInstalledPlayers()
+        await getInstalledPlayers({ refresh: true })
+
+        expect(plugin.getInstalledPlayers).toHaveBeenLastCalledWith({ refresh: true })
+    })
+
+    it('returns an empty list on web or on failure', async () => {
+        isNativePlatformMock.mockReturnValue(false)
+        expect(await getInstalledPlayers()).toEqual([])
+
+        isNativePlatformMock.mockReturnValue(true)
+        plugin.getInstalledPlayers.mockRejectedValueOnce(new Error('boom'))
+        expect(await getInstalledPlayers()).toEqual([])
+    })
+})
@@ -0,0 +1,60 @@
+/**
+ * memoryPressure.js — native onTrimMemory levels, for the page.
+ *
+ * MainActivity shrinks the native caches itself (MemoryPressure); the
+ * "memoryPressure" event lets the UI give back what only it holds, e.g.
+ * HomePanel swapping offscreen rows (and their decoded posters) for
+ * placeholders. No-op on web.
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core'
+
+// Severities (MemoryPressure.java) at which offscreen UI is dropped.
+// 'moderate' only trims the native caches.
+const TRIM_OFFSCREEN = new Set(['low', 'critical', 'hidden', 'background'])
+
+let memoryPlugin = null
+let subscription = null
+const handlers = new Set()
+
+function getPlugin() {
+    if (!memoryPlugin) memoryPlugin = registerPlugin('MemoryPressure')
+    return memoryPlugin
+}
+
+function subscribe() {
+    if (subscription || !Capacitor.isNativePlatform()) return
+    try {
+        subscription = Promise.resolve(getPlugin().addListener('memoryPressure', (event) => {
+            for (const handler of [...handlers]) {
+                try {
+                    handler(event)
+                } catch (e) {
+                    console.warn('[Memory] handler failed:', e?.message || e)
+                }
+            }
+        })).catch(() => { subscription = null })
+    } catch {
+        subscription = null
+    }
+}
+
+/**
+ * @param {(event: {level: number, severity: string, posterCacheBytes: number}) => void} handler
+ * @returns {() => void} unsubscribe
+ */
+export function onMemoryPressure(handler) {
+    handlers.add(handler)
+    subscribe()
+    return () => handlers.delete(handler)
+}
+
+/** Should the UI drop what is not on screen for this event? */
+export function shouldTrimOffscreen(event) {
+    return TRIM_OFFSCREEN.has(event?.severity)
+}
+
+export function resetMemoryPressureForTests() {
+    memoryPlugin = null
+    subscription = null
+    handlers.clear()
+}
@@ -0,0 +1,71 @@
+import { beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin, listeners } = vi.hoisted(() => {
+    const listeners = {}
+    return {
+        isNativePlatformMock: vi.fn(() => true),
+        listeners,
+        plugin: {
+            addListener: vi.fn((name, fn) => {
+                listeners[name] = fn
+                return Promise.resolve({ remove: vi.fn() })
+            })
+        }
+    }
+})
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
+import { onMemoryPressure, shouldTrimOffscreen, resetMemoryPressureForTests } from './memoryPressure.js'
+
+describe('memoryPressure', () => {
+    beforeEach(() => {
+        resetMemoryPressureForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        plugin.addListener.mockClear()
+        delete listeners.memoryPressure
+    })
+
+    it('subscribes once and fans events out to every handler', () => {
+        const first = vi.fn()
+        const second = vi.fn()
+        onMemoryPressure(first)
+        const unsubscribe = onMemoryPressure(second)
+        expect(plugin.addListener).toHaveBeenCalledTimes(1)
+
+        listeners.memoryPressure({ level: 20, severity: 'hidden' })
+        expect(first).toHaveBeenCalledWith({ level: 20, severity: 'hidden' })
+        expect(second).toHaveBeenCalledTimes(1)
+
+        unsubscribe()
+        listeners.memoryPressure({ level: 80, severity: 'background' })
+        expect(first).toHaveBeenCalledTimes(2)
+        expect(second).toHaveBeenCalledTimes(1)
+    })
+
+    it('keeps dispatching when a handler throws', () => {
+        const after = vi.fn()
+        onMemoryPressure(() => { throw new Error('boom') })
+        onMemoryPressure(after)
+        listeners.memoryPressure({ level: 15, severity: 'critical' })
+        expect(after).toHaveBeenCalledTimes(1)
+    })
+
+    it('does not subscribe on web', () => {
+        isNativePlatformMock.mockReturnValue(false)
+        onMemoryPressure(vi.fn())
+        expect(plugin.addListener).not.toHaveBeenCalled()
+    })
+
+    it('trims offscreen UI from low memory on, not at moderate', () => {
+        expect(shouldTrimOffscreen({ severity: 'moderate' })).toBe(false)
+        expect(shouldTrimOffscreen({ severity: 'low' })).toBe(true)
+        expect(shouldTrimOffscreen({ severity: 'hidden' })).toBe(true)
+        expect(shouldTrimOffscreen(null)).toBe(false)
+    })
+})
@@ -0,0 +1,77 @@
+/**
+ * nasDiscovery.js — find the NAS on the LAN (Android).
+ *
+ * NasDiscoveryPlugin tries the servers it found last time, then mDNS
+ * (_torserve._tcp), then a /24 sweep for /api/status, and ranks what
+ * answers by round-trip time. resolveServerUrl() runs at startup: a saved
+ * LAN address that still answers is kept as is; an empty or stale one
+ * (the NAS got a new DHCP lease) is replaced by the fastest server found.
+ * Hostnames and https URLs are left alone. No-op on web.
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core'
+
+const DEFAULT_PORT = 3000
+
+let discoveryPlugin = null
+
+function getPlugin() {
+    if (!discoveryPlugin) discoveryPlugin = registerPlugin('NasDiscovery')
+    return discoveryPlugin
+}
+
+function parseUrl(url) {
+    try {
+        return new URL(url)
+    } catch {
+        return null
+    }
+}
+
+/** http://<IPv4>[:port] — the kind of address a DHCP change invalidates */
+export function isLanIpUrl(url) {
+    const parsed = parseUrl(url)
+    return !!parsed && parsed.protocol === 'http:' && /^\d{1,3}(\.\d{1,3}){3}$/.test(parsed.hostname)
+}
+
+/**
+ * @returns {Promise<Array<{url: string, host: string, port: number, rttMs: number, source: string}>>}
+ *   fastest first; [] on web or failure
+ */
+export async function discoverServers({ force = false, port = DEFAULT_PORT } = {}) {
+    if (!Capacitor.isNativePlatform()) return []
+    try {
+        const result = await getPlugin().discover({ force, port })
+        return result?.servers || []
+    } catch (e) {
+        console.warn('[Discovery] discover failed:', e?.message || e)
+        return []
+    }
+}
+
+/** Does url still answer as TorServe? null when it can't be told (web, old APK). */
+export async function checkServerUrl(url) {
+    if (!Capacitor.isNativePlatform() || !url) return null
+    try {
+        const { ok } = await getPlugin().check({ url })
+        return !!ok
+    } catch {
+        return null
+    }
+}
+
+/**
+ * The URL to use at startup: savedUrl unless it is missing or a stale LAN
+ * address and another server was found.
+ */
+export async function resolveServerUrl(savedUrl) {
+    if (!Capacitor.isNativePlatform()) return savedUrl
+    if (savedUrl && !isLanIpUrl(savedUrl)) return savedUrl
+    if (savedUrl && (await checkServerUrl(savedUrl)) !== false) return savedUrl
+    const port = Number(parseUrl(savedUrl)?.port) || DEFAULT_PORT
+    const [best] = await discoverServers({ port })
+    return best?.url || savedUrl
+}
+
+export function resetNasDiscoveryForTests() {
+    discoveryPlugin = null
+}
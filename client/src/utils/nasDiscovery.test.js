@@ -0,0 +1,83 @@
+import { beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin } = vi.hoisted(() => ({
+    isNativePlatformMock: vi.fn(() => true),
+    plugin: {
+        discover: vi.fn(),
+        check: vi.fn()
+    }
+}))
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
+import {
+    isLanIpUrl,
+    discoverServers,
+    checkServerUrl,
+    resolveServerUrl,
+    resetNasDiscoveryForTests
+} from './nasDiscovery.js'
+
+const found = { url: 'http://192.168.1.20:3000', host: '192.168.1.20', port: 3000, rttMs: 4, source: 'nsd' }
+
+describe('nasDiscovery', () => {
+    beforeEach(() => {
+        resetNasDiscoveryForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        plugin.discover.mockReset()
+        plugin.check.mockReset()
+    })
+
+    it('recognises plain-http IPv4 urls', () => {
+        expect(isLanIpUrl('http://192.168.1.10:3000')).toBe(true)
+        expect(isLanIpUrl('https://192.168.1.10')).toBe(false)
+        expect(isLanIpUrl('http://nas.local:3000')).toBe(false)
+        expect(isLanIpUrl('')).toBe(false)
+    })
+
+    it('keeps a saved url that still answers', async () => {
+        plugin.check.mockResolvedValue({ ok: true, rttMs: 3 })
+        expect(await resolveServerUrl('http://192.168.1.10:3000')).toBe('http://192.168.1.10:3000')
+        expect(plugin.discover).not.toHaveBeenCalled()
+    })
+
+    it('replaces a stale saved url with the fastest server on the same port', async () => {
+        plugin.check.mockResolvedValue({ ok: false, rttMs: -1 })
+        plugin.discover.mockResolvedValue({ servers: [found], source: 'nsd' })
+        expect(await resolveServerUrl('http://192.168.1.10:3000')).toBe(found.url)
+        expect(plugin.discover).toHaveBeenCalledWith({ force: false, port: 3000 })
+    })
+
+    it('discovers when nothing is saved and keeps the old value when nothing is found', async () => {
+        plugin.discover.mockResolvedValueOnce({ servers: [found] })
+        expect(await resolveServerUrl('')).toBe(found.url)
+        plugin.check.mockResolvedValue({ ok: false })
+        plugin.discover.mockResolvedValueOnce({ servers: [] })
+        expect(await resolveServerUrl('http://10.0.0.5:8080')).toBe('http://10.0.0.5:8080')
+        expect(plugin.discover).toHaveBeenLastCalledWith({ force: false, port: 8080 })
+    })
+
+    it('leaves hostnames alone and does nothing on web', async () => {
+        expect(await resolveServerUrl('https://nas.example.com')).toBe('https://nas.example.com')
+        isNativePlatformMock.mockReturnValue(false)
+        expect(await resolveServerUrl('')).toBe('')
+        expect(await discoverServers()).toEqual([])
+        expect(await checkServerUrl('http://192.168.1.10:3000')).toBeNull()
+        expect(plugin.check).not.toHaveBeenCalled()
+    })
+
+    it('treats plugin failures as unknown', async () => {
+        plugin.check.mockRejectedValue(new Error('not implemented'))
+        plugin.discover.mockRejectedValue(new Error('not implemented'))
+        const warn = vi.spyOn(console, 'warn').mockImplementation(() => {})
+        expect(await checkServerUrl('http://192.168.1.10:3000')).toBeNull()
+        expect(await resolveServerUrl('http://192.168.1.10:3000')).toBe('http://192.168.1.10:3000')
+        expect(await discoverServers({ force: true })).toEqual([])
+        warn.mockRestore()
+    })
+})
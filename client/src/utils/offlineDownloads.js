@@ -0,0 +1,99 @@
+/**
+ * offlineDownloads.js — copy an episode from the NAS to the TV box (Android).
+ *
+ * OfflineDownloadsPlugin runs the copy in a foreground service with several
+ * parallel Range requests and resumes it after the app is killed or the box
+ * reboots. A finished copy has a content:// uri that TVPlayer.play() takes
+ * instead of the /stream URL, so it plays without the NAS (flights, weak
+ * Wi-Fi). No-op on web.
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core'
+
+let offlinePlugin = null
+
+function getPlugin() {
+    if (!offlinePlugin) offlinePlugin = registerPlugin('OfflineDownloads')
+    return offlinePlugin
+}
+
+export function isOfflineSupported() {
+    return Capacitor.isNativePlatform()
+}
+
+/** Same id the plugin gives an entry (OfflineDownloads.id on the Java side). */
+export function offlineDownloadId(infoHash, fileIndex) {
+    return `${String(infoHash).toLowerCase()}_${fileIndex}`
+}
+
+/** list with update put in place of the entry with its id (or appended). */
+export function mergeOfflineDownload(list, update) {
+    if (!update?.id) return list
+    const at = list.findIndex(d => d.id === update.id)
+    if (at < 0) return [...list, update]
+    const next = list.slice()
+    next[at] = { ...list[at], ...update }
+    return next
+}
+
+/**
+ * Queues (or resumes) the copy of one file.
+ * @returns {Promise<{id: string, state: string, totalBytes: number, downloadedBytes: number, uri: string|null}|null>}
+ *   null on web or when the plugin refused
+ */
+export async function startOfflineDownload({ serverUrl, infoHash, fileIndex, name, length }) {
+    if (!isOfflineSupported() || !serverUrl || !infoHash) return null
+    try {
+        const options = { serverUrl: serverUrl.replace(/\/$/, ''), infoHash, fileIndex, name }
+        if (length > 0) options.length = length
+        return await getPlugin().start(options)
+    } catch (e) {
+        console.warn('[Offline] start failed:', e?.message || e)
+        return null
+    }
+}
+
+/** @returns {Promise<Array<object>>} every copy, finished or not; [] on web */
+export async function listOfflineDownloads() {
+    if (!isOfflineSupported()) return []
+    try {
+        const result = await getPlugin().list()
+        return result?.downloads || []
+    } catch {
+        return []
+    }
+}
+
+/** content:// uri of a finished copy of this file, or null (play from the NAS). */
+export async function findOfflineUri(infoHash, fileIndex) {
+    if (!isOfflineSupported()) return null
+    try {
+        const { download } = await getPlugin().find({ infoHash, fileIndex })
+        return download?.state === 'done' && download.uri ? download.uri : null
+    } catch {
+        return null
+    }
+}
+
+export async function removeOfflineDownload(id) {
+    if (!isOfflineSupported()) return false
+    try {
+        const { removed } = await getPlugin().remove({ id })
+        return !!removed
+    } catch {
+        return false
+    }
+}
+
+/**
+ * @param {(download: object) => void} callback list() entry shape plus bytesPerSec
+ * @returns {Promise<() => void>} unsubscribe
+ */
+export async function onOfflineProgress(callback) {
+    if (!isOfflineSupported()) return () => {}
+    const handle = await getPlugin().addListener('offlineProgress', callback)
+    return () => handle.remove()
+}
+
+export function resetOfflineDownloadsForTests() {
+    offlinePlugin = null
+}
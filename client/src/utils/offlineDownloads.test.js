@@ -0,0 +1,114 @@
+import { beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin } = vi.hoisted(() => ({
+    isNativePlatformMock: vi.fn(() => true),
+    plugin: {
+        start: vi.fn(),
+        list: vi.fn(),
+        find: vi.fn(),
+        remove: vi.fn(),
+        addListener: vi.fn()
+    }
+}))
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
+import {
+    startOfflineDownload,
+    listOfflineDownloads,
+    findOfflineUri,
+    removeOfflineDownload,
+    onOfflineProgress,
+    offlineDownloadId,
+    mergeOfflineDownload,
+    resetOfflineDownloadsForTests
+} from './offlineDownloads.js'
+
+const done = {
+    id: 'abc_2',
+    infoHash: 'abc',
+    fileIndex: 2,
+    state: 'done',
+    totalBytes: 100,
+    downloadedBytes: 100,
+    uri: 'content://com.torserve.pwa.fileprovider/offline/abc_2.mkv'
+}
+
+describe('offlineDownloads', () => {
+    beforeEach(() => {
+        resetOfflineDownloadsForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        Object.values(plugin).forEach(fn => fn.mockReset())
+    })
+
+    it('starts a download against the NAS without a trailing slash', async () => {
+        plugin.start.mockResolvedValue({ id: 'abc_2', state: 'queued' })
+        const result = await startOfflineDownload({
+            serverUrl: 'http://192.168.1.20:3000/', infoHash: 'abc', fileIndex: 2, name: 'S01E02.mkv', length: 100
+        })
+        expect(result.state).toBe('queued')
+        expect(plugin.start).toHaveBeenCalledWith({
+            serverUrl: 'http://192.168.1.20:3000', infoHash: 'abc', fileIndex: 2, name: 'S01E02.mkv', length: 100
+        })
+    })
+
+    it('returns the content uri only for a finished copy', async () => {
+        plugin.find.mockResolvedValueOnce({ download: done })
+        expect(await findOfflineUri('abc', 2)).toBe(done.uri)
+
+        plugin.find.mockResolvedValueOnce({ download: { ...done, state: 'running', uri: null } })
+        expect(await findOfflineUri('abc', 2)).toBeNull()
+
+        plugin.find.mockResolvedValueOnce({ download: null })
+        expect(await findOfflineUri('abc', 3)).toBeNull()
+
+        plugin.find.mockRejectedValueOnce(new Error('not implemented'))
+        expect(await findOfflineUri('abc', 2)).toBeNull()
+    })
+
+    it('lists and removes copies', async () => {
+        plugin.list.mockResolvedValue({ downloads: [done] })
+        plugin.remove.mockResolvedValue({ removed: true })
+        expect(await listOfflineDownloads()).toEqual([done])
+        expect(await removeOfflineDownload('abc_2')).toBe(true)
+        expect(plugin.remove).toHaveBeenCalledWith({ id: 'abc_2' })
+    })
+
+    it('forwards progress events until unsubscribed', async () => {
+        const handle = { remove: vi.fn() }
+        plugin.addListener.mockResolvedValue(handle)
+        const callback = vi.fn()
+        const unsubscribe = await onOfflineProgress(callback)
+        expect(plugin.addListener).toHaveBeenCalledWith('offlineProgress', callback)
+        unsubscribe()
+        expect(handle.remove).toHaveBeenCalled()
+    })
+
+    it('builds the plugin id and merges updates into a list', () => {
+        expect(offlineDownloadId('ABC', 2)).toBe('abc_2')
+
+        const running = { ...done, id: 'abc_3', fileIndex: 3, state: 'running', downloadedBytes: 10, uri: null }
+        const list = [done, running]
+        const updated = mergeOfflineDownload(list, { id: 'abc_3', state: 'running', downloadedBytes: 60, bytesPerSec: 5 })
+        expect(updated).not.toBe(list)
+        expect(updated[1]).toEqual({ ...running, downloadedBytes: 60, bytesPerSec: 5 })
+        expect(updated[0]).toBe(done)
+
+        expect(mergeOfflineDownload([done], running)).toEqual([done, running])
+        expect(mergeOfflineDownload(list, null)).toBe(list)
+    })
+
+    it('does nothing on web', async () => {
+        isNativePlatformMock.mockReturnValue(false)
+        expect(await startOfflineDownload({ serverUrl: 'http://nas', infoHash: 'abc', fileIndex: 0 })).toBeNull()
+        expect(await listOfflineDownloads()).toEqual([])
+        expect(await findOfflineUri('abc', 0)).toBeNull()
+        expect(plugin.start).not.toHaveBeenCalled()
+        expect(plugin.find).not.toHaveBeenCalled()
+    })
+})
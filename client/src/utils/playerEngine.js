@@ -0,0 +1,81 @@
+/**
+ * playerEngine.js — which player TVPlayer.play() launches.
+ *
+ * 'external' hands the stream to Vimu/MX/VLC through an Intent (default).
+ * 'native' plays in-app on Media3 (NativePlayerActivity): no app switch,
+ * live "nativePlayerProgress" events, and the same {position, duration,
+ * finished} result on exit.
+ *
+ * The native player checkpoints its position with the play() meta every few
+ * seconds. If the app is killed mid-playback that result never resolves, so
+ * on the next launch recoverInterruptedPlayback() feeds the last checkpoint
+ * to watch history instead. The same goes for a result an external player
+ * returned to an app that was killed while it was in front (kept natively
+ * by TVPlayer with the play() history meta).
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core'
+import { recordPlaybackResult } from './watchHistory.js'
+
+export const PLAYER_ENGINE_KEY = 'player_engine'
+export const PLAYER_ENGINES = ['external', 'native']
+
+let tvPlayer = null
+
+function getPlugin() {
+    if (!tvPlayer) tvPlayer = registerPlugin('TVPlayer')
+    return tvPlayer
+}
+
+export function getPlayerEngine() {
+    if (!Capacitor.isNativePlatform()) return 'external'
+    try {
+        const engine = localStorage.getItem(PLAYER_ENGINE_KEY)
+        return PLAYER_ENGINES.includes(engine) ? engine : 'external'
+    } catch {
+        return 'external'
+    }
+}
+
+export function setPlayerEngine(engine) {
+    if (!PLAYER_ENGINES.includes(engine)) return
+    try { localStorage.setItem(PLAYER_ENGINE_KEY, engine) } catch { /* localStorage unavailable */ }
+}
+
+/**
+ * Add engine + meta to play()/playList() options when the native engine is
+ * selected. meta is what recordPlaybackResult needs besides the result.
+ */
+export function withPlayerEngine(options, meta) {
+    if (getPlayerEngine() !== 'native') return options
+    return { ...options, engine: 'native', meta }
+}
+
+/**
+ * Record the checkpoint of a native playback interrupted by a process kill,
+ * or a player result that arrived after one.
+ * @returns {Promise<Object|null>} the recovered checkpoint, if any
+ */
+export async function recoverInterruptedPlayback() {
+    if (!Capacitor.isNativePlatform()) return null
+    try {
+        const { pending } = await getPlugin().takePendingPlayback() || {}
+        if (!pending?.meta) return null
+        recordPlaybackResult({
+            ...pending.meta,
+            result: {
+                position: pending.position,
+                duration: pending.duration,
+                finished: pending.finished,
+                historyStored: pending.historyStored
+            }
+        })
+        return pending
+    } catch (e) {
+        console.warn('[Player] takePendingPlayback failed:', e?.message || e)
+        return null
+    }
+}
+
+export function resetPlayerEngineForTests() {
+    tvPlayer = null
+}
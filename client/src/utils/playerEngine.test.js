@@ -0,0 +1,93 @@
+import { beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin } = vi.hoisted(() => ({
+    isNativePlatformMock: vi.fn(() => true),
+    plugin: {
+        takePendingPlayback: vi.fn()
+    }
+}))
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
+import {
+    getPlayerEngine,
+    setPlayerEngine,
+    withPlayerEngine,
+    recoverInterruptedPlayback,
+    resetPlayerEngineForTests
+} from './playerEngine.js'
+import { getResumePosition } from './watchHistory.js'
+
+const meta = {
+    infoHash: 'abcdef1234',
+    fileIndex: 2,
+    fileName: 'S01E03.mkv',
+    torrentName: 'Show.S01',
+    tmdbId: 42,
+    mediaType: 'tv'
+}
+
+describe('playerEngine', () => {
+    beforeEach(() => {
+        localStorage.clear()
+        resetPlayerEngineForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        plugin.takePendingPlayback.mockReset()
+    })
+
+    it('defaults to the external player and ignores unknown engines', () => {
+        expect(getPlayerEngine()).toBe('external')
+        setPlayerEngine('bogus')
+        expect(getPlayerEngine()).toBe('external')
+        setPlayerEngine('native')
+        expect(getPlayerEngine()).toBe('native')
+    })
+
+    it('is always external on web', () => {
+        setPlayerEngine('native')
+        isNativePlatformMock.mockReturnValue(false)
+        expect(getPlayerEngine()).toBe('external')
+    })
+
+    it('adds engine and meta only for the native engine', () => {
+        const options = { url: 'http://nas/stream/abc/0', title: 'Movie' }
+        expect(withPlayerEngine(options, meta)).toBe(options)
+
+        setPlayerEngine('native')
+        expect(withPlayerEngine(options, meta)).toEqual({ ...options, engine: 'native', meta })
+    })
+
+    it('records the checkpoint of a killed native session', async () => {
+        plugin.takePendingPlayback.mockResolvedValue({
+            pending: { meta, index: 0, position: 25 * 60 * 1000, duration: 45 * 60 * 1000, finished: false }
+        })
+
+        const pending = await recoverInterruptedPlayback()
+
+        expect(pending.position).toBe(25 * 60 * 1000)
+        expect(getResumePosition(meta.infoHash, meta.fileIndex)).toBe(25 * 60 * 1000)
+    })
+
+    it('records a player result that arrived after a process restart', async () => {
+        plugin.takePendingPlayback.mockResolvedValue({
+            pending: { meta, engine: 'external', position: 10 * 60 * 1000, duration: 45 * 60 * 1000, finished: false, historyStored: true }
+        })
+
+        await recoverInterruptedPlayback()
+
+        expect(getResumePosition(meta.infoHash, meta.fileIndex)).toBe(10 * 60 * 1000)
+    })
+
+    it('does nothing when there is no pending session', async () => {
+        plugin.takePendingPlayback.mockResolvedValue({ pending: null })
+        expect(await recoverInterruptedPlayback()).toBeNull()
+
+        plugin.takePendingPlayback.mockRejectedValue(new Error('not implemented'))
+        expect(await recoverInterruptedPlayback()).toBeNull()
+    })
+})
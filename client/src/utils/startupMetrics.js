@@ -0,0 +1,54 @@
+/**
+ * startupMetrics.js — JS half of the native cold-start timeline.
+ *
+ * MainActivity records processStart/onCreate/bridgeReady/webViewFirstLoad
+ * natively (StartupTrace); only the page knows when the home rows are
+ * actually on screen, so it reports that mark here. Reported once per page
+ * load; no-op on web.
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core'
+
+let startupPlugin = null
+let homeRenderedReported = false
+
+function getPlugin() {
+    if (!startupPlugin) startupPlugin = registerPlugin('StartupMetrics')
+    return startupPlugin
+}
+
+/**
+ * Report the "home rendered" mark. Safe to call on every render.
+ * @returns {Promise<boolean>} true if this call reported the mark
+ */
+export async function markHomeRendered() {
+    if (homeRenderedReported || !Capacitor.isNativePlatform()) return false
+    homeRenderedReported = true
+    try {
+        await getPlugin().markHomeRendered()
+        return true
+    } catch (e) {
+        console.warn('[Startup] markHomeRendered failed:', e?.message || e)
+        return false
+    }
+}
+
+/**
+ * Current launch timeline plus the rolling launch history (newest first) and
+ * the WebView cache invalidation report of the last app update
+ * ({mode, changedAssets, entriesEvicted, bytesEvicted, durationMs}).
+ * @returns {Promise<{current: Object, history: Object[], cacheInvalidation: Object|null}|null>}
+ */
+export async function getStartupTimeline() {
+    if (!Capacitor.isNativePlatform()) return null
+    try {
+        return await getPlugin().getTimeline()
+    } catch (e) {
+        console.warn('[Startup] getTimeline failed:', e?.message || e)
+        return null
+    }
+}
+
+export function resetStartupMetricsForTests() {
+    homeRenderedReported = false
+    startupPlugin = null
+}
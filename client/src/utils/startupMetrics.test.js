@@ -0,0 +1,50 @@
+import { beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin } = vi.hoisted(() => ({
+    isNativePlatformMock: vi.fn(() => true),
+    plugin: {
+        markHomeRendered: vi.fn(async () => ({ recorded: true })),
+        getTimeline: vi.fn(async () => ({ current: { marks: {} }, history: [] }))
+    }
+}))
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
+import { getStartupTimeline, markHomeRendered, resetStartupMetricsForTests } from './startupMetrics.js'
+
+describe('startupMetrics', () => {
+    beforeEach(() => {
+        resetStartupMetricsForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        plugin.markHomeRendered.mockClear()
+        plugin.getTimeline.mockClear()
+    })
+
+    it('reports the home rendered mark only once per page load', async () => {
+        expect(await markHomeRendered()).toBe(true)
+        expect(await markHomeRendered()).toBe(false)
+        expect(plugin.markHomeRendered).toHaveBeenCalledTimes(1)
+    })
+
+    it('is a no-op on web', async () => {
+        isNativePlatformMock.mockReturnValue(false)
+        expect(await markHomeRendered()).toBe(false)
+        expect(await getStartupTimeline()).toBeNull()
+        expect(plugin.markHomeRendered).not.toHaveBeenCalled()
+    })
+
+    it('swallows native failures', async () => {
+        plugin.markHomeRendered.mockRejectedValueOnce(new Error('bridge gone'))
+        expect(await markHomeRendered()).toBe(false)
+    })
+
+    it('returns the native timeline', async () => {
+        const timeline = await getStartupTimeline()
+        expect(timeline).toEqual({ current: { marks: {} }, history: [] })
+    })
+})
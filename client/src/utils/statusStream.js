@@ -0,0 +1,101 @@
+/**
+ * statusStream.js — torrent status pushed by the native StatusStream plugin.
+ *
+ * On Android the plugin keeps one /api/status/stream connection, parses it
+ * off the UI thread and sends only what changed ("statusDiff", coalesced to
+ * maxRateMs), instead of this WebView fetching and parsing the full
+ * /api/status every 5 s (createSerializedPollTask in statusPolling.js, still
+ * the web fallback). applyStatusDiff keeps unchanged torrent objects
+ * identical, so memoized rows don't re-render.
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core'
+
+export const DEFAULT_MAX_RATE_MS = 1000
+
+let statusStream = null
+
+function getPlugin() {
+    if (!statusStream) statusStream = registerPlugin('StatusStream')
+    return statusStream
+}
+
+/**
+ * @param {Array<Object>} torrents current list
+ * @param {{upserts?: Array<Object>, removed?: string[], order?: string[]}} diff
+ * @returns {Array<Object>} new list (the same array if nothing changed)
+ */
+export function applyStatusDiff(torrents, diff) {
+    const upserts = diff?.upserts || []
+    const removed = diff?.removed || []
+    if (!upserts.length && !removed.length && !diff?.order) return torrents
+
+    const byHash = new Map(torrents.map(t => [t.infoHash, t]))
+    for (const hash of removed) byHash.delete(hash)
+    for (const upsert of upserts) {
+        const previous = byHash.get(upsert.infoHash)
+        byHash.set(upsert.infoHash, previous ? { ...previous, ...upsert } : upsert)
+    }
+
+    if (diff.order) {
+        return diff.order.map(hash => byHash.get(hash)).filter(Boolean)
+    }
+    const next = torrents.filter(t => byHash.has(t.infoHash)).map(t => byHash.get(t.infoHash))
+    const known = new Set(torrents.map(t => t.infoHash))
+    for (const upsert of upserts) {
+        if (!known.has(upsert.infoHash)) next.push(byHash.get(upsert.infoHash))
+    }
+    return next
+}
+
+/** Server payload status + connection state -> App serverStatus. */
+export function toAppServerStatus(serverStatus, connected) {
+    if (connected === false) return 'error'
+    if (serverStatus === 'circuit_open' || serverStatus === 'error') return 'degraded'
+    return 'ok'
+}
+
+/**
+ * Start the native stream for serverUrl.
+ * @param {{serverUrl: string, maxRateMs?: number,
+ *   onTorrents: (update: (prev: Array) => Array) => void,
+ *   onServerStatus: (status: string) => void}} options
+ * @returns {Promise<(() => void)|null>} stop function, or null when the
+ *   native stream is unavailable (web, old APK) and polling should be used
+ */
+export async function startStatusStream({ serverUrl, maxRateMs = DEFAULT_MAX_RATE_MS, onTorrents, onServerStatus }) {
+    if (!Capacitor.isNativePlatform() || !serverUrl) return null
+    const plugin = getPlugin()
+    let serverStatus = null
+    let connected = null
+    let listener = null
+    try {
+        listener = await plugin.addListener('statusDiff', diff => {
+            if ('serverStatus' in diff) serverStatus = diff.serverStatus
+            if ('connected' in diff) connected = diff.connected
+            if ('serverStatus' in diff || 'connected' in diff) {
+                onServerStatus(toAppServerStatus(serverStatus, connected))
+            }
+            onTorrents(prev => applyStatusDiff(prev, diff))
+        })
+        const state = await plugin.start({ serverUrl, maxRateMs })
+        if (state?.serverStatus) {
+            serverStatus = state.serverStatus
+            connected = state.connected
+            onTorrents(() => state.torrents || [])
+            onServerStatus(toAppServerStatus(serverStatus, connected))
+        }
+    } catch (e) {
+        console.warn('[StatusStream] start failed:', e?.message || e)
+        listener?.remove()
+        return null
+    }
+
+    return () => {
+        listener?.remove()
+        Promise.resolve(plugin.stop()).catch(() => {})
+    }
+}
+
+export function resetStatusStreamForTests() {
+    statusStream = null
+}
@@ -0,0 +1,107 @@
+import { beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin, listeners } = vi.hoisted(() => {
+    const listeners = {}
+    return {
+        listeners,
+        isNativePlatformMock: vi.fn(() => true),
+        plugin: {
+            addListener: vi.fn(async (event, cb) => {
+                listeners[event] = cb
+                return { remove: vi.fn() }
+            }),
+            start: vi.fn(),
+            stop: vi.fn(async () => {})
+        }
+    }
+})
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
+import {
+    applyStatusDiff,
+    toAppServerStatus,
+    startStatusStream,
+    resetStatusStreamForTests
+} from './statusStream.js'
+
+const a = { infoHash: 'aa', name: 'A', progress: 0.1 }
+const b = { infoHash: 'bb', name: 'B', progress: 0 }
+
+describe('applyStatusDiff', () => {
+    it('returns the same array for an empty diff', () => {
+        const list = [a, b]
+        expect(applyStatusDiff(list, { upserts: [], removed: [] })).toBe(list)
+    })
+
+    it('merges changed fields and keeps untouched torrents identical', () => {
+        const next = applyStatusDiff([a, b], { upserts: [{ infoHash: 'aa', progress: 0.5 }], removed: [] })
+        expect(next[0]).toEqual({ ...a, progress: 0.5 })
+        expect(next[1]).toBe(b)
+    })
+
+    it('clears a field the server dropped (sent as null)', () => {
+        const next = applyStatusDiff([{ ...a, error: 'stalled' }], { upserts: [{ infoHash: 'aa', error: null }], removed: [] })
+        expect(next[0].error).toBeNull()
+        expect(next[0].progress).toBe(0.1)
+    })
+
+    it('removes, appends and reorders', () => {
+        const c = { infoHash: 'cc', name: 'C' }
+        expect(applyStatusDiff([a, b], { upserts: [c], removed: ['aa'] })).toEqual([b, c])
+        expect(applyStatusDiff([a, b], { upserts: [], removed: [], order: ['bb', 'aa'] })).toEqual([b, a])
+    })
+})
+
+describe('toAppServerStatus', () => {
+    it('maps stream state to the App status values', () => {
+        expect(toAppServerStatus('ok', true)).toBe('ok')
+        expect(toAppServerStatus('circuit_open', true)).toBe('degraded')
+        expect(toAppServerStatus('ok', false)).toBe('error')
+    })
+})
+
+describe('startStatusStream', () => {
+    beforeEach(() => {
+        resetStatusStreamForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        plugin.start.mockReset()
+        plugin.stop.mockClear()
+    })
+
+    it('falls back to polling on web', async () => {
+        isNativePlatformMock.mockReturnValue(false)
+        expect(await startStatusStream({ serverUrl: 'http://nas:3000' })).toBeNull()
+        expect(plugin.start).not.toHaveBeenCalled()
+    })
+
+    it('renders the snapshot, then applies diffs', async () => {
+        plugin.start.mockResolvedValue({ serverStatus: 'ok', connected: true, torrents: [a] })
+        let torrents = []
+        const onTorrents = vi.fn(update => { torrents = update(torrents) })
+        const onServerStatus = vi.fn()
+
+        const stop = await startStatusStream({ serverUrl: 'http://nas:3000', onTorrents, onServerStatus })
+
+        expect(plugin.start).toHaveBeenCalledWith({ serverUrl: 'http://nas:3000', maxRateMs: 1000 })
+        expect(torrents).toEqual([a])
+        expect(onServerStatus).toHaveBeenLastCalledWith('ok')
+
+        listeners.statusDiff({ upserts: [b], removed: [], order: ['aa', 'bb'], connected: false })
+        expect(torrents).toEqual([a, b])
+        expect(onServerStatus).toHaveBeenLastCalledWith('error')
+
+        stop()
+        expect(plugin.stop).toHaveBeenCalled()
+    })
+
+    it('returns null when the plugin is missing', async () => {
+        plugin.start.mockRejectedValue(new Error('not implemented'))
+        expect(await startStatusStream({ serverUrl: 'http://nas:3000' })).toBeNull()
+    })
+})
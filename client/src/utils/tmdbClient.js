@@ -4,7 +4,7 @@
  * 5-Level Cascade (from POSTER_BATTLE_HISTORY.md):
  * 1. Custom Cloudflare Worker (VITE_TMDB_PROXY_URL)
  * 2. Lampa Proxy (apn-latest.onrender.com)
- * 3. CapacitorHttp + Client DoH (bypass DNS poisoning)
+ * 3. CapacitorHttp + native DoH (bypass DNS poisoning)
  * 4. corsproxy.io (browser fallback)
  * 5. Kinopoisk API (alternative data source)
  * 
@@ -15,7 +15,7 @@
  */
 
 import { CapacitorHttp } from '@capacitor/core'
-import { Capacitor } from '@capacitor/core'
+import { Capacitor, registerPlugin } from '@capacitor/core'
 import { resolveInitialServerUrl } from './helpers.js'
 
 // ─── Polyfills ────────────────────────────────────────────────
@@ -423,35 +423,22 @@ export function handleImageErrorFallback(e) {
     if (next && next !== img.src) img.src = next
 }
 
-// ─── Client-Side DoH (Phase 3) ─────────────────────────────────
-const dohCache = new Map()
+// ─── Native DoH (Phase 3) ──────────────────────────────────────
+// Resolution, TTL/negative caching, endpoint racing and prefetch live in the
+// native DohResolver (MainActivity warms it up before the WebView loads).
+let nativeDns = null
 
 /**
- * Resolve hostname to IP via Google DNS-over-HTTPS
+ * Resolve hostname to IP via the native DoH resolver
  * Bypasses DNS poisoning where provider returns 127.0.0.1
  */
 async function resolveClientIP(hostname) {
-    // Check cache first
-    const cached = dohCache.get(hostname)
-    if (cached && Date.now() - cached.timestamp < 10 * 60 * 1000) {
-        return cached.ip
-    }
-
     try {
-        // Google DNS-over-HTTPS API
-        const res = await fetch(`https://dns.google/resolve?name=${hostname}&type=A`, {
-            headers: { 'Accept': 'application/dns-json' }
-        })
-
-        if (res.ok) {
-            const data = await res.json()
-            const ip = data.Answer?.find(r => r.type === 1)?.data
-
-            if (ip && ip !== '127.0.0.1') {
-                dohCache.set(hostname, { ip, timestamp: Date.now() })
-                console.log(`[DoH] Resolved ${hostname} → ${ip}`)
-                return ip
-            }
+        if (!nativeDns) nativeDns = registerPlugin('NativeDns')
+        const { ip, source } = await nativeDns.resolve({ host: hostname })
+        if (ip) {
+            console.log(`[DoH] Resolved ${hostname} → ${ip} (${source})`)
+            return ip
         }
     } catch (e) {
         console.warn('[DoH] Resolution failed:', e.message)
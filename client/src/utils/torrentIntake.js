@@ -0,0 +1,48 @@
+/**
+ * torrentIntake.js — .torrent files the app was opened with (Android).
+ *
+ * TorrentIntakePlugin parses the file natively (streaming bencode, info-hash
+ * over the info dictionary's bytes) and keeps a copy in the app cache; the
+ * page only gets the preview. On confirm the plugin streams that copy to the
+ * NAS (/api/add/torrent), so the file itself never crosses the JS bridge.
+ * Magnet links keep going to /api/add from App.jsx.
+ */
+import { Capacitor, registerPlugin } from '@capacitor/core'
+
+let intakePlugin = null
+
+function getPlugin() {
+    if (!intakePlugin) intakePlugin = registerPlugin('TorrentIntake')
+    return intakePlugin
+}
+
+/** VIEW intent data that TorrentIntakePlugin can read (not magnets). */
+export function isTorrentFileUrl(url) {
+    return Capacitor.isNativePlatform() && /^(content|file):\/\//i.test(url || '')
+}
+
+/**
+ * @returns {Promise<{id: string, infoHash: string, name: string,
+ *   files: Array<{path: string, length: number}>, fileCount: number,
+ *   totalLength: number, private: boolean}>}
+ */
+export function previewTorrentFile(url) {
+    return getPlugin().preview({ url })
+}
+
+/** @returns {Promise<{infoHash: string, name: string, backend?: string}>} */
+export function uploadTorrentFile(id, serverUrl) {
+    return getPlugin().upload({ id, serverUrl })
+}
+
+/** Drops the cached copy of a preview that was not uploaded. */
+export function discardTorrentFile(id) {
+    if (!id) return
+    Promise.resolve()
+        .then(() => getPlugin().discard({ id }))
+        .catch(e => console.warn('[Intake] discard failed:', e?.message || e))
+}
+
+export function resetTorrentIntakeForTests() {
+    intakePlugin = null
+}
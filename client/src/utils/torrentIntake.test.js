@@ -0,0 +1,65 @@
+import { beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin } = vi.hoisted(() => ({
+    isNativePlatformMock: vi.fn(() => true),
+    plugin: {
+        preview: vi.fn(),
+        upload: vi.fn(),
+        discard: vi.fn()
+    }
+}))
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
+import {
+    isTorrentFileUrl,
+    previewTorrentFile,
+    uploadTorrentFile,
+    discardTorrentFile,
+    resetTorrentIntakeForTests
+} from './torrentIntake.js'
+
+describe('torrentIntake', () => {
+    beforeEach(() => {
+        resetTorrentIntakeForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        plugin.preview.mockReset()
+        plugin.upload.mockReset()
+        plugin.discard.mockReset()
+    })
+
+    it('accepts content:// and file:// urls on native only', () => {
+        expect(isTorrentFileUrl('content://downloads/public/42')).toBe(true)
+        expect(isTorrentFileUrl('file:///sdcard/Download/a.torrent')).toBe(true)
+        expect(isTorrentFileUrl('magnet:?xt=urn:btih:abc')).toBe(false)
+        expect(isTorrentFileUrl(null)).toBe(false)
+        isNativePlatformMock.mockReturnValue(false)
+        expect(isTorrentFileUrl('content://downloads/public/42')).toBe(false)
+    })
+
+    it('passes the url to preview and the id/serverUrl to upload', async () => {
+        plugin.preview.mockResolvedValue({ id: 'a'.repeat(40), name: 'Show', files: [] })
+        plugin.upload.mockResolvedValue({ infoHash: 'a'.repeat(40), name: 'Show' })
+
+        const preview = await previewTorrentFile('content://x/1')
+        expect(plugin.preview).toHaveBeenCalledWith({ url: 'content://x/1' })
+        await uploadTorrentFile(preview.id, 'http://nas:3000')
+        expect(plugin.upload).toHaveBeenCalledWith({ id: 'a'.repeat(40), serverUrl: 'http://nas:3000' })
+    })
+
+    it('discard never throws', async () => {
+        plugin.discard.mockRejectedValue(new Error('gone'))
+        const warn = vi.spyOn(console, 'warn').mockImplementation(() => {})
+        discardTorrentFile('b'.repeat(40))
+        discardTorrentFile(null)
+        await new Promise(resolve => setTimeout(resolve, 0))
+        expect(plugin.discard).toHaveBeenCalledTimes(1)
+        expect(warn).toHaveBeenCalled()
+        warn.mockRestore()
+    })
+})
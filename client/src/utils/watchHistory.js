@@ -5,15 +5,47 @@
  * external player closes. We persist per torrent file, feed the position
  * back into the next play() call (Vimu `startfrom` / MX `position`), and
  * build the home-screen resume row from the unfinished entries.
+ *
+ * On Android the entries live in the native WatchHistory store (SQLite,
+ * indexed on file and updatedAt, no 30-entry cap). TVPlayer writes the
+ * result there itself when play() gets `history` meta; this module keeps
+ * an in-memory mirror of the newest page (loadWatchHistory) plus every
+ * entry touched since, so the getters below stay synchronous. On web the
+ * old localStorage map is used.
  */
+import { Capacitor, registerPlugin } from '@capacitor/core'
 
 const STORAGE_KEY = 'watch_history_v1'
 const MAX_ENTRIES = 30
+// Newest entries mirrored in memory on native (the resume row)
+const RESUME_PAGE_SIZE = 100
 // Below this watched amount a resume makes no sense
 const MIN_RESUME_POSITION_MS = 2 * 60 * 1000
 // Past this fraction the item counts as watched
 const FINISHED_RATIO = 0.95
 
+let watchHistoryPlugin = null
+let mirror = new Map()
+let hydrating = null
+
+function getPlugin() {
+    if (!watchHistoryPlugin) watchHistoryPlugin = registerPlugin('WatchHistory')
+    return watchHistoryPlugin
+}
+
+function isNative() {
+    return Capacitor.isNativePlatform()
+}
+
+/** Plugin call as a promise: a missing method (old APK, mocked plugin) rejects instead of throwing */
+function callNative(method, args) {
+    try {
+        return Promise.resolve(getPlugin()[method](args))
+    } catch (e) {
+        return Promise.reject(e)
+    }
+}
+
 function entryKey(infoHash, fileIndex) {
     return `${(infoHash || '').toLowerCase()}:${fileIndex}`
 }
@@ -37,6 +69,14 @@ function save(map) {
     } catch { /* localStorage unavailable */ }
 }
 
+function readEntry(key) {
+    return (isNative() ? mirror.get(key) : load()[key]) || null
+}
+
+function allEntries() {
+    return isNative() ? [...mirror.values()] : Object.values(load())
+}
+
 /** Treats a player result as "watched to the end"? */
 export function isFinishedResult({ position = 0, duration = 0, finished = false } = {}) {
     if (finished) return true
@@ -47,22 +87,17 @@ export function isFinishedResult({ position = 0, duration = 0, finished = false
 /**
  * Store the outcome of a playback session.
  * Finished sessions remove the resume entry (next play starts fresh).
+ * result.historyStored (set by TVPlayer when play() had `history`) means
+ * the native store already has it; only the mirror is updated then.
  */
 export function recordPlaybackResult({ infoHash, fileIndex, fileName, torrentName, tmdbId = null, mediaType = null, result }) {
     if (!infoHash || !Number.isInteger(fileIndex)) return
-    const map = load()
     const key = entryKey(infoHash, fileIndex)
     const position = Math.max(0, result?.position || 0)
+    const previous = readEntry(key)
+    const remove = isFinishedResult(result) || position < MIN_RESUME_POSITION_MS
 
-    if (isFinishedResult(result) || position < MIN_RESUME_POSITION_MS) {
-        if (map[key]) {
-            delete map[key]
-            save(map)
-        }
-        return
-    }
-
-    map[key] = {
+    const entry = remove ? null : {
         infoHash: infoHash.toLowerCase(),
         fileIndex,
         fileName: fileName || null,
@@ -70,37 +105,129 @@ export function recordPlaybackResult({ infoHash, fileIndex, fileName, torrentNam
         // tmdbId/mediaType carried so the catalog can map this torrent back to a
         // TMDB item (Trakt scrobble, real progress % on posters). Preserve any
         // previously-stored id if this call doesn't supply one.
-        tmdbId: tmdbId ?? map[key]?.tmdbId ?? null,
-        mediaType: mediaType ?? map[key]?.mediaType ?? null,
+        tmdbId: tmdbId ?? previous?.tmdbId ?? null,
+        mediaType: mediaType ?? previous?.mediaType ?? null,
         position,
         duration: Math.max(0, result?.duration || 0),
         updatedAt: Date.now()
     }
-    save(map)
+
+    if (!isNative()) {
+        const map = load()
+        if (entry) {
+            map[key] = entry
+        } else if (map[key]) {
+            delete map[key]
+        } else {
+            return
+        }
+        save(map)
+        return
+    }
+
+    if (entry) mirror.set(key, entry)
+    else mirror.delete(key)
+    if (result?.historyStored) return
+    callNative('record', {
+        infoHash, fileIndex, fileName, torrentName, tmdbId, mediaType,
+        position, duration: Math.max(0, result?.duration || 0), finished: !!result?.finished
+    }).catch(e => console.warn('[WatchHistory] record failed:', e?.message || e))
 }
 
 /** Resume position (ms) for the next play() call, 0 = start from scratch */
 export function getResumePosition(infoHash, fileIndex) {
-    const entry = load()[entryKey(infoHash, fileIndex)]
-    return entry?.position || 0
+    return readEntry(entryKey(infoHash, fileIndex))?.position || 0
 }
 
 /** Full stored entry (incl. tmdbId/mediaType) for a torrent file, or null. */
 export function getResumeEntry(infoHash, fileIndex) {
-    return load()[entryKey(infoHash, fileIndex)] || null
+    return readEntry(entryKey(infoHash, fileIndex))
+}
+
+/**
+ * Like getResumeEntry, but on native also looks past the mirrored page
+ * (entries older than the newest RESUME_PAGE_SIZE).
+ */
+export async function fetchResumeEntry(infoHash, fileIndex) {
+    const key = entryKey(infoHash, fileIndex)
+    const cached = readEntry(key)
+    if (cached || !isNative()) return cached
+    try {
+        const { entry } = await callNative('get', { infoHash, fileIndex }) || {}
+        if (entry && !mirror.has(key)) mirror.set(key, entry)
+        return mirror.get(key) || null
+    } catch {
+        return null
+    }
 }
 
 /** Unfinished sessions, newest first — source for the Continue Watching row */
 export function getResumeItems() {
-    return Object.values(load())
+    return allEntries()
         .filter((e) => (e.position || 0) >= MIN_RESUME_POSITION_MS)
         .sort((a, b) => (b.updatedAt || 0) - (a.updatedAt || 0))
 }
 
+/**
+ * One page of the resume list, newest first.
+ * @returns {Promise<{items: Array<Object>, nextCursor: string|null}>}
+ */
+export async function getResumeItemsPage({ limit = RESUME_PAGE_SIZE, cursor = null } = {}) {
+    if (!isNative()) {
+        const start = Number(cursor) || 0
+        const items = getResumeItems()
+        const end = start + limit
+        return { items: items.slice(start, end), nextCursor: end < items.length ? String(end) : null }
+    }
+    const page = await callNative('page', { limit, cursor })
+    return { items: page?.items || [], nextCursor: page?.nextCursor || null }
+}
+
+/**
+ * Native: move the old localStorage map into the store (once) and mirror
+ * the newest page. Entries recorded meanwhile win over the loaded ones.
+ * @returns {Promise<void>}
+ */
+export function loadWatchHistory() {
+    if (!isNative()) return Promise.resolve()
+    if (hydrating) return hydrating
+    hydrating = (async () => {
+        const legacy = Object.values(load())
+        if (legacy.length) {
+            try {
+                await callNative('importEntries', { entries: legacy })
+                localStorage.removeItem(STORAGE_KEY)
+            } catch (e) {
+                console.warn('[WatchHistory] import failed:', e?.message || e)
+            }
+        }
+        try {
+            const { items } = await getResumeItemsPage({ limit: RESUME_PAGE_SIZE })
+            for (const item of items) {
+                const key = entryKey(item.infoHash, item.fileIndex)
+                const current = mirror.get(key)
+                if (!current || (current.updatedAt || 0) < (item.updatedAt || 0)) mirror.set(key, item)
+            }
+        } catch (e) {
+            console.warn('[WatchHistory] load failed:', e?.message || e)
+            hydrating = null
+        }
+    })()
+    return hydrating
+}
+
 /** Drop entries (e.g. when the torrent is deleted) */
 export function removeResumeEntries(infoHash) {
-    const map = load()
     const hash = (infoHash || '').toLowerCase()
+    if (isNative()) {
+        for (const key of [...mirror.keys()]) {
+            if (key.startsWith(`${hash}:`)) mirror.delete(key)
+        }
+        callNative('removeTorrent', { infoHash: hash })
+            .catch(e => console.warn('[WatchHistory] remove failed:', e?.message || e))
+        return
+    }
+    const map = load()
     let changed = false
     for (const key of Object.keys(map)) {
         if (key.startsWith(`${hash}:`)) {
@@ -110,3 +237,9 @@ export function removeResumeEntries(infoHash) {
     }
     if (changed) save(map)
 }
+
+export function resetWatchHistoryForTests() {
+    watchHistoryPlugin = null
+    mirror = new Map()
+    hydrating = null
+}
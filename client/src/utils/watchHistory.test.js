@@ -1,11 +1,33 @@
-import { beforeEach, describe, expect, it, vi } from 'vitest'
+import { afterEach, beforeEach, describe, expect, it, vi } from 'vitest'
+
+const { isNativePlatformMock, plugin } = vi.hoisted(() => ({
+    isNativePlatformMock: vi.fn(() => false),
+    plugin: {
+        record: vi.fn(async () => ({})),
+        get: vi.fn(),
+        page: vi.fn(),
+        removeTorrent: vi.fn(async () => ({ removed: 1 })),
+        importEntries: vi.fn(async () => ({ imported: 1 }))
+    }
+}))
+
+vi.mock('@capacitor/core', () => ({
+    Capacitor: {
+        isNativePlatform: () => isNativePlatformMock()
+    },
+    registerPlugin: vi.fn(() => plugin)
+}))
+
 import {
     recordPlaybackResult,
     getResumePosition,
     getResumeItems,
     getResumeEntry,
+    fetchResumeEntry,
+    loadWatchHistory,
     removeResumeEntries,
-    isFinishedResult
+    isFinishedResult,
+    resetWatchHistoryForTests
 } from './watchHistory.js'
 
 const base = {
@@ -69,3 +91,59 @@ describe('watchHistory', () => {
         expect(items[0].torrentName).toBe('Newer')
     })
 })
+
+describe('watchHistory (native store)', () => {
+    beforeEach(() => {
+        localStorage.clear()
+        resetWatchHistoryForTests()
+        isNativePlatformMock.mockReturnValue(true)
+        Object.values(plugin).forEach(fn => fn.mockClear())
+    })
+
+    afterEach(() => isNativePlatformMock.mockReturnValue(false))
+
+    it('writes results to the store and mirrors them for sync reads', () => {
+        recordPlaybackResult({ ...base, result: { position: 600000, duration: 7200000 } })
+        expect(plugin.record).toHaveBeenCalledWith(expect.objectContaining({
+            infoHash: 'ABCDEF1234', fileIndex: 0, position: 600000, duration: 7200000, finished: false
+        }))
+        expect(getResumePosition('abcdef1234', 0)).toBe(600000)
+        expect(localStorage.getItem('watch_history_v1')).toBeNull()
+    })
+
+    it('skips the write when TVPlayer already stored the result', () => {
+        recordPlaybackResult({ ...base, result: { position: 600000, duration: 7200000, historyStored: true } })
+        expect(plugin.record).not.toHaveBeenCalled()
+        expect(getResumeItems()).toHaveLength(1)
+    })
+
+    it('imports the localStorage map once, then mirrors the newest page', async () => {
+        localStorage.setItem('watch_history_v1', JSON.stringify({
+            'abcdef1234:0': { ...base, infoHash: 'abcdef1234', position: 600000, duration: 0, updatedAt: 1 }
+        }))
+        plugin.page.mockResolvedValue({
+            items: [{ ...base, infoHash: 'abcdef1234', position: 600000, duration: 0, updatedAt: 1 }],
+            nextCursor: null
+        })
+
+        await loadWatchHistory()
+
+        expect(plugin.importEntries).toHaveBeenCalledWith({ entries: [expect.objectContaining({ fileIndex: 0 })] })
+        expect(localStorage.getItem('watch_history_v1')).toBeNull()
+        expect(getResumeItems()).toHaveLength(1)
+    })
+
+    it('looks up entries older than the mirrored page', async () => {
+        plugin.get.mockResolvedValue({ entry: { ...base, infoHash: 'abcdef1234', fileIndex: 7, position: 900000 } })
+        expect(getResumeEntry('abcdef1234', 7)).toBeNull()
+        expect((await fetchResumeEntry('abcdef1234', 7)).position).toBe(900000)
+        expect(getResumePosition('abcdef1234', 7)).toBe(900000)
+    })
+
+    it('removes a torrent from the mirror and the store', () => {
+        recordPlaybackResult({ ...base, result: { position: 600000, duration: 0, historyStored: true } })
+        removeResumeEntries('ABCDEF1234')
+        expect(getResumeItems()).toHaveLength(0)
+        expect(plugin.removeTorrent).toHaveBeenCalledWith({ infoHash: 'abcdef1234' })
+    })
+})
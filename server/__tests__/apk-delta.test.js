@@ -0,0 +1,48 @@
+/**
+ * APK delta patch tests (TSDELTA1)
+ */
+
+import crypto from 'crypto'
+import { test, expect } from './test-runner.js'
+import { createApkDelta, applyApkDelta } from '../utils/apkDelta.js'
+
+function randomBytes(size, seed) {
+    const out = Buffer.alloc(size)
+    let block = crypto.createHash('sha256').update(String(seed)).digest()
+    for (let i = 0; i < size; i += block.length) {
+        block.copy(out, i)
+        block = crypto.createHash('sha256').update(block).digest()
+    }
+    return out
+}
+
+test('apkDelta round-trips a moved and modified region', () => {
+    const oldBuf = randomBytes(200000, 'old')
+    const newBuf = Buffer.concat([
+        oldBuf.subarray(0, 50000),
+        randomBytes(3000, 'inserted'),
+        oldBuf.subarray(120000),
+        oldBuf.subarray(50000, 120000)
+    ])
+
+    const patch = createApkDelta(oldBuf, newBuf)
+
+    expect(applyApkDelta(oldBuf, patch).equals(newBuf)).toBe(true)
+    expect(patch.length < 10000).toBe(true)
+})
+
+test('apkDelta handles files shorter than one block', () => {
+    const oldBuf = Buffer.from('old')
+    const newBuf = Buffer.from('new contents')
+
+    expect(applyApkDelta(oldBuf, createApkDelta(oldBuf, newBuf)).equals(newBuf)).toBe(true)
+})
+
+test('apkDelta rejects a patch applied to another base', () => {
+    const oldBuf = randomBytes(5000, 'a')
+    const patch = createApkDelta(oldBuf, randomBytes(5000, 'b'))
+
+    let error = null
+    try { applyApkDelta(randomBytes(4000, 'c'), patch) } catch (e) { error = e }
+    expect(error?.message).toBe('Patch is for a different base APK')
+})
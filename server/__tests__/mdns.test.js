@@ -0,0 +1,95 @@
+/**
+ * mDNS advertiser packet tests (_torserve._tcp for the Android NasDiscovery)
+ */
+
+import { test, expect } from './test-runner.js'
+import { encodeName, parseQuery, buildResponse, localIpv4Interfaces, addressesFor, isPrivateIpv4, SERVICE_TYPE } from '../utils/mdns.js'
+
+const service = { instance: 'TorServe', host: 'nas', port: 3000, addresses: ['192.168.1.10'] }
+
+function query(name, type, { id = 0, unicast = false } = {}) {
+    const header = Buffer.alloc(12)
+    header.writeUInt16BE(id, 0)
+    header.writeUInt16BE(1, 4)
+    const tail = Buffer.alloc(4)
+    tail.writeUInt16BE(type, 0)
+    tail.writeUInt16BE(1 | (unicast ? 0x8000 : 0), 2)
+    return Buffer.concat([header, encodeName(name), tail])
+}
+
+test('parseQuery reads questions and the unicast-response bit', () => {
+    const parsed = parseQuery(query('_TorServe._tcp.local', 12, { id: 7, unicast: true }))
+    expect(parsed.id).toBe(7)
+    expect(parsed.questions).toEqual([{ name: SERVICE_TYPE, type: 12, unicast: true }])
+})
+
+test('parseQuery follows compression pointers and ignores responses', () => {
+    const first = query(SERVICE_TYPE, 12)
+    const pointer = Buffer.from([0xc0, 12, 0, 12, 0, 1])
+    const packet = Buffer.concat([first, pointer])
+    packet.writeUInt16BE(2, 4)
+    expect(parseQuery(packet).questions.map(q => q.name)).toEqual([SERVICE_TYPE, SERVICE_TYPE])
+
+    const response = buildResponse(null, service)
+    expect(parseQuery(response)).toBeNull()
+})
+
+test('buildResponse answers our PTR with SRV, TXT and A records', () => {
+    const response = buildResponse(parseQuery(query(SERVICE_TYPE, 12)), service, 0)
+    expect(response.readUInt16BE(2)).toBe(0x8400)
+    expect(response.readUInt16BE(6)).toBe(1) // PTR
+    expect(response.readUInt16BE(10)).toBe(3) // SRV, TXT, A
+    expect(response.includes(encodeName(`TorServe.${SERVICE_TYPE}`))).toBe(true)
+    expect(response.includes(Buffer.from([0, 0, 0, 0, 0x0b, 0xb8]))).toBe(true) // SRV port 3000
+    expect(response.includes(Buffer.from('path=/api/status'))).toBe(true)
+    expect(response.includes(Buffer.from([192, 168, 1, 10]))).toBe(true)
+})
+
+test('buildResponse stays silent for other services', () => {
+    expect(buildResponse(parseQuery(query('_googlecast._tcp.local', 12)), service)).toBeNull()
+    expect(buildResponse(parseQuery(query('nas.local', 1)), service)).not.toBeNull()
+})
+
+test('localIpv4Interfaces skips loopback and IPv6', () => {
+    const ifaces = localIpv4Interfaces({
+        lo: [{ family: 'IPv4', address: '127.0.0.1', netmask: '255.0.0.0', internal: true }],
+        eth0: [
+            { family: 'IPv4', address: '192.168.1.10', netmask: '255.255.255.0', internal: false },
+            { family: 'IPv6', address: 'fe80::1', internal: false }
+        ]
+    })
+    expect(ifaces).toEqual([{ address: '192.168.1.10', netmask: '255.255.255.0' }])
+})
+
+test('localIpv4Interfaces leaves out docker bridges and public addresses', () => {
+    const ifaces = localIpv4Interfaces({
+        docker0: [{ family: 'IPv4', address: '172.17.0.1', netmask: '255.255.0.0', internal: false }],
+        'br-3f2a9c1d': [{ family: 'IPv4', address: '172.18.0.1', netmask: '255.255.0.0', internal: false }],
+        veth12ab: [{ family: 'IPv4', address: '169.254.3.3', netmask: '255.255.0.0', internal: false }],
+        ovs_eth0: [{ family: 'IPv4', address: '192.168.1.10', netmask: '255.255.255.0', internal: false }],
+        eth1: [{ family: 'IPv4', address: '10.0.5.2', netmask: '255.255.255.0', internal: false }],
+        eth2: [{ family: 'IPv4', address: '203.0.113.7', netmask: '255.255.255.0', internal: false }]
+    })
+    expect(ifaces.map(i => i.address)).toEqual(['192.168.1.10', '10.0.5.2'])
+
+    // A host with only a public address still advertises it
+    expect(localIpv4Interfaces({
+        eth0: [{ family: 'IPv4', address: '203.0.113.7', netmask: '255.255.255.0', internal: false }]
+    }).map(i => i.address)).toEqual(['203.0.113.7'])
+})
+
+test('isPrivateIpv4 covers the RFC 1918 ranges only', () => {
+    expect(['10.1.2.3', '172.16.0.1', '172.31.255.254', '192.168.0.5'].every(isPrivateIpv4)).toBe(true)
+    expect(['172.15.0.1', '172.32.0.1', '192.169.0.1', '100.64.0.1', '8.8.8.8'].some(isPrivateIpv4)).toBe(false)
+})
+
+test('addressesFor answers with the interface on the querier\'s subnet', () => {
+    const ifaces = [
+        { address: '192.168.1.10', netmask: '255.255.255.0' },
+        { address: '10.0.5.2', netmask: '255.255.255.0' }
+    ]
+    expect(addressesFor(ifaces, '192.168.1.77')).toEqual(['192.168.1.10'])
+    expect(addressesFor(ifaces, '10.0.5.200')).toEqual(['10.0.5.2'])
+    expect(addressesFor(ifaces, '192.168.7.7')).toEqual(['192.168.1.10', '10.0.5.2'])
+    expect(addressesFor(ifaces, 'fe80::1')).toEqual(['192.168.1.10', '10.0.5.2'])
+})
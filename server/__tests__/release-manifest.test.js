@@ -0,0 +1,63 @@
+/**
+ * Release step for version.json (sha256 of the release APK, deltas[])
+ */
+
+import { test, expect } from './test-runner.js'
+import { deltaFileName, releaseTag, sha256Hex, withDelta, withReleaseHash } from '../utils/releaseManifest.js'
+
+const manifest = {
+    version: '3.18.0',
+    versionCode: 38,
+    url: 'https://github.com/dbobkov245-source/PWA-TORSERVE/releases/download/v3.18.0/pwa-torserve-v3.18.0.apk'
+}
+
+test('releaseManifest publishes the APK sha256 and keeps the other fields', () => {
+    const apk = Buffer.from('apk bytes')
+    const result = withReleaseHash(manifest, 'pwa-torserve-v3.18.0.apk', apk)
+
+    expect(result.sha256).toBe('9379cfb95416438572c33e2c2e03f1fdbdb10e4668cfbdb7bbd0e3049463ac33')
+    expect(result.versionCode).toBe(38)
+    expect(result.url).toBe(manifest.url)
+})
+
+test('releaseManifest refuses an APK the manifest url does not name', () => {
+    expect(() => withReleaseHash(manifest, 'pwa-torserve-v3.17.2.apk', Buffer.from('old'))).toThrow('not pwa-torserve-v3.17.2.apk')
+    expect(() => withReleaseHash({ version: '3.18.0' }, 'pwa-torserve-v3.18.0.apk', Buffer.from('x'))).toThrow()
+})
+
+test('releaseManifest lists a delta next to the release APK', () => {
+    const patch = Buffer.from('patch bytes')
+    const name = deltaFileName('pwa-torserve-v3.18.0.apk', 37)
+    const result = withDelta(manifest, 37, name, patch)
+
+    expect(name).toBe('pwa-torserve-v3.18.0-from-37.tsdelta')
+    expect(result.deltas).toEqual([{
+        fromVersionCode: 37,
+        url: 'https://github.com/dbobkov245-source/PWA-TORSERVE/releases/download/v3.18.0/pwa-torserve-v3.18.0-from-37.tsdelta',
+        sha256: sha256Hex(patch),
+        size: patch.length
+    }])
+    expect(releaseTag(manifest)).toBe('v3.18.0')
+})
+
+test('releaseManifest replaces a rebuilt delta and keeps the newest base first', () => {
+    let result = withDelta(manifest, 36, 'from-36.tsdelta', Buffer.from('a'))
+    result = withDelta(result, 37, 'from-37.tsdelta', Buffer.from('b'))
+    result = withDelta(result, 36, 'from-36.tsdelta', Buffer.from('cc'))
+
+    expect(result.deltas.map(d => d.fromVersionCode)).toEqual([37, 36])
+    expect(result.deltas[1].size).toBe(2)
+})
+
+test('releaseManifest drops the deltas of the previous release', () => {
+    const previous = {
+        ...manifest,
+        deltas: [{
+            fromVersionCode: 36,
+            url: 'https://github.com/dbobkov245-source/PWA-TORSERVE/releases/download/v3.17.2/pwa-torserve-v3.17.2-from-36.tsdelta',
+            sha256: 'x'
+        }]
+    }
+    const result = withReleaseHash(previous, 'pwa-torserve-v3.18.0.apk', Buffer.from('apk bytes'))
+    expect('deltas' in result).toBe(false)
+})
@@ -27,6 +27,10 @@ await import('./magnet-preflight.test.js')
 await import('./ts-download.test.js')
 await import('./proxy.test.js')
 await import('./trakt-discovery.test.js')
+await import('./apk-delta.test.js')
+await import('./release-manifest.test.js')
+await import('./torrent-file.test.js')
+await import('./mdns.test.js')
 
 // Run all registered tests
 await runTests()
@@ -0,0 +1,52 @@
+/**
+ * .torrent upload parsing (POST /api/add/torrent)
+ */
+
+import crypto from 'crypto'
+import fs from 'fs'
+import os from 'os'
+import path from 'path'
+import { test, expect } from './test-runner.js'
+import { parseTorrentFile, buildTorrentFileMagnet, cacheTorrentMetadata } from '../utils/torrentFile.js'
+
+const info = Buffer.concat([
+    Buffer.from('d5:filesld6:lengthi700e4:pathl5:a.mkveee4:name4:Show12:piece lengthi1024e6:pieces20:'),
+    Buffer.alloc(20, 7),
+    Buffer.from('e')
+])
+const torrent = Buffer.concat([
+    Buffer.from('d8:announce14:http://t1/anno13:announce-listll14:http://t1/annoel14:http://t2/annoee4:info'),
+    info,
+    Buffer.from('7:comment2:hie')
+])
+const sha1 = (buf) => crypto.createHash('sha1').update(buf).digest('hex')
+
+test('parseTorrentFile hashes the raw info dictionary bytes', () => {
+    const meta = parseTorrentFile(torrent)
+    expect(meta.infoHash).toBe(sha1(info))
+    expect(meta.name).toBe('Show')
+    expect(meta.announce).toEqual(['http://t1/anno', 'http://t2/anno'])
+})
+
+test('parseTorrentFile rejects broken files', () => {
+    expect(() => parseTorrentFile(Buffer.from('le'))).toThrow('Not a torrent file')
+    expect(() => parseTorrentFile(Buffer.from('d7:comment2:hie'))).toThrow('No info dictionary')
+    expect(() => parseTorrentFile(torrent.subarray(0, 120))).toThrow('Truncated')
+    expect(() => parseTorrentFile(Buffer.from('d4:infod4:namex:aee'))).toThrow('Bad bencode string')
+})
+
+test('buildTorrentFileMagnet carries name and trackers', () => {
+    const magnet = buildTorrentFileMagnet({ infoHash: 'ab'.repeat(20), name: 'A B', announce: ['http://t/a'] })
+    expect(magnet).toBe(`magnet:?xt=urn:btih:${'ab'.repeat(20)}&dn=A%20B&tr=http%3A%2F%2Ft%2Fa`)
+})
+
+test('cacheTorrentMetadata writes where torrent-stream looks', async () => {
+    const tmpDir = fs.mkdtempSync(path.join(os.tmpdir(), 'torrent-file-'))
+    try {
+        const target = await cacheTorrentMetadata(torrent, sha1(info), tmpDir)
+        expect(target).toBe(path.join(tmpDir, 'torrent-stream', `${sha1(info)}.torrent`))
+        expect(fs.readFileSync(target).equals(torrent)).toBe(true)
+    } finally {
+        fs.rmSync(tmpDir, { recursive: true, force: true })
+    }
+})
@@ -320,3 +320,31 @@ test('onTorrentChange registers a listener that fires on notify', async () => {
     _notifyTorrentChangeForTest()
     expect(called).toBe(1) // not called again after unsubscribe
 })
+
+test('prewarm selection is shared and dropped after its last request closes', async () => {
+    const { holdPrewarmSelection } = await import('../torrent.js')
+    const calls = []
+    const engine = {
+        select: (from, to, priority) => calls.push(['select', from, to, priority]),
+        deselect: (from, to, priority) => calls.push(['deselect', from, to, priority])
+    }
+
+    const first = holdPrewarmSelection(engine, 'prewarm-test:4-6', 4, 6, 20)
+    const second = holdPrewarmSelection(engine, 'prewarm-test:4-6', 4, 6, 20)
+    expect(calls).toEqual([['select', 4, 6, false]])
+
+    first()
+    first() // 'close' and 'error' may both fire
+    await new Promise(resolve => setTimeout(resolve, 40))
+    expect(calls.length).toBe(1) // second still holds it
+
+    second()
+    // A retry within the grace period keeps the selection
+    const retry = holdPrewarmSelection(engine, 'prewarm-test:4-6', 4, 6, 20)
+    await new Promise(resolve => setTimeout(resolve, 40))
+    expect(calls.length).toBe(1)
+
+    retry()
+    await new Promise(resolve => setTimeout(resolve, 40))
+    expect(calls).toEqual([['select', 4, 6, false], ['deselect', 4, 6, false]])
+})
@@ -7,7 +7,7 @@ import { fileURLToPath } from 'url'
 import dotenv from 'dotenv'
 import fs from 'fs'
 import fsPromises from 'fs/promises'
-import { addTorrent, getAllTorrents, getTorrent, getRawTorrent, removeTorrent, restoreTorrents, prioritizeFile, readahead, boostTorrent, destroyAllTorrents, setSpeedMode, getActiveTorrentsCount, getFrozenTorrentsCount, markTorrentFilesSeen, onTorrentChange, offTorrentChange } from './torrent.js'
+import { addTorrent, getAllTorrents, getTorrent, getRawTorrent, removeTorrent, restoreTorrents, prioritizeFile, readahead, prewarmRange, boostTorrent, destroyAllTorrents, setSpeedMode, getActiveTorrentsCount, getFrozenTorrentsCount, markTorrentFilesSeen, onTorrentChange, offTorrentChange } from './torrent.js'
 import { db, safeWrite } from './db.js'
 import { startWatchdog, stopWatchdog, getServerState, getImageProbeState } from './watchdog.js'
 import { LagMonitor } from './utils/lag-monitor.js'
@@ -36,6 +36,8 @@ import {
 } from './tsDownload.js'
 import { isMagnetHashMatch } from './utils/magnetHash.js'
 import { probeMagnet } from './magnetPreflight.js'
+import { startMdnsAdvertiser } from './utils/mdns.js'
+import { MAX_TORRENT_FILE_BYTES, parseTorrentFile, buildTorrentFileMagnet, cacheTorrentMetadata, isTorrentFileError } from './utils/torrentFile.js'
 
 // ────────────────────────────────────────────────────────
 // 📊 Lag Monitor v2.3: Detect event loop blocking
@@ -372,6 +374,15 @@ function withLocalUpdaterApkUrl(req, text) {
     const protocol = req.protocol || 'http'
     const host = req.get('host')
     local.url = `${protocol}://${host}/${apkName}`
+    // Delta patches (server/utils/apkDelta.js) dropped next to the APK
+    if (Array.isArray(local.deltas)) {
+        local.deltas = local.deltas.map(delta => {
+            const patchName = path.basename(String(delta?.url || ''))
+            return patchName && fs.existsSync(path.join(distPath, patchName))
+                ? { ...delta, url: `${protocol}://${host}/${patchName}` }
+                : delta
+        })
+    }
     return JSON.stringify(local, null, 2)
 }
 
@@ -406,12 +417,21 @@ app.get('/api/updater/apk', async (req, res) => {
             return res.status(400).json({ error: 'Invalid or disallowed APK url' })
         }
 
-        const upstream = await fetch(targetUrl, { redirect: 'follow' })
+        // Forward Range/If-Range so the native downloader can resume a dropped transfer
+        const headers = {}
+        if (req.headers.range) headers.Range = req.headers.range
+        if (req.headers['if-range']) headers['If-Range'] = req.headers['if-range']
+        const upstream = await fetch(targetUrl, { redirect: 'follow', headers })
+        if (upstream.status === 416) return res.status(416).end()
         if (!upstream.ok || !upstream.body) return res.status(502).json({ error: `Upstream ${upstream.status}` })
 
+        res.status(upstream.status)
         res.setHeader('Content-Type', 'application/vnd.android.package-archive')
-        const len = upstream.headers.get('content-length')
-        if (len) res.setHeader('Content-Length', len)
+        res.setHeader('Accept-Ranges', 'bytes')
+        for (const name of ['content-length', 'content-range', 'etag', 'last-modified']) {
+            const value = upstream.headers.get(name)
+            if (value) res.setHeader(name, value)
+        }
         res.setHeader('Cache-Control', 'no-store')
 
         const reader = upstream.body.getReader()
@@ -993,11 +1013,8 @@ app.get('/playlist.m3u', async (req, res) => {
     res.send(m3u)
 })
 
-// API: Add Torrent
-app.post('/api/add', async (req, res) => {
-    const { magnet } = req.body
-    if (!magnet) return res.status(400).json({ error: 'Magnet URI required' })
-
+// Adds a magnet and answers like /api/add always has
+async function addMagnetAndRespond(magnet, res) {
     try {
         const torrent = await addTorrent(magnet)
         res.json({ infoHash: torrent.infoHash, name: torrent.name })
@@ -1017,6 +1034,32 @@ app.post('/api/add', async (req, res) => {
         }
         res.status(500).json({ error: err.message })
     }
+}
+
+// API: Add Torrent
+app.post('/api/add', async (req, res) => {
+    const { magnet } = req.body
+    if (!magnet) return res.status(400).json({ error: 'Magnet URI required' })
+    await addMagnetAndRespond(magnet, res)
+})
+
+// API: Add a .torrent file (raw body, from the Android intake). The file
+// seeds torrent-stream's metadata cache, then the equivalent magnet takes
+// the normal path — no metadata exchange with the swarm needed.
+app.post('/api/add/torrent', express.raw({ type: 'application/x-bittorrent', limit: MAX_TORRENT_FILE_BYTES }), async (req, res) => {
+    if (!Buffer.isBuffer(req.body) || req.body.length === 0) {
+        return res.status(400).json({ error: 'Torrent file required (application/x-bittorrent)' })
+    }
+    let meta
+    try {
+        meta = parseTorrentFile(req.body)
+        await cacheTorrentMetadata(req.body, meta.infoHash)
+    } catch (err) {
+        if (isTorrentFileError(err)) return res.status(400).json({ error: err.message })
+        return res.status(500).json({ error: err.message })
+    }
+    console.log(`[Add] Torrent file: ${meta.name || meta.infoHash} (${req.body.length} bytes)`)
+    await addMagnetAndRespond(buildTorrentFileMagnet(meta), res)
 })
 
 // API: manual TorrServer failover — "ускорить через TorrServer" button.
@@ -1128,6 +1171,10 @@ app.delete('/api/delete/:infoHash', async (req, res) => {
 app.get('/stream/:infoHash/:fileIndex', async (req, res) => {
     const { infoHash, fileIndex } = req.params
     const rangeHeader = req.headers.range
+    // TVPlayer next-episode prewarm (EpisodePrewarmer.java): fetch the
+    // requested pieces at normal priority without taking the torrent over —
+    // no turbo/priority/seen/progress side effects, not counted as playback.
+    const prewarm = req.query.prewarm === '1'
     const index = Number.parseInt(fileIndex, 10)
     if (!Number.isInteger(index) || index < 0) {
         return res.status(400).send('Invalid file index')
@@ -1148,17 +1195,19 @@ app.get('/stream/:infoHash/:fileIndex', async (req, res) => {
     let localDiskPath = null
 
     if (engine) {
-        // 🔥 ACTIVATE TURBO MODE when user starts watching
-        boostTorrent(infoHash)
-
         file = engine.files?.[index]
         if (!file) return res.status(404).send('File not found')
 
-        // Smart Priority: Prioritize this file's first chunks for instant playback
-        prioritizeFile(infoHash, index)
+        if (!prewarm) {
+            // 🔥 ACTIVATE TURBO MODE when user starts watching
+            boostTorrent(infoHash)
 
-        // 📺 Mark files as seen when playback starts (resets new episode counter)
-        markTorrentFilesSeen(infoHash)
+            // Smart Priority: Prioritize this file's first chunks for instant playback
+            prioritizeFile(infoHash, index)
+
+            // 📺 Mark files as seen when playback starts (resets new episode counter)
+            markTorrentFilesSeen(infoHash)
+        }
     } else {
         try {
             await refreshLocalLibrary()
@@ -1226,7 +1275,13 @@ app.get('/stream/:infoHash/:fileIndex', async (req, res) => {
         // 🔥 READAHEAD: Prioritize chunks starting from seek position
         // This ensures smooth playback after seeking
         if (engine && !servingFromDisk) {
-            readahead(infoHash, index, start)
+            if (prewarm) {
+                // Held until this request closes, including the 503 below
+                const release = prewarmRange(infoHash, index, start, end)
+                if (release) res.on('close', release)
+            } else {
+                readahead(infoHash, index, start)
+            }
         }
 
         // 🔥 BITFIELD CHECK: Before sending any headers, verify the starting piece
@@ -1253,7 +1308,7 @@ app.get('/stream/:infoHash/:fileIndex', async (req, res) => {
         const now = Date.now()
         const lastUpdate = db.data.progress[trackKey]?.timestamp || 0
 
-        if (engine && now - lastUpdate > 10000) {
+        if (engine && !prewarm && now - lastUpdate > 10000) {
             db.data.progress[trackKey] = {
                 timestamp: now,
                 position: start,
@@ -1281,9 +1336,12 @@ app.get('/stream/:infoHash/:fileIndex', async (req, res) => {
             ? fs.createReadStream(diskPath, { start, end, highWaterMark: hwm })
             : file.createReadStream({ start, end, highWaterMark: hwm })
 
-        // 📊 Monitor: count this range request (reopen) + bytes delivered
-        streamMonitor.openStream(infoHash, { fromDisk: servingFromDisk, fileName: file.name, fileLength: file.length })
-        stream.on('data', (c) => streamMonitor.recordBytes(infoHash, c.length))
+        // 📊 Monitor: count this range request (reopen) + bytes delivered.
+        // Prewarm reads stay out so stallCount/throughput reflect the player.
+        if (!prewarm) {
+            streamMonitor.openStream(infoHash, { fromDisk: servingFromDisk, fileName: file.name, fileLength: file.length })
+            stream.on('data', (c) => streamMonitor.recordBytes(infoHash, c.length))
+        }
 
         // ✅ FIX: Функция гарантированной очистки стрима
         const cleanup = () => {
@@ -1306,7 +1364,7 @@ app.get('/stream/:infoHash/:fileIndex', async (req, res) => {
             stallTimer = setTimeout(() => {
                 if (bytesEmitted === 0) {
                     console.warn(`[Stream] ⚠️ Stall detected for ${infoHash.slice(0,8)} byte=${start}: no data in ${STALL_TIMEOUT_MS}ms, resetting connection`)
-                    streamMonitor.recordStall(infoHash)
+                    if (!prewarm) streamMonitor.recordStall(infoHash)
                     cleanup()
                     // Destroy the socket (TCP reset) so the player sees a network error
                     // and retries. res.end() after writeHead(206) with no body sends an
@@ -1335,13 +1393,13 @@ app.get('/stream/:infoHash/:fileIndex', async (req, res) => {
         activeStreams++
         res.on('close', () => {
             activeStreams--
-            streamMonitor.closeStream(infoHash)
+            if (!prewarm) streamMonitor.closeStream(infoHash)
             if (stallTimer) { clearTimeout(stallTimer); stallTimer = null }
             cleanup()
         })
         res.on('error', () => {
             activeStreams--
-            streamMonitor.closeStream(infoHash)
+            if (!prewarm) streamMonitor.closeStream(infoHash)
             if (stallTimer) { clearTimeout(stallTimer); stallTimer = null }
             cleanup()
         })
@@ -1364,6 +1422,7 @@ app.get('*', (req, res) => {
     }
 })
 
+let stopMdns = () => {}
 const server = app.listen(PORT, '0.0.0.0', () => {
     console.log(`Server running on http://0.0.0.0:${PORT}`)
 
@@ -1380,6 +1439,9 @@ const server = app.listen(PORT, '0.0.0.0', () => {
     // Hybrid backend: migrate crawling downloads to TorrServer sidecar
     // (also resumes interrupted TorrServer downloads from db.tsDownloads)
     initTsFailover()
+
+    // LAN discovery for the Android app (NsdManager, _torserve._tcp)
+    stopMdns = startMdnsAdvertiser({ port: PORT })
 })
 
 // ────────────────────────────────────────────────────────
@@ -1402,8 +1464,9 @@ const gracefulShutdown = async (signal) => {
         console.log('[Shutdown] HTTP server closed')
     })
 
-    // 2. Stop watchdog and lag monitor
+    // 2. Stop watchdog, mDNS advertiser and lag monitor
     stopWatchdog()
+    stopMdns()
     lagMonitor.stop()
 
     // 3. Destroy all torrent engines
@@ -1021,6 +1021,69 @@ export function readahead(infoHash, fileIndex, byteOffset) {
     return prioritizeFileInternal(engine, fileIndex, byteOffset)
 }
 
+// ────────────────────────────────────────────────────────
+// Prewarm: fetch a byte range of an upcoming file at normal priority
+// (TVPlayer next-episode warming, /stream?prewarm=1). Unlike readahead()
+// it never outranks the file that is being watched.
+// The selection is dropped again once no prewarm request holds it: after
+// PREWARM_RELEASE_MS, so EpisodePrewarmer's 503 retries (Retry-After: 3)
+// find it still selected instead of re-adding it every time.
+// ────────────────────────────────────────────────────────
+const PREWARM_RELEASE_MS = 30 * 1000
+const prewarmSelections = new Map() // `${infoHash}:${from}-${to}` -> { engine, from, to, holders, timer }
+
+/**
+ * Selects pieces [from, to] at normal priority, shared by every request for
+ * the same range. @returns release(), to call once when the request closes.
+ */
+export function holdPrewarmSelection(engine, key, from, to, releaseMs = PREWARM_RELEASE_MS) {
+    let held = prewarmSelections.get(key)
+    if (!held || held.engine !== engine) {
+        engine.select(from, to, false) // false = normal priority
+        held = { engine, from, to, holders: 0, timer: null }
+        prewarmSelections.set(key, held)
+    }
+    if (held.timer) {
+        clearTimeout(held.timer)
+        held.timer = null
+    }
+    held.holders++
+
+    let released = false
+    return () => {
+        if (released) return
+        released = true
+        if (--held.holders > 0) return
+        held.timer = setTimeout(() => {
+            if (prewarmSelections.get(key) !== held || held.holders > 0) return
+            prewarmSelections.delete(key)
+            try {
+                held.engine.deselect(held.from, held.to, false)
+            } catch (e) {
+                console.warn('[Prewarm] Deselection failed:', e.message)
+            }
+        }, releaseMs)
+        held.timer.unref?.()
+    }
+}
+
+/** @returns release() for the request's 'close', or null if nothing was selected */
+export function prewarmRange(infoHash, fileIndex, start, end) {
+    const engine = engines.get(infoHash)
+    const file = engine?.files?.[fileIndex]
+    const pieceLength = engine?.torrent?.pieceLength || 0
+    if (!file || !pieceLength) return null
+
+    const startPiece = Math.floor(((file.offset || 0) + start) / pieceLength)
+    const endPiece = Math.floor(((file.offset || 0) + end) / pieceLength)
+    try {
+        return holdPrewarmSelection(engine, `${infoHash}:${startPiece}-${endPiece}`, startPiece, endPiece)
+    } catch (e) {
+        console.warn('[Prewarm] Selection failed:', e.message)
+        return null
+    }
+}
+
 // ────────────────────────────────────────────────────────
 // 🔥 Turbo Mode: Boost connections when streaming starts
 // ────────────────────────────────────────────────────────
@@ -0,0 +1,173 @@
+/**
+ * APK delta patches for OTA updates (TSDELTA1).
+ *
+ * A patch rebuilds the new release APK from the one installed on the TV box
+ * (its base.apk) plus the bytes that actually changed. Unchanged zip entries
+ * keep their compressed bytes between builds and only move, so an rsync-style
+ * block match turns them into COPY ops; the patch is mostly the changed web
+ * bundle plus the new signing block and central directory.
+ *
+ * Format (gzip-compressed, big-endian), applied by ApkPatcher.java:
+ *   "TSDELTA1" | baseSize u64 | targetSize u64 | targetSha256 [32]
+ *   ops: 1 COPY offset u64, length u32 | 2 INSERT length u32, bytes | 0 END
+ *
+ * CLI: node server/utils/apkDelta.js <old.apk> <new.apk> <out.tsdelta>
+ * Releases build theirs with releaseManifest.js --base, which also lists
+ * them in version.json deltas[].
+ */
+import crypto from 'crypto'
+import fs from 'fs'
+import zlib from 'zlib'
+import { pathToFileURL } from 'url'
+
+const MAGIC = Buffer.from('TSDELTA1', 'ascii')
+const OP_END = 0
+const OP_COPY = 1
+const OP_INSERT = 2
+const BLOCK_SIZE = 1024
+const HASH_BASE = 31
+const MAX_OP_LENGTH = 0x7fffffff
+
+function blockHash(buf, start, length) {
+    let h = 0
+    for (let i = start; i < start + length; i++) {
+        h = (Math.imul(h, HASH_BASE) + buf[i]) | 0
+    }
+    return h
+}
+
+function powBase(length) {
+    let p = 1
+    for (let i = 1; i < length; i++) p = Math.imul(p, HASH_BASE)
+    return p
+}
+
+/**
+ * Build a delta patch that turns oldBuf into newBuf.
+ * @returns {Buffer} gzip-compressed TSDELTA1 patch
+ */
+export function createApkDelta(oldBuf, newBuf, { blockSize = BLOCK_SIZE } = {}) {
+    // Index every aligned block of the old file by rolling hash (first wins)
+    const index = new Map()
+    for (let offset = 0; offset + blockSize <= oldBuf.length; offset += blockSize) {
+        const h = blockHash(oldBuf, offset, blockSize)
+        if (!index.has(h)) index.set(h, offset)
+    }
+
+    const ops = []
+    let literalStart = 0
+    const flushLiteral = (end) => {
+        for (let start = literalStart; start < end; start += MAX_OP_LENGTH) {
+            ops.push({ type: OP_INSERT, data: newBuf.subarray(start, Math.min(end, start + MAX_OP_LENGTH)) })
+        }
+    }
+
+    const outFactor = powBase(blockSize)
+    let pos = 0
+    let h = newBuf.length >= blockSize ? blockHash(newBuf, 0, blockSize) : 0
+    while (pos + blockSize <= newBuf.length) {
+        const candidate = index.get(h)
+        if (candidate !== undefined && oldBuf.compare(newBuf, pos, pos + blockSize, candidate, candidate + blockSize) === 0) {
+            // Extend the match backwards into pending literal bytes and forwards
+            let back = 0
+            while (pos - back > literalStart && candidate - back > 0
+                && newBuf[pos - back - 1] === oldBuf[candidate - back - 1]) back++
+            let length = blockSize
+            while (pos + length < newBuf.length && candidate + length < oldBuf.length
+                && newBuf[pos + length] === oldBuf[candidate + length] && length < MAX_OP_LENGTH) length++
+
+            flushLiteral(pos - back)
+            ops.push({ type: OP_COPY, offset: candidate - back, length: length + back })
+            pos += length
+            literalStart = pos
+            if (pos + blockSize <= newBuf.length) h = blockHash(newBuf, pos, blockSize)
+            continue
+        }
+        // Roll the hash one byte forward
+        if (pos + blockSize < newBuf.length) {
+            h = (Math.imul(h - Math.imul(newBuf[pos], outFactor), HASH_BASE) + newBuf[pos + blockSize]) | 0
+        }
+        pos++
+    }
+    flushLiteral(newBuf.length)
+
+    const header = Buffer.alloc(MAGIC.length + 16)
+    MAGIC.copy(header, 0)
+    header.writeBigUInt64BE(BigInt(oldBuf.length), 8)
+    header.writeBigUInt64BE(BigInt(newBuf.length), 16)
+    const parts = [header, crypto.createHash('sha256').update(newBuf).digest()]
+    for (const op of ops) {
+        if (op.type === OP_COPY) {
+            const b = Buffer.alloc(13)
+            b.writeUInt8(OP_COPY, 0)
+            b.writeBigUInt64BE(BigInt(op.offset), 1)
+            b.writeUInt32BE(op.length, 9)
+            parts.push(b)
+        } else {
+            const b = Buffer.alloc(5)
+            b.writeUInt8(OP_INSERT, 0)
+            b.writeUInt32BE(op.data.length, 1)
+            parts.push(b, op.data)
+        }
+    }
+    parts.push(Buffer.from([OP_END]))
+    return zlib.gzipSync(Buffer.concat(parts), { level: 9 })
+}
+
+/**
+ * Reference implementation of the applier (ApkPatcher.java does the same,
+ * streaming). Throws if the patch doesn't match oldBuf or the result.
+ */
+export function applyApkDelta(oldBuf, patch) {
+    const data = zlib.gunzipSync(patch)
+    if (!data.subarray(0, 8).equals(MAGIC)) throw new Error('Not a TSDELTA1 patch')
+    const baseSize = Number(data.readBigUInt64BE(8))
+    const targetSize = Number(data.readBigUInt64BE(16))
+    const targetSha = data.subarray(24, 56)
+    if (baseSize !== oldBuf.length) throw new Error('Patch is for a different base APK')
+
+    const out = Buffer.alloc(targetSize)
+    let written = 0
+    let p = 56
+    for (;;) {
+        const op = data[p++]
+        if (op === OP_END) break
+        if (op === OP_COPY) {
+            const offset = Number(data.readBigUInt64BE(p))
+            const length = data.readUInt32BE(p + 8)
+            p += 12
+            written += oldBuf.copy(out, written, offset, offset + length)
+        } else if (op === OP_INSERT) {
+            const length = data.readUInt32BE(p)
+            p += 4
+            written += data.copy(out, written, p, p + length)
+            p += length
+        } else {
+            throw new Error(`Bad op ${op}`)
+        }
+    }
+    if (written !== targetSize || !crypto.createHash('sha256').update(out).digest().equals(targetSha)) {
+        throw new Error('Patched APK does not match the target hash')
+    }
+    return out
+}
+
+if (process.argv[1] && import.meta.url === pathToFileURL(process.argv[1]).href) {
+    const [oldPath, newPath, outPath] = process.argv.slice(2)
+    if (!oldPath || !newPath || !outPath) {
+        console.error('Usage: node server/utils/apkDelta.js <old.apk> <new.apk> <out.tsdelta>')
+        process.exit(1)
+    }
+    const oldBuf = fs.readFileSync(oldPath)
+    const newBuf = fs.readFileSync(newPath)
+    const patch = createApkDelta(oldBuf, newBuf)
+    applyApkDelta(oldBuf, patch)
+    fs.writeFileSync(outPath, patch)
+    console.log(JSON.stringify({
+        url: outPath,
+        size: patch.length,
+        sha256: crypto.createHash('sha256').update(patch).digest('hex'),
+        targetSha256: crypto.createHash('sha256').update(newBuf).digest('hex'),
+        ratio: Number((patch.length / newBuf.length).toFixed(3))
+    }, null, 2))
+}
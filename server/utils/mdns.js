@@ -0,0 +1,219 @@
+/**
+ * Minimal mDNS responder: advertises the HTTP server as
+ * <name>._torserve._tcp.local so the Android app finds the NAS through
+ * NsdManager instead of sweeping the subnet (NasDiscovery.java).
+ *
+ * Answers PTR/SRV/TXT/A questions for that service only and announces once
+ * at startup. Multicast needs host networking (docker-compose.synology.yml);
+ * behind a bridge network the app still finds the server with its /24 probe.
+ * Disable with MDNS_ADVERTISE=0.
+ */
+import dgram from 'dgram'
+import os from 'os'
+
+export const SERVICE_TYPE = '_torserve._tcp.local'
+const MDNS_ADDRESS = '224.0.0.251'
+const MDNS_PORT = 5353
+const TTL_SECONDS = 120
+
+const TYPE_A = 1
+const TYPE_PTR = 12
+const TYPE_TXT = 16
+const TYPE_SRV = 33
+const TYPE_ANY = 255
+const CLASS_IN = 1
+const CACHE_FLUSH = 0x8000
+
+export function encodeName(name) {
+    const parts = name.split('.').filter(Boolean).map((label) => {
+        const bytes = Buffer.from(label, 'utf8')
+        return Buffer.concat([Buffer.from([Math.min(bytes.length, 63)]), bytes.subarray(0, 63)])
+    })
+    return Buffer.concat([...parts, Buffer.from([0])])
+}
+
+/** Name at offset (compression pointers followed) and the offset after it. */
+function readName(buf, offset, depth = 0) {
+    const labels = []
+    let i = offset
+    while (i < buf.length) {
+        const len = buf[i]
+        if (len === 0) return { name: labels.join('.'), end: i + 1 }
+        if ((len & 0xc0) === 0xc0) {
+            if (depth > 8 || i + 1 >= buf.length) break
+            const pointer = ((len & 0x3f) << 8) | buf[i + 1]
+            labels.push(readName(buf, pointer, depth + 1).name)
+            return { name: labels.filter(Boolean).join('.'), end: i + 2 }
+        }
+        labels.push(buf.toString('utf8', i + 1, i + 1 + len))
+        i += 1 + len
+    }
+    throw new Error('Bad DNS name')
+}
+
+/** @returns {{id: number, questions: Array<{name: string, type: number, unicast: boolean}>}|null} */
+export function parseQuery(buf) {
+    if (buf.length < 12) return null
+    const flags = buf.readUInt16BE(2)
+    if (flags & 0x8000) return null // a response, not a query
+    const count = buf.readUInt16BE(4)
+    const questions = []
+    let offset = 12
+    try {
+        for (let q = 0; q < count; q++) {
+            const { name, end } = readName(buf, offset)
+            if (end + 4 > buf.length) return null
+            questions.push({
+                name: name.toLowerCase(),
+                type: buf.readUInt16BE(end),
+                unicast: (buf.readUInt16BE(end + 2) & 0x8000) !== 0
+            })
+            offset = end + 4
+        }
+    } catch {
+        return null
+    }
+    return { id: buf.readUInt16BE(0), questions }
+}
+
+function record(name, type, data, flush = true) {
+    const head = Buffer.alloc(10)
+    head.writeUInt16BE(type, 0)
+    head.writeUInt16BE(CLASS_IN | (flush ? CACHE_FLUSH : 0), 2)
+    head.writeUInt32BE(TTL_SECONDS, 4)
+    head.writeUInt16BE(data.length, 8)
+    return Buffer.concat([encodeName(name), head, data])
+}
+
+// docker0, br-<id> and veth* of bridge networks, VM and VPN interfaces:
+// an A record with one of those sends the app to an unreachable address.
+const VIRTUAL_INTERFACE = /^(docker|br-|veth|virbr|vmnet|vboxnet|lxcbr|lxdbr|cni|flannel|cali|tun|tap|wg|tailscale|zt)/
+
+function ipv4ToInt(ip) {
+    return ip.split('.').reduce((value, octet) => ((value << 8) | Number(octet)) >>> 0, 0)
+}
+
+/** RFC 1918 private address. */
+export function isPrivateIpv4(ip) {
+    const value = ipv4ToInt(ip)
+    return (value >>> 24) === 10 ||
+        (value >>> 20) === ((172 << 4) | 1) ||
+        (value >>> 16) === ((192 << 8) | 168)
+}
+
+/**
+ * IPv4 addresses of the physical LAN interfaces, for A records: private
+ * (RFC 1918) ones when there are any, virtual interfaces never.
+ * @returns {Array<{address: string, netmask: string}>}
+ */
+export function localIpv4Interfaces(interfaces = os.networkInterfaces()) {
+    const candidates = []
+    for (const [name, entries] of Object.entries(interfaces)) {
+        if (VIRTUAL_INTERFACE.test(name)) continue
+        for (const entry of entries || []) {
+            if (entry.family === 'IPv4' && !entry.internal) {
+                candidates.push({ address: entry.address, netmask: entry.netmask || '255.255.255.255' })
+            }
+        }
+    }
+    const privateOnes = candidates.filter(({ address }) => isPrivateIpv4(address))
+    return privateOnes.length ? privateOnes : candidates
+}
+
+/**
+ * Addresses to answer a query from remoteAddress with: the interface on its
+ * subnet, so a multi-homed NAS doesn't hand out another network's address.
+ * Every address when none matches (routed or relayed queries).
+ */
+export function addressesFor(ifaces, remoteAddress) {
+    const remote = /^\d+\.\d+\.\d+\.\d+$/.test(remoteAddress || '') ? ipv4ToInt(remoteAddress) : null
+    const sameSubnet = remote === null ? [] : ifaces.filter(({ address, netmask }) => {
+        const mask = ipv4ToInt(netmask)
+        return ((ipv4ToInt(address) & mask) >>> 0) === ((remote & mask) >>> 0)
+    })
+    return (sameSubnet.length ? sameSubnet : ifaces).map(({ address }) => address)
+}
+
+/**
+ * Response packet for a parsed query, or null when it doesn't ask for us.
+ * @param {{instance: string, host: string, port: number, addresses: string[]}} service
+ */
+export function buildResponse(query, service, id = 0) {
+    const instanceName = `${service.instance}.${SERVICE_TYPE}`
+    const hostName = `${service.host}.local`
+    const wanted = query
+        ? query.questions.some(({ name, type }) =>
+            (name === SERVICE_TYPE && (type === TYPE_PTR || type === TYPE_ANY)) ||
+            (name === instanceName.toLowerCase() && [TYPE_SRV, TYPE_TXT, TYPE_ANY].includes(type)) ||
+            (name === hostName.toLowerCase() && (type === TYPE_A || type === TYPE_ANY)))
+        : true // unsolicited announcement
+    if (!wanted) return null
+
+    const srv = Buffer.alloc(6)
+    srv.writeUInt16BE(0, 0) // priority
+    srv.writeUInt16BE(0, 2) // weight
+    srv.writeUInt16BE(service.port, 4)
+    const txtEntry = Buffer.from('path=/api/status')
+
+    const answers = [record(SERVICE_TYPE, TYPE_PTR, encodeName(instanceName), false)]
+    const additionals = [
+        record(instanceName, TYPE_SRV, Buffer.concat([srv, encodeName(hostName)])),
+        record(instanceName, TYPE_TXT, Buffer.concat([Buffer.from([txtEntry.length]), txtEntry])),
+        ...service.addresses.map(ip => record(hostName, TYPE_A, Buffer.from(ip.split('.').map(Number))))
+    ]
+    const header = Buffer.alloc(12)
+    header.writeUInt16BE(id, 0)
+    header.writeUInt16BE(0x8400, 2) // response, authoritative
+    header.writeUInt16BE(answers.length, 6)
+    header.writeUInt16BE(additionals.length, 10)
+    return Buffer.concat([header, ...answers, ...additionals])
+}
+
+function sanitizeLabel(value) {
+    return (value || 'torserve').replace(/[^a-zA-Z0-9-]/g, '-').slice(0, 63) || 'torserve'
+}
+
+/**
+ * @returns {() => void} stop
+ */
+export function startMdnsAdvertiser({ port, name = 'TorServe', env = process.env } = {}) {
+    if (env.MDNS_ADVERTISE === '0') return () => {}
+    const ifaces = localIpv4Interfaces()
+    const service = {
+        instance: sanitizeLabel(name),
+        host: sanitizeLabel(os.hostname().split('.')[0]),
+        port: Number(port),
+        addresses: ifaces.map(({ address }) => address)
+    }
+    if (!service.addresses.length) return () => {}
+
+    const socket = dgram.createSocket({ type: 'udp4', reuseAddr: true })
+    socket.on('error', (err) => {
+        console.warn('[mDNS] Advertiser disabled:', err.message)
+        try { socket.close() } catch { /* already closed */ }
+    })
+    socket.on('message', (msg, rinfo) => {
+        const query = parseQuery(msg)
+        if (!query) return
+        // Legacy unicast (source port != 5353) gets a direct reply with the query id
+        const legacy = rinfo.port !== MDNS_PORT
+        const addresses = addressesFor(ifaces, rinfo.address)
+        const response = buildResponse(query, { ...service, addresses }, legacy ? query.id : 0)
+        if (!response) return
+        const unicast = legacy || query.questions.some(q => q.unicast)
+        socket.send(response, unicast ? rinfo.port : MDNS_PORT, unicast ? rinfo.address : MDNS_ADDRESS)
+    })
+    socket.bind(MDNS_PORT, () => {
+        try {
+            socket.addMembership(MDNS_ADDRESS)
+            socket.setMulticastTTL(255)
+            socket.send(buildResponse(null, service), MDNS_PORT, MDNS_ADDRESS)
+            console.log(`[mDNS] Advertising ${service.instance}.${SERVICE_TYPE} on port ${service.port}`)
+        } catch (err) {
+            console.warn('[mDNS] Advertiser disabled:', err.message)
+        }
+    })
+    return () => {
+        try { socket.close() } catch { /* already closed */ }
+    }
+}
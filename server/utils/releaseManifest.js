@@ -0,0 +1,139 @@
+/**
+ * Release step for version.json: publishes the SHA-256 of the release APK,
+ * so the native downloader (ApkDownloader) verifies what it fetched before
+ * installApk() runs, whatever mirror or LAN proxy served it, and the delta
+ * patches (apkDelta.js) from earlier releases as deltas[].
+ *
+ * Run after the APK is built and version.json has the new version/url:
+ *   node server/utils/releaseManifest.js <release.apk>
+ *       [--base <versionCode>=<old.apk> ...] [--upload] [version.json ...]
+ * Each --base writes <release>-from-<versionCode>.tsdelta next to the APK.
+ * --upload attaches the APK and the patches to the GitHub release (gh CLI);
+ * for the NAS updater, copy them into the served dist folder.
+ * Without manifest paths both copies are updated (repo root, for the
+ * GitHub raw URL, and client/public, served by the NAS updater).
+ */
+import crypto from 'crypto'
+import fs from 'fs'
+import path from 'path'
+import { execFileSync } from 'child_process'
+import { fileURLToPath, pathToFileURL } from 'url'
+import { applyApkDelta, createApkDelta } from './apkDelta.js'
+
+const ROOT = path.resolve(path.dirname(fileURLToPath(import.meta.url)), '../..')
+export const DEFAULT_MANIFESTS = [
+    path.join(ROOT, 'version.json'),
+    path.join(ROOT, 'client/public/version.json')
+]
+
+export function sha256Hex(buf) {
+    return crypto.createHash('sha256').update(buf).digest('hex')
+}
+
+/** Folder of the release download URL, with a trailing slash. */
+function releaseBaseUrl(manifest) {
+    return String(manifest.url).replace(/[^/]*$/, '')
+}
+
+/**
+ * version.json with the release APK's hash. Refuses an APK whose file name
+ * isn't the one manifest.url points at: a stale build would otherwise be
+ * published as the new release. Deltas of an earlier release are dropped,
+ * they rebuild that release's APK, not this one.
+ */
+export function withReleaseHash(manifest, apkName, apkBuf) {
+    const urlName = path.basename(String(manifest?.url || ''))
+    if (!urlName || urlName !== apkName) {
+        throw new Error(`version.json url points at "${urlName}", not ${apkName}`)
+    }
+    const result = { ...manifest, sha256: sha256Hex(apkBuf) }
+    const base = releaseBaseUrl(manifest)
+    const deltas = (manifest.deltas || []).filter(d => String(d?.url || '').startsWith(base))
+    if (deltas.length) result.deltas = deltas
+    else delete result.deltas
+    return result
+}
+
+export function deltaFileName(apkName, fromVersionCode) {
+    return apkName.replace(/\.apk$/, '') + `-from-${fromVersionCode}.tsdelta`
+}
+
+/**
+ * Adds (or replaces) the deltas[] entry for a patch from fromVersionCode,
+ * in the shape appUpdater.js picks by the installed versionCode.
+ */
+export function withDelta(manifest, fromVersionCode, patchName, patchBuf) {
+    const entry = {
+        fromVersionCode: Number(fromVersionCode),
+        url: releaseBaseUrl(manifest) + patchName,
+        sha256: sha256Hex(patchBuf),
+        size: patchBuf.length
+    }
+    const others = (manifest.deltas || []).filter(d => Number(d?.fromVersionCode) !== entry.fromVersionCode)
+    return { ...manifest, deltas: [...others, entry].sort((a, b) => b.fromVersionCode - a.fromVersionCode) }
+}
+
+/** "v3.18.0" from .../releases/download/v3.18.0/<apk> */
+export function releaseTag(manifest) {
+    return path.basename(releaseBaseUrl(manifest))
+}
+
+export function writeManifest(file, manifest) {
+    fs.writeFileSync(file, JSON.stringify(manifest, null, 4) + '\n')
+}
+
+if (process.argv[1] && import.meta.url === pathToFileURL(process.argv[1]).href) {
+    const args = process.argv.slice(2)
+    const bases = []
+    const manifestPaths = []
+    let apkPath = null
+    let upload = false
+    for (let i = 0; i < args.length; i++) {
+        if (args[i] === '--base') {
+            const [code, file] = String(args[++i] || '').split(/=(.*)/s)
+            if (!/^\d+$/.test(code) || !file) {
+                console.error(`--base expects <versionCode>=<old.apk>, got "${args[i]}"`)
+                process.exit(1)
+            }
+            bases.push({ fromVersionCode: Number(code), file })
+        } else if (args[i] === '--upload') {
+            upload = true
+        } else if (!apkPath) {
+            apkPath = args[i]
+        } else {
+            manifestPaths.push(args[i])
+        }
+    }
+    if (!apkPath) {
+        console.error('Usage: node server/utils/releaseManifest.js <release.apk> [--base <versionCode>=<old.apk> ...] [--upload] [version.json ...]')
+        process.exit(1)
+    }
+
+    const apkName = path.basename(apkPath)
+    const apkBuf = fs.readFileSync(apkPath)
+    const patches = bases.map(({ fromVersionCode, file }) => {
+        const oldBuf = fs.readFileSync(file)
+        const patchBuf = createApkDelta(oldBuf, apkBuf)
+        applyApkDelta(oldBuf, patchBuf) // throws rather than publish a broken patch
+        const patchPath = path.join(path.dirname(apkPath), deltaFileName(apkName, fromVersionCode))
+        fs.writeFileSync(patchPath, patchBuf)
+        console.log(`${patchPath}: ${patchBuf.length} bytes (${(patchBuf.length / apkBuf.length * 100).toFixed(1)}% of the APK)`)
+        return { fromVersionCode, patchPath, patchBuf }
+    })
+
+    let tag = null
+    for (const file of manifestPaths.length ? manifestPaths : DEFAULT_MANIFESTS) {
+        let manifest = withReleaseHash(JSON.parse(fs.readFileSync(file, 'utf8')), apkName, apkBuf)
+        for (const { fromVersionCode, patchPath, patchBuf } of patches) {
+            manifest = withDelta(manifest, fromVersionCode, path.basename(patchPath), patchBuf)
+        }
+        writeManifest(file, manifest)
+        tag = releaseTag(manifest)
+        console.log(`${file}: sha256 ${manifest.sha256}, ${manifest.deltas?.length || 0} delta(s)`)
+    }
+
+    if (upload) {
+        execFileSync('gh', ['release', 'upload', tag, apkPath, ...patches.map(p => p.patchPath), '--clobber'],
+            { stdio: 'inherit' })
+    }
+}
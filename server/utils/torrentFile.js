@@ -0,0 +1,155 @@
+/**
+ * .torrent uploads (POST /api/add/torrent from the Android intake).
+ *
+ * The info-hash is SHA-1 over the info dictionary's raw byte range — the
+ * same bytes torrent-stream and the swarm hash — found by walking the
+ * bencode without decoding values. The file then goes where torrent-stream
+ * looks for cached metadata (<tmp>/torrent-stream/<hash>.torrent), so
+ * adding the equivalent magnet starts without a metadata exchange and
+ * reuses the normal addTorrent path (dedup, persistence, trackers).
+ */
+import crypto from 'crypto'
+import fs from 'fs/promises'
+import os from 'os'
+import path from 'path'
+
+export const MAX_TORRENT_FILE_BYTES = 32 * 1024 * 1024
+const MAX_DEPTH = 64
+
+class TorrentFileError extends Error {}
+
+/** Index just past the bencoded value starting at i. */
+function skipValue(buf, i, depth) {
+    if (depth > MAX_DEPTH) throw new TorrentFileError('Nesting too deep')
+    const c = buf[i]
+    if (c === 0x69) { // i<digits>e
+        const end = buf.indexOf(0x65, i + 1)
+        if (end < 0) throw new TorrentFileError('Truncated torrent file')
+        return end + 1
+    }
+    if (c === 0x6c || c === 0x64) { // l...e / d...e
+        i++
+        while (buf[i] !== 0x65) {
+            if (i >= buf.length) throw new TorrentFileError('Truncated torrent file')
+            if (c === 0x64) i = skipString(buf, i).end
+            i = skipValue(buf, i, depth + 1)
+        }
+        return i + 1
+    }
+    return skipString(buf, i).end
+}
+
+function skipString(buf, i) {
+    const colon = buf.indexOf(0x3a, i)
+    const digits = colon > i ? buf.toString('latin1', i, colon) : ''
+    if (!/^\d{1,15}$/.test(digits)) throw new TorrentFileError('Bad bencode string')
+    const length = Number(digits)
+    const end = colon + 1 + length
+    if (end > buf.length) throw new TorrentFileError('Truncated torrent file')
+    return { start: colon + 1, end }
+}
+
+function isDigit(c) {
+    return c >= 0x30 && c <= 0x39
+}
+
+/** Tracker URLs of an announce-list (list of tiers, each a list of strings). */
+function readAnnounceList(buf, i) {
+    const urls = []
+    i++
+    while (buf[i] !== 0x65) {
+        if (buf[i] !== 0x6c) {
+            i = skipValue(buf, i, 2)
+            continue
+        }
+        i++
+        while (buf[i] !== 0x65) {
+            if (i >= buf.length) throw new TorrentFileError('Truncated torrent file')
+            const end = skipValue(buf, i, 3)
+            if (isDigit(buf[i])) {
+                const value = skipString(buf, i)
+                urls.push(buf.toString('utf8', value.start, value.end))
+            }
+            i = end
+        }
+        i++
+    }
+    return urls
+}
+
+/** Top-level string values of a dictionary that starts at i. */
+function readDictStrings(buf, i, keys) {
+    const values = {}
+    i++
+    while (buf[i] !== 0x65) {
+        if (i >= buf.length) throw new TorrentFileError('Truncated torrent file')
+        const key = skipString(buf, i)
+        const name = buf.toString('utf8', key.start, key.end)
+        const valueEnd = skipValue(buf, key.end, 2)
+        if (keys.includes(name) && isDigit(buf[key.end])) {
+            const value = skipString(buf, key.end)
+            values[name] = buf.toString('utf8', value.start, value.end)
+        }
+        i = valueEnd
+    }
+    return values
+}
+
+/**
+ * @param {Buffer} buf  whole .torrent file
+ * @returns {{infoHash: string, name: string|null, announce: string[]}}
+ */
+export function parseTorrentFile(buf) {
+    if (!Buffer.isBuffer(buf) || buf[0] !== 0x64) throw new TorrentFileError('Not a torrent file')
+    let i = 1
+    let infoHash = null
+    let name = null
+    const announce = []
+    while (buf[i] !== 0x65) {
+        if (i >= buf.length) throw new TorrentFileError('Truncated torrent file')
+        const key = skipString(buf, i)
+        const keyName = buf.toString('latin1', key.start, key.end)
+        const end = skipValue(buf, key.end, 1)
+        if (keyName === 'info') {
+            if (buf[key.end] !== 0x64) throw new TorrentFileError('info is not a dictionary')
+            infoHash = crypto.createHash('sha1').update(buf.subarray(key.end, end)).digest('hex')
+            const info = readDictStrings(buf, key.end, ['name', 'name.utf-8'])
+            name = info['name.utf-8'] || info.name || null
+        } else if (keyName === 'announce' && isDigit(buf[key.end])) {
+            const value = skipString(buf, key.end)
+            announce.push(buf.toString('utf8', value.start, value.end))
+        } else if (keyName === 'announce-list' && buf[key.end] === 0x6c) {
+            announce.push(...readAnnounceList(buf, key.end))
+        }
+        i = end
+    }
+    if (!infoHash) throw new TorrentFileError('No info dictionary')
+    return { infoHash, name, announce: [...new Set(announce)] }
+}
+
+/** Magnet that addTorrent dedups and persists like any other. */
+export function buildTorrentFileMagnet({ infoHash, name, announce = [] }) {
+    let magnet = `magnet:?xt=urn:btih:${infoHash}`
+    if (name) magnet += `&dn=${encodeURIComponent(name)}`
+    for (const tr of announce) magnet += `&tr=${encodeURIComponent(tr)}`
+    return magnet
+}
+
+/**
+ * Writes the file to torrent-stream's metadata cache (opts.tmp defaults to
+ * os.tmpdir(), opts.name to 'torrent-stream'). tmp + rename: an engine for
+ * the same hash may be reading it.
+ */
+export async function cacheTorrentMetadata(buf, infoHash, tmpDir = os.tmpdir()) {
+    const dir = path.join(tmpDir, 'torrent-stream')
+    await fs.mkdir(dir, { recursive: true })
+    const target = path.join(dir, `${infoHash}.torrent`)
+    const tmp = `${target}.${process.pid}.tmp`
+    await fs.writeFile(tmp, buf)
+    await fs.rename(tmp, target)
+    return target
+}
+
+export function isTorrentFileError(err) {
+    return err instanceof TorrentFileError
+}